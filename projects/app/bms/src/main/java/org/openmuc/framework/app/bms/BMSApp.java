@@ -46,6 +46,7 @@ public final class BMSApp{
 	private void deactivate() {
 		logger.info("Deactivating {}", APP_NAME);
 		channel.removeListener(channelListener);
+		LatestValuesDao.shutdown();
 	}
 	
 	private void initUpdateTimer() {
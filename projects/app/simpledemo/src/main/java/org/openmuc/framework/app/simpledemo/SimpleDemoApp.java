@@ -97,6 +97,7 @@ public final class SimpleDemoApp {
 		updateTimer.purge();
         updateDbTimer.cancel();
         updateDbTimer.purge();
+        LatestValuesDao.shutdown();
 	}
 
 	private void initiatePowerCells() {
@@ -49,6 +49,50 @@ public interface ConfigService {
 
     void setConfig(RootConfig config);
 
+    /**
+     * Adds or replaces a single device together with all its channels. Only this device is reconfigured, all other
+     * devices keep running undisturbed. Data loggers and servers are only informed about the channels of this device.
+     * <p>
+     * The device is usually part of a configuration obtained by {@link #getConfig()} or {@link #getEmptyConfig()}.
+     * Its driver has to be part of the current configuration.
+     *
+     * @param deviceConfig
+     *            the new configuration of the device
+     * @throws IdCollisionException
+     *             if the device ID is used by a device of another driver or a channel ID is used by another device
+     * @throws IllegalArgumentException
+     *             if the driver of the device is not configured
+     */
+    void setDeviceConfig(DeviceConfig deviceConfig) throws IdCollisionException;
+
+    /**
+     * Removes a single device together with all its channels. Does nothing if the device is not configured.
+     *
+     * @param deviceId
+     *            the device ID
+     */
+    void deleteDevice(String deviceId);
+
+    /**
+     * Adds or replaces a single channel. Only the device of the channel is reconfigured.
+     *
+     * @param channelConfig
+     *            the new configuration of the channel, its device has to be part of the current configuration
+     * @throws IdCollisionException
+     *             if the channel ID is used by a channel of another device
+     * @throws IllegalArgumentException
+     *             if the device of the channel is not configured
+     */
+    void setChannelConfig(ChannelConfig channelConfig) throws IdCollisionException;
+
+    /**
+     * Removes a single channel. Does nothing if the channel is not configured.
+     *
+     * @param channelId
+     *            the channel ID
+     */
+    void deleteChannel(String channelId);
+
     void writeConfigToFile() throws ConfigWriteException;
 
     void reloadConfigFromFile() throws FileNotFoundException, ParseException;
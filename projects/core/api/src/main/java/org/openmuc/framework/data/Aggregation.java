@@ -18,24 +18,31 @@
  * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
  *
  */
-package org.openmuc.framework.server.modbus.register;
-
-import org.openmuc.framework.dataaccess.Channel;
-
-public class BooleanMappingInputRegister extends MappingInputRegister {
-
-    public BooleanMappingInputRegister(Channel channel, int byteHigh, int byteLow) {
-        super(channel, byteHigh, byteLow);
-    }
-
-    @Override
-    public byte[] toBytes() {
-        if (channel.getLatestRecord().getValue().asBoolean()) {
-            return new byte[] { 0x01b };
-        }
-        else {
-            return new byte[] { 0x00b };
-        }
-    }
+package org.openmuc.framework.data;
 
+/**
+ * Aggregation of the logged values of a channel within fixed time buckets. Buckets start at the beginning of the
+ * requested time range and only valid values are aggregated.
+ */
+public enum Aggregation {
+    /**
+     * Average value of the bucket, time stamped with the start of the bucket.
+     */
+    AVG,
+    /**
+     * Smallest value of the bucket, time stamped with the start of the bucket.
+     */
+    MIN,
+    /**
+     * Largest value of the bucket, time stamped with the start of the bucket.
+     */
+    MAX,
+    /**
+     * First value of the bucket with its own time stamp.
+     */
+    FIRST,
+    /**
+     * Last value of the bucket with its own time stamp.
+     */
+    LAST;
 }
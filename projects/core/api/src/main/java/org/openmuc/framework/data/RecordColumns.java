@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Logged records of a single channel stored in primitive columns. Used to read large histories without creating a
+ * {@link Record} and a {@link Value} object per sample.
+ * <p>
+ * Values are stored as double. A missing value is stored as {@link Double#NaN}, the flag tells whether the value is
+ * valid. The columns grow as records are added and are not thread safe.
+ */
+public final class RecordColumns {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] timestamps;
+    private double[] values;
+    private byte[] flags;
+    private int size = 0;
+
+    public RecordColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity
+     *            the number of records which can be added before the columns have to grow
+     */
+    public RecordColumns(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initial capacity must not be negative: " + initialCapacity);
+        }
+        timestamps = new long[initialCapacity];
+        values = new double[initialCapacity];
+        flags = new byte[initialCapacity];
+    }
+
+    /**
+     * Converts a list of records. See {@link #add(Record)} for the conversion of the values.
+     *
+     * @param records
+     *            the records, may be <code>null</code>
+     * @return the records in columns
+     */
+    public static RecordColumns fromRecords(List<Record> records) {
+        if (records == null) {
+            return new RecordColumns(0);
+        }
+        RecordColumns columns = new RecordColumns(records.size());
+        for (Record record : records) {
+            columns.add(record);
+        }
+        return columns;
+    }
+
+    public void add(long timestamp, double value, Flag flag) {
+        add(timestamp, value, flag.getCode());
+    }
+
+    public void add(long timestamp, double value, byte flagCode) {
+        if (size == timestamps.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        flags[size] = flagCode;
+        size++;
+    }
+
+    /**
+     * Adds a record. A valid value which cannot be converted to double is added with the flag
+     * {@link Flag#DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION}. Records without timestamp are skipped.
+     *
+     * @param record
+     *            the record to add
+     */
+    public void add(Record record) {
+        if (record == null || record.getTimestamp() == null) {
+            return;
+        }
+        Value value = record.getValue();
+        Flag flag = record.getFlag();
+        double doubleValue = Double.NaN;
+        if (value != null && flag == Flag.VALID) {
+            try {
+                doubleValue = value.asDouble();
+            } catch (TypeConversionException e) {
+                flag = Flag.DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION;
+            }
+        }
+        add(record.getTimestamp(), doubleValue, flag);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public Flag getFlag(int index) {
+        checkIndex(index);
+        return Flag.newFlag(flags[index]);
+    }
+
+    /**
+     * @return a copy of the timestamp column
+     */
+    public long[] getTimestamps() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    /**
+     * @return a copy of the value column
+     */
+    public double[] getValues() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return a copy of the flag column containing the codes of the flags, see {@link Flag#newFlag(int)}
+     */
+    public byte[] getFlagCodes() {
+        return Arrays.copyOf(flags, size);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+}
@@ -23,10 +23,13 @@ package org.openmuc.framework.dataaccess;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.FutureValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 
@@ -266,6 +269,24 @@ public interface Channel {
      */
     Flag write(Value value);
 
+    /**
+     * Writes the given value like {@link #write(Value)} without blocking the caller. The latest record of the channel
+     * is updated once the device finished the write, even if the returned future timed out or was cancelled before.
+     * If the device did not start the write before, it is skipped and the flag is <code>Flag.TIMEOUT</code>.
+     * <p>
+     * The default implementation writes synchronously.
+     *
+     * @param value
+     *            the value that is to be written
+     * @param timeout
+     *            the deadline in milliseconds, no deadline if zero or negative
+     * @return a future completed with the flag of the write or exceptionally with a
+     *         {@link java.util.concurrent.TimeoutException} if the deadline passed before
+     */
+    default CompletableFuture<Flag> writeAsync(Value value, long timeout) {
+        return CompletableFuture.completedFuture(write(value));
+    }
+
     /**
      * Schedules a List&lt;records&gt; with future timestamps as write tasks <br>
      * This function will schedule single write tasks to the provided timestamps.<br>
@@ -293,6 +314,21 @@ public interface Channel {
      */
     Record read();
 
+    /**
+     * Reads a value like {@link #read()} without blocking the caller. If the device did not start the read before the
+     * returned future timed out or was cancelled, it is skipped.
+     * <p>
+     * The default implementation reads synchronously.
+     *
+     * @param timeout
+     *            the deadline in milliseconds, no deadline if zero or negative
+     * @return a future completed with the record read or exceptionally with a
+     *         {@link java.util.concurrent.TimeoutException} if the deadline passed before
+     */
+    default CompletableFuture<Record> readAsync(long timeout) {
+        return CompletableFuture.completedFuture(read());
+    }
+
     /**
      * Returns a <code>ReadRecordContainer</code> that corresponds to this channel. This container can be passed to the
      * <code>read</code> function of <code>DataAccessService</code> to read several values in one transaction.
@@ -349,4 +385,47 @@ public interface Channel {
      */
     List<Record> getLoggedRecords(long startTime, long endTime) throws DataLoggerNotAvailableException, IOException;
 
+    /**
+     * Returns the same records as {@link #getLoggedRecords(long, long)} in primitive columns. Values are converted to
+     * double, so this method is meant for numeric channels with large histories.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @return the logged records with timestamps from <code>startTime</code> to <code>endTime</code> inclusive.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordColumns getLoggedRecordColumns(long startTime, long endTime)
+            throws DataLoggerNotAvailableException, IOException {
+        return RecordColumns.fromRecords(getLoggedRecords(startTime, endTime));
+    }
+
+    /**
+     * Returns the logged values aggregated into buckets of <code>interval</code> milliseconds, starting at
+     * <code>startTime</code>, if the data logger is able to aggregate them itself.
+     *
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param interval
+     *            the length of a bucket in milliseconds
+     * @param aggregation
+     *            the aggregation applied to the values of each bucket
+     * @return one value per non empty bucket or <code>null</code> if the data logger does not aggregate. In this case
+     *         the values have to be aggregated from {@link #getLoggedRecordColumns(long, long)}.
+     * @throws DataLoggerNotAvailableException
+     *             if no data logger is installed and therefore no logged data can be accessed.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordColumns getLoggedAggregatedRecordColumns(long startTime, long endTime, long interval,
+            Aggregation aggregation) throws DataLoggerNotAvailableException, IOException {
+        return null;
+    }
+
 }
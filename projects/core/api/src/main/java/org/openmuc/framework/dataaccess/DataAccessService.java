@@ -22,6 +22,7 @@
 package org.openmuc.framework.dataaccess;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface to get access to the measurement and control data of connected communication devices.
@@ -61,4 +62,37 @@ public interface DataAccessService {
      */
     void write(List<WriteValueContainer> values);
 
+    /**
+     * Starts the read on the read record containers without blocking the caller. The containers of different devices
+     * are read in parallel.
+     * <p>
+     * If the deadline passes or the returned future is cancelled, devices which did not start reading yet skip the
+     * read and set the flag {@link org.openmuc.framework.data.Flag#TIMEOUT}. Reads already in progress run to the end.
+     * 
+     * @param values
+     *            a list of ReadRecordContainer {@link Channel#getReadContainer()}
+     * @param timeout
+     *            the deadline in milliseconds, no deadline if zero or negative
+     * @return a future which completes with <code>values</code> once all reads are finished or exceptionally with a
+     *         {@link java.util.concurrent.TimeoutException} if the deadline passed before
+     */
+    CompletableFuture<List<ReadRecordContainer>> readAsync(List<ReadRecordContainer> values, long timeout);
+
+    /**
+     * Starts the write on the write value containers without blocking the caller. The containers of different devices
+     * are written in parallel.
+     * <p>
+     * If the deadline passes or the returned future is cancelled, devices which did not start writing yet skip the
+     * write and set the flag {@link org.openmuc.framework.data.Flag#TIMEOUT}. Writes already in progress run to the
+     * end.
+     * 
+     * @param values
+     *            a list of WriteValueContainer {@link Channel#getWriteContainer()}
+     * @param timeout
+     *            the deadline in milliseconds, no deadline if zero or negative
+     * @return a future which completes with <code>values</code> once all writes are finished or exceptionally with a
+     *         {@link java.util.concurrent.TimeoutException} if the deadline passed before
+     */
+    CompletableFuture<List<WriteValueContainer>> writeAsync(List<WriteValueContainer> values, long timeout);
+
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.data;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RecordColumnsTest {
+
+    @Test
+    void columnsGrow() {
+        RecordColumns columns = new RecordColumns(0);
+        for (int i = 0; i < 100; i++) {
+            columns.add(i * 1000L, i * 0.5, Flag.VALID);
+        }
+
+        Assertions.assertEquals(100, columns.size());
+        Assertions.assertEquals(99000L, columns.getTimestamp(99));
+        Assertions.assertEquals(49.5, columns.getValue(99));
+        Assertions.assertEquals(Flag.VALID, columns.getFlag(99));
+        Assertions.assertEquals(100, columns.getTimestamps().length);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> columns.getValue(100));
+    }
+
+    @Test
+    void recordsAreConverted() {
+        RecordColumns columns = RecordColumns.fromRecords(Arrays.asList(new Record(new IntValue(3), 1L),
+                new Record(new BooleanValue(true), 2L), new Record(null, 3L, Flag.DRIVER_ERROR_TIMEOUT),
+                new Record(new StringValue("abc"), 4L), new Record(Flag.UNKNOWN_ERROR)));
+
+        Assertions.assertEquals(4, columns.size());
+        Assertions.assertArrayEquals(new long[] { 1L, 2L, 3L, 4L }, columns.getTimestamps());
+        Assertions.assertEquals(3.0, columns.getValue(0));
+        Assertions.assertEquals(1.0, columns.getValue(1));
+        Assertions.assertTrue(Double.isNaN(columns.getValue(2)));
+        Assertions.assertEquals(Flag.DRIVER_ERROR_TIMEOUT, columns.getFlag(2));
+        Assertions.assertEquals(Flag.DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION, columns.getFlag(3));
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the device tasks of a single read or write call. {@link #getTasksFinished()} completes once every task is
+ * finished, while the future returned by {@link #getResult(Supplier)} is handed to the caller and may additionally time
+ * out or be cancelled. Tasks which did not start before the caller gave up are skipped, see {@link #isAbandoned()}.
+ */
+final class AccessCompletion {
+
+    private final AtomicInteger remainingTasks;
+    private final CompletableFuture<Void> tasksFinished = new CompletableFuture<>();
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    /**
+     * @param tasks
+     *            the number of device tasks of the call
+     * @param timeout
+     *            the deadline of the call in milliseconds, no deadline if not positive
+     * @param deadlineScheduler
+     *            completes the result with a {@link TimeoutException} when the deadline passed
+     */
+    AccessCompletion(int tasks, long timeout, ScheduledExecutorService deadlineScheduler) {
+        remainingTasks = new AtomicInteger(tasks);
+        if (tasks == 0) {
+            complete();
+        }
+        else if (timeout > 0) {
+            ScheduledFuture<?> deadline = deadlineScheduler.schedule(
+                    () -> result.completeExceptionally(
+                            new TimeoutException("Device access did not finish within " + timeout + " ms")),
+                    timeout, TimeUnit.MILLISECONDS);
+            result.whenComplete((ignored, e) -> deadline.cancel(false));
+        }
+    }
+
+    /**
+     * Completion of a call without deadline.
+     */
+    AccessCompletion(int tasks) {
+        this(tasks, 0, null);
+    }
+
+    /**
+     * Called exactly once by every device task of the call, no matter whether it was executed, skipped or aborted.
+     */
+    void taskFinished() {
+        if (remainingTasks.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        tasksFinished.complete(null);
+        // completed second, so actions attached to tasksFinished are done before the caller is notified
+        result.complete(null);
+    }
+
+    /**
+     * @return true if the caller timed out or cancelled the call, so tasks which did not start yet can be skipped
+     */
+    boolean isAbandoned() {
+        return result.isCompletedExceptionally();
+    }
+
+    CompletableFuture<Void> getTasksFinished() {
+        return tasksFinished;
+    }
+
+    /**
+     * Returns a new future for the caller. It completes with the given value once every task finished, or
+     * exceptionally when the deadline passed. Cancelling it, or completing it exceptionally, abandons the call.
+     *
+     * @param value
+     *            supplies the value of the call, invoked after every task finished
+     * @return the future handed to the caller
+     */
+    <T> CompletableFuture<T> getResult(Supplier<T> value) {
+        CompletableFuture<T> callerResult = new CompletableFuture<>();
+        result.whenComplete((ignored, e) -> {
+            if (e != null) {
+                callerResult.completeExceptionally(e);
+                return;
+            }
+            try {
+                callerResult.complete(value.get());
+            } catch (RuntimeException valueException) {
+                callerResult.completeExceptionally(valueException);
+            }
+        });
+        // unlike a dependent stage, the caller's cancellation reaches the tasks
+        callerResult.whenComplete((ignored, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            }
+        });
+        return callerResult;
+    }
+
+    /**
+     * Blocks until every task is finished.
+     *
+     * @throws InterruptedException
+     *             if the waiting thread was interrupted
+     */
+    void await() throws InterruptedException {
+        try {
+            tasksFinished.get();
+        } catch (ExecutionException e) {
+            // tasksFinished is never completed exceptionally
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time ordered queue of the actions executed by the data manager thread.
+ * <p>
+ * Actions are indexed by their start time, so finding or inserting the action of a given time stamp costs O(log n)
+ * instead of a linear scan. The scheduler additionally keeps track of how late actions were executed compared to their
+ * scheduled start time.
+ * <p>
+ * All methods except the statistic getters must only be called by the data manager thread.
+ */
+final class ActionScheduler {
+
+    private final TreeMap<Long, Action> actions = new TreeMap<>();
+
+    private volatile long executedActions = 0;
+    private volatile long totalLateness = 0;
+    private volatile long maxLateness = 0;
+    private volatile long lastLateness = 0;
+    private volatile long rescheduledActions = 0;
+
+    boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    int size() {
+        return actions.size();
+    }
+
+    /**
+     * Returns the action with the earliest start time without removing it.
+     *
+     * @return the next action or <code>null</code> if no action is scheduled
+     */
+    Action peek() {
+        Map.Entry<Long, Action> first = actions.firstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    /**
+     * Removes and returns the action with the earliest start time.
+     *
+     * @return the next action or <code>null</code> if no action is scheduled
+     */
+    Action poll() {
+        Map.Entry<Long, Action> first = actions.pollFirstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    /**
+     * Returns the action scheduled at the given start time. A new, empty action is inserted if none exists yet.
+     *
+     * @param startTime
+     *            the start time in ms since epoch
+     * @return the action scheduled at start time
+     */
+    Action getOrCreate(long startTime) {
+        Action action = actions.get(startTime);
+        if (action == null) {
+            action = new Action(startTime);
+            actions.put(startTime, action);
+        }
+        return action;
+    }
+
+    Collection<Action> getActions() {
+        return actions.values();
+    }
+
+    void actionExecuted(long lateness) {
+        executedActions++;
+        totalLateness += lateness;
+        lastLateness = lateness;
+        if (lateness > maxLateness) {
+            maxLateness = lateness;
+        }
+    }
+
+    void actionRescheduled() {
+        rescheduledActions++;
+    }
+
+    long getExecutedActions() {
+        return executedActions;
+    }
+
+    long getMaxLateness() {
+        return maxLateness;
+    }
+
+    long getRescheduledActions() {
+        return rescheduledActions;
+    }
+
+    @Override
+    public String toString() {
+        long executed = executedActions;
+        long averageLateness = executed == 0 ? 0 : totalLateness / executed;
+        return "scheduled actions: " + actions.size() + ", executed actions: " + executed + ", lateness last/avg/max: "
+                + lastLateness + "/" + averageLateness + "/" + maxLateness + " ms, rescheduled (timed out) actions: "
+                + rescheduledActions;
+    }
+
+}
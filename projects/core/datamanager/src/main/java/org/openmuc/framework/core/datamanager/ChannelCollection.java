@@ -24,6 +24,8 @@ package org.openmuc.framework.core.datamanager;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.openmuc.framework.driver.spi.Connection;
+
 public final class ChannelCollection {
 
     List<ChannelImpl> channels = new LinkedList<>();
@@ -33,6 +35,11 @@ public final class ChannelCollection {
     Device device;
     Action action;
 
+    // handle returned by the driver for the last read of the channels of a sampling collection, see Connection#read
+    private Object containerListHandle;
+    private Connection containerListHandleConnection;
+    private int containerListVersion = 0;
+
     public ChannelCollection(Integer interval, Integer timeOffset, String samplingGroup, Device device) {
         this.interval = interval;
         this.timeOffset = timeOffset;
@@ -44,4 +51,50 @@ public final class ChannelCollection {
         return ((interval - (((timestamp % (24 * 60 * 60 * 1000)) - timeOffset) % interval)) + timestamp);
     }
 
+    /**
+     * Returns the handle the driver returned for the last read of this collection.
+     *
+     * @param connection
+     *            the connection which is going to be used for the read
+     * @return the handle or <code>null</code> if the channels have changed since the last read or the handle was
+     *         returned by another connection
+     */
+    Object getContainerListHandle(Connection connection) {
+        if (connection == null || connection != containerListHandleConnection) {
+            return null;
+        }
+        return containerListHandle;
+    }
+
+    /**
+     * Stores the handle returned by a read of this collection. The handle is ignored if the channels have changed
+     * since the read was started.
+     *
+     * @param handle
+     *            the handle returned by the driver
+     * @param connection
+     *            the connection which returned the handle
+     * @param version
+     *            the value of {@link #getContainerListVersion()} when the read was started
+     */
+    void setContainerListHandle(Object handle, Connection connection, int version) {
+        if (version == containerListVersion) {
+            containerListHandle = handle;
+            containerListHandleConnection = connection;
+        }
+    }
+
+    int getContainerListVersion() {
+        return containerListVersion;
+    }
+
+    /**
+     * Has to be called whenever the channels of the collection or their configuration change.
+     */
+    void invalidateContainerListHandle() {
+        containerListVersion++;
+        containerListHandle = null;
+        containerListHandleConnection = null;
+    }
+
 }
@@ -21,6 +21,9 @@
 
 package org.openmuc.framework.core.datamanager;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +31,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.openmuc.framework.config.ChannelConfig;
 import org.openmuc.framework.config.DeviceConfig;
 import org.openmuc.framework.config.IdCollisionException;
@@ -36,8 +41,6 @@ import org.openmuc.framework.config.ServerMapping;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.dataaccess.ChannelState;
 import org.openmuc.framework.datalogger.spi.LogChannel;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -521,124 +524,149 @@ public final class ChannelConfigImpl implements ChannelConfig, LogChannel {
         return deviceParent;
     }
 
-    Element getDomElement(Document document) {
-        Element parentElement = document.createElement("channel");
-        parentElement.setAttribute("id", id);
-
-        Element childElement;
+    void writeXml(ConfigXmlWriter writer) throws XMLStreamException {
+        writer.startElement("channel");
+        writer.attribute("id", id);
 
         if (description != null) {
-            childElement = document.createElement("description");
-            childElement.setTextContent(description);
-            parentElement.appendChild(childElement);
+            writer.textElement("description", description);
         }
 
         if (channelAddress != null) {
-            childElement = document.createElement("channelAddress");
-            childElement.setTextContent(channelAddress);
-            parentElement.appendChild(childElement);
+            writer.textElement("channelAddress", channelAddress);
         }
 
         if (serverMappings != null) {
             for (ServerMapping serverMapping : serverMappings) {
-                childElement = document.createElement("serverMapping");
-                childElement.setAttribute("id", serverMapping.getId());
-                childElement.setTextContent(serverMapping.getServerAddress());
-                parentElement.appendChild(childElement);
+                writer.textElement("serverMapping", "id", serverMapping.getId(), serverMapping.getServerAddress());
             }
         }
 
         if (unit != null) {
-            childElement = document.createElement("unit");
-            childElement.setTextContent(unit);
-            parentElement.appendChild(childElement);
+            writer.textElement("unit", unit);
         }
 
         if (valueType != null) {
-            childElement = document.createElement("valueType");
-            childElement.setTextContent(valueType.toString());
-
-            if (valueTypeLength != null) {
-                if (valueType == ValueType.BYTE_ARRAY || valueType == ValueType.STRING) {
-                    childElement.setAttribute("length", valueTypeLength.toString());
-                }
+            String length = null;
+            if (valueTypeLength != null && (valueType == ValueType.BYTE_ARRAY || valueType == ValueType.STRING)) {
+                length = valueTypeLength.toString();
             }
-            parentElement.appendChild(childElement);
+            writer.textElement("valueType", "length", length, valueType.toString());
         }
 
         if (scalingFactor != null) {
-            childElement = document.createElement("scalingFactor");
-            childElement.setTextContent(Double.toString(scalingFactor));
-            parentElement.appendChild(childElement);
+            writer.textElement("scalingFactor", Double.toString(scalingFactor));
         }
 
         if (valueOffset != null) {
-            childElement = document.createElement("valueOffset");
-            childElement.setTextContent(Double.toString(valueOffset));
-            parentElement.appendChild(childElement);
+            writer.textElement("valueOffset", Double.toString(valueOffset));
         }
 
         if (listening != null) {
-            childElement = document.createElement("listening");
-            childElement.setTextContent(listening.toString());
-            parentElement.appendChild(childElement);
+            writer.textElement("listening", listening.toString());
         }
 
         if (samplingInterval != null) {
-            childElement = document.createElement("samplingInterval");
-            childElement.setTextContent(millisToTimeString(samplingInterval));
-            parentElement.appendChild(childElement);
+            writer.textElement("samplingInterval", millisToTimeString(samplingInterval));
         }
 
         if (samplingTimeOffset != null) {
-            childElement = document.createElement("samplingTimeOffset");
-            childElement.setTextContent(millisToTimeString(samplingTimeOffset));
-            parentElement.appendChild(childElement);
+            writer.textElement("samplingTimeOffset", millisToTimeString(samplingTimeOffset));
         }
 
         if (samplingGroup != null) {
-            childElement = document.createElement("samplingGroup");
-            childElement.setTextContent(samplingGroup);
-            parentElement.appendChild(childElement);
+            writer.textElement("samplingGroup", samplingGroup);
         }
 
         if (settings != null) {
-            childElement = document.createElement("settings");
-            childElement.setTextContent(settings);
-            parentElement.appendChild(childElement);
+            writer.textElement("settings", settings);
         }
 
         if (loggingInterval != null) {
-            childElement = document.createElement("loggingInterval");
-            childElement.setTextContent(millisToTimeString(loggingInterval));
-            parentElement.appendChild(childElement);
+            writer.textElement("loggingInterval", millisToTimeString(loggingInterval));
         }
 
         if (loggingTimeOffset != null) {
-            childElement = document.createElement("loggingTimeOffset");
-            childElement.setTextContent(millisToTimeString(loggingTimeOffset));
-            parentElement.appendChild(childElement);
+            writer.textElement("loggingTimeOffset", millisToTimeString(loggingTimeOffset));
         }
 
         if (loggingEvent != null) {
-            childElement = document.createElement("loggingEvent");
-            childElement.setTextContent(loggingEvent.toString());
-            parentElement.appendChild(childElement);
+            writer.textElement("loggingEvent", loggingEvent.toString());
         }
 
         if (loggingSettings != null) {
-            childElement = document.createElement("loggingSettings");
-            childElement.setTextContent(loggingSettings);
-            parentElement.appendChild(childElement);
+            writer.textElement("loggingSettings", loggingSettings);
         }
 
         if (disabled != null) {
-            childElement = document.createElement("disabled");
-            childElement.setTextContent(disabled.toString());
-            parentElement.appendChild(childElement);
+            writer.textElement("disabled", disabled.toString());
+        }
+
+        writer.endElement();
+    }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        ConfigSnapshot.writeString(out, id);
+        ConfigSnapshot.writeString(out, channelAddress);
+        ConfigSnapshot.writeString(out, description);
+        ConfigSnapshot.writeString(out, unit);
+        ConfigSnapshot.writeString(out, valueType == null ? null : valueType.name());
+        ConfigSnapshot.writeInteger(out, valueTypeLength);
+        ConfigSnapshot.writeDouble(out, scalingFactor);
+        ConfigSnapshot.writeDouble(out, valueOffset);
+        ConfigSnapshot.writeBoolean(out, listening);
+        ConfigSnapshot.writeInteger(out, samplingInterval);
+        ConfigSnapshot.writeInteger(out, samplingTimeOffset);
+        ConfigSnapshot.writeString(out, samplingGroup);
+        ConfigSnapshot.writeString(out, settings);
+        ConfigSnapshot.writeBoolean(out, loggingEvent);
+        ConfigSnapshot.writeInteger(out, loggingInterval);
+        ConfigSnapshot.writeInteger(out, loggingTimeOffset);
+        ConfigSnapshot.writeString(out, loggingSettings);
+        ConfigSnapshot.writeBoolean(out, disabled);
+        ConfigSnapshot.writeString(out, reader);
+        if (serverMappings == null) {
+            out.writeInt(-1);
+        }
+        else {
+            out.writeInt(serverMappings.size());
+            for (ServerMapping serverMapping : serverMappings) {
+                ConfigSnapshot.writeString(out, serverMapping.getId());
+                ConfigSnapshot.writeString(out, serverMapping.getServerAddress());
+            }
         }
+    }
 
-        return parentElement;
+    static ChannelConfigImpl readSnapshot(DataInputStream in, DeviceConfigImpl parentConfig) throws IOException {
+        ChannelConfigImpl config = new ChannelConfigImpl(ConfigSnapshot.readString(in), parentConfig);
+        config.channelAddress = ConfigSnapshot.readString(in);
+        config.description = ConfigSnapshot.readString(in);
+        config.unit = ConfigSnapshot.readString(in);
+        String valueType = ConfigSnapshot.readString(in);
+        config.valueType = valueType == null ? null : ValueType.valueOf(valueType);
+        config.valueTypeLength = ConfigSnapshot.readInteger(in);
+        config.scalingFactor = ConfigSnapshot.readDouble(in);
+        config.valueOffset = ConfigSnapshot.readDouble(in);
+        config.listening = ConfigSnapshot.readBoolean(in);
+        config.samplingInterval = ConfigSnapshot.readInteger(in);
+        config.samplingTimeOffset = ConfigSnapshot.readInteger(in);
+        config.samplingGroup = ConfigSnapshot.readString(in);
+        config.settings = ConfigSnapshot.readString(in);
+        config.loggingEvent = ConfigSnapshot.readBoolean(in);
+        config.loggingInterval = ConfigSnapshot.readInteger(in);
+        config.loggingTimeOffset = ConfigSnapshot.readInteger(in);
+        config.loggingSettings = ConfigSnapshot.readString(in);
+        config.disabled = ConfigSnapshot.readBoolean(in);
+        config.reader = ConfigSnapshot.readString(in);
+        int serverMappingCount = in.readInt();
+        if (serverMappingCount >= 0) {
+            config.serverMappings = new ArrayList<>(serverMappingCount);
+            for (int i = 0; i < serverMappingCount; i++) {
+                config.serverMappings
+                        .add(new ServerMapping(ConfigSnapshot.readString(in), ConfigSnapshot.readString(in)));
+            }
+        }
+        return config;
     }
 
     ChannelConfigImpl clone(DeviceConfigImpl clonedParentConfig) {
@@ -22,6 +22,7 @@
 package org.openmuc.framework.core.datamanager;
 
 import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.ByteValue;
@@ -32,6 +33,7 @@ import org.openmuc.framework.data.FutureValue;
 import org.openmuc.framework.data.IntValue;
 import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.ShortValue;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.TypeConversionException;
@@ -55,18 +57,18 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public final class ChannelImpl implements Channel {
 
     private static final Logger logger = LoggerFactory.getLogger(ChannelImpl.class);
-    private final Set<RecordListener> listeners = new LinkedHashSet<>();
+    private final Map<RecordListener, ListenerDispatcher.ListenerQueue> listeners = new LinkedHashMap<>();
     private final DataManager dataManager;
     volatile ChannelConfigImpl config;
     ChannelCollection samplingCollection;
@@ -206,14 +208,31 @@ public final class ChannelImpl implements Channel {
     @Override
     public void addListener(RecordListener listener) {
         synchronized (listeners) {
-            listeners.add(listener);
+            if (!listeners.containsKey(listener)) {
+                listeners.put(listener, dataManager.listenerDispatcher.register(config.getId(), listener));
+            }
         }
     }
 
     @Override
     public void removeListener(RecordListener listener) {
         synchronized (listeners) {
-            listeners.remove(listener);
+            ListenerDispatcher.ListenerQueue queue = listeners.remove(listener);
+            if (queue != null) {
+                dataManager.listenerDispatcher.unregister(queue);
+            }
+        }
+    }
+
+    /**
+     * Releases the listener queues of a deleted channel once they have delivered the pending records.
+     */
+    void releaseListeners() {
+        synchronized (listeners) {
+            for (ListenerDispatcher.ListenerQueue queue : listeners.values()) {
+                dataManager.listenerDispatcher.release(queue);
+            }
+            listeners.clear();
         }
     }
 
@@ -267,6 +286,36 @@ public final class ChannelImpl implements Channel {
         return toReturn;
     }
 
+    @Override
+    public RecordColumns getLoggedRecordColumns(long startTime, long endTime)
+            throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        RecordColumns toReturn = dataManager.getDataLogger(reader)
+                .getRecordColumns(config.getId(), startTime, endTime);
+
+        // values in the future values list are sorted.
+        long currentTime = System.currentTimeMillis();
+        for (FutureValue futureValue : futureValues) {
+            if (futureValue.getWriteTime() >= currentTime) {
+                if (futureValue.getWriteTime() <= endTime) {
+                    toReturn.add(new Record(futureValue.getValue(), futureValue.getWriteTime()));
+                }
+                else {
+                    break;
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    @Override
+    public RecordColumns getLoggedAggregatedRecordColumns(long startTime, long endTime, long interval,
+            Aggregation aggregation) throws DataLoggerNotAvailableException, IOException {
+        String reader = getValidReaderIdFromConfig();
+        return dataManager.getDataLogger(reader)
+                .getAggregatedRecordColumns(config.getId(), startTime, endTime, interval, aggregation);
+    }
+
     private String getValidReaderIdFromConfig() {
         if (config.getReader().isEmpty() || config.getReader() == null) {
             return firstLoggerFromLogSettings();
@@ -364,10 +413,14 @@ public final class ChannelImpl implements Channel {
             return;
         }
 
+        Record record = latestRecord;
+        List<ListenerDispatcher.ListenerQueue> queues;
         synchronized (listeners) {
-            for (RecordListener listener : listeners) {
-                config.deviceParent.device.dataManager.executor.execute(new ListenerNotifier(listener, latestRecord));
-            }
+            queues = new ArrayList<>(listeners.values());
+        }
+        // offered outside of the lock because offering may block depending on the overflow policy
+        for (ListenerDispatcher.ListenerQueue queue : queues) {
+            queue.offer(record);
         }
 
     }
@@ -400,20 +453,50 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public Flag write(Value value) {
+        if (isVirtual()) {
+            return writeVirtual(value);
+        }
+
+        AccessCompletion completion = new AccessCompletion(1);
+        WriteValueContainerImpl writeValueContainer = startWrite(value, completion);
+        try {
+            completion.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return writeFinished(value, writeValueContainer);
+    }
 
-        if (config.deviceParent.driverParent.getId().equals("virtual")) {
-            Record record = new Record(value, System.currentTimeMillis());
-            setLatestRecord(record);
-            List<ChannelRecordContainer> recordContainers = new ArrayList<>();
-            ChannelRecordContainer recordContainer = new ChannelRecordContainerImpl(this);
-            recordContainer.setRecord(record);
-            recordContainers.add(recordContainer);
-            dataManager.newRecords(recordContainers);
-            dataManager.interrupt();
-            return record.getFlag();
+    @Override
+    public CompletableFuture<Flag> writeAsync(Value value, long timeout) {
+        if (isVirtual()) {
+            return CompletableFuture.completedFuture(writeVirtual(value));
         }
 
-        CountDownLatch writeTaskFinishedSignal = new CountDownLatch(1);
+        AccessCompletion completion = new AccessCompletion(1, timeout, dataManager.deadlineScheduler);
+        WriteValueContainerImpl writeValueContainer = startWrite(value, completion);
+        // the latest record is updated even if the caller does not wait for the write anymore
+        completion.getTasksFinished().thenRun(() -> writeFinished(value, writeValueContainer));
+        return completion.getResult(writeValueContainer::getFlag);
+    }
+
+    private boolean isVirtual() {
+        return config.deviceParent.driverParent.getId().equals("virtual");
+    }
+
+    private Flag writeVirtual(Value value) {
+        Record record = new Record(value, System.currentTimeMillis());
+        setLatestRecord(record);
+        List<ChannelRecordContainer> recordContainers = new ArrayList<>();
+        ChannelRecordContainer recordContainer = new ChannelRecordContainerImpl(this);
+        recordContainer.setRecord(record);
+        recordContainers.add(recordContainer);
+        dataManager.newRecords(recordContainers);
+        dataManager.wakeUp();
+        return record.getFlag();
+    }
+
+    private WriteValueContainerImpl startWrite(Value value, AccessCompletion completion) {
         WriteValueContainerImpl writeValueContainer = new WriteValueContainerImpl(this);
 
         Value adjustedValue = value;
@@ -431,19 +514,15 @@ public final class ChannelImpl implements Channel {
 
         List<WriteValueContainerImpl> writeValueContainerList = Arrays.asList(writeValueContainer);
         WriteTask writeTask = new WriteTask(dataManager, config.deviceParent.device, writeValueContainerList,
-                writeTaskFinishedSignal);
+                completion);
 
-        synchronized (dataManager.newWriteTasks) {
-            dataManager.newWriteTasks.add(writeTask);
-        }
+        dataManager.newWriteTasks.add(writeTask);
 
-        dataManager.interrupt();
-        try {
-            writeTaskFinishedSignal.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        dataManager.wakeUp();
+        return writeValueContainer;
+    }
 
+    private Flag writeFinished(Value value, WriteValueContainerImpl writeValueContainer) {
         long timestamp = System.currentTimeMillis();
         latestRecord = new Record(value, timestamp, writeValueContainer.getFlag());
         notifyListeners();
@@ -495,20 +574,11 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public Record read() {
-        CountDownLatch readTaskFinishedSignal = new CountDownLatch(1);
-
-        ChannelRecordContainerImpl readValueContainer = new ChannelRecordContainerImpl(this);
-        List<ChannelRecordContainerImpl> readValueContainerList = Arrays.asList(readValueContainer);
-
-        ReadTask readTask = new ReadTask(dataManager, config.deviceParent.device, readValueContainerList,
-                readTaskFinishedSignal);
-        synchronized (dataManager.newReadTasks) {
-            dataManager.newReadTasks.add(readTask);
-        }
-        dataManager.interrupt();
+        AccessCompletion completion = new AccessCompletion(1);
+        ChannelRecordContainerImpl readValueContainer = startRead(completion);
 
         try {
-            readTaskFinishedSignal.await();
+            completion.await();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -516,6 +586,27 @@ public final class ChannelImpl implements Channel {
         return setNewRecord(readValueContainer.getRecord());
     }
 
+    @Override
+    public CompletableFuture<Record> readAsync(long timeout) {
+        AccessCompletion completion = new AccessCompletion(1, timeout, dataManager.deadlineScheduler);
+        ChannelRecordContainerImpl readValueContainer = startRead(completion);
+
+        CompletableFuture<Record> record = completion.getTasksFinished()
+                .thenApply(ignored -> setNewRecord(readValueContainer.getRecord()));
+        // the record is set before the result completes, see AccessCompletion.complete()
+        return completion.getResult(record::join);
+    }
+
+    private ChannelRecordContainerImpl startRead(AccessCompletion completion) {
+        ChannelRecordContainerImpl readValueContainer = new ChannelRecordContainerImpl(this);
+        List<ChannelRecordContainerImpl> readValueContainerList = Arrays.asList(readValueContainer);
+
+        ReadTask readTask = new ReadTask(dataManager, config.deviceParent.device, readValueContainerList, completion);
+        dataManager.newReadTasks.add(readTask);
+        dataManager.wakeUp();
+        return readValueContainer;
+    }
+
     @Override
     public boolean isConnected() {
         return config.state == ChannelState.CONNECTED || config.state == ChannelState.SAMPLING
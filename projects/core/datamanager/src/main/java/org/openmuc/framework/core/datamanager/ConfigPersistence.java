@@ -0,0 +1,265 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.openmuc.framework.config.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the configuration to the channels.xml file without blocking the callers.
+ * <p>
+ * Write requests are coalesced: the first request schedules a write after the write delay, requests arriving in the
+ * meantime only replace the configuration to write. The file is written to a temporary file, synced and renamed, so a
+ * crash never leaves a truncated configuration behind. A failed background write is logged and kept as
+ * {@link #getLastError()}, callers can then write synchronously with {@link #writeNow(RootConfigImpl)} to learn
+ * whether their own configuration was saved. Optionally a binary snapshot of the configuration is kept next
+ * to the XML file which is loaded instead of parsing the XML as long as the XML file was not modified.
+ * <p>
+ * The persistence is configured with the following system properties:
+ * <ul>
+ * <li>org.openmuc.framework.core.datamanager.config.writeDelay - time in ms to collect write requests before the file
+ * is written, default is 1000</li>
+ * <li>org.openmuc.framework.core.datamanager.config.snapshot - true to keep a binary snapshot, default is false</li>
+ * </ul>
+ */
+final class ConfigPersistence {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigPersistence.class);
+
+    private static final String PROPERTY_PREFIX = "org.openmuc.framework.core.datamanager.config.";
+    private static final long DEFAULT_WRITE_DELAY = 1000L;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes the content of a file.
+     */
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final File configFile;
+    private final File snapshotFile;
+    private final long writeDelay;
+    private final ScheduledExecutorService executor;
+    private final AtomicReference<RootConfigImpl> pendingConfig = new AtomicReference<>();
+    private volatile IOException lastError = null;
+
+    /**
+     * @param configFile
+     *            the XML configuration file
+     * @param writeDelay
+     *            time in ms to collect write requests
+     * @param snapshot
+     *            whether a binary snapshot is kept
+     */
+    ConfigPersistence(File configFile, long writeDelay, boolean snapshot) {
+        this.configFile = configFile;
+        this.snapshotFile = snapshot ? new File(configFile.getPath() + SNAPSHOT_SUFFIX) : null;
+        this.writeDelay = writeDelay;
+        executor = Executors
+                .newSingleThreadScheduledExecutor(new NamedThreadFactory("OpenMUC Data Manager Config Writer - "));
+    }
+
+    static ConfigPersistence createFromSystemProperties(File configFile) {
+        long writeDelay = Long.getLong(PROPERTY_PREFIX + "writeDelay", DEFAULT_WRITE_DELAY);
+        boolean snapshot = Boolean.getBoolean(PROPERTY_PREFIX + "snapshot");
+        logger.debug("Config persistence with write delay {} ms, snapshot {}", writeDelay, snapshot);
+        return new ConfigPersistence(configFile, writeDelay, snapshot);
+    }
+
+    /**
+     * Loads the configuration, from the snapshot if it is enabled and still matches the XML file.
+     *
+     * @return the configuration without defaults
+     * @throws FileNotFoundException
+     *             if the configuration file does not exist
+     * @throws ParseException
+     *             if the configuration file could not be parsed
+     */
+    RootConfigImpl load() throws FileNotFoundException, ParseException {
+        if (snapshotFile == null || !configFile.exists()) {
+            return RootConfigImpl.createFromFile(configFile);
+        }
+
+        long xmlChecksum;
+        try {
+            xmlChecksum = ConfigSnapshot.checksum(configFile);
+        } catch (IOException e) {
+            throw new ParseException(e);
+        }
+
+        RootConfigImpl config = ConfigSnapshot.read(snapshotFile, xmlChecksum);
+        if (config != null) {
+            logger.debug("Loaded configuration from snapshot {}", snapshotFile);
+            return config;
+        }
+
+        RootConfigImpl parsedConfig = RootConfigImpl.createFromFile(configFile);
+        try {
+            writeAtomically(snapshotFile, out -> ConfigSnapshot.write(parsedConfig, out, xmlChecksum));
+        } catch (IOException e) {
+            logger.warn("Failed to write configuration snapshot {}", snapshotFile, e);
+        }
+        return parsedConfig;
+    }
+
+    /**
+     * Requests to write the given configuration. Returns immediately, the file is written by a background thread.
+     *
+     * @param config
+     *            the configuration without defaults, must not be modified afterwards
+     */
+    void write(RootConfigImpl config) {
+        if (pendingConfig.getAndSet(config) == null) {
+            executor.schedule(this::writePending, writeDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the given configuration on the calling thread, together with a pending request which it replaces.
+     *
+     * @param config
+     *            the configuration without defaults, must not be modified afterwards
+     * @throws IOException
+     *             if the configuration could not be written
+     */
+    synchronized void writeNow(RootConfigImpl config) throws IOException {
+        pendingConfig.set(config);
+        writePendingOrThrow();
+    }
+
+    /**
+     * @return the error of the last write, <code>null</code> if it succeeded
+     */
+    IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Writes a pending configuration immediately.
+     */
+    void flush() {
+        writePending();
+    }
+
+    /**
+     * Writes a pending configuration and stops the background thread.
+     */
+    void close() {
+        flush();
+        executor.shutdownNow();
+    }
+
+    private synchronized void writePending() {
+        try {
+            writePendingOrThrow();
+        } catch (IOException e) {
+            logger.error("Failed to write configuration to {}", configFile, e);
+        }
+    }
+
+    private void writePendingOrThrow() throws IOException {
+        RootConfigImpl config = pendingConfig.getAndSet(null);
+        if (config == null) {
+            return;
+        }
+
+        try {
+            long xmlChecksum = writeAtomically(configFile, config::writeXml);
+            if (snapshotFile != null) {
+                writeAtomically(snapshotFile, out -> ConfigSnapshot.write(config, out, xmlChecksum));
+            }
+            lastError = null;
+        } catch (IOException e) {
+            lastError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            // e.g. a failing XML transformer, must not kill the writer thread silently
+            lastError = new IOException(e);
+            throw lastError;
+        }
+    }
+
+    /**
+     * Writes a file to a temporary file, syncs it to the disk and renames it to the target file.
+     *
+     * @return the CRC32 checksum of the written content
+     */
+    static long writeAtomically(File file, Content content) throws IOException {
+        File target = file.getAbsoluteFile();
+        File directory = target.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        File tempFile = new File(target.getPath() + TEMP_SUFFIX);
+
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+            OutputStream out = new CheckedOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE), checksum);
+            content.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(directory);
+        return checksum.getValue();
+    }
+
+    private static void syncDirectory(File directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform, the rename is still atomic
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streams the configuration as indented XML without building a DOM first. Elements are written with
+ * {@link #startElement(String)} and {@link #endElement()}, elements which only contain text with
+ * {@link #textElement(String, String)}.
+ */
+final class ConfigXmlWriter {
+
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private static final String INDENT = "  ";
+
+    private final XMLStreamWriter writer;
+    private int depth = 0;
+    private boolean hasChildren = false;
+
+    ConfigXmlWriter(OutputStream out) throws XMLStreamException {
+        writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+    }
+
+    void startElement(String name) throws XMLStreamException {
+        newLine();
+        writer.writeStartElement(name);
+        depth++;
+        hasChildren = false;
+    }
+
+    void attribute(String name, String value) throws XMLStreamException {
+        writer.writeAttribute(name, value);
+    }
+
+    void endElement() throws XMLStreamException {
+        depth--;
+        if (hasChildren) {
+            newLine();
+        }
+        writer.writeEndElement();
+        hasChildren = true;
+    }
+
+    void textElement(String name, String text) throws XMLStreamException {
+        textElement(name, null, null, text);
+    }
+
+    /**
+     * Writes an element with one attribute and text content. The attribute is omitted if its value is
+     * <code>null</code>.
+     */
+    void textElement(String name, String attributeName, String attributeValue, String text)
+            throws XMLStreamException {
+        newLine();
+        writer.writeStartElement(name);
+        if (attributeValue != null) {
+            writer.writeAttribute(attributeName, attributeValue);
+        }
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+        hasChildren = true;
+    }
+
+    void finish() throws XMLStreamException {
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    private void newLine() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(1 + depth * INDENT.length());
+        sb.append('\n');
+        for (int i = 0; i < depth; i++) {
+            sb.append(INDENT);
+        }
+        writer.writeCharacters(sb.toString());
+    }
+
+}
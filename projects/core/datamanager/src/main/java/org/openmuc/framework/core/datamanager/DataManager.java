@@ -25,21 +25,27 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -60,6 +66,7 @@ import org.openmuc.framework.config.DeviceScanListener;
 import org.openmuc.framework.config.DriverConfig;
 import org.openmuc.framework.config.DriverInfo;
 import org.openmuc.framework.config.DriverNotAvailableException;
+import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.ParseException;
 import org.openmuc.framework.config.RootConfig;
 import org.openmuc.framework.config.ScanException;
@@ -99,41 +106,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component(service = { DataAccessService.class, ConfigService.class }, immediate = true, property = {
-        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload" })
+        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload",
+        CommandProcessor.COMMAND_FUNCTION + ":String=schedulerstats",
+        CommandProcessor.COMMAND_FUNCTION + ":String=listenerstats",
+        CommandProcessor.COMMAND_FUNCTION + ":String=loggerstats" })
 public final class DataManager extends Thread implements DataAccessService, ConfigService, RecordsReceivedListener {
 
     private static final String DEFAULT_CONF_FILE = "conf/channels.xml";
 
     private static final Logger logger = LoggerFactory.getLogger(DataManager.class);
-    final LinkedList<Device> connectedDevices = new LinkedList<>();
-    final LinkedList<Device> disconnectedDevices = new LinkedList<>();
-    final LinkedList<Device> connectionFailures = new LinkedList<>();
-    final LinkedList<SamplingTask> samplingTaskFinished = new LinkedList<>();
-    final LinkedList<WriteTask> newWriteTasks = new LinkedList<>();
-    final LinkedList<ReadTask> newReadTasks = new LinkedList<>();
-    final LinkedList<DeviceTask> tasksFinished = new LinkedList<>();
+    // events produced by other threads and consumed by the data manager thread after a call to wakeUp()
+    final Queue<Device> connectedDevices = new ConcurrentLinkedQueue<>();
+    final Queue<Device> disconnectedDevices = new ConcurrentLinkedQueue<>();
+    final Queue<Device> connectionFailures = new ConcurrentLinkedQueue<>();
+    final Queue<SamplingTask> samplingTaskFinished = new ConcurrentLinkedQueue<>();
+    final Queue<WriteTask> newWriteTasks = new ConcurrentLinkedQueue<>();
+    final Queue<ReadTask> newReadTasks = new ConcurrentLinkedQueue<>();
+    final Queue<DeviceTask> tasksFinished = new ConcurrentLinkedQueue<>();
     private final HashMap<String, DriverService> newDrivers = new LinkedHashMap<>();
     final HashMap<String, ServerService> serverServices = new HashMap<>();
     private final Map<String, DriverService> activeDrivers = new LinkedHashMap<>();
-    private final LinkedList<Action> actions = new LinkedList<>();
+    private final ActionScheduler actions = new ActionScheduler();
     private final List<ConfigChangeListener> configChangeListeners = new LinkedList<>();
     private final List<DataLoggerService> newDataLoggers = new LinkedList<>();
     private final Deque<DataLoggerService> activeDataLoggers = new LinkedBlockingDeque<>();
-    private final LinkedList<List<ChannelRecordContainer>> receivedRecordContainers = new LinkedList<>();
+    private final Queue<List<ChannelRecordContainer>> receivedRecordContainers = new ConcurrentLinkedQueue<>();
     private final ReentrantLock configLock = new ReentrantLock();
     CountDownLatch dataLoggerRemovedSignal;
     volatile int activeDeviceCountDown;
     ThreadPoolExecutor executor = null;
+    // completes read and write calls whose deadline passed
+    ScheduledThreadPoolExecutor deadlineScheduler = null;
+    ListenerDispatcher listenerDispatcher = null;
+    LogPipeline logPipeline = null;
+    private LoggerRouting loggerRouting = LoggerRouting.empty();
     CountDownLatch driverRemovedSignal;
     private volatile boolean stopFlag = false;
+    private final AtomicBoolean eventPending = new AtomicBoolean(false);
     // does not need to be a list because RemovedService() for driver services
     // are never called in parallel:
     private volatile String driverToBeRemovedId = null;
     private volatile DataLoggerService dataLoggerToBeRemoved = null;
     private volatile RootConfigImpl newRootConfigWithoutDefaults = null;
+    private volatile DeviceConfigChange newDeviceConfigChange = null;
     private volatile RootConfigImpl rootConfig;
     private volatile RootConfigImpl rootConfigWithoutDefaults;
     private File configFile;
+    private ConfigPersistence configPersistence;
     private volatile Boolean dataManagerActivated = false;
     private CountDownLatch newConfigSignal;
 
@@ -155,11 +174,17 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         NamedThreadFactory namedThreadFactory = new NamedThreadFactory("OpenMUC Data Manager Pool - thread-");
         executor = (ThreadPoolExecutor) Executors.newCachedThreadPool(namedThreadFactory);
+        deadlineScheduler = new ScheduledThreadPoolExecutor(1,
+                new NamedThreadFactory("OpenMUC Data Manager Deadlines - thread-"));
+        deadlineScheduler.setRemoveOnCancelPolicy(true);
+        listenerDispatcher = ListenerDispatcher.createFromSystemProperties();
+        logPipeline = LogPipeline.createFromSystemProperties();
 
         try {
             this.configFile = configFile;
+            configPersistence = ConfigPersistence.createFromSystemProperties(configFile);
             try {
-                rootConfigWithoutDefaults = RootConfigImpl.createFromFile(configFile);
+                rootConfigWithoutDefaults = configPersistence.load();
             } catch (FileNotFoundException e) {
                 // create an empty configuration and store it in a file
                 rootConfigWithoutDefaults = new RootConfigImpl();
@@ -190,6 +215,27 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
     }
 
+    /**
+     * Prints the statistics of the action scheduler. Used as a shell command.
+     */
+    public void schedulerstats() {
+        System.out.println(actions);
+    }
+
+    /**
+     * Prints queue depth, drop count and latency of every registered record listener. Used as a shell command.
+     */
+    public void listenerstats() {
+        System.out.println(listenerDispatcher);
+    }
+
+    /**
+     * Prints queue depth, drop count and latency of every data logger. Used as a shell command.
+     */
+    public void loggerstats() {
+        System.out.println(logPipeline);
+    }
+
     public void reload() {
         logger.info("Reload config from file.");
         try {
@@ -204,40 +250,48 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         logger.info("Deactivating Data Manager");
 
         stopFlag = true;
-        interrupt();
+        wakeUp();
         try {
             this.join();
             executor.shutdown();
+            deadlineScheduler.shutdownNow();
+            listenerDispatcher.shutdown();
+            logPipeline.shutdown();
         } catch (InterruptedException e) {
         }
+        configPersistence.close();
         dataManagerActivated = false;
     }
 
+    /**
+     * Signals the data manager thread that new events (finished tasks, received records, configuration changes, ...)
+     * have to be handled. Can be called from any thread.
+     */
+    void wakeUp() {
+        eventPending.set(true);
+        LockSupport.unpark(this);
+    }
+
     @Override
     public void run() {
 
         setName("OpenMUC Data Manager");
+        eventPending.set(false);
         handleInterruptEvent();
 
         while (!stopFlag) {
 
-            if (interrupted()) {
+            if (eventPending.getAndSet(false)) {
                 handleInterruptEvent();
                 continue;
             }
 
-            if (actions.isEmpty()) {
-                try {
-                    while (true) {
-                        Thread.sleep(Long.MAX_VALUE);
-                    }
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
-            }
+            Action currentAction = actions.peek();
 
-            Action currentAction = actions.getFirst();
+            if (currentAction == null) {
+                LockSupport.park(this);
+                continue;
+            }
 
             long currentTime = System.currentTimeMillis();
 
@@ -248,22 +302,19 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 continue;
             }
 
-            long sleepTime = currentAction.startTime - currentTime;
-            if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
+            if (elapsedTime < 0) {
+                // returns early on wakeUp() or spuriously, therefore the loop has to check again
+                LockSupport.parkUntil(this, currentAction.startTime);
+                continue;
             }
-            actions.removeFirst();
+            actions.poll();
+            actions.actionExecuted(elapsedTime);
 
             if (currentAction.timeouts != null) {
                 triggerTimeouts(currentAction.timeouts);
             }
 
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
+            LoggingController loggingController = new LoggingController(loggerRouting, logPipeline);
 
             if (loggingController.channelsHaveToBeLogged(currentAction)) {
                 for (Optional<ChannelCollection> collection : loggingController.triggerLogging(currentAction)) {
@@ -285,8 +336,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                     for (ChannelImpl channel : samplingCollection.channels) {
                         selectedChannels.add(channel.createChannelRecordContainer());
                     }
-                    SamplingTask samplingTask = new SamplingTask(this, samplingCollection.device, selectedChannels,
-                            samplingCollection.samplingGroup);
+                    SamplingTask samplingTask = new SamplingTask(this, samplingCollection, selectedChannels);
 
                     int timeout = samplingCollection.device.deviceConfig.getSamplingTimeout();
 
@@ -320,7 +370,8 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     private void elapsedTimeTooBig(Action currentAction, long currentTime) {
-        actions.removeFirst();
+        actions.poll();
+        actions.actionRescheduled();
         logger.error(
                 "Action was scheduled for UNIX time {}. But current time is already {}. Will calculate new action time because the action has timed out. Has the system clock jumped?",
                 currentAction.startTime, currentTime);
@@ -349,66 +400,19 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     private void addSamplingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.samplingCollections == null) {
-                    fittingAction.samplingCollections = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.samplingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
+        Action fittingAction = actions.getOrCreate(startTimestamp);
+        if (fittingAction.samplingCollections == null) {
             fittingAction.samplingCollections = new LinkedList<>();
-            actions.add(fittingAction);
         }
 
         fittingAction.samplingCollections.add(channelCollection);
         channelCollection.action = fittingAction;
-
     }
 
     private void addLoggingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.loggingCollections == null) {
-                    fittingAction.loggingCollections = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.loggingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
+        Action fittingAction = actions.getOrCreate(startTimestamp);
+        if (fittingAction.loggingCollections == null) {
             fittingAction.loggingCollections = new LinkedList<>();
-            actions.add(fittingAction);
         }
 
         fittingAction.loggingCollections.add(channelCollection);
@@ -416,64 +420,18 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     void addReconnectDeviceToActions(Device device, long startTimestamp) {
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.connectionRetryDevices == null) {
-                    fittingAction.connectionRetryDevices = new LinkedList<>();
-                }
-                break;
-            }
-
-            if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.connectionRetryDevices = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
+        Action fittingAction = actions.getOrCreate(startTimestamp);
+        if (fittingAction.connectionRetryDevices == null) {
             fittingAction.connectionRetryDevices = new LinkedList<>();
-            actions.add(fittingAction);
         }
 
         fittingAction.connectionRetryDevices.add(device);
     }
 
     private void addSamplingWorkerTimeoutToActions(SamplingTask readWorker, long timeout) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == timeout) {
-                fittingAction = currentAction;
-                if (fittingAction.timeouts == null) {
-                    fittingAction.timeouts = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > timeout) {
-                fittingAction = new Action(timeout);
-                fittingAction.timeouts = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(timeout);
+        Action fittingAction = actions.getOrCreate(timeout);
+        if (fittingAction.timeouts == null) {
             fittingAction.timeouts = new LinkedList<>();
-            actions.add(fittingAction);
         }
 
         fittingAction.timeouts.add(readWorker);
@@ -495,39 +453,39 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             newConfigSignal.countDown();
         }
 
-        synchronized (receivedRecordContainers) {
-            List<ChannelRecordContainer> recordContainers;
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
-            List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
-            while ((recordContainers = receivedRecordContainers.poll()) != null) {
-                recordContainers.stream()
-                        .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
-                        .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
-                                || containerImpl.getChannel().getDriverName().equals("virtual"))
-                        .forEach(containerImpl -> {
-                            containerImpl.getChannel().setNewRecord(containerImpl.getRecord());
-                            if (containerImpl.getChannel().isLoggingEvent()) {
-                                channelRecordContainerList.add(containerImpl);
-                            }
-                        });
-            }
-            loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
+        if (newDeviceConfigChange != null) {
+            currentTime = System.currentTimeMillis();
+            applyDeviceConfiguration(newDeviceConfigChange, currentTime);
+            newDeviceConfigChange = null;
+            newConfigSignal.countDown();
         }
 
-        synchronized (samplingTaskFinished) {
-            SamplingTask samplingTask;
-            while ((samplingTask = samplingTaskFinished.poll()) != null) {
-                samplingTask.storeValues();
-                samplingTask.device.taskFinished();
-            }
+        List<ChannelRecordContainer> recordContainers;
+        LoggingController loggingController = new LoggingController(loggerRouting, logPipeline);
+        List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
+        while ((recordContainers = receivedRecordContainers.poll()) != null) {
+            recordContainers.stream()
+                    .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
+                    .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
+                            || containerImpl.getChannel().getDriverName().equals("virtual"))
+                    .forEach(containerImpl -> {
+                        containerImpl.getChannel().setNewRecord(containerImpl.getRecord());
+                        if (containerImpl.getChannel().isLoggingEvent()) {
+                            channelRecordContainerList.add(containerImpl);
+                        }
+                    });
         }
+        loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
 
-        synchronized (tasksFinished) {
-            DeviceTask deviceTask;
-            while ((deviceTask = tasksFinished.poll()) != null) {
-                deviceTask.device.taskFinished();
+        SamplingTask samplingTask;
+        while ((samplingTask = samplingTaskFinished.poll()) != null) {
+            samplingTask.storeValues();
+            samplingTask.device.taskFinished();
+        }
 
-            }
+        DeviceTask deviceTask;
+        while ((deviceTask = tasksFinished.poll()) != null) {
+            deviceTask.device.taskFinished();
         }
 
         synchronized (newDrivers) {
@@ -557,11 +515,14 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         synchronized (newDataLoggers) {
             if (!newDataLoggers.isEmpty()) {
                 activeDataLoggers.addAll(newDataLoggers);
+                List<LogChannel> logChannels = rootConfig.logChannels;
                 for (DataLoggerService dataLogger : newDataLoggers) {
+                    logPipeline.register(dataLogger);
                     logger.info("Data logger registered: " + dataLogger.getId());
-                    dataLogger.setChannelsToLog(rootConfig.logChannels);
+                    logPipeline.configure(dataLogger, () -> dataLogger.setChannelsToLog(logChannels));
                 }
                 newDataLoggers.clear();
+                updateLoggerRouting();
             }
         }
 
@@ -609,43 +570,32 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             if (!activeDataLoggers.remove(dataLoggerToBeRemoved)) {
                 newDataLoggers.remove(dataLoggerToBeRemoved);
             }
+            logPipeline.unregister(dataLoggerToBeRemoved);
+            updateLoggerRouting();
             dataLoggerToBeRemoved = null;
             dataLoggerRemovedSignal.countDown();
         }
 
-        synchronized (connectionFailures) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectionFailureDevice;
-            while ((connectionFailureDevice = connectionFailures.poll()) != null) {
-                connectionFailureDevice.connectFailureSignal(currentTime);
-            }
+        if (currentTime == 0) {
+            currentTime = System.currentTimeMillis();
         }
-
-        synchronized (connectedDevices) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectedDevice;
-            while ((connectedDevice = connectedDevices.poll()) != null) {
-                connectedDevice.connectedSignal(currentTime);
-            }
+        Device connectionFailureDevice;
+        while ((connectionFailureDevice = connectionFailures.poll()) != null) {
+            connectionFailureDevice.connectFailureSignal(currentTime);
         }
 
-        synchronized (newWriteTasks) {
-            addTasksAndClear(newWriteTasks);
+        Device connectedDevice;
+        while ((connectedDevice = connectedDevices.poll()) != null) {
+            connectedDevice.connectedSignal(currentTime);
         }
 
-        synchronized (newReadTasks) {
-            addTasksAndClear(newReadTasks);
-        }
+        addTasksAndClear(newWriteTasks);
 
-        synchronized (disconnectedDevices) {
-            Device connectedDevice;
-            while ((connectedDevice = disconnectedDevices.poll()) != null) {
-                connectedDevice.disconnectedSignal();
-            }
+        addTasksAndClear(newReadTasks);
+
+        Device disconnectedDevice;
+        while ((disconnectedDevice = disconnectedDevices.poll()) != null) {
+            disconnectedDevice.disconnectedSignal();
         }
 
     }
@@ -715,12 +665,15 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 }
                 oldChannelConfig.state = ChannelState.DELETED;
                 oldChannelConfig.channel.setFlag(Flag.CHANNEL_DELETED);
+                oldChannelConfig.channel.releaseListeners();
                 // note: disabling SampleTasks and such has to be done at the
                 // Device level
             }
 
         }
 
+        invalidateContainerListHandles();
+
         updateLogChannelsInDataLoggers(logChannels);
 
         newRootConfig.logChannels = logChannels;
@@ -729,6 +682,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
             rootConfig = newRootConfig;
             rootConfigWithoutDefaults = configWithoutDefaults;
+            updateLoggerRouting();
 
             for (final ConfigChangeListener configChangeListener : configChangeListeners) {
                 if (configChangeListener == null) {
@@ -741,54 +695,178 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         notifyServers();
     }
 
-    private void updateLogChannelsInDataLoggers(List<LogChannel> logChannels) {
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            if (dataLogger.logSettingsRequired()) {
-                setLoggerSpecific(dataLogger, logChannels);
+    /**
+     * Applies the change of a single device. In contrast to {@link #applyConfiguration(RootConfigImpl, long)} only the
+     * affected device is reconfigured, and only the data loggers and servers which log or map one of its channels are
+     * informed.
+     */
+    private void applyDeviceConfiguration(DeviceConfigChange change, long currentTime) {
+
+        RootConfigImpl newRootConfig = rootConfig.cloneWithDefaultsReplacingDevice(change.driverId, change.deviceId,
+                change.deviceConfig);
+        DeviceConfigImpl oldDeviceConfig = rootConfig.deviceConfigsById.get(change.deviceId);
+        DeviceConfigImpl newDeviceConfig = newRootConfig.deviceConfigsById.get(change.deviceId);
+
+        List<LogChannel> deviceLogChannels = new LinkedList<>();
+
+        if (oldDeviceConfig == null) {
+            newDeviceConfig.device = new Device(this, newDeviceConfig, currentTime, deviceLogChannels);
+            if (newDeviceConfig.device.getState() == DeviceState.CONNECTING) {
+                newDeviceConfig.device.connectRetrySignal();
+            }
+        }
+        else if (newDeviceConfig == null) {
+            oldDeviceConfig.device.deleteSignal();
+        }
+        else {
+            oldDeviceConfig.device.configChangedSignal(newDeviceConfig, currentTime, deviceLogChannels);
+        }
+
+        Set<String> oldChannelIds = Collections.emptySet();
+        if (oldDeviceConfig != null) {
+            oldChannelIds = oldDeviceConfig.channelConfigsById.keySet();
+            for (ChannelConfigImpl oldChannelConfig : oldDeviceConfig.channelConfigsById.values()) {
+                if (newDeviceConfig == null
+                        || !newDeviceConfig.channelConfigsById.containsKey(oldChannelConfig.getId())) {
+                    if (oldChannelConfig.state == ChannelState.SAMPLING) {
+                        removeFromSamplingCollections(oldChannelConfig.channel);
+                    }
+                    oldChannelConfig.state = ChannelState.DELETED;
+                    oldChannelConfig.channel.setFlag(Flag.CHANNEL_DELETED);
+                    oldChannelConfig.channel.releaseListeners();
+                }
+            }
+        }
+
+        if (newDeviceConfig != null) {
+            invalidateContainerListHandles(newDeviceConfig.device);
+        }
+
+        List<LogChannel> logChannels = new ArrayList<>(rootConfig.logChannels.size());
+        List<LogChannel> previousDeviceLogChannels = new ArrayList<>();
+        for (LogChannel logChannel : rootConfig.logChannels) {
+            if (oldChannelIds.contains(logChannel.getId())) {
+                previousDeviceLogChannels.add(logChannel);
             }
             else {
-                setLoggerSpecificAndWithoutSettings(dataLogger, logChannels);
+                logChannels.add(logChannel);
+            }
+        }
+        logChannels.addAll(deviceLogChannels);
+
+        updateLogChannelsInDataLoggers(logChannels, previousDeviceLogChannels, deviceLogChannels);
+
+        newRootConfig.logChannels = logChannels;
+
+        synchronized (configChangeListeners) {
+
+            rootConfig = newRootConfig;
+            rootConfigWithoutDefaults = rootConfigWithoutDefaults.cloneReplacingDevice(change.driverId,
+                    change.deviceId, change.deviceConfig);
+            loggerRouting.update(oldChannelIds, deviceLogChannels);
+
+            for (final ConfigChangeListener configChangeListener : configChangeListeners) {
+                if (configChangeListener == null) {
+                    continue;
+                }
+                executor.execute(configChangeListener::configurationChanged);
+            }
+        }
+
+        notifyServers(oldDeviceConfig, newDeviceConfig);
+    }
+
+    /**
+     * Channel addresses may have changed, so the drivers have to create new container list handles on the next read.
+     */
+    private void invalidateContainerListHandles() {
+        for (Action action : actions.getActions()) {
+            if (action.samplingCollections != null) {
+                for (ChannelCollection samplingCollection : action.samplingCollections) {
+                    samplingCollection.invalidateContainerListHandle();
+                }
+            }
+        }
+    }
+
+    private void invalidateContainerListHandles(Device device) {
+        for (Action action : actions.getActions()) {
+            if (action.samplingCollections != null) {
+                for (ChannelCollection samplingCollection : action.samplingCollections) {
+                    if (samplingCollection.device == device) {
+                        samplingCollection.invalidateContainerListHandle();
+                    }
+                }
             }
         }
     }
 
-    private void setLoggerSpecific(DataLoggerService dataLogger, List<LogChannel> logChannels) {
-        List<LogChannel> specificLogChannels = filterLogChannelsForSpecificLogger(dataLogger.getId(), logChannels);
-        dataLogger.setChannelsToLog(specificLogChannels);
+    private void updateLoggerRouting() {
+        loggerRouting = new LoggerRouting(activeDataLoggers, rootConfig.logChannels);
     }
 
-    private void setLoggerSpecificAndWithoutSettings(DataLoggerService dataLogger, List<LogChannel> logChannels) {
-        List<LogChannel> specificLogChannels = filterLogChannelsForSpecificLogger(dataLogger.getId(), logChannels);
-        List<LogChannel> logChannelsWithoutLoggingSettings = logChannels.stream()
+    private void updateLogChannelsInDataLoggers(List<LogChannel> logChannels) {
+        for (DataLoggerService dataLogger : activeDataLoggers) {
+            List<LogChannel> channelsToLog = filterLogChannelsForLogger(dataLogger, logChannels);
+            logPipeline.configure(dataLogger, () -> dataLogger.setChannelsToLog(channelsToLog));
+        }
+    }
+
+    /**
+     * Informs the data loggers about the changed channels of a single device. Loggers which neither logged one of the
+     * previous channels nor log one of the changed channels are skipped.
+     */
+    private void updateLogChannelsInDataLoggers(List<LogChannel> logChannels, List<LogChannel> previousLogChannels,
+            List<LogChannel> changedLogChannels) {
+        for (DataLoggerService dataLogger : activeDataLoggers) {
+            List<LogChannel> previous = filterLogChannelsForLogger(dataLogger, previousLogChannels);
+            List<LogChannel> changed = filterLogChannelsForLogger(dataLogger, changedLogChannels);
+            if (previous.isEmpty() && changed.isEmpty()) {
+                continue;
+            }
+
+            Set<String> changedIds = new HashSet<>();
+            for (LogChannel logChannel : changed) {
+                changedIds.add(logChannel.getId());
+            }
+            List<String> removedIds = new ArrayList<>();
+            for (LogChannel logChannel : previous) {
+                if (!changedIds.contains(logChannel.getId())) {
+                    removedIds.add(logChannel.getId());
+                }
+            }
+
+            List<LogChannel> channelsToLog = filterLogChannelsForLogger(dataLogger, logChannels);
+            logPipeline.configure(dataLogger, () -> {
+                if (!dataLogger.updateChannelsToLog(changed, removedIds)) {
+                    dataLogger.setChannelsToLog(channelsToLog);
+                }
+            });
+        }
+    }
+
+    private List<LogChannel> filterLogChannelsForLogger(DataLoggerService dataLogger, List<LogChannel> logChannels) {
+        if (dataLogger.logSettingsRequired()) {
+            return filterLogChannelsForSpecificLogger(dataLogger.getId(), logChannels);
+        }
+        return logChannels.stream()
                 .filter(logChannel -> logChannel.getLoggingSettings() == null
                         || logChannel.getLoggingSettings().isEmpty())
                 .collect(Collectors.toList());
-
-        specificLogChannels.addAll(logChannelsWithoutLoggingSettings);
-        dataLogger.setChannelsToLog(logChannelsWithoutLoggingSettings);
     }
 
     private List<LogChannel> filterLogChannelsForSpecificLogger(String loggerId, List<LogChannel> logChannels) {
         return logChannels.stream()
                 .filter(logChannel -> logChannel.getLoggingSettings() != null
                         && !logChannel.getLoggingSettings().isEmpty())
-                .filter(logChannel -> parseDefinedLogger(logChannel.getLoggingSettings()).contains(loggerId))
+                .filter(logChannel -> LoggerRouting.parseLoggerIds(logChannel.getLoggingSettings()).contains(loggerId))
                 .collect(Collectors.toList());
     }
 
-    private List<String> parseDefinedLogger(String logSettings) {
-        String[] loggerSegments = logSettings.split(";");
-        List<String> definedLogger = Arrays.stream(loggerSegments)
-                .map(seg -> seg.split(":")[0])
-                .collect(Collectors.toList());
-
-        return definedLogger;
-    }
-
     void addToSamplingCollections(ChannelImpl channel, Long time) {
 
         ChannelCollection fittingSamplingCollection = null;
-        for (Action action : actions) {
+        for (Action action : actions.getActions()) {
             if (action.samplingCollections != null) {
                 for (ChannelCollection samplingCollection : action.samplingCollections) {
                     if (samplingCollection.interval == channel.getSamplingInterval()
@@ -819,12 +897,13 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             }
         }
         fittingSamplingCollection.channels.add(channel);
+        fittingSamplingCollection.invalidateContainerListHandle();
         channel.samplingCollection = fittingSamplingCollection;
     }
 
     void addToLoggingCollections(ChannelImpl channel, Long time) {
         ChannelCollection fittingLoggingCollection = null;
-        for (Action action : actions) {
+        for (Action action : actions.getActions()) {
             if (action.loggingCollections != null) {
                 for (ChannelCollection loggingCollection : action.loggingCollections) {
                     if (loggingCollection.interval == channel.getLoggingInterval()
@@ -865,6 +944,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     void removeFromSamplingCollections(ChannelImpl channel) {
         channel.samplingCollection.channels.remove(channel);
+        channel.samplingCollection.invalidateContainerListHandle();
         if (channel.samplingCollection.channels.isEmpty()) {
             channel.samplingCollection.action.samplingCollections.remove(channel.samplingCollection);
         }
@@ -873,7 +953,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     void removeFromConnectionRetry(Device device) {
-        for (Action action : actions) {
+        for (Action action : actions.getActions()) {
             if (action.connectionRetryDevices != null && action.connectionRetryDevices.remove(device)) {
                 break;
             }
@@ -891,7 +971,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 return;
             }
             newDrivers.put(driverId, driver);
-            interrupt();
+            wakeUp();
         }
     }
 
@@ -933,6 +1013,59 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
     }
 
+    /**
+     * Informs the ServerServices about the changed mappings of a single device. Servers to which none of the previous
+     * or new channels of the device are mapped are skipped.
+     *
+     * @param oldDeviceConfig
+     *            the previous configuration of the device, <code>null</code> if the device was added
+     * @param newDeviceConfig
+     *            the new configuration of the device, <code>null</code> if the device was deleted
+     */
+    private void notifyServers(DeviceConfigImpl oldDeviceConfig, DeviceConfigImpl newDeviceConfig) {
+        for (ServerService serverService : serverServices.values()) {
+            String serverId = serverService.getId();
+
+            List<ServerMappingContainer> changedMappings = new ArrayList<>();
+            Set<String> mappedChannelIds = new HashSet<>();
+            if (newDeviceConfig != null) {
+                for (ChannelConfigImpl config : newDeviceConfig.channelConfigsById.values()) {
+                    for (ServerMapping serverMapping : config.getServerMappings()) {
+                        if (serverMapping.getId().equals(serverId)) {
+                            changedMappings.add(new ServerMappingContainer(config.channel, serverMapping));
+                            mappedChannelIds.add(config.getId());
+                        }
+                    }
+                }
+            }
+
+            List<String> removedChannelIds = new ArrayList<>();
+            if (oldDeviceConfig != null) {
+                for (ChannelConfigImpl config : oldDeviceConfig.channelConfigsById.values()) {
+                    if (!mappedChannelIds.contains(config.getId()) && isMappedTo(config, serverId)) {
+                        removedChannelIds.add(config.getId());
+                    }
+                }
+            }
+
+            if (changedMappings.isEmpty() && removedChannelIds.isEmpty()) {
+                continue;
+            }
+            if (!serverService.updateServerMappings(changedMappings, removedChannelIds)) {
+                notifyServer(serverService);
+            }
+        }
+    }
+
+    private static boolean isMappedTo(ChannelConfig config, String serverId) {
+        for (ServerMapping serverMapping : config.getServerMappings()) {
+            if (serverMapping.getId().equals(serverId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Updates a specified ServerService with mapped channels.
      *
@@ -964,7 +1097,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             driverToBeRemovedId = driverId;
             driverRemovedSignal = new CountDownLatch(1);
-            interrupt();
+            wakeUp();
             try {
                 driverRemovedSignal.await();
             } catch (InterruptedException e) {
@@ -982,7 +1115,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     void bindDataLoggerService(DataLoggerService dataLogger) {
         synchronized (newDataLoggers) {
             newDataLoggers.add(dataLogger);
-            interrupt();
+            wakeUp();
         }
     }
 
@@ -995,11 +1128,13 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             dataLoggerRemovedSignal = new CountDownLatch(1);
             dataLoggerToBeRemoved = dataLogger;
-            interrupt();
+            wakeUp();
             try {
                 dataLoggerRemovedSignal.await();
             } catch (InterruptedException e) {
             }
+            // the consumer thread may still be delivering pending log calls
+            logPipeline.awaitRemoval(dataLogger);
         }
         else {
             if (!activeDataLoggers.remove(dataLogger)) {
@@ -1053,11 +1188,9 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         for (ChannelRecordContainer container : recordContainers) {
             recordContainersCopy.add(container.copy());
         }
-        synchronized (receivedRecordContainers) {
-            receivedRecordContainers.add(recordContainersCopy);
-        }
+        receivedRecordContainers.add(recordContainersCopy);
 
-        interrupt();
+        wakeUp();
 
     }
 
@@ -1137,7 +1270,9 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     public void reloadConfigFromFile() throws FileNotFoundException, ParseException {
         configLock.lock();
         try {
-            RootConfigImpl newConfigCopy = RootConfigImpl.createFromFile(configFile);
+            // a pending write must not overwrite the file after it was reloaded
+            configPersistence.flush();
+            RootConfigImpl newConfigCopy = configPersistence.load();
             setNewConfig(newConfigCopy);
         } finally {
             configLock.unlock();
@@ -1149,8 +1284,106 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         synchronized (this) {
             newConfigSignal = new CountDownLatch(1);
             newRootConfigWithoutDefaults = newConfigCopy;
-            interrupt();
+            wakeUp();
         }
+        awaitNewConfigSignal();
+    }
+
+    @Override
+    public void setDeviceConfig(DeviceConfig deviceConfig) throws IdCollisionException {
+        configLock.lock();
+        try {
+            DeviceConfigImpl newDeviceConfig = (DeviceConfigImpl) deviceConfig;
+            String driverId = newDeviceConfig.getDriver().getId();
+            RootConfigImpl currentConfig = rootConfigWithoutDefaults;
+
+            if (!currentConfig.driverConfigsById.containsKey(driverId)) {
+                throw new IllegalArgumentException("Driver " + driverId + " is not configured.");
+            }
+            DeviceConfigImpl currentDeviceConfig = currentConfig.deviceConfigsById.get(newDeviceConfig.getId());
+            if (currentDeviceConfig != null && !currentDeviceConfig.driverParent.getId().equals(driverId)) {
+                throw new IdCollisionException("Collision with device ID: " + newDeviceConfig.getId());
+            }
+            for (String channelId : newDeviceConfig.channelConfigsById.keySet()) {
+                checkChannelId(currentConfig, channelId, newDeviceConfig.getId());
+            }
+
+            setNewDeviceConfig(driverId, newDeviceConfig.getId(), newDeviceConfig);
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteDevice(String deviceId) {
+        configLock.lock();
+        try {
+            DeviceConfigImpl currentDeviceConfig = rootConfigWithoutDefaults.deviceConfigsById.get(deviceId);
+            if (currentDeviceConfig != null) {
+                setNewDeviceConfig(currentDeviceConfig.driverParent.getId(), deviceId, null);
+            }
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    @Override
+    public void setChannelConfig(ChannelConfig channelConfig) throws IdCollisionException {
+        configLock.lock();
+        try {
+            ChannelConfigImpl newChannelConfig = (ChannelConfigImpl) channelConfig;
+            String deviceId = newChannelConfig.getDevice().getId();
+            RootConfigImpl currentConfig = rootConfigWithoutDefaults;
+
+            DeviceConfigImpl currentDeviceConfig = currentConfig.deviceConfigsById.get(deviceId);
+            if (currentDeviceConfig == null) {
+                throw new IllegalArgumentException("Device " + deviceId + " is not configured.");
+            }
+            checkChannelId(currentConfig, newChannelConfig.getId(), deviceId);
+
+            DeviceConfigImpl newDeviceConfig = currentDeviceConfig.clone(currentDeviceConfig.driverParent);
+            newDeviceConfig.channelConfigsById.put(newChannelConfig.getId(), newChannelConfig.clone(newDeviceConfig));
+            setNewDeviceConfig(currentDeviceConfig.driverParent.getId(), deviceId, newDeviceConfig);
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteChannel(String channelId) {
+        configLock.lock();
+        try {
+            ChannelConfigImpl currentChannelConfig = rootConfigWithoutDefaults.channelConfigsById.get(channelId);
+            if (currentChannelConfig != null) {
+                DeviceConfigImpl currentDeviceConfig = currentChannelConfig.deviceParent;
+                DeviceConfigImpl newDeviceConfig = currentDeviceConfig.clone(currentDeviceConfig.driverParent);
+                newDeviceConfig.channelConfigsById.remove(channelId);
+                setNewDeviceConfig(currentDeviceConfig.driverParent.getId(), currentDeviceConfig.getId(),
+                        newDeviceConfig);
+            }
+        } finally {
+            configLock.unlock();
+        }
+    }
+
+    private static void checkChannelId(RootConfigImpl config, String channelId, String deviceId)
+            throws IdCollisionException {
+        ChannelConfigImpl channelConfig = config.channelConfigsById.get(channelId);
+        if (channelConfig != null && !channelConfig.deviceParent.getId().equals(deviceId)) {
+            throw new IdCollisionException("Collision with channel ID: " + channelId);
+        }
+    }
+
+    private void setNewDeviceConfig(String driverId, String deviceId, DeviceConfigImpl deviceConfig) {
+        synchronized (this) {
+            newConfigSignal = new CountDownLatch(1);
+            newDeviceConfigChange = new DeviceConfigChange(driverId, deviceId, deviceConfig);
+            wakeUp();
+        }
+        awaitNewConfigSignal();
+    }
+
+    private void awaitNewConfigSignal() {
         while (true) {
             try {
                 newConfigSignal.await();
@@ -1158,7 +1391,6 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             } catch (InterruptedException e) {
             }
         }
-
     }
 
     @Override
@@ -1168,9 +1400,16 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     @Override
     public void writeConfigToFile() throws ConfigWriteException {
+        if (configPersistence.getLastError() == null) {
+            // the file is written in the background, a failure is logged
+            configPersistence.write(rootConfigWithoutDefaults);
+            return;
+        }
+
+        // the last write failed, write synchronously until it succeeds again so the caller learns about its own write
         try {
-            rootConfigWithoutDefaults.writeToFile(configFile);
-        } catch (Exception e) {
+            configPersistence.writeNow(rootConfigWithoutDefaults);
+        } catch (IOException e) {
             throw new ConfigWriteException(e);
         }
     }
@@ -1271,6 +1510,18 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     @Override
     public void write(List<WriteValueContainer> values) {
+        try {
+            startWrite(values, 0).await();
+        } catch (InterruptedException e) {
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<WriteValueContainer>> writeAsync(List<WriteValueContainer> values, long timeout) {
+        return startWrite(values, timeout).getResult(() -> values);
+    }
+
+    private AccessCompletion startWrite(List<WriteValueContainer> values, long timeout) {
         HashMap<Device, List<WriteValueContainerImpl>> containersByDevice = new LinkedHashMap<>();
 
         for (WriteValueContainer value : values) {
@@ -1291,26 +1542,32 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
             writeValueContainers.add(valueContainerImpl);
         }
-        CountDownLatch writeTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
+        AccessCompletion completion = new AccessCompletion(containersByDevice.size(), timeout, deadlineScheduler);
 
-        synchronized (newWriteTasks) {
-            for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
-                WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(),
-                        writeValueContainers.getValue(), writeTasksFinishedSignal);
-                newWriteTasks.add(writeTask);
-            }
+        for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
+            WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(), writeValueContainers.getValue(),
+                    completion);
+            newWriteTasks.add(writeTask);
         }
-        interrupt();
+        wakeUp();
+        return completion;
+    }
 
+    @Override
+    public void read(List<ReadRecordContainer> readContainers) {
         try {
-            writeTasksFinishedSignal.await();
+            startRead(readContainers, 0).await();
         } catch (InterruptedException e) {
         }
-
     }
 
     @Override
-    public void read(List<ReadRecordContainer> readContainers) {
+    public CompletableFuture<List<ReadRecordContainer>> readAsync(List<ReadRecordContainer> readContainers,
+            long timeout) {
+        return startRead(readContainers, timeout).getResult(() -> readContainers);
+    }
+
+    private AccessCompletion startRead(List<ReadRecordContainer> readContainers, long timeout) {
         Map<Device, List<ChannelRecordContainerImpl>> containersByDevice = new HashMap<>();
 
         for (ReadRecordContainer container : readContainers) {
@@ -1328,22 +1585,15 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             }
             containersOfDevice.add((ChannelRecordContainerImpl) container);
         }
-        CountDownLatch readTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
-
-        synchronized (newReadTasks) {
-            for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice
-                    .entrySet()) {
-                ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(),
-                        channelRecordContainers.getValue(), readTasksFinishedSignal);
-                newReadTasks.add(readTask);
-            }
-        }
-        interrupt();
+        AccessCompletion completion = new AccessCompletion(containersByDevice.size(), timeout, deadlineScheduler);
 
-        try {
-            readTasksFinishedSignal.await();
-        } catch (InterruptedException e) {
+        for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice.entrySet()) {
+            ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(), channelRecordContainers.getValue(),
+                    completion);
+            newReadTasks.add(readTask);
         }
+        wakeUp();
+        return completion;
     }
 
     @Override
@@ -1390,6 +1640,22 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         return deviceConfig.device.getState();
     }
 
+    /**
+     * A pending change of a single device which is applied by the data manager thread.
+     */
+    private static final class DeviceConfigChange {
+        private final String driverId;
+        private final String deviceId;
+        // null if the device is deleted
+        private final DeviceConfigImpl deviceConfig;
+
+        DeviceConfigChange(String driverId, String deviceId, DeviceConfigImpl deviceConfig) {
+            this.driverId = driverId;
+            this.deviceId = deviceId;
+            this.deviceConfig = deviceConfig;
+        }
+    }
+
     class BlockingScanListener implements DriverDeviceScanListener {
         List<DeviceScanInfo> scanInfos = new ArrayList<>();
 
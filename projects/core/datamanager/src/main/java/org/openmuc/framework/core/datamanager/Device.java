@@ -466,6 +466,7 @@ public final class Device {
             channelConfig.state = ChannelState.DELETED;
             channelConfig.channel.setFlag(Flag.CHANNEL_DELETED);
             channelConfig.channel.handle = null;
+            channelConfig.channel.releaseListeners();
         }
         state = DeviceState.DELETED;
     }
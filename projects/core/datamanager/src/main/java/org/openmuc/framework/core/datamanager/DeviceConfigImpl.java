@@ -21,18 +21,21 @@
 
 package org.openmuc.framework.core.datamanager;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.openmuc.framework.config.ChannelConfig;
 import org.openmuc.framework.config.DeviceConfig;
 import org.openmuc.framework.config.DriverConfig;
 import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.ParseException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -58,6 +61,36 @@ public final class DeviceConfigImpl implements DeviceConfig {
         this.driverParent = driverParent;
     }
 
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        ConfigSnapshot.writeString(out, id);
+        ConfigSnapshot.writeString(out, description);
+        ConfigSnapshot.writeString(out, deviceAddress);
+        ConfigSnapshot.writeString(out, settings);
+        ConfigSnapshot.writeInteger(out, samplingTimeout);
+        ConfigSnapshot.writeInteger(out, connectRetryInterval);
+        ConfigSnapshot.writeBoolean(out, disabled);
+        out.writeInt(channelConfigsById.size());
+        for (ChannelConfigImpl channelConfig : channelConfigsById.values()) {
+            channelConfig.writeSnapshot(out);
+        }
+    }
+
+    static DeviceConfigImpl readSnapshot(DataInputStream in, DriverConfigImpl parentConfig) throws IOException {
+        DeviceConfigImpl config = new DeviceConfigImpl(ConfigSnapshot.readString(in), parentConfig);
+        config.description = ConfigSnapshot.readString(in);
+        config.deviceAddress = ConfigSnapshot.readString(in);
+        config.settings = ConfigSnapshot.readString(in);
+        config.samplingTimeout = ConfigSnapshot.readInteger(in);
+        config.connectRetryInterval = ConfigSnapshot.readInteger(in);
+        config.disabled = ConfigSnapshot.readBoolean(in);
+        int channelCount = in.readInt();
+        for (int i = 0; i < channelCount; i++) {
+            ChannelConfigImpl channelConfig = ChannelConfigImpl.readSnapshot(in, config);
+            config.channelConfigsById.put(channelConfig.getId(), channelConfig);
+        }
+        return config;
+    }
+
     DeviceConfigImpl clone(DriverConfigImpl clonedParentConfig) {
         DeviceConfigImpl configClone = new DeviceConfigImpl(id, clonedParentConfig);
 
@@ -270,58 +303,39 @@ public final class DeviceConfigImpl implements DeviceConfig {
 
     }
 
-    Element getDomElement(Document document) {
-        Element parentElement = document.createElement("device");
-        parentElement.setAttribute("id", id);
-
-        Element childElement;
+    void writeXml(ConfigXmlWriter writer) throws XMLStreamException {
+        writer.startElement("device");
+        writer.attribute("id", id);
 
         if (description != null) {
-            childElement = document.createElement("description");
-            childElement.setTextContent(description);
-            parentElement.appendChild(childElement);
+            writer.textElement("description", description);
         }
 
         if (deviceAddress != null) {
-            childElement = document.createElement("deviceAddress");
-            childElement.setTextContent(deviceAddress);
-            parentElement.appendChild(childElement);
+            writer.textElement("deviceAddress", deviceAddress);
         }
 
         if (settings != null) {
-            childElement = document.createElement("settings");
-            childElement.setTextContent(settings);
-            parentElement.appendChild(childElement);
+            writer.textElement("settings", settings);
         }
 
         if (samplingTimeout != null) {
-            childElement = document.createElement("samplingTimeout");
-            childElement.setTextContent(ChannelConfigImpl.millisToTimeString(samplingTimeout));
-            parentElement.appendChild(childElement);
+            writer.textElement("samplingTimeout", ChannelConfigImpl.millisToTimeString(samplingTimeout));
         }
 
         if (connectRetryInterval != null) {
-            childElement = document.createElement("connectRetryInterval");
-            childElement.setTextContent(ChannelConfigImpl.millisToTimeString(connectRetryInterval));
-            parentElement.appendChild(childElement);
+            writer.textElement("connectRetryInterval", ChannelConfigImpl.millisToTimeString(connectRetryInterval));
         }
 
         if (disabled != null) {
-            childElement = document.createElement("disabled");
-            if (disabled) {
-                childElement.setTextContent("true");
-            }
-            else {
-                childElement.setTextContent("false");
-            }
-            parentElement.appendChild(childElement);
+            writer.textElement("disabled", disabled.toString());
         }
 
         for (ChannelConfigImpl channelConfig : channelConfigsById.values()) {
-            parentElement.appendChild(channelConfig.getDomElement(document));
+            channelConfig.writeXml(writer);
         }
 
-        return parentElement;
+        writer.endElement();
     }
 
     DeviceConfigImpl cloneWithDefaults(DriverConfigImpl clonedParentConfig) {
@@ -21,18 +21,21 @@
 
 package org.openmuc.framework.core.datamanager;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.openmuc.framework.config.DeviceConfig;
 import org.openmuc.framework.config.DriverConfig;
 import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.ParseException;
 import org.openmuc.framework.driver.spi.DriverService;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -208,35 +211,51 @@ public final class DriverConfigImpl implements DriverConfig {
         }
     }
 
-    Element getDomElement(Document document) {
-        Element parentElement = document.createElement("driver");
-        parentElement.setAttribute("id", id);
-
-        Element childElement;
+    void writeXml(ConfigXmlWriter writer) throws XMLStreamException {
+        writer.startElement("driver");
+        writer.attribute("id", id);
 
         if (samplingTimeout != null) {
-            childElement = document.createElement("samplingTimeout");
-            childElement.setTextContent(ChannelConfigImpl.millisToTimeString(samplingTimeout));
-            parentElement.appendChild(childElement);
+            writer.textElement("samplingTimeout", ChannelConfigImpl.millisToTimeString(samplingTimeout));
         }
 
         if (connectRetryInterval != null) {
-            childElement = document.createElement("connectRetryInterval");
-            childElement.setTextContent(ChannelConfigImpl.millisToTimeString(connectRetryInterval));
-            parentElement.appendChild(childElement);
+            writer.textElement("connectRetryInterval", ChannelConfigImpl.millisToTimeString(connectRetryInterval));
         }
 
         if (disabled != null) {
-            childElement = document.createElement("disabled");
-            childElement.setTextContent(disabled.toString());
-            parentElement.appendChild(childElement);
+            writer.textElement("disabled", disabled.toString());
         }
 
         for (DeviceConfigImpl deviceConfig : deviceConfigsById.values()) {
-            parentElement.appendChild(deviceConfig.getDomElement(document));
+            deviceConfig.writeXml(writer);
         }
 
-        return parentElement;
+        writer.endElement();
+    }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        ConfigSnapshot.writeString(out, id);
+        ConfigSnapshot.writeInteger(out, samplingTimeout);
+        ConfigSnapshot.writeInteger(out, connectRetryInterval);
+        ConfigSnapshot.writeBoolean(out, disabled);
+        out.writeInt(deviceConfigsById.size());
+        for (DeviceConfigImpl deviceConfig : deviceConfigsById.values()) {
+            deviceConfig.writeSnapshot(out);
+        }
+    }
+
+    static DriverConfigImpl readSnapshot(DataInputStream in, RootConfigImpl parentConfig) throws IOException {
+        DriverConfigImpl config = new DriverConfigImpl(ConfigSnapshot.readString(in), parentConfig);
+        config.samplingTimeout = ConfigSnapshot.readInteger(in);
+        config.connectRetryInterval = ConfigSnapshot.readInteger(in);
+        config.disabled = ConfigSnapshot.readBoolean(in);
+        int deviceCount = in.readInt();
+        for (int i = 0; i < deviceCount; i++) {
+            DeviceConfigImpl deviceConfig = DeviceConfigImpl.readSnapshot(in, config);
+            config.deviceConfigsById.put(deviceConfig.getId(), deviceConfig);
+        }
+        return config;
     }
 
     DriverConfigImpl clone(RootConfigImpl clonedParentConfig) {
@@ -252,6 +271,47 @@ public final class DriverConfigImpl implements DriverConfig {
         return configClone;
     }
 
+    /**
+     * Copies this driver configuration and replaces the device with the given ID by a clone of
+     * <code>deviceConfig</code>, or removes it if <code>deviceConfig</code> is <code>null</code>. All other devices are
+     * taken over and moved to the copy, i.e. their parent reference points to the copy afterwards. A replaced device
+     * keeps its position, a new device is appended.
+     */
+    DriverConfigImpl cloneReplacingDevice(RootConfigImpl clonedParentConfig, String deviceId,
+            DeviceConfigImpl deviceConfig, boolean withDefaults) {
+        DriverConfigImpl configClone = new DriverConfigImpl(id, clonedParentConfig);
+
+        configClone.samplingTimeout = samplingTimeout;
+        configClone.connectRetryInterval = connectRetryInterval;
+        configClone.disabled = disabled;
+        configClone.activeDriver = activeDriver;
+
+        boolean replaced = false;
+        for (DeviceConfigImpl oldDeviceConfig : deviceConfigsById.values()) {
+            if (oldDeviceConfig.getId().equals(deviceId)) {
+                replaced = true;
+                if (deviceConfig != null) {
+                    configClone.deviceConfigsById.put(deviceId, configClone.cloneDevice(deviceConfig, withDefaults));
+                }
+            }
+            else {
+                oldDeviceConfig.driverParent = configClone;
+                configClone.deviceConfigsById.put(oldDeviceConfig.getId(), oldDeviceConfig);
+            }
+        }
+        if (!replaced && deviceConfig != null) {
+            configClone.deviceConfigsById.put(deviceId, configClone.cloneDevice(deviceConfig, withDefaults));
+        }
+        return configClone;
+    }
+
+    private DeviceConfigImpl cloneDevice(DeviceConfigImpl deviceConfig, boolean withDefaults) {
+        if (withDefaults) {
+            return deviceConfig.cloneWithDefaults(this);
+        }
+        return deviceConfig.clone(this);
+    }
+
     DriverConfigImpl cloneWithDefaults(RootConfigImpl clonedParentConfig) {
         DriverConfigImpl configClone = new DriverConfigImpl(id, clonedParentConfig);
 
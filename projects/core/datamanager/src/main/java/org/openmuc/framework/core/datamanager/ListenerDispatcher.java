@@ -0,0 +1,356 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers new records to the {@link RecordListener}s registered at the channels.
+ * <p>
+ * Every listener registration gets its own bounded queue. Records of one queue are delivered serially and in order by
+ * a worker of a fixed size thread pool, so a slow listener only delays its own records and never causes additional
+ * threads to be created. What happens if a queue is full is defined by the {@link OverflowPolicy}.
+ * <p>
+ * The dispatcher is configured with the following system properties:
+ * <ul>
+ * <li>org.openmuc.framework.core.datamanager.listener.threads - number of worker threads, default is the number of
+ * available processors but at least 2</li>
+ * <li>org.openmuc.framework.core.datamanager.listener.queueSize - maximum number of pending records per listener,
+ * default is 64</li>
+ * <li>org.openmuc.framework.core.datamanager.listener.overflowPolicy - one of DROP_OLDEST, LATEST_ONLY or BLOCK, default
+ * is DROP_OLDEST</li>
+ * </ul>
+ */
+final class ListenerDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerDispatcher.class);
+
+    private static final String PROPERTY_PREFIX = "org.openmuc.framework.core.datamanager.listener.";
+    private static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /**
+     * Maximum number of records a worker delivers to one listener before it is handed over to the next listener.
+     */
+    private static final int MAX_RECORDS_PER_RUN = 32;
+
+    /**
+     * Defines what happens if a new record is dispatched to a listener whose queue is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * The oldest pending record is dropped.
+         */
+        DROP_OLDEST,
+        /**
+         * Pending records are superseded by newer ones, i.e. the listener only receives the latest record. The queue
+         * size is ignored.
+         */
+        LATEST_ONLY,
+        /**
+         * The dispatching thread waits until the listener has consumed a record.
+         */
+        BLOCK
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Set<ListenerQueue> queues = ConcurrentHashMap.newKeySet();
+
+    ListenerDispatcher(int threads, int queueSize, OverflowPolicy overflowPolicy) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("threads and queue size have to be greater than zero.");
+        }
+        this.queueSize = overflowPolicy == OverflowPolicy.LATEST_ONLY ? 1 : queueSize;
+        this.overflowPolicy = overflowPolicy;
+
+        // the work queue contains at most one task per listener queue
+        workers = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("OpenMUC Data Manager Listener Pool - thread-"));
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    static ListenerDispatcher createFromSystemProperties() {
+        int threads = Integer.getInteger(PROPERTY_PREFIX + "threads",
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        int queueSize = Integer.getInteger(PROPERTY_PREFIX + "queueSize", DEFAULT_QUEUE_SIZE);
+
+        OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        String policyProperty = System.getProperty(PROPERTY_PREFIX + "overflowPolicy");
+        if (policyProperty != null) {
+            try {
+                overflowPolicy = OverflowPolicy.valueOf(policyProperty.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown listener overflow policy {}. Using {}.", policyProperty, overflowPolicy);
+            }
+        }
+
+        logger.debug("Listener dispatcher with {} threads, queue size {} and overflow policy {}", threads, queueSize,
+                overflowPolicy);
+        return new ListenerDispatcher(threads, queueSize, overflowPolicy);
+    }
+
+    /**
+     * Creates the queue of a new listener registration.
+     *
+     * @param channelId
+     *            the ID of the channel the listener is registered at
+     * @param listener
+     *            the listener
+     * @return the queue records have to be offered to
+     */
+    ListenerQueue register(String channelId, RecordListener listener) {
+        ListenerQueue queue = new ListenerQueue(channelId, listener);
+        queues.add(queue);
+        return queue;
+    }
+
+    void unregister(ListenerQueue queue) {
+        queue.close();
+        queues.remove(queue);
+    }
+
+    /**
+     * Stops accepting new records for the queue and removes it once the pending records have been delivered, e.g. the
+     * record which tells the listener that its channel was deleted.
+     *
+     * @param queue
+     *            the queue of a listener whose channel no longer exists
+     */
+    void release(ListenerQueue queue) {
+        if (queue.closeWhenDrained()) {
+            queues.remove(queue);
+        }
+    }
+
+    int getQueueCount() {
+        return queues.size();
+    }
+
+    void shutdown() {
+        for (ListenerQueue queue : queues) {
+            queue.close();
+        }
+        queues.clear();
+        workers.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("listener threads: ")
+                .append(workers.getPoolSize())
+                .append('/')
+                .append(workers.getMaximumPoolSize())
+                .append(", queue size: ")
+                .append(queueSize)
+                .append(", overflow policy: ")
+                .append(overflowPolicy);
+        for (ListenerQueue queue : queues) {
+            sb.append('\n').append(queue);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Bounded queue of the records which have not yet been delivered to one listener.
+     */
+    final class ListenerQueue implements Runnable {
+
+        private final String channelId;
+        private final RecordListener listener;
+
+        // ring buffer of pending records together with the time they were queued
+        private final Record[] records = new Record[queueSize];
+        private final long[] queuedAt = new long[queueSize];
+        private int head = 0;
+        private int size = 0;
+        private boolean scheduled = false;
+        private boolean closed = false;
+        private boolean draining = false;
+
+        private volatile int maxDepth = 0;
+        private volatile long delivered = 0;
+        private volatile long dropped = 0;
+        private volatile long totalLatency = 0;
+        private volatile long maxLatency = 0;
+
+        private ListenerQueue(String channelId, RecordListener listener) {
+            this.channelId = channelId;
+            this.listener = listener;
+        }
+
+        void offer(Record record) {
+            boolean submit = false;
+            synchronized (this) {
+                if (closed || draining) {
+                    return;
+                }
+                if (size == records.length) {
+                    if (overflowPolicy == OverflowPolicy.BLOCK) {
+                        waitUntilNotFull();
+                        if (closed || draining) {
+                            return;
+                        }
+                        if (size == records.length) {
+                            // interrupted while the queue was still full
+                            dropped++;
+                            return;
+                        }
+                    }
+                    else {
+                        removeHead();
+                        dropped++;
+                    }
+                }
+
+                int tail = (head + size) % records.length;
+                records[tail] = record;
+                queuedAt[tail] = System.nanoTime();
+                size++;
+
+                if (size > maxDepth) {
+                    maxDepth = size;
+                }
+                if (!scheduled) {
+                    scheduled = true;
+                    submit = true;
+                }
+            }
+            if (submit) {
+                submit();
+            }
+        }
+
+        private void waitUntilNotFull() {
+            while (size == records.length && !closed && !draining) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private Record removeHead() {
+            Record record = records[head];
+            records[head] = null;
+            head = (head + 1) % records.length;
+            size--;
+            return record;
+        }
+
+        private void submit() {
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            while (size > 0) {
+                removeHead();
+            }
+            notifyAll();
+        }
+
+        /**
+         * @return true if no records are pending, otherwise the queue removes itself after delivering them
+         */
+        synchronized boolean closeWhenDrained() {
+            draining = true;
+            notifyAll();
+            return !scheduled;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < MAX_RECORDS_PER_RUN; i++) {
+                Record record;
+                long queuedTime;
+                synchronized (this) {
+                    if (size == 0) {
+                        finishRun();
+                        return;
+                    }
+                    queuedTime = queuedAt[head];
+                    record = removeHead();
+                    notifyAll();
+                }
+
+                try {
+                    listener.newRecord(record);
+                } catch (RuntimeException e) {
+                    logger.warn("Record listener of channel {} threw an exception.", channelId, e);
+                }
+
+                long latency = System.nanoTime() - queuedTime;
+                delivered++;
+                totalLatency += latency;
+                if (latency > maxLatency) {
+                    maxLatency = latency;
+                }
+            }
+
+            synchronized (this) {
+                if (size == 0) {
+                    finishRun();
+                    return;
+                }
+            }
+            // more records are pending, give the other listeners a chance first
+            submit();
+        }
+
+        private void finishRun() {
+            scheduled = false;
+            if (draining) {
+                queues.remove(this);
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            long averageLatency = delivered == 0 ? 0 : totalLatency / delivered;
+            return "channel " + channelId + ", listener " + listener.getClass().getName() + ": depth " + size + "/"
+                    + maxDepth + " (current/max), delivered " + delivered + ", dropped " + dropped + ", latency "
+                    + TimeUnit.NANOSECONDS.toMillis(averageLatency) + "/" + TimeUnit.NANOSECONDS.toMillis(maxLatency)
+                    + " ms (avg/max)";
+        }
+    }
+
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands the records to log over to the {@link DataLoggerService}s without blocking the data manager thread.
+ * <p>
+ * Every registered data logger gets a bounded ring buffer and a dedicated consumer thread which calls
+ * {@link DataLoggerService#log(List, long)} and {@link DataLoggerService#logEvent(List, long)} in the order the
+ * records were offered. A slow or blocked logger therefore only fills its own buffer and does not delay sampling or
+ * the other loggers. What happens if a buffer is full is defined by the {@link OverflowPolicy}. Configuration changes
+ * are handed over to the same consumer thread, see {@link #configure(DataLoggerService, Runnable)}.
+ * <p>
+ * The pipeline is configured with the following system properties:
+ * <ul>
+ * <li>org.openmuc.framework.core.datamanager.logger.queueSize - maximum number of pending log calls per data logger,
+ * default is 256</li>
+ * <li>org.openmuc.framework.core.datamanager.logger.overflowPolicy - one of DROP_OLDEST, DROP_NEWEST or BLOCK, default
+ * is DROP_OLDEST</li>
+ * <li>org.openmuc.framework.core.datamanager.logger.drainTimeout - maximum time in ms to wait for pending log calls of a
+ * data logger which is removed, default is 2000</li>
+ * </ul>
+ */
+final class LogPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogPipeline.class);
+
+    private static final String PROPERTY_PREFIX = "org.openmuc.framework.core.datamanager.logger.";
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+    private static final long DEFAULT_DRAIN_TIMEOUT = 2000L;
+
+    /**
+     * Defines what happens if records are offered to a data logger whose buffer is full.
+     */
+    enum OverflowPolicy {
+        /**
+         * The oldest pending log call is dropped.
+         */
+        DROP_OLDEST,
+        /**
+         * The new log call is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The offering thread waits until the data logger has consumed a log call.
+         */
+        BLOCK
+    }
+
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long drainTimeout;
+    private final Map<DataLoggerService, LoggerQueue> queues = new ConcurrentHashMap<>();
+    // unregistered data loggers whose consumer thread has not terminated yet
+    private final Map<DataLoggerService, LoggerQueue> closingQueues = new ConcurrentHashMap<>();
+
+    LogPipeline(int queueSize, OverflowPolicy overflowPolicy, long drainTimeout) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queue size has to be greater than zero.");
+        }
+        this.queueSize = queueSize;
+        this.overflowPolicy = overflowPolicy;
+        this.drainTimeout = drainTimeout;
+    }
+
+    static LogPipeline createFromSystemProperties() {
+        int queueSize = Integer.getInteger(PROPERTY_PREFIX + "queueSize", DEFAULT_QUEUE_SIZE);
+        long drainTimeout = Long.getLong(PROPERTY_PREFIX + "drainTimeout", DEFAULT_DRAIN_TIMEOUT);
+
+        OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        String policyProperty = System.getProperty(PROPERTY_PREFIX + "overflowPolicy");
+        if (policyProperty != null) {
+            try {
+                overflowPolicy = OverflowPolicy.valueOf(policyProperty.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown logger overflow policy {}. Using {}.", policyProperty, overflowPolicy);
+            }
+        }
+
+        logger.debug("Log pipeline with queue size {} and overflow policy {}", queueSize, overflowPolicy);
+        return new LogPipeline(queueSize, overflowPolicy, drainTimeout);
+    }
+
+    /**
+     * Creates the buffer and the consumer thread of a new data logger. Does nothing if the data logger is already
+     * registered.
+     *
+     * @param dataLogger
+     *            the data logger
+     */
+    void register(DataLoggerService dataLogger) {
+        queues.computeIfAbsent(dataLogger, LoggerQueue::new);
+    }
+
+    /**
+     * Removes a data logger without waiting for it. Log calls which are still pending are delivered by the consumer
+     * thread if this is possible within the drain timeout and dropped otherwise. Use
+     * {@link #awaitRemoval(DataLoggerService)} to wait until the data logger is no longer called.
+     *
+     * @param dataLogger
+     *            the data logger
+     */
+    void unregister(DataLoggerService dataLogger) {
+        LoggerQueue queue = queues.remove(dataLogger);
+        if (queue != null) {
+            closingQueues.put(dataLogger, queue);
+            queue.close(drainTimeout);
+        }
+    }
+
+    /**
+     * Waits until the consumer thread of an unregistered data logger has terminated, at most until its drain timeout
+     * has elapsed. Afterwards the data logger is only called if it has been stuck in a log call since before the
+     * timeout. Must not be called by the data manager thread.
+     *
+     * @param dataLogger
+     *            the data logger
+     */
+    void awaitRemoval(DataLoggerService dataLogger) {
+        LoggerQueue queue = closingQueues.remove(dataLogger);
+        if (queue != null) {
+            queue.awaitTermination(queue.drainDeadline);
+        }
+    }
+
+    /**
+     * Applies a configuration change, e.g. {@link DataLoggerService#setChannelsToLog(List)}, on the consumer thread of
+     * the data logger, so that a data logger is never reconfigured while it is logging. Configuration changes are not
+     * subject to the overflow policy and are applied before the next pending log call.
+     *
+     * @param dataLogger
+     *            the data logger
+     * @param configuration
+     *            the configuration change
+     */
+    void configure(DataLoggerService dataLogger, Runnable configuration) {
+        LoggerQueue queue = queues.get(dataLogger);
+        if (queue == null) {
+            logger.warn("Data logger {} is not registered at the log pipeline.", dataLogger.getId());
+            return;
+        }
+        queue.configure(configuration);
+    }
+
+    void log(DataLoggerService dataLogger, List<LoggingRecord> containers, long timestamp) {
+        offer(dataLogger, containers, timestamp, false);
+    }
+
+    void logEvent(DataLoggerService dataLogger, List<LoggingRecord> containers, long timestamp) {
+        offer(dataLogger, containers, timestamp, true);
+    }
+
+    private void offer(DataLoggerService dataLogger, List<LoggingRecord> containers, long timestamp, boolean event) {
+        LoggerQueue queue = queues.get(dataLogger);
+        if (queue == null) {
+            logger.warn("Data logger {} is not registered at the log pipeline.", dataLogger.getId());
+            return;
+        }
+        queue.offer(containers, timestamp, event);
+    }
+
+    /**
+     * Removes all data loggers and waits until their pending log calls are delivered, at most for the drain timeout.
+     */
+    void shutdown() {
+        List<LoggerQueue> closedQueues = new ArrayList<>();
+        for (DataLoggerService dataLogger : queues.keySet()) {
+            LoggerQueue queue = queues.remove(dataLogger);
+            if (queue != null) {
+                queue.close(drainTimeout);
+                closedQueues.add(queue);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+        for (LoggerQueue queue : closedQueues) {
+            queue.awaitTermination(deadline);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("logger queue size: ").append(queueSize).append(", overflow policy: ").append(overflowPolicy);
+        for (LoggerQueue queue : queues.values()) {
+            sb.append('\n').append(queue);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Ring buffer of the log calls which have not yet been delivered to one data logger, together with its consumer
+     * thread.
+     */
+    private final class LoggerQueue implements Runnable {
+
+        private final DataLoggerService dataLogger;
+        private final String loggerId;
+        private final Thread consumer;
+
+        private final LogCall[] calls = new LogCall[queueSize];
+        private final List<Runnable> configurations = new ArrayList<>();
+        private int head = 0;
+        private int size = 0;
+        private boolean closed = false;
+        private volatile long drainDeadline;
+
+        private volatile int maxDepth = 0;
+        private volatile long delivered = 0;
+        private volatile long dropped = 0;
+        private volatile long totalLatency = 0;
+        private volatile long maxLatency = 0;
+        private volatile long totalDuration = 0;
+        private volatile long maxDuration = 0;
+
+        private LoggerQueue(DataLoggerService dataLogger) {
+            this.dataLogger = dataLogger;
+            this.loggerId = dataLogger.getId();
+            consumer = new Thread(this, "OpenMUC Data Manager Logger - " + loggerId);
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        void offer(List<LoggingRecord> containers, long timestamp, boolean event) {
+            LogCall call = new LogCall(containers, timestamp, event, System.nanoTime());
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (size == calls.length) {
+                    if (overflowPolicy == OverflowPolicy.BLOCK) {
+                        waitUntilNotFull();
+                        if (closed) {
+                            return;
+                        }
+                        if (size == calls.length) {
+                            // interrupted while the buffer was still full
+                            dropped++;
+                            return;
+                        }
+                    }
+                    else if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                        dropped++;
+                        return;
+                    }
+                    else {
+                        removeHead();
+                        dropped++;
+                    }
+                }
+
+                calls[(head + size) % calls.length] = call;
+                size++;
+                if (size > maxDepth) {
+                    maxDepth = size;
+                }
+                notifyAll();
+            }
+        }
+
+        synchronized void configure(Runnable configuration) {
+            if (closed) {
+                return;
+            }
+            configurations.add(configuration);
+            notifyAll();
+        }
+
+        private void waitUntilNotFull() {
+            while (size == calls.length && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private LogCall removeHead() {
+            LogCall call = calls[head];
+            calls[head] = null;
+            head = (head + 1) % calls.length;
+            size--;
+            return call;
+        }
+
+        private synchronized LogCall take() throws InterruptedException {
+            while (size == 0 && configurations.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                wait();
+            }
+            if (closed && System.nanoTime() - drainDeadline > 0) {
+                logger.warn("Data logger {} did not finish within the drain timeout. Dropping {} pending log calls.",
+                        loggerId, size);
+                dropped += size;
+                while (size > 0) {
+                    removeHead();
+                }
+                notifyAll();
+                return null;
+            }
+            if (!configurations.isEmpty()) {
+                return new LogCall(configurations.remove(0));
+            }
+            LogCall call = removeHead();
+            notifyAll();
+            return call;
+        }
+
+        /**
+         * Stops accepting log calls. The consumer thread delivers the pending calls until the timeout has elapsed and
+         * terminates afterwards. Does not block.
+         */
+        synchronized void close(long timeout) {
+            closed = true;
+            drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            notifyAll();
+        }
+
+        void awaitTermination(long deadline) {
+            try {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0) {
+                    consumer.join(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (consumer.isAlive()) {
+                logger.warn("Data logger {} is still busy after the drain timeout.", loggerId);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                consume();
+            } finally {
+                closingQueues.remove(dataLogger, this);
+            }
+        }
+
+        private void consume() {
+            while (true) {
+                LogCall call;
+                try {
+                    call = take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (call == null) {
+                    return;
+                }
+                if (call.configuration != null) {
+                    try {
+                        call.configuration.run();
+                    } catch (RuntimeException e) {
+                        logger.warn("Failed to configure data logger {}.", loggerId, e);
+                    }
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    if (call.event) {
+                        dataLogger.logEvent(call.containers, call.timestamp);
+                    }
+                    else {
+                        dataLogger.log(call.containers, call.timestamp);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Data logger {} threw an exception.", loggerId, e);
+                }
+                long end = System.nanoTime();
+
+                long latency = end - call.queuedAt;
+                long duration = end - start;
+                delivered++;
+                totalLatency += latency;
+                totalDuration += duration;
+                if (latency > maxLatency) {
+                    maxLatency = latency;
+                }
+                if (duration > maxDuration) {
+                    maxDuration = duration;
+                }
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            long averageLatency = delivered == 0 ? 0 : totalLatency / delivered;
+            long averageDuration = delivered == 0 ? 0 : totalDuration / delivered;
+            return "logger " + loggerId + ": depth " + size + "/" + maxDepth + " (current/max), delivered " + delivered
+                    + ", dropped " + dropped + ", latency " + TimeUnit.NANOSECONDS.toMillis(averageLatency) + "/"
+                    + TimeUnit.NANOSECONDS.toMillis(maxLatency) + " ms (avg/max), log call "
+                    + TimeUnit.NANOSECONDS.toMillis(averageDuration) + "/" + TimeUnit.NANOSECONDS.toMillis(maxDuration)
+                    + " ms (avg/max)";
+        }
+    }
+
+    private static final class LogCall {
+        private final List<LoggingRecord> containers;
+        private final long timestamp;
+        private final boolean event;
+        private final long queuedAt;
+        private final Runnable configuration;
+
+        LogCall(List<LoggingRecord> containers, long timestamp, boolean event, long queuedAt) {
+            this.containers = containers;
+            this.timestamp = timestamp;
+            this.event = event;
+            this.queuedAt = queuedAt;
+            this.configuration = null;
+        }
+
+        LogCall(Runnable configuration) {
+            this.containers = null;
+            this.timestamp = 0;
+            this.event = false;
+            this.queuedAt = 0;
+            this.configuration = configuration;
+        }
+    }
+
+}
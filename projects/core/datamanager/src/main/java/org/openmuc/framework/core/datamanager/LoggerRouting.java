@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves which data loggers have to log a channel.
+ * <p>
+ * A channel with logging settings is logged by the loggers named in the settings, all other channels are logged by
+ * every logger which does not require settings. The routing is computed once whenever the configuration or the set of
+ * active data loggers changes, so a logging action only has to look up the indexes of the loggers of a channel.
+ * Instances are not thread safe and only used by the data manager thread.
+ */
+final class LoggerRouting {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggerRouting.class);
+
+    private static final int[] NO_LOGGERS = new int[0];
+
+    private final DataLoggerService[] loggers;
+    private final Map<String, Integer> indexById = new HashMap<>();
+    private final int[] defaultRoute;
+    private final Map<String, int[]> routes = new HashMap<>();
+    private final int[] channelCounts;
+
+    /**
+     * @param dataLoggers
+     *            the active data loggers
+     * @param logChannels
+     *            the channels to be logged, may be <code>null</code>
+     */
+    LoggerRouting(Collection<DataLoggerService> dataLoggers, Collection<? extends LogChannel> logChannels) {
+        loggers = dataLoggers.toArray(new DataLoggerService[0]);
+        channelCounts = new int[loggers.length];
+
+        List<Integer> loggersWithoutSettings = new ArrayList<>();
+        for (int i = 0; i < loggers.length; i++) {
+            indexById.putIfAbsent(loggers[i].getId(), i);
+            if (!loggers[i].logSettingsRequired()) {
+                loggersWithoutSettings.add(i);
+            }
+        }
+        defaultRoute = loggersWithoutSettings.stream().mapToInt(Integer::intValue).toArray();
+
+        if (logChannels != null) {
+            for (LogChannel logChannel : logChannels) {
+                route(logChannel.getId(), logChannel.getLoggingSettings());
+            }
+        }
+    }
+
+    static LoggerRouting empty() {
+        return new LoggerRouting(Collections.emptyList(), null);
+    }
+
+    DataLoggerService[] getLoggers() {
+        return loggers;
+    }
+
+    /**
+     * @param loggerIndex
+     *            index into {@link #getLoggers()}
+     * @return the number of channels routed to the logger
+     */
+    int getChannelCount(int loggerIndex) {
+        return channelCounts[loggerIndex];
+    }
+
+    /**
+     * Returns the indexes of the loggers which have to log the given channel. Channels which were not known when the
+     * routing was created are resolved on the first call.
+     *
+     * @param channelId
+     *            the channel ID
+     * @param loggingSettings
+     *            the logging settings of the channel
+     * @return indexes into {@link #getLoggers()}, must not be modified
+     */
+    int[] route(String channelId, String loggingSettings) {
+        int[] route = routes.get(channelId);
+        if (route == null) {
+            route = resolve(channelId, loggingSettings);
+            routes.put(channelId, route);
+            for (int loggerIndex : route) {
+                channelCounts[loggerIndex]++;
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Updates the routing after the channels of a single device changed, without resolving the other channels again.
+     *
+     * @param removedChannelIds
+     *            IDs of all channels whose routes are outdated
+     * @param logChannels
+     *            the channels to be logged which have to be routed again
+     */
+    void update(Collection<String> removedChannelIds, Collection<? extends LogChannel> logChannels) {
+        for (String channelId : removedChannelIds) {
+            int[] route = routes.remove(channelId);
+            if (route != null) {
+                for (int loggerIndex : route) {
+                    channelCounts[loggerIndex]--;
+                }
+            }
+        }
+        for (LogChannel logChannel : logChannels) {
+            route(logChannel.getId(), logChannel.getLoggingSettings());
+        }
+    }
+
+    private int[] resolve(String channelId, String loggingSettings) {
+        if (loggingSettings == null || loggingSettings.isEmpty()) {
+            return defaultRoute;
+        }
+
+        Set<Integer> route = new LinkedHashSet<>();
+        for (String loggerId : parseLoggerIds(loggingSettings)) {
+            Integer loggerIndex = indexById.get(loggerId);
+            if (loggerIndex != null) {
+                route.add(loggerIndex);
+            }
+            else {
+                logger.warn("DataLoggerService with Id {} not found for channel {}", loggerId, channelId);
+                logger.warn("Correct configuration in channel.xml?");
+            }
+        }
+        if (route.isEmpty()) {
+            return NO_LOGGERS;
+        }
+        return route.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Extracts the logger IDs of logging settings like <code>loggerA:param=1;loggerB</code>.
+     *
+     * @param loggingSettings
+     *            the logging settings of a channel
+     * @return the logger IDs in the order of the settings
+     */
+    static List<String> parseLoggerIds(String loggingSettings) {
+        List<String> loggerIds = new ArrayList<>();
+        for (String segment : loggingSettings.split(";")) {
+            int separator = segment.indexOf(':');
+            loggerIds.add(separator < 0 ? segment : segment.substring(0, separator));
+        }
+        return loggerIds;
+    }
+
+}
@@ -22,31 +22,23 @@
 package org.openmuc.framework.core.datamanager;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.dataaccess.ChannelState;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class LoggingController {
 
-    private static final Logger logger = LoggerFactory.getLogger(LoggingController.class);
-    private final Deque<DataLoggerService> activeDataLoggers;
-    private Map<String, List<LoggingRecord>> logContainerMap;
+    private final LoggerRouting routing;
+    private final LogPipeline logPipeline;
+    private List<List<LoggingRecord>> logContainers;
 
-    public LoggingController(Deque<DataLoggerService> activeDataLoggers) {
-        this.activeDataLoggers = activeDataLoggers;
+    public LoggingController(LoggerRouting routing, LogPipeline logPipeline) {
+        this.routing = routing;
+        this.logPipeline = logPipeline;
     }
 
     public boolean channelsHaveToBeLogged(Action currentAction) {
@@ -54,7 +46,11 @@ public class LoggingController {
     }
 
     public List<Optional<ChannelCollection>> triggerLogging(Action currentAction) {
-        initLoggingRecordMap();
+        int channelCount = 0;
+        for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
+            channelCount += loggingCollection.channels.size();
+        }
+        initLogContainers(channelCount);
         List<Optional<ChannelCollection>> filledChannels = new ArrayList<>();
 
         for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
@@ -65,7 +61,7 @@ public class LoggingController {
                     toRemove.add(channel);
                 }
                 else if (!channel.config.isDisabled()) {
-                    fillLoggingRecordMapWithChannel(channel);
+                    addToLogContainers(channel);
                 }
             }
 
@@ -83,84 +79,45 @@ public class LoggingController {
     }
 
     public void deliverLogsToEventBasedLogServices(List<ChannelRecordContainerImpl> channelRecordContainerList) {
-        initLoggingRecordMap();
-        channelRecordContainerList.stream()
-                .forEach(channelRecord -> fillLoggingRecordMapWithChannel(channelRecord.getChannel()));
-
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
+        if (channelRecordContainerList.isEmpty()) {
+            return;
+        }
+        initLogContainers(channelRecordContainerList.size());
+        for (ChannelRecordContainerImpl channelRecord : channelRecordContainerList) {
+            addToLogContainers(channelRecord.getChannel());
+        }
 
-            if (!logContainers.isEmpty()) {
-                dataLogger.logEvent(logContainers, System.currentTimeMillis());
+        DataLoggerService[] loggers = routing.getLoggers();
+        for (int i = 0; i < loggers.length; i++) {
+            if (!logContainers.get(i).isEmpty()) {
+                logPipeline.logEvent(loggers[i], logContainers.get(i), System.currentTimeMillis());
             }
         }
     }
 
-    private void initLoggingRecordMap() {
-        logContainerMap = new HashMap<>();
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            logContainerMap.put(dataLogger.getId(), new ArrayList<>());
+    private void initLogContainers(int channelCount) {
+        int loggerCount = routing.getLoggers().length;
+        logContainers = new ArrayList<>(loggerCount);
+        for (int i = 0; i < loggerCount; i++) {
+            logContainers.add(new ArrayList<>(Math.min(channelCount, routing.getChannelCount(i))));
         }
     }
 
-    private void fillLoggingRecordMapWithChannel(ChannelImpl channel) {
-        String logSettings = channel.getLoggingSettings();
-
-        if (logSettings != null && !logSettings.isEmpty()) {
-            extendMapForDefinedLoggerFromSettings(channel, logSettings);
+    private void addToLogContainers(ChannelImpl channel) {
+        int[] route = routing.route(channel.getId(), channel.getLoggingSettings());
+        if (route.length == 0) {
+            return;
         }
-        else {
-            addRecordToAllLoggerWhichNotRequiresSettings(channel);
+        LoggingRecord loggingRecord = new LoggingRecord(channel.getId(), channel.getLatestRecord());
+        for (int loggerIndex : route) {
+            logContainers.get(loggerIndex).add(loggingRecord);
         }
     }
 
-    private void addRecordToAllLoggerWhichNotRequiresSettings(Channel channel) {
-        Record latestRecord = channel.getLatestRecord();
-        logContainerMap.forEach((k, v) -> {
-            if (loggerWithIdNotRequiresSettings(k)) {
-                v.add(new LoggingRecord(channel.getId(), latestRecord));
-            }
-        });
-    }
-
-    private boolean loggerWithIdNotRequiresSettings(String loggerId) {
-        return activeDataLoggers.stream()
-                .filter((DataLoggerService::logSettingsRequired))
-                .map(logger -> logger.getId())
-                .noneMatch(filteredId -> filteredId.equals(loggerId));
-    }
-
-    private void extendMapForDefinedLoggerFromSettings(ChannelImpl channel, String logSettings) {
-        List<String> definedLoggerInChannel = parseDefinedLogger(logSettings);
-
-        logger.trace("logcontainer map contains: {}", logContainerMap.keySet());
-
-        for (String definedLogger : definedLoggerInChannel) {
-            if (logContainerMap.get(definedLogger) != null) {
-                Record latestRecord = channel.getLatestRecord();
-                logContainerMap.get(definedLogger).add(new LoggingRecord(channel.getId(), latestRecord));
-            }
-            else {
-                logger.warn("DataLoggerService with Id {} not found for channel {}", definedLogger,
-                        channel.config.getId());
-                logger.warn("Correct configuration in channel.xml?");
-            }
-        }
-    }
-
-    private List<String> parseDefinedLogger(String logSettings) {
-        String[] loggerSegments = logSettings.split(";");
-        List<String> definedLogger = Arrays.stream(loggerSegments)
-                .map(seg -> seg.split(":")[0])
-                .collect(Collectors.toList());
-
-        return definedLogger;
-    }
-
     private void deliverLogsToLogServices(long startTime) {
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
-            dataLogger.log(logContainers, startTime);
+        DataLoggerService[] loggers = routing.getLoggers();
+        for (int i = 0; i < loggers.length; i++) {
+            logPipeline.log(loggers[i], logContainers.get(i), startTime);
         }
     }
 }
@@ -21,7 +21,6 @@
 package org.openmuc.framework.core.datamanager;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
 
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
@@ -34,7 +33,7 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
 
     private static final Logger logger = LoggerFactory.getLogger(ReadTask.class);
 
-    private final CountDownLatch readTaskFinishedSignal;
+    private final AccessCompletion completion;
     protected boolean methodNotExceptedExceptionThrown = false;
     protected boolean unknownDriverExceptionThrown = false;
     protected volatile boolean disabled = false;
@@ -42,16 +41,28 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
     boolean startedLate = false;
 
     public ReadTask(DataManager dataManager, Device device, List<ChannelRecordContainerImpl> selectedChannels,
-            CountDownLatch readTaskFinishedSignal) {
+            AccessCompletion completion) {
         this.dataManager = dataManager;
         this.device = device;
         channelRecordContainers = selectedChannels;
-        this.readTaskFinishedSignal = readTaskFinishedSignal;
+        this.completion = completion;
     }
 
     @Override
     public final void run() {
 
+        if (completion.isAbandoned()) {
+            // the caller timed out or cancelled before the device got to this task
+            long now = System.currentTimeMillis();
+            for (ChannelRecordContainerImpl driverChannel : channelRecordContainers) {
+                driverChannel.setRecord(new Record(null, now, Flag.TIMEOUT));
+            }
+            completion.taskFinished();
+            dataManager.tasksFinished.add(this);
+            dataManager.wakeUp();
+            return;
+        }
+
         try {
             executeRead();
         } catch (UnsupportedOperationException e) {
@@ -64,11 +75,9 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
             for (ChannelRecordContainerImpl driverChannel : channelRecordContainers) {
                 driverChannel.setRecord(new Record(Flag.ACCESS_METHOD_NOT_SUPPORTED));
             }
-            readTaskFinishedSignal.countDown();
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            completion.taskFinished();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read function of driver ", e);
@@ -110,15 +119,13 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
             }
         }
 
-        readTaskFinishedSignal.countDown();
+        completion.taskFinished();
 
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.tasksFinished.add(this);
+        dataManager.wakeUp();
     }
 
     protected void taskAborted() {
-        readTaskFinishedSignal.countDown();
+        completion.taskFinished();
     }
 }
@@ -21,10 +21,12 @@
 
 package org.openmuc.framework.core.datamanager;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,14 +34,12 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -53,7 +53,6 @@ import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -159,39 +158,57 @@ final class RootConfigImpl implements RootConfig {
         return rootConfig;
     }
 
-    public void writeToFile(File configFile) throws TransformerFactoryConfigurationError, IOException,
-            ParserConfigurationException, TransformerException {
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+    /**
+     * Writes the configuration synchronously and atomically to the given file.
+     *
+     * @param configFile
+     *            the XML file
+     * @throws IOException
+     *             if the file could not be written
+     */
+    public void writeToFile(File configFile) throws IOException {
+        ConfigPersistence.writeAtomically(configFile, this::writeXml);
+    }
 
-        StreamResult result = new StreamResult(new FileWriter(configFile));
+    void writeXml(OutputStream out) throws IOException {
+        try {
+            ConfigXmlWriter writer = new ConfigXmlWriter(out);
+            writer.startElement("configuration");
 
-        DocumentBuilder docBuild = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document doc = docBuild.newDocument();
+            if (dataLogSource != null) {
+                writer.textElement("dataLogSource", dataLogSource);
+            }
 
-        doc.appendChild(getDomElement(doc));
-        DOMSource source = new DOMSource(doc);
-        transformer.transform(source, result);
+            for (DriverConfigImpl driverConfig : driverConfigsById.values()) {
+                driverConfig.writeXml(writer);
+            }
 
+            writer.endElement();
+            writer.finish();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
     }
 
-    private Element getDomElement(Document document) {
-        Element rootConfigElement = document.createElement("configuration");
-
-        if (dataLogSource != null) {
-            Node loggerChild = document.createElement("dataLogSource");
-            loggerChild.setTextContent(dataLogSource);
-            rootConfigElement.appendChild(loggerChild);
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        ConfigSnapshot.writeString(out, dataLogSource);
+        out.writeInt(driverConfigsById.size());
+        for (DriverConfigImpl driverConfig : driverConfigsById.values()) {
+            driverConfig.writeSnapshot(out);
         }
+    }
 
-        for (DriverConfig driverConfig : driverConfigsById.values()) {
-            rootConfigElement.appendChild(((DriverConfigImpl) driverConfig).getDomElement(document));
+    static RootConfigImpl readSnapshot(DataInputStream in) throws IOException {
+        RootConfigImpl rootConfig = new RootConfigImpl();
+        rootConfig.dataLogSource = ConfigSnapshot.readString(in);
+        int driverCount = in.readInt();
+        for (int i = 0; i < driverCount; i++) {
+            rootConfig.addDriver(DriverConfigImpl.readSnapshot(in, rootConfig));
         }
-
-        return rootConfigElement;
+        return rootConfig;
     }
 
+
     @Override
     public DriverConfig getOrAddDriver(String id) {
         try {
@@ -263,16 +280,81 @@ final class RootConfigImpl implements RootConfig {
         return configClone;
     }
 
+    /**
+     * Returns a copy of this configuration in which the device with the given ID is replaced by a clone of
+     * <code>deviceConfig</code>, or removed if <code>deviceConfig</code> is <code>null</code>. Only the index maps and
+     * the driver of the device are copied, all other driver, device and channel configurations are moved to the copy:
+     * the objects are shared, but the parent references of the drivers and devices taken over point to the copy
+     * afterwards, so that e.g. {@link DriverConfigImpl#activeDriver} is found through the new configuration. The index
+     * maps and child collections of this configuration stay as they were, but this configuration must neither be
+     * modified nor navigated from a child to its parent afterwards.
+     *
+     * @param driverId
+     *            ID of the driver of the device, the driver has to exist in this configuration
+     * @param deviceId
+     *            ID of the device to replace
+     * @param deviceConfig
+     *            the new device configuration or <code>null</code>
+     * @return the new configuration
+     */
+    RootConfigImpl cloneReplacingDevice(String driverId, String deviceId, DeviceConfigImpl deviceConfig) {
+        return cloneReplacingDevice(driverId, deviceId, deviceConfig, false);
+    }
+
+    /**
+     * Same as {@link #cloneReplacingDevice(String, String, DeviceConfigImpl)} for a configuration with defaults. The
+     * new device is cloned with defaults.
+     */
+    RootConfigImpl cloneWithDefaultsReplacingDevice(String driverId, String deviceId, DeviceConfigImpl deviceConfig) {
+        return cloneReplacingDevice(driverId, deviceId, deviceConfig, true);
+    }
+
+    private RootConfigImpl cloneReplacingDevice(String driverId, String deviceId, DeviceConfigImpl deviceConfig,
+            boolean withDefaults) {
+        RootConfigImpl configClone = new RootConfigImpl();
+        configClone.dataLogSource = dataLogSource;
+        configClone.deviceConfigsById.putAll(deviceConfigsById);
+        configClone.channelConfigsById.putAll(channelConfigsById);
+
+        for (DriverConfigImpl driverConfig : driverConfigsById.values()) {
+            if (driverConfig.id.equals(driverId)) {
+                configClone.driverConfigsById.put(driverId,
+                        driverConfig.cloneReplacingDevice(configClone, deviceId, deviceConfig, withDefaults));
+            }
+            else {
+                driverConfig.rootConfigParent = configClone;
+                configClone.driverConfigsById.put(driverConfig.id, driverConfig);
+            }
+        }
+
+        DeviceConfigImpl oldDeviceConfig = deviceConfigsById.get(deviceId);
+        if (oldDeviceConfig != null) {
+            configClone.deviceConfigsById.remove(deviceId);
+            for (String channelId : oldDeviceConfig.channelConfigsById.keySet()) {
+                configClone.channelConfigsById.remove(channelId);
+            }
+        }
+
+        DeviceConfigImpl newDeviceConfig = configClone.driverConfigsById.get(driverId).deviceConfigsById.get(deviceId);
+        if (newDeviceConfig != null) {
+            configClone.addDevice(newDeviceConfig);
+        }
+        return configClone;
+    }
+
     private void addDriver(DriverConfigImpl driverConfig) {
         driverConfigsById.put(driverConfig.getId(), driverConfig);
 
         for (DeviceConfigImpl deviceConfig : driverConfig.deviceConfigsById.values()) {
+            addDevice(deviceConfig);
+        }
+    }
 
-            deviceConfigsById.put(deviceConfig.getId(), deviceConfig);
+    private void addDevice(DeviceConfigImpl deviceConfig) {
+        deviceConfigsById.put(deviceConfig.getId(), deviceConfig);
 
-            for (ChannelConfigImpl channelConfig : deviceConfig.channelConfigsById.values()) {
-                channelConfigsById.put(channelConfig.getId(), channelConfig);
-            }
+        for (ChannelConfigImpl channelConfig : deviceConfig.channelConfigsById.values()) {
+            channelConfigsById.put(channelConfig.getId(), channelConfig);
         }
     }
 
@@ -26,6 +26,7 @@ import java.util.List;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.Connection;
 import org.openmuc.framework.driver.spi.ConnectionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,16 +39,27 @@ public final class SamplingTask extends DeviceTask {
     boolean running = false;
     boolean startedLate = false;
     String samplingGroup;
+    private final ChannelCollection samplingCollection;
+    private final Object containerListHandle;
+    private final Connection containerListHandleConnection;
+    private final int containerListVersion;
+    private Object newContainerListHandle;
+    private Connection readConnection;
     private boolean methodNotExceptedExceptionThrown = false;
     private boolean unknownDriverExceptionThrown = false;
     private volatile boolean disabled = false;
 
-    public SamplingTask(DataManager dataManager, Device device, List<ChannelRecordContainerImpl> selectedChannels,
-            String samplingGroup) {
+    // called by main thread
+    public SamplingTask(DataManager dataManager, ChannelCollection samplingCollection,
+            List<ChannelRecordContainerImpl> selectedChannels) {
         this.dataManager = dataManager;
-        this.device = device;
+        this.device = samplingCollection.device;
         channelRecordContainers = selectedChannels;
-        this.samplingGroup = samplingGroup;
+        this.samplingGroup = samplingCollection.samplingGroup;
+        this.samplingCollection = samplingCollection;
+        containerListHandleConnection = device.connection;
+        containerListHandle = samplingCollection.getContainerListHandle(containerListHandleConnection);
+        containerListVersion = samplingCollection.getContainerListVersion();
     }
 
     // called by main thread
@@ -70,13 +82,17 @@ public final class SamplingTask extends DeviceTask {
             for (ChannelRecordContainerImpl channelRecordContainer : channelRecordContainers) {
                 channelRecordContainer.getChannel().setNewRecord(channelRecordContainer.getRecord());
             }
+            samplingCollection.setContainerListHandle(newContainerListHandle, readConnection, containerListVersion);
         }
     }
 
     @SuppressWarnings("unchecked")
     protected void executeRead() throws UnsupportedOperationException, ConnectionException {
-        // TODO must pass containerListHandle
-        device.connection.read((List<ChannelRecordContainer>) ((List<?>) channelRecordContainers), null, samplingGroup);
+        Connection connection = device.connection;
+        Object handle = connection == containerListHandleConnection ? containerListHandle : null;
+        newContainerListHandle = connection.read((List<ChannelRecordContainer>) ((List<?>) channelRecordContainers),
+                handle, samplingGroup);
+        readConnection = connection;
     }
 
     protected void taskAborted() {
@@ -94,10 +110,8 @@ public final class SamplingTask extends DeviceTask {
             logger.warn("Connection to device {} lost because {}. Trying to reconnect...", device.deviceConfig.getId(),
                     e.getMessage());
 
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read function of driver ", e);
@@ -108,10 +122,8 @@ public final class SamplingTask extends DeviceTask {
             channelRecordContainer.getChannel().handle = channelRecordContainer.getChannelHandle();
         }
 
-        synchronized (dataManager.samplingTaskFinished) {
-            dataManager.samplingTaskFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.samplingTaskFinished.add(this);
+        dataManager.wakeUp();
     }
 
     // called by main thread
@@ -22,7 +22,6 @@
 package org.openmuc.framework.core.datamanager;
 
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
 
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.driver.spi.ChannelValueContainer;
@@ -34,14 +33,14 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
 
     private static final Logger logger = LoggerFactory.getLogger(WriteTask.class);
 
-    private final CountDownLatch writeTaskFinishedSignal;
+    private final AccessCompletion completion;
     List<WriteValueContainerImpl> writeValueContainers;
 
     public WriteTask(DataManager dataManager, Device device, List<WriteValueContainerImpl> writeValueContainers,
-            CountDownLatch writeTaskFinishedSignal) {
+            AccessCompletion completion) {
         this.dataManager = dataManager;
         this.device = device;
-        this.writeTaskFinishedSignal = writeTaskFinishedSignal;
+        this.completion = completion;
         this.writeValueContainers = writeValueContainers;
     }
 
@@ -49,6 +48,15 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
     @SuppressWarnings("unchecked")
     public void run() {
 
+        if (completion.isAbandoned()) {
+            // the caller timed out or cancelled before the device got to this task
+            for (WriteValueContainerImpl valueContainer : writeValueContainers) {
+                valueContainer.setFlag(Flag.TIMEOUT);
+            }
+            finish();
+            return;
+        }
+
         try {
             device.connection.write((List<ChannelValueContainer>) ((List<?>) writeValueContainers), null);
         } catch (UnsupportedOperationException e) {
@@ -62,11 +70,9 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
             for (WriteValueContainerImpl valueContainer : writeValueContainers) {
                 valueContainer.setFlag(Flag.CONNECTION_EXCEPTION);
             }
-            writeTaskFinishedSignal.countDown();
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            completion.taskFinished();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by write funtion of driver ", e);
@@ -75,12 +81,13 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
             }
         }
 
-        writeTaskFinishedSignal.countDown();
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        finish();
+    }
 
+    private void finish() {
+        completion.taskFinished();
+        dataManager.tasksFinished.add(this);
+        dataManager.wakeUp();
     }
 
     @Override
@@ -96,7 +103,7 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
         for (WriteValueContainerImpl valueContainer : writeValueContainers) {
             valueContainer.setFlag(Flag.COMM_DEVICE_NOT_CONNECTED);
         }
-        writeTaskFinishedSignal.countDown();
+        completion.taskFinished();
     }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.WriteValueContainer;
+
+public class AccessCompletionTest {
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @BeforeEach
+    public void setup() {
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testResultCompletesAfterAllTasks() throws Exception {
+        AccessCompletion completion = new AccessCompletion(2, 5000, scheduler);
+        AtomicBoolean recordUpdated = new AtomicBoolean();
+        completion.getTasksFinished().thenRun(() -> recordUpdated.set(true));
+        CompletableFuture<Boolean> result = completion.getResult(recordUpdated::get);
+
+        completion.taskFinished();
+        assertFalse(result.isDone());
+
+        completion.taskFinished();
+        assertTrue(result.get(1, TimeUnit.SECONDS));
+        assertTrue(recordUpdated.get());
+        assertFalse(completion.isAbandoned());
+        // the deadline is cancelled once the call completed
+        assertTrue(scheduler.getQueue().isEmpty());
+    }
+
+    @Test
+    public void testDeadlineAbandonsPendingTasks() throws Exception {
+        AccessCompletion completion = new AccessCompletion(1, 10, scheduler);
+        CompletableFuture<Object> result = completion.getResult(() -> null);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(completion.isAbandoned());
+        assertFalse(completion.getTasksFinished().isDone());
+
+        completion.taskFinished();
+        assertTrue(completion.getTasksFinished().isDone());
+    }
+
+    @Test
+    public void testCancelledChannelReadIsSkipped() throws Exception {
+        DataManager dataManager = new DataManager();
+        ChannelImpl channel = createChannel(dataManager);
+
+        CompletableFuture<Record> read = channel.readAsync(0);
+        assertTrue(read.cancel(false));
+
+        ReadTask readTask = dataManager.newReadTasks.poll();
+        readTask.run();
+        assertEquals(Flag.TIMEOUT, readTask.channelRecordContainers.get(0).getRecord().getFlag());
+        assertTrue(dataManager.tasksFinished.contains(readTask));
+    }
+
+    @Test
+    public void testCancelledWriteIsSkipped() throws Exception {
+        DataManager dataManager = new DataManager();
+        ChannelImpl channel = createChannel(dataManager);
+        WriteValueContainer container = channel.getWriteContainer();
+        container.setValue(new DoubleValue(1));
+
+        CompletableFuture<List<WriteValueContainer>> write = dataManager.writeAsync(Arrays.asList(container), 0);
+        assertTrue(write.cancel(false));
+
+        // the device task is run by the device thread, the channel is not connected to any driver here
+        dataManager.newWriteTasks.poll().run();
+        assertEquals(Flag.TIMEOUT, container.getFlag());
+    }
+
+    @Test
+    public void testCallWithoutTasksIsComplete() {
+        assertTrue(new AccessCompletion(0, 1000, scheduler).getResult(() -> null).isDone());
+    }
+
+    private static ChannelImpl createChannel(DataManager dataManager) throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        config.addDriver("modbus").addDevice("device1").addChannel("channel1");
+        RootConfigImpl rootConfig = config.cloneWithDefaults();
+        DeviceConfigImpl deviceConfig = (DeviceConfigImpl) rootConfig.getDevice("device1");
+        ChannelConfigImpl channelConfig = (ChannelConfigImpl) rootConfig.getChannel("channel1");
+        deviceConfig.device = new Device(dataManager, deviceConfig, System.currentTimeMillis(), new ArrayList<>());
+        return channelConfig.channel;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ActionSchedulerTest {
+
+    @Test
+    public void testActionsAreOrderedByStartTime() {
+        ActionScheduler scheduler = new ActionScheduler();
+        scheduler.getOrCreate(3000);
+        scheduler.getOrCreate(1000);
+        scheduler.getOrCreate(2000);
+
+        assertEquals(1000, scheduler.poll().startTime);
+        assertEquals(2000, scheduler.poll().startTime);
+        assertEquals(3000, scheduler.poll().startTime);
+        assertNull(scheduler.poll());
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testSameStartTimeReturnsSameAction() {
+        ActionScheduler scheduler = new ActionScheduler();
+        Action action = scheduler.getOrCreate(1000);
+
+        assertSame(action, scheduler.getOrCreate(1000));
+        assertSame(action, scheduler.peek());
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    public void testLatenessStatistics() {
+        ActionScheduler scheduler = new ActionScheduler();
+        scheduler.actionExecuted(2);
+        scheduler.actionExecuted(10);
+        scheduler.actionExecuted(4);
+        scheduler.actionRescheduled();
+
+        assertEquals(3, scheduler.getExecutedActions());
+        assertEquals(10, scheduler.getMaxLateness());
+        assertEquals(1, scheduler.getRescheduledActions());
+    }
+
+}
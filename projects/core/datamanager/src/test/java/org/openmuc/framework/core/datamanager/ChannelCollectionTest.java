@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.driver.spi.Connection;
+
+public class ChannelCollectionTest {
+
+    private final ChannelCollection collection = new ChannelCollection(1000, 0, "group", null);
+    private final Connection connection = newConnection();
+
+    @Test
+    public void testHandleIsReturnedForSameConnection() {
+        Object handle = new Object();
+        collection.setContainerListHandle(handle, connection, collection.getContainerListVersion());
+
+        assertSame(handle, collection.getContainerListHandle(connection));
+        assertNull(collection.getContainerListHandle(newConnection()));
+        assertNull(collection.getContainerListHandle(null));
+    }
+
+    @Test
+    public void testInvalidateDiscardsHandle() {
+        collection.setContainerListHandle(new Object(), connection, collection.getContainerListVersion());
+        collection.invalidateContainerListHandle();
+
+        assertNull(collection.getContainerListHandle(connection));
+    }
+
+    @Test
+    public void testHandleOfReadStartedBeforeInvalidationIsIgnored() {
+        int version = collection.getContainerListVersion();
+        collection.invalidateContainerListHandle();
+        collection.setContainerListHandle(new Object(), connection, version);
+
+        assertNull(collection.getContainerListHandle(connection));
+    }
+
+    private static Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> null);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.ServerMapping;
+import org.openmuc.framework.data.ValueType;
+
+public class ConfigPersistenceTest {
+
+    private File directory;
+    private File configFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("openmuc-config").toFile();
+        configFile = new File(directory, "channels.xml");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testWrittenFileCanBeParsed() throws Exception {
+        createConfig().writeToFile(configFile);
+
+        assertConfig(RootConfigImpl.createFromFile(configFile));
+        assertFalse(new File(directory, "channels.xml.tmp").exists());
+    }
+
+    @Test
+    public void testWritesAreCoalesced() throws Exception {
+        ConfigPersistence persistence = new ConfigPersistence(configFile, 60000, false);
+        RootConfigImpl config = new RootConfigImpl();
+        persistence.write(config);
+        persistence.write(createConfig());
+        assertFalse(configFile.exists());
+
+        persistence.close();
+
+        assertNull(persistence.getLastError());
+        assertConfig(RootConfigImpl.createFromFile(configFile));
+    }
+
+    @Test
+    public void testFailedWriteIsReportedToSynchronousWriter() throws Exception {
+        File blockingFile = new File(directory, "blocked");
+        assertTrue(blockingFile.createNewFile());
+        File unwritableConfigFile = new File(blockingFile, "channels.xml");
+
+        ConfigPersistence persistence = new ConfigPersistence(unwritableConfigFile, 60000, false);
+        persistence.write(createConfig());
+        persistence.flush();
+        assertNotNull(persistence.getLastError());
+
+        assertThrows(IOException.class, () -> persistence.writeNow(createConfig()));
+
+        assertTrue(blockingFile.delete());
+        persistence.writeNow(createConfig());
+        assertNull(persistence.getLastError());
+        assertConfig(RootConfigImpl.createFromFile(unwritableConfigFile));
+        persistence.close();
+
+        unwritableConfigFile.delete();
+    }
+
+    @Test
+    public void testSnapshotIsUsedUntilXmlChanges() throws Exception {
+        createConfig().writeToFile(configFile);
+        File snapshotFile = new File(directory, "channels.xml.snapshot");
+
+        ConfigPersistence persistence = new ConfigPersistence(configFile, 0, true);
+        assertConfig(persistence.load());
+        assertTrue(snapshotFile.exists());
+
+        long xmlChecksum = ConfigSnapshot.checksum(configFile);
+        RootConfigImpl snapshotConfig = ConfigSnapshot.read(snapshotFile, xmlChecksum);
+        assertNotNull(snapshotConfig);
+        assertConfig(snapshotConfig);
+        assertConfig(persistence.load());
+
+        RootConfigImpl changedConfig = createConfig();
+        changedConfig.getChannel("channel1").setUnit("A");
+        changedConfig.writeToFile(configFile);
+
+        assertNull(ConfigSnapshot.read(snapshotFile, ConfigSnapshot.checksum(configFile)));
+        assertEquals("A", persistence.load().getChannel("channel1").getUnit());
+        persistence.close();
+    }
+
+    private static RootConfigImpl createConfig() throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        config.setDataLogSource("sqllogger");
+        DeviceConfig device = config.addDriver("modbus").addDevice("device1");
+        device.setDeviceAddress("192.168.1.2:502");
+        device.setSamplingTimeout(500);
+        ChannelConfig channel = device.addChannel("channel1");
+        channel.setChannelAddress("HOLDING_REGISTERS:0:FLOAT");
+        channel.setUnit("V");
+        channel.setValueType(ValueType.FLOAT);
+        channel.setScalingFactor(0.1);
+        channel.setSamplingInterval(1000);
+        channel.setLoggingEvent(true);
+        channel.addServerMapping(new ServerMapping("modbus", "HOLDING_REGISTERS:0"));
+        device.addChannel("channel2").setDisabled(true);
+        config.addDriver("virtual");
+        return config;
+    }
+
+    private static void assertConfig(RootConfigImpl config) {
+        assertEquals("sqllogger", config.getDataLogSource());
+        assertEquals(2, config.getDrivers().size());
+        DeviceConfig device = config.getDevice("device1");
+        assertEquals("192.168.1.2:502", device.getDeviceAddress());
+        assertEquals(500, device.getSamplingTimeout().intValue());
+        ChannelConfig channel = config.getChannel("channel1");
+        assertEquals("HOLDING_REGISTERS:0:FLOAT", channel.getChannelAddress());
+        assertEquals("V", channel.getUnit());
+        assertEquals(ValueType.FLOAT, channel.getValueType());
+        assertEquals(0.1, channel.getScalingFactor(), 0);
+        assertEquals(1000, channel.getSamplingInterval().intValue());
+        assertTrue(channel.isLoggingEvent());
+        assertEquals(1, channel.getServerMappings().size());
+        assertEquals("HOLDING_REGISTERS:0", channel.getServerMappings().get(0).getServerAddress());
+        assertNull(channel.getDescription());
+        assertTrue(config.getChannel("channel2").isDisabled());
+        assertNull(config.getChannel("channel2").getUnit());
+    }
+
+}
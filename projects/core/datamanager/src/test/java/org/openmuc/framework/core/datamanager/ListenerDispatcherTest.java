@@ -0,0 +1,181 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.core.datamanager.ListenerDispatcher.OverflowPolicy;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+
+public class ListenerDispatcherTest {
+
+    @Test
+    public void testRecordsAreDeliveredInOrder() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher(2, 100, OverflowPolicy.DROP_OLDEST);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CountDownLatch allReceived = new CountDownLatch(50);
+
+        ListenerDispatcher.ListenerQueue queue = dispatcher.register("channel", record -> {
+            received.add(record.getValue().asInt());
+            allReceived.countDown();
+        });
+        for (int i = 0; i < 50; i++) {
+            queue.offer(new Record(new IntValue(i), (long) i));
+        }
+
+        assertTrue(allReceived.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, received.get(i).intValue());
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testLatestOnlyCoalescesPendingRecords() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher(1, 100, OverflowPolicy.LATEST_ONLY);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CountDownLatch firstRecordStarted = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        CountDownLatch lastRecordReceived = new CountDownLatch(1);
+
+        ListenerDispatcher.ListenerQueue queue = dispatcher.register("channel", record -> {
+            int value = record.getValue().asInt();
+            received.add(value);
+            if (value == 0) {
+                firstRecordStarted.countDown();
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (value == 9) {
+                lastRecordReceived.countDown();
+            }
+        });
+
+        queue.offer(new Record(new IntValue(0), 0L));
+        assertTrue(firstRecordStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            queue.offer(new Record(new IntValue(i), (long) i));
+        }
+        releaseListener.countDown();
+
+        assertTrue(lastRecordReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(2, received.size());
+        assertEquals(9, received.get(1).intValue());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testInterruptedBlockingOfferDropsRecord() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher(1, 1, OverflowPolicy.BLOCK);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CountDownLatch firstRecordStarted = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        CountDownLatch secondRecordReceived = new CountDownLatch(1);
+
+        ListenerDispatcher.ListenerQueue queue = dispatcher.register("channel", record -> {
+            int value = record.getValue().asInt();
+            received.add(value);
+            if (value == 0) {
+                firstRecordStarted.countDown();
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else {
+                secondRecordReceived.countDown();
+            }
+        });
+
+        queue.offer(new Record(new IntValue(0), 0L));
+        assertTrue(firstRecordStarted.await(5, TimeUnit.SECONDS));
+        queue.offer(new Record(new IntValue(1), 1L));
+
+        // the queue is full, so the interrupted offer gives up
+        Thread.currentThread().interrupt();
+        queue.offer(new Record(new IntValue(2), 2L));
+        assertTrue(Thread.interrupted());
+
+        releaseListener.countDown();
+        assertTrue(secondRecordReceived.await(5, TimeUnit.SECONDS));
+        queue.offer(new Record(new IntValue(3), 3L));
+        awaitSize(received, 3);
+        assertEquals(Arrays.asList(0, 1, 3), received);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testReleasedQueueIsRemovedAfterPendingRecords() throws Exception {
+        ListenerDispatcher dispatcher = new ListenerDispatcher(1, 10, OverflowPolicy.DROP_OLDEST);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        CountDownLatch releaseListener = new CountDownLatch(1);
+
+        ListenerDispatcher.ListenerQueue queue = dispatcher.register("channel", record -> {
+            try {
+                releaseListener.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(record.getValue().asInt());
+        });
+        ListenerDispatcher.ListenerQueue idleQueue = dispatcher.register("channel2", record -> {
+        });
+
+        queue.offer(new Record(new IntValue(0), 0L));
+        queue.offer(new Record(new IntValue(1), 1L));
+        dispatcher.release(queue);
+        dispatcher.release(idleQueue);
+        queue.offer(new Record(new IntValue(2), 2L));
+        assertEquals(1, dispatcher.getQueueCount());
+
+        releaseListener.countDown();
+        awaitSize(received, 2);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getQueueCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, dispatcher.getQueueCount());
+        assertEquals(Arrays.asList(0, 1), received);
+        dispatcher.shutdown();
+    }
+
+    private static void awaitSize(List<Integer> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(size, list.size());
+    }
+
+}
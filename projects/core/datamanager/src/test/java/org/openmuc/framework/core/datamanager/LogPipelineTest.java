@@ -0,0 +1,277 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.core.datamanager.LogPipeline.OverflowPolicy;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LogPipelineTest {
+
+    @Test
+    public void testLogCallsAreDeliveredInOrder() throws Exception {
+        LogPipeline pipeline = new LogPipeline(100, OverflowPolicy.DROP_OLDEST, 1000);
+        TestDataLogger dataLogger = new TestDataLogger(null);
+        pipeline.register(dataLogger);
+
+        for (int i = 0; i < 50; i++) {
+            if (i % 2 == 0) {
+                pipeline.log(dataLogger, Collections.emptyList(), i);
+            }
+            else {
+                pipeline.logEvent(dataLogger, Collections.emptyList(), i);
+            }
+        }
+        pipeline.shutdown();
+
+        assertEquals(50, dataLogger.timestamps.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, dataLogger.timestamps.get(i).longValue());
+        }
+        assertEquals(25, dataLogger.events);
+    }
+
+    @Test
+    public void testBlockedLoggerDoesNotBlockCaller() throws Exception {
+        LogPipeline pipeline = new LogPipeline(4, OverflowPolicy.DROP_NEWEST, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        TestDataLogger otherLogger = new TestDataLogger(null);
+        pipeline.register(blockedLogger);
+        pipeline.register(otherLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        pipeline.log(otherLogger, Collections.emptyList(), 0);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        for (int i = 1; i < 20; i++) {
+            pipeline.log(blockedLogger, Collections.emptyList(), i);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        // the other logger keeps logging while the blocked logger is stuck
+        assertTrue(otherLogger.delivered.tryAcquire(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 20; i++) {
+            pipeline.log(otherLogger, Collections.emptyList(), i);
+            assertTrue(otherLogger.delivered.tryAcquire(5, TimeUnit.SECONDS));
+            assertEquals(i + 1, otherLogger.timestamps.size());
+            assertEquals(0, blockedLogger.timestamps.size());
+        }
+
+        release.countDown();
+        pipeline.shutdown();
+
+        assertEquals(20, otherLogger.timestamps.size());
+        // the first call blocks the consumer, four more fit into the buffer and the rest is dropped
+        assertEquals(5, blockedLogger.timestamps.size());
+        assertEquals(4, blockedLogger.timestamps.get(4).longValue());
+    }
+
+    @Test
+    public void testUnregisterDoesNotWaitForBlockedLogger() throws Exception {
+        LogPipeline pipeline = new LogPipeline(4, OverflowPolicy.DROP_NEWEST, 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        pipeline.register(blockedLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        pipeline.log(blockedLogger, Collections.emptyList(), 1);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        pipeline.unregister(blockedLogger);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        // pending calls are still delivered within the drain timeout
+        release.countDown();
+        assertTrue(blockedLogger.delivered.tryAcquire(2, 5, TimeUnit.SECONDS));
+        assertEquals(2, blockedLogger.timestamps.size());
+    }
+
+    @Test
+    public void testAwaitRemovalWaitsForPendingLogCalls() throws Exception {
+        LogPipeline pipeline = new LogPipeline(4, OverflowPolicy.DROP_NEWEST, 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        pipeline.register(blockedLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        pipeline.log(blockedLogger, Collections.emptyList(), 1);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+        pipeline.unregister(blockedLogger);
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        pipeline.awaitRemoval(blockedLogger);
+
+        assertEquals(2, blockedLogger.timestamps.size());
+    }
+
+    @Test
+    public void testAwaitRemovalReturnsAfterDrainTimeout() throws Exception {
+        LogPipeline pipeline = new LogPipeline(4, OverflowPolicy.DROP_NEWEST, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        pipeline.register(blockedLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        pipeline.log(blockedLogger, Collections.emptyList(), 1);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        pipeline.unregister(blockedLogger);
+        pipeline.awaitRemoval(blockedLogger);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        // the call which was stuck completes, the pending one is dropped
+        release.countDown();
+        assertTrue(blockedLogger.delivered.tryAcquire(5, TimeUnit.SECONDS));
+        assertEquals(1, blockedLogger.timestamps.size());
+    }
+
+    @Test
+    public void testInterruptedBlockingOfferDropsLogCall() throws Exception {
+        LogPipeline pipeline = new LogPipeline(1, OverflowPolicy.BLOCK, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        pipeline.register(blockedLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+        pipeline.log(blockedLogger, Collections.emptyList(), 1);
+
+        // the buffer is full, so the interrupted call gives up
+        Thread.currentThread().interrupt();
+        pipeline.log(blockedLogger, Collections.emptyList(), 2);
+        assertTrue(Thread.interrupted());
+
+        release.countDown();
+        pipeline.shutdown();
+
+        assertEquals(Arrays.asList(0L, 1L), blockedLogger.timestamps);
+    }
+
+    @Test
+    public void testConfigurationIsAppliedByConsumerThread() throws Exception {
+        LogPipeline pipeline = new LogPipeline(4, OverflowPolicy.DROP_NEWEST, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        TestDataLogger blockedLogger = new TestDataLogger(release);
+        pipeline.register(blockedLogger);
+
+        pipeline.log(blockedLogger, Collections.emptyList(), 0);
+        assertTrue(blockedLogger.started.await(5, TimeUnit.SECONDS));
+        pipeline.configure(blockedLogger, () -> blockedLogger.setChannelsToLog(Collections.emptyList()));
+        pipeline.log(blockedLogger, Collections.emptyList(), 1);
+
+        // not applied while the logger is logging
+        assertEquals(0, blockedLogger.configurations.size());
+
+        release.countDown();
+        pipeline.shutdown();
+
+        assertEquals(1, blockedLogger.configurations.size());
+        assertTrue(blockedLogger.configurations.get(0).startsWith("OpenMUC Data Manager Logger"));
+        assertEquals(2, blockedLogger.timestamps.size());
+    }
+
+    private static class TestDataLogger implements DataLoggerService {
+
+        private final CountDownLatch release;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final Semaphore delivered = new Semaphore(0);
+        private final List<Long> timestamps = new CopyOnWriteArrayList<>();
+        private final List<String> configurations = new CopyOnWriteArrayList<>();
+        private volatile int events = 0;
+
+        TestDataLogger(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+            configurations.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            started.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            timestamps.add(timestamp);
+            delivered.release();
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            events++;
+            timestamps.add(timestamp);
+            delivered.release();
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return false;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggerRoutingTest {
+
+    private final DataLoggerService ascii = new TestDataLogger("asciilogger", false);
+    private final DataLoggerService sql = new TestDataLogger("sqllogger", false);
+    private final DataLoggerService mqtt = new TestDataLogger("mqttlogger", true);
+
+    @Test
+    public void testChannelsWithoutSettingsGoToLoggersWithoutRequiredSettings() {
+        LoggerRouting routing = new LoggerRouting(Arrays.asList(ascii, mqtt, sql), null);
+
+        assertArrayEquals(new int[] { 0, 2 }, routing.route("channel1", null));
+        assertArrayEquals(new int[] { 0, 2 }, routing.route("channel2", ""));
+        assertEquals(2, routing.getChannelCount(0));
+        assertEquals(0, routing.getChannelCount(1));
+    }
+
+    @Test
+    public void testChannelsWithSettingsGoToNamedLoggers() {
+        LoggerRouting routing = new LoggerRouting(Arrays.asList(ascii, mqtt, sql), null);
+
+        int[] route = routing.route("channel1", "mqttlogger:topic=a/b;sqllogger");
+        assertArrayEquals(new int[] { 1, 2 }, route);
+        assertSame(route, routing.route("channel1", "mqttlogger:topic=a/b;sqllogger"));
+        assertArrayEquals(new int[0], routing.route("channel2", "unknownlogger"));
+        assertEquals(1, routing.getChannelCount(1));
+    }
+
+    @Test
+    public void testUpdateReroutesChangedChannels() {
+        LoggerRouting routing = new LoggerRouting(Arrays.asList(ascii, mqtt, sql), null);
+        routing.route("channel1", "mqttlogger");
+        routing.route("channel2", "mqttlogger");
+        routing.route("channel3", null);
+
+        routing.update(Arrays.asList("channel1", "channel2"),
+                Collections.singletonList(new TestLogChannel("channel1", "sqllogger")));
+
+        assertEquals(0, routing.getChannelCount(1));
+        assertEquals(2, routing.getChannelCount(2));
+        assertArrayEquals(new int[] { 2 }, routing.route("channel1", "sqllogger"));
+        assertEquals(1, routing.getChannelCount(0));
+    }
+
+    @Test
+    public void testParseLoggerIds() {
+        assertEquals(Arrays.asList("mqttlogger", "sqllogger"),
+                LoggerRouting.parseLoggerIds("mqttlogger:topic=a/b:c;sqllogger"));
+    }
+
+    private static class TestLogChannel implements LogChannel {
+
+        private final String id;
+        private final String loggingSettings;
+
+        TestLogChannel(String id, String loggingSettings) {
+            this.id = id;
+            this.loggingSettings = loggingSettings;
+        }
+
+        @Override
+        public String getLoggingSettings() {
+            return loggingSettings;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getDescription() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return null;
+        }
+
+        @Override
+        public String getUnit() {
+            return null;
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return null;
+        }
+
+        @Override
+        public Integer getValueTypeLength() {
+            return null;
+        }
+
+        @Override
+        public Double getScalingFactor() {
+            return null;
+        }
+
+        @Override
+        public Double getValueOffset() {
+            return null;
+        }
+
+        @Override
+        public Boolean isListening() {
+            return null;
+        }
+
+        @Override
+        public Integer getSamplingInterval() {
+            return null;
+        }
+
+        @Override
+        public Integer getSamplingTimeOffset() {
+            return null;
+        }
+
+        @Override
+        public String getSamplingGroup() {
+            return null;
+        }
+
+        @Override
+        public Integer getLoggingInterval() {
+            return null;
+        }
+
+        @Override
+        public Integer getLoggingTimeOffset() {
+            return null;
+        }
+
+        @Override
+        public Boolean isDisabled() {
+            return null;
+        }
+
+        @Override
+        public Boolean isLoggingEvent() {
+            return null;
+        }
+    }
+
+    private static class TestDataLogger implements DataLoggerService {
+
+        private final String id;
+        private final boolean logSettingsRequired;
+
+        TestDataLogger(String id, boolean logSettingsRequired) {
+            this.id = id;
+            this.logSettingsRequired = logSettingsRequired;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return logSettingsRequired;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.DriverConfig;
+
+public class RootConfigImplTest {
+
+    @Test
+    public void testCloneReplacingDeviceSharesOtherDevices() throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        DriverConfig driver = config.addDriver("modbus");
+        driver.addDevice("device1").addChannel("channel1");
+        driver.addDevice("device2").addChannel("channel2");
+        config.addDriver("virtual").addDevice("device3").addChannel("channel3");
+
+        RootConfigImpl changed = new RootConfigImpl(config);
+        DeviceConfig newDevice = changed.getDevice("device1");
+        newDevice.getChannel("channel1").delete();
+        newDevice.addChannel("channel4").setUnit("V");
+
+        RootConfigImpl clone = config.cloneReplacingDevice("modbus", "device1", (DeviceConfigImpl) newDevice);
+
+        assertEquals(Arrays.asList("device1", "device2"),
+                new ArrayList<>(clone.driverConfigsById.get("modbus").deviceConfigsById.keySet()));
+        assertNull(clone.getChannel("channel1"));
+        assertEquals("V", clone.getChannel("channel4").getUnit());
+        assertSame(config.getDevice("device2"), clone.getDevice("device2"));
+        assertSame(config.getDriver("virtual"), clone.getDriver("virtual"));
+        assertSame(clone.getDriver("modbus"), clone.getDevice("device2").getDriver());
+        assertSame(clone.getDevice("device1"), clone.getChannel("channel4").getDevice());
+
+        // the original configuration is not modified
+        assertEquals("channel1", config.getChannel("channel1").getId());
+        assertNull(config.getChannel("channel4"));
+    }
+
+    @Test
+    public void testCloneReplacingDeviceMovesSharedConfigs() throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        DriverConfig driver = config.addDriver("modbus");
+        driver.addDevice("device1");
+        driver.addDevice("device2").addChannel("channel2");
+        config.addDriver("virtual").addDevice("device3");
+
+        RootConfigImpl clone = config.cloneReplacingDevice("modbus", "device1", null);
+
+        // the shared configurations belong to the copy now
+        assertSame(clone, clone.driverConfigsById.get("virtual").rootConfigParent);
+        assertSame(clone.getDriver("modbus"), config.getDevice("device2").getDriver());
+        assertSame(clone.getDevice("device2"), clone.getChannel("channel2").getDevice());
+
+        // while the child collections of the original stay as they were
+        assertSame(driver, config.getDriver("modbus"));
+        assertEquals(2, driver.getDevices().size());
+        assertSame(driver.getDevice("device1"), config.getDevice("device1"));
+    }
+
+    @Test
+    public void testCloneWithDefaultsReplacingDevice() throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        config.addDriver("modbus").addDevice("device1").addChannel("channel1");
+        RootConfigImpl withDefaults = config.cloneWithDefaults();
+
+        RootConfigImpl changed = new RootConfigImpl(config);
+        changed.getDriver("modbus").addDevice("device2").addChannel("channel2");
+
+        RootConfigImpl clone = withDefaults.cloneWithDefaultsReplacingDevice("modbus", "device2",
+                (DeviceConfigImpl) changed.getDevice("device2"));
+        assertEquals(DriverConfig.CONNECT_RETRY_INTERVAL_DEFAULT,
+                clone.getDevice("device2").getConnectRetryInterval().intValue());
+        assertEquals(2, clone.channelConfigsById.size());
+
+        RootConfigImpl removed = clone.cloneWithDefaultsReplacingDevice("modbus", "device1", null);
+        assertNull(removed.getDevice("device1"));
+        assertNull(removed.getChannel("channel1"));
+        assertEquals(1, removed.getDriver("modbus").getDevices().size());
+    }
+
+}
@@ -24,7 +24,9 @@ package org.openmuc.framework.datalogger.spi;
 import java.io.IOException;
 import java.util.List;
 
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 
 public interface DataLoggerService {
 
@@ -32,6 +34,21 @@ public interface DataLoggerService {
 
     void setChannelsToLog(List<LogChannel> channels);
 
+    /**
+     * Called by the data manager if only the channels of a single device were added, changed or removed. A logger
+     * which can apply such a change without rebuilding its state returns <code>true</code>. Otherwise the data manager
+     * passes the complete list of channels to {@link #setChannelsToLog(List)}.
+     *
+     * @param changedChannels
+     *            added or changed channels which have to be logged by this logger
+     * @param removedChannelIds
+     *            IDs of channels which must no longer be logged by this logger
+     * @return <code>true</code> if the change was applied, the default implementation returns <code>false</code>
+     */
+    default boolean updateChannelsToLog(List<LogChannel> changedChannels, List<String> removedChannelIds) {
+        return false;
+    }
+
     /**
      * Called by data manager to tell the logger that it should log the given records
      * <p>
@@ -65,6 +82,50 @@ public interface DataLoggerService {
      */
     List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException;
 
+    /**
+     * Returns the same records as {@link #getRecords(String, long, long)} in primitive columns. Loggers which store
+     * numeric values should override this method to read large histories without creating an object per record. The
+     * default implementation converts the result of {@link #getRecords(String, long, long)}.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @return the logged records with timestamps from <code>startTime</code> to <code>endTime</code>.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordColumns getRecordColumns(String channelId, long startTime, long endTime) throws IOException {
+        return RecordColumns.fromRecords(getRecords(channelId, startTime, endTime));
+    }
+
+    /**
+     * Returns the logged values aggregated into buckets of <code>interval</code> milliseconds, starting at
+     * <code>startTime</code>. Loggers which can aggregate in their storage, e.g. in a database query, should override
+     * this method. The default implementation returns <code>null</code> and the caller aggregates the result of
+     * {@link #getRecordColumns(String, long, long)} itself.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param interval
+     *            the length of a bucket in milliseconds
+     * @param aggregation
+     *            the aggregation applied to the values of each bucket
+     * @return one value per non empty bucket or <code>null</code> if the logger does not aggregate.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default RecordColumns getAggregatedRecordColumns(String channelId, long startTime, long endTime, long interval,
+            Aggregation aggregation) throws IOException {
+        return null;
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results may not be consistent.
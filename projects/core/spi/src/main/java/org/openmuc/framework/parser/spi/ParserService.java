@@ -67,4 +67,27 @@ public interface ParserService {
      * @return deserialized instance of {@link org.openmuc.framework.data.Record}
      */
     Record deserialize(byte[] byteArray, ValueType valueType);
+
+    /**
+     * Deserializes the record of one channel from a message which may contain the records of several channels. The
+     * default implementation ignores the channel ID.
+     *
+     * @param byteArray
+     *            received message
+     * @param valueType
+     *            defines the type of the value {@link org.openmuc.framework.data.ValueType}
+     * @param channelId
+     *            ID of the channel whose record is needed
+     * @return deserialized instance of {@link org.openmuc.framework.data.Record}
+     */
+    default Record deserialize(byte[] byteArray, ValueType valueType, String channelId) {
+        return deserialize(byteArray, valueType);
+    }
+
+    /**
+     * Called when receivers may have missed messages, e.g. because the connection to the broker was lost. Parsers which
+     * send state only once, like a schema, have to include it in the next message again. Does nothing by default.
+     */
+    default void reset() {
+    }
 }
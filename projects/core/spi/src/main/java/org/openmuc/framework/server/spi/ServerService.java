@@ -50,4 +50,20 @@ public interface ServerService {
      *            the channels configured be mapped to the server
      */
     public void serverMappings(List<ServerMappingContainer> mappings);
+
+    /**
+     * This method is called if only the mappings of the channels of a single device were added, changed or removed. A
+     * server which can apply such a change without rebinding all mappings returns <code>true</code>. Otherwise
+     * {@link #serverMappings(List)} is called with all mappings of the server.
+     *
+     * @param changedMappings
+     *            the added or changed mappings
+     * @param removedChannelIds
+     *            IDs of the channels which are no longer mapped to the server
+     * @return <code>true</code> if the change was applied, the default implementation returns <code>false</code>
+     */
+    public default boolean updateServerMappings(List<ServerMappingContainer> changedMappings,
+            List<String> removedChannelIds) {
+        return false;
+    }
 }
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -55,7 +56,8 @@ public class AsciiLogger implements DataLoggerService {
             .getProperty(AsciiLogger.class.getPackage().getName().toLowerCase() + ".directory");
     private static HashMap<String, Long> lastLoggedLineList = new HashMap<>();
     private final String loggerDirectory;
-    private final HashMap<String, LogChannel> logChannelList = new HashMap<>();
+    // replaced as a whole on configuration changes, getRecords is called concurrently to the logging thread
+    private volatile Map<String, LogChannel> logChannelList = new HashMap<>();
     private boolean isFillUpFiles = true;
     private static final long MS_PER_DAY = 86400000;
 
@@ -235,7 +237,7 @@ public class AsciiLogger implements DataLoggerService {
     public void setChannelsToLog(List<LogChannel> logChannels) {
 
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
-        logChannelList.clear();
+        Map<String, LogChannel> newLogChannelList = new HashMap<>();
 
         logger.trace("channels to log:");
         for (LogChannel logChannel : logChannels) {
@@ -244,8 +246,9 @@ public class AsciiLogger implements DataLoggerService {
                 logger.trace("channel.getId() " + logChannel.getId());
                 logger.trace("channel.getLoggingInterval() " + logChannel.getLoggingInterval());
             }
-            logChannelList.put(logChannel.getId(), logChannel);
+            newLogChannelList.put(logChannel.getId(), logChannel);
         }
+        logChannelList = newLogChannelList;
 
         if (isFillUpFiles) {
             Map<String, Boolean> areHeaderIdentical = LoggerUtils.areHeadersIdentical(loggerDirectory, logChannels,
@@ -278,6 +281,7 @@ public class AsciiLogger implements DataLoggerService {
 
     @Override
     public synchronized void log(List<LoggingRecord> loggingRecords, long timestamp) {
+        Map<String, LogChannel> logChannelList = this.logChannelList;
         HashMap<List<Integer>, LogIntervalContainerGroup> logIntervalGroups = new HashMap<>();
 
         // add each container to a group with the same logging interval
@@ -349,6 +353,16 @@ public class AsciiLogger implements DataLoggerService {
         }
     }
 
+    @Override
+    public RecordColumns getRecordColumns(String channelId, long startTime, long endTime) throws IOException {
+
+        LogChannel logChannel = logChannelList.get(channelId);
+        if (logChannel == null) {
+            throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
+        }
+        return new LogFileReader(loggerDirectory, logChannel).getColumns(startTime, endTime);
+    }
+
     /**
      * Get the latest logged Record for the given value. This is achieved by searching within a few times the
      * loggingInterval from the current time for any record and then selecting the one with the highest timestamp
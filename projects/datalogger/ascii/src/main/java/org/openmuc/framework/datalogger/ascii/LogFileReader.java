@@ -34,6 +34,7 @@ import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
 import org.openmuc.framework.datalogger.ascii.utils.LoggerUtils;
@@ -54,6 +55,13 @@ public class LogFileReader {
     private long endTimestamp;
     private long firstTimestampFromFile;
 
+    /**
+     * Handles a line of values of a log file.
+     */
+    private interface LineHandler {
+        void handleLine(String line, Map<String, Integer> channelsColumnsMap);
+    }
+
     /**
      * LogFileReader Constructor
      *
@@ -82,15 +90,41 @@ public class LogFileReader {
      */
     public Map<String, List<Record>> getValues(long startTimestamp, long endTimestamp) {
 
+        Map<String, List<Record>> recordsMap = new HashMap<>();
+        for (String id : ids) {
+            recordsMap.put(id, new ArrayList<>());
+        }
+        processFiles(startTimestamp, endTimestamp,
+                (line, channelsColumnsMap) -> readRecordsFromLine(line, channelsColumnsMap, recordsMap));
+        return recordsMap;
+    }
+
+    /**
+     * Get the values of the channel between start time stamp and end time stamp in primitive columns. Numeric values
+     * are parsed directly into the columns without creating a record per line.
+     *
+     * @param startTimestamp
+     *            start time stamp
+     * @param endTimestamp
+     *            end time stamp
+     * @return All values of the channel in the given time span
+     */
+    public RecordColumns getColumns(long startTimestamp, long endTimestamp) {
+
+        RecordColumns columns = new RecordColumns();
+        String channelId = ids[0];
+        processFiles(startTimestamp, endTimestamp,
+                (line, channelsColumnsMap) -> readColumnsFromLine(line, channelsColumnsMap.get(channelId), columns));
+        return columns;
+    }
+
+    private void processFiles(long startTimestamp, long endTimestamp, LineHandler lineHandler) {
+
         this.startTimestamp = startTimestamp;
         this.endTimestamp = endTimestamp;
 
         List<String> filenames = LoggerUtils.getFilenames(loggingInterval, logTimeOffset, this.startTimestamp,
                 this.endTimestamp);
-        Map<String, List<Record>> recordsMap = new HashMap<>();
-        for (String id : ids) {
-            recordsMap.put(id, new ArrayList<>());
-        }
 
         for (int i = 0; i < filenames.size(); i++) {
             Boolean nextFile = false;
@@ -109,9 +143,8 @@ public class LogFileReader {
             if (i > 0) {
                 nextFile = true;
             }
-            processFile(recordsMap, filepath, nextFile);
+            processFile(filepath, nextFile, lineHandler);
         }
-        return recordsMap;
     }
 
     /**
@@ -128,8 +161,11 @@ public class LogFileReader {
         for (String id : ids) {
             recordsMap.put(id, new ArrayList<>());
         }
-        recordsMap = processFile(recordsMap, filePath, true);
-        return recordsMap;
+        if (processFile(filePath, true,
+                (line, channelsColumnsMap) -> readRecordsFromLine(line, channelsColumnsMap, recordsMap))) {
+            return recordsMap;
+        }
+        return null;
     }
 
     /**
@@ -182,10 +218,11 @@ public class LogFileReader {
      *            file path
      * @param nextFile
      *            if it is the next file and not the first between a time span
-     * @return records on success, otherwise null
+     * @param lineHandler
+     *            handles the lines of the requested time span
+     * @return true on success, otherwise false
      */
-    private Map<String, List<Record>> processFile(Map<String, List<Record>> recordsMap, String filepath,
-            Boolean nextFile) {
+    private boolean processFile(String filepath, Boolean nextFile, LineHandler lineHandler) {
 
         String line = null;
         long currentPosition = 0;
@@ -196,8 +233,9 @@ public class LogFileReader {
 
         RandomAccessFile raf = LoggerUtils.getRandomAccessFile(new File(filepath), "r");
         if (raf == null) {
-            return null;
+            return false;
         }
+        boolean success = true;
         try {
             Map<String, Integer> channelsColumnsMap = null;
             while (channelsColumnsMap == null) {
@@ -228,19 +266,19 @@ public class LogFileReader {
 
                 while ((line = raf.readLine()) != null && currentTimestamp <= endTimestamp) {
 
-                    processLine(line, channelsColumnsMap, recordsMap);
+                    processLine(line, channelsColumnsMap, lineHandler);
                     currentTimestamp += loggingInterval;
                 }
                 raf.close();
             }
             else {
-                recordsMap = null; // because the column of the channel was not identified
+                success = false; // because the column of the channel was not identified
             }
         } catch (IOException e) {
             logger.error(e.getMessage());
-            recordsMap = null;
+            success = false;
         }
-        return recordsMap;
+        return success;
     }
 
     /**
@@ -248,14 +286,13 @@ public class LogFileReader {
      *
      * @param line
      *            the line to process
-     * @param recordsMap
-     *            list of records
+     * @param lineHandler
+     *            handles the values of the line
      */
-    private void processLine(String line, Map<String, Integer> channelsColumnsMap,
-            Map<String, List<Record>> recordsMap) {
+    private void processLine(String line, Map<String, Integer> channelsColumnsMap, LineHandler lineHandler) {
 
         if (!line.startsWith(Const.COMMENT_SIGN)) {
-            readRecordsFromLine(line, channelsColumnsMap, recordsMap);
+            lineHandler.handleLine(line, channelsColumnsMap);
         }
     }
 
@@ -300,6 +337,39 @@ public class LogFileReader {
         }
     }
 
+    /**
+     * read the value of a single channel from a line into columns.
+     *
+     * @param line
+     *            to read
+     * @param channelColumn
+     *            the column of the channel
+     * @param columns
+     *            the columns the value is added to
+     */
+    private void readColumnsFromLine(String line, Integer channelColumn, RecordColumns columns) {
+
+        String columnValue[] = line.split(Const.SEPARATOR);
+
+        try {
+            long timestampMS = (long) (Double.parseDouble(columnValue[unixTimestampColumn]) * 1000);
+
+            if (isTimestampPartOfRequestedInterval(timestampMS) && channelColumn != null) {
+                String strValue = columnValue[channelColumn].trim();
+                if (isNumber(strValue)) {
+                    columns.add(timestampMS, Double.parseDouble(strValue), Flag.VALID);
+                }
+                else {
+                    columns.add(getRecordFromNonNumberValue(strValue, timestampMS));
+                }
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("It's not a timestamp.\n", e.getMessage());
+        } catch (ArrayIndexOutOfBoundsException e) {
+            logger.error("Array Index Out Of Bounds Exception. ", e);
+        }
+    }
+
     /**
      * Checks if the time stamp read from file is part of the requested logging interval
      *
@@ -20,6 +20,7 @@
  */
 package org.openmuc.framework.datalogger.ascii.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Calendar;
@@ -32,6 +33,7 @@ import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.datalogger.ascii.AsciiLogger;
 import org.openmuc.framework.datalogger.ascii.LogFileReader;
@@ -285,6 +287,26 @@ public class LogFileReaderTestSingleFile {
         assertTrue(result);
     }
 
+    @Test
+    public void tc008_columns_equal_records() {
+
+        System.out.println("### Begin test tc008_columns_equal_records");
+
+        long t1 = TestUtils.stringToDate(dateFormat, fileDate0 + " 01:50:00").getTimeInMillis();
+        long t2 = TestUtils.stringToDate(dateFormat, fileDate0 + " 01:51:00").getTimeInMillis();
+
+        LogFileReader fr = new LogFileReader(TestUtils.TESTFOLDERPATH, channelTestImpl);
+        List<Record> records = fr.getValues(t1, t2).get(channelTestImpl.getId());
+        RecordColumns columns = fr.getColumns(t1, t2);
+
+        assertEquals(records.size(), columns.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getTimestamp().longValue(), columns.getTimestamp(i));
+            assertEquals(records.get(i).getFlag(), columns.getFlag(i));
+            assertEquals(records.get(i).getValue().asDouble(), columns.getValue(i), 0.0);
+        }
+    }
+
     // @Test
     public void tc007_t1_within_available_data_with_loggingInterval() {
 
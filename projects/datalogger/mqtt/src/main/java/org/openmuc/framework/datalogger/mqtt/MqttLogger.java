@@ -31,6 +31,7 @@ import java.util.stream.Collectors;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogChannel;
 import org.openmuc.framework.datalogger.mqtt.dto.MqttLogMsg;
+import org.openmuc.framework.datalogger.mqtt.util.MqttChannelLogSettings;
 import org.openmuc.framework.datalogger.mqtt.util.MqttLogMsgBuilder;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -65,6 +66,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
     private  volatile MqttWriter mqttWriter;
     private SslManagerInterface sslManager;
     private boolean configLoaded = false;
+    private boolean lastConnected = false;
     private final ScheduledExecutorService reconnectExecutor =
         Executors.newSingleThreadScheduledExecutor(r ->
                 new Thread(r, "mqtt-reconnect"));
@@ -94,7 +96,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         // decide/parse which channels it hast to log
         channelsToLog.clear();
         for (LogChannel logChannel : logChannels) {
-            if (logChannel.getLoggingSettings().contains(LOGGER_ID)) {
+            if (MqttChannelLogSettings.isLoggedBy(logChannel.getLoggingSettings(), LOGGER_ID)) {
                 MqttLogChannel mqttLogChannel = new MqttLogChannel(logChannel);
                 channelsToLog.put(logChannel.getId(), mqttLogChannel);
             }
@@ -102,6 +104,22 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         printChannelsConsideredByMqttLogger(logChannels);
     }
 
+    @Override
+    public boolean updateChannelsToLog(List<LogChannel> changedChannels, List<String> removedChannelIds) {
+        for (String channelId : removedChannelIds) {
+            channelsToLog.remove(channelId);
+        }
+        for (LogChannel logChannel : changedChannels) {
+            if (MqttChannelLogSettings.isLoggedBy(logChannel.getLoggingSettings(), LOGGER_ID)) {
+                channelsToLog.put(logChannel.getId(), new MqttLogChannel(logChannel));
+            }
+            else {
+                channelsToLog.remove(logChannel.getId());
+            }
+        }
+        return true;
+    }
+
     /**
      * mainly for debugging purposes
      */
@@ -113,7 +131,7 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         StringBuilder nonMqttLogChannelsSb = new StringBuilder();
         nonMqttLogChannelsSb.append("channels not configured for mqttlogger:\n");
         for (LogChannel logChannel : logChannels) {
-            if (!logChannel.getLoggingSettings().contains(LOGGER_ID)) {
+            if (!MqttChannelLogSettings.isLoggedBy(logChannel.getLoggingSettings(), LOGGER_ID)) {
                 nonMqttLogChannelsSb.append(logChannel.getId()).append("\n");
             }
         }
@@ -180,7 +198,17 @@ public class MqttLogger implements DataLoggerService, ManagedService {
         // MqttLogMsgBuilder.build() can be verified. It takes the input from
         // logger.log() method, processes it
         // and creates ready to use messages for the mqttWriter
-        MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, availableParsers.get(parser));
+        ParserService parserService = availableParsers.get(parser);
+
+        // parsers which send state only once (e.g. the binary schema) have to resend it when the broker connection
+        // changed, since messages may have been lost or are buffered for a later resend
+        boolean connected = mqttWriter.isConnected();
+        if (connected != lastConnected) {
+            lastConnected = connected;
+            parserService.reset();
+        }
+
+        MqttLogMsgBuilder logMsgBuilder = new MqttLogMsgBuilder(channelsToLog, parserService);
         List<MqttLogMsg> logMessages = logMsgBuilder.buildLogMsg(logRecordsForMqttLogger, isLogMultiple);
         for (MqttLogMsg msg : logMessages) {
             logTraceMqttMessage(msg);
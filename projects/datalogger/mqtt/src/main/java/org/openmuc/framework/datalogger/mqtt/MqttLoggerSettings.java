@@ -58,9 +58,9 @@ public class MqttLoggerSettings extends GenericSettings {
                 properties.put(USERNAME, new ServiceProperty(USERNAME, "name of your MQTT account", null, false));
                 properties.put(PASSWORD, new ServiceProperty(PASSWORD, "password of your MQTT account", null, false));
                 properties.put(CLIENT_ID, new ServiceProperty(CLIENT_ID, "MQTT client identifier", null, false));
-                properties.put(PARSER,
-                                new ServiceProperty(PARSER, "identifier of needed parser implementation", "openmuc",
-                                                true));
+                properties.put(PARSER, new ServiceProperty(PARSER,
+                                "identifier of needed parser implementation: openmuc, custom or binary", "openmuc",
+                                true));
                 properties.put(WEB_SOCKET,
                                 new ServiceProperty(WEB_SOCKET, "usage of WebSocket true/false", "false", true));
 
@@ -31,6 +31,8 @@ public class MqttChannelLogSettings {
 
     private static final String LOGGER_SEPARATOR = ";";
     private static final String ELEMENT_SEPARATOR = ",";
+    private static final String ID_SEPARATOR = ":";
+    private static final String MQTT_LOGGER_ID = "mqttlogger";
 
     public static String getTopic(String logSettings) {
         if (logSettings == null || logSettings.isEmpty()) {
@@ -41,6 +43,30 @@ public class MqttChannelLogSettings {
         }
     }
 
+    /**
+     * Checks whether the logging settings of a channel contain a segment of the given logger, e.g.
+     * <code>amqplogger:queue=a;mqttlogger:topic=b</code> contains <code>mqttlogger</code> but not
+     * <code>logger</code>.
+     *
+     * @param logSettings
+     *            the logging settings of a channel, may be <code>null</code>
+     * @param loggerId
+     *            the ID of the logger
+     * @return <code>true</code> if one of the segments belongs to the logger
+     */
+    public static boolean isLoggedBy(String logSettings, String loggerId) {
+        if (logSettings == null || logSettings.isEmpty()) {
+            return false;
+        }
+        return Arrays.stream(logSettings.split(LOGGER_SEPARATOR)).anyMatch(seg -> isSegmentOf(seg, loggerId));
+    }
+
+    private static boolean isSegmentOf(String segment, String loggerId) {
+        int separator = segment.indexOf(ID_SEPARATOR);
+        String segmentLoggerId = separator < 0 ? segment : segment.substring(0, separator);
+        return segmentLoggerId.trim().equals(loggerId);
+    }
+
     // Example logSettings
     // 1 <logSettings">amqplogger:queue=my/queue,setting=true,test=123;mqttlogger:topic=/my/topic/</logSettings>
     // 2 amqplogger:queue=my/queue,setting=true,test=123; mqttlogger:topic=/my/topic/
@@ -49,7 +75,7 @@ public class MqttChannelLogSettings {
 
     private static String parseTopic(String logSettings) {
         String mqttLoggerSegment = Arrays.stream(logSettings.split(LOGGER_SEPARATOR))
-                .filter(seg -> seg.contains("mqttlogger"))
+                .filter(seg -> isSegmentOf(seg, MQTT_LOGGER_ID))
                 .findFirst()
                 .orElseThrow(() -> new InvalidKeyException("logSettings: mqttlogger id is missing"));
 
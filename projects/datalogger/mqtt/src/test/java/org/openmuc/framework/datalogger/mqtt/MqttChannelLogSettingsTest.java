@@ -21,6 +21,7 @@
 
 package org.openmuc.framework.datalogger.mqtt;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -54,4 +55,20 @@ public class MqttChannelLogSettingsTest {
         });
     }
 
+    @Test
+    public void testIsLoggedBy() {
+        String logSettings = "amqplogger:queue=mqttlogger/queue; mqttlogger:topic=/my/topic/";
+        assertTrue(MqttChannelLogSettings.isLoggedBy(logSettings, "mqttlogger"));
+        assertTrue(MqttChannelLogSettings.isLoggedBy("mqttlogger", "mqttlogger"));
+        assertFalse(MqttChannelLogSettings.isLoggedBy("amqplogger:queue=mqttlogger/queue", "mqttlogger"));
+        assertFalse(MqttChannelLogSettings.isLoggedBy("mymqttlogger:topic=a", "mqttlogger"));
+        assertFalse(MqttChannelLogSettings.isLoggedBy(null, "mqttlogger"));
+    }
+
+    @Test
+    public void testTopicOfOtherLoggerIsIgnored() {
+        String logSettings = "amqplogger:queue=mqttlogger/queue,topic=wrong;mqttlogger:topic=/my/topic/";
+        assertTrue(MqttChannelLogSettings.getTopic(logSettings).equals("/my/topic/"));
+    }
+
 }
@@ -27,7 +27,7 @@ import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
@@ -35,21 +35,27 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public final class FileObjectProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(FileObjectProxy.class);
+    private static final Pattern DAY_FOLDER_PATTERN = Pattern.compile("\\d{8}");
 
     private final File rootNode;
     private HashMap<String, FileObjectList> openFilesHM;
-    private final HashMap<String, String> encodedLabels;
+    private final Map<String, String> encodedLabels;
+    private final MappedFileCache mappedFiles;
     private final SimpleDateFormat sdf;
     private final Date date;
     private final Timer timer;
@@ -88,7 +94,7 @@ public final class FileObjectProxy {
         rootNode = new File(rootNodePath);
         rootNode.mkdirs();
         openFilesHM = new HashMap<>();
-        encodedLabels = new HashMap<>();
+        encodedLabels = new ConcurrentHashMap<>();
 
         loadDays();
 
@@ -130,6 +136,13 @@ public final class FileObjectProxy {
             max_open_files = SlotsDb.MAX_OPEN_FOLDERS_DEFAULT;
             logger.info("Maximum open Files for Database is set to: " + max_open_files + " (default).");
         }
+
+        int maxMappedFiles = SlotsDb.MAX_MAPPED_FILES_DEFAULT;
+        if (SlotsDb.MAX_MAPPED_FILES != null) {
+            maxMappedFiles = Integer.parseInt(SlotsDb.MAX_MAPPED_FILES);
+        }
+        logger.info("Maximum memory mapped Files for reading is set to: " + maxMappedFiles);
+        mappedFiles = new MappedFileCache(maxMappedFiles);
     }
 
     /*
@@ -254,6 +267,7 @@ public final class FileObjectProxy {
     }
 
     private synchronized void deleteRecursiveFolder(File folder) {
+        mappedFiles.clear();
         if (folder.exists()) {
             for (File f : folder.listFiles()) {
                 if (f.isDirectory()) {
@@ -396,32 +410,51 @@ public final class FileObjectProxy {
         return encodedLabel;
     }
 
-    public synchronized Record read(String label, long timestamp) throws IOException {
-        // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
-        // //encodes label to supported String for Filenames.
+    /**
+     * Reads the value stored for a timestamp. Reading does not lock the database, so values which are not flushed to
+     * disk yet are not visible.
+     * 
+     * @param label
+     *            the label (channel ID)
+     * @param timestamp
+     *            the timestamp
+     * @return the record or <code>null</code> if no value is stored for the timestamp
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public Record read(String label, long timestamp) throws IOException {
         label = encodeLabel(label);
 
-        String strDate = getStrDate(timestamp);
-
-        if (!openFilesHM.containsKey(label + strDate)) {
-            controlHashtableSize();
-            FileObjectList fol = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + label);
-            openFilesHM.put(label + strDate, fol);
-        }
-        FileObject toReadFrom = openFilesHM.get(label + strDate).getFileObjectForTimestamp(timestamp);
-        if (toReadFrom != null) {
-            return toReadFrom.read(timestamp); // null if no value for timestamp
-                                               // is available
+        for (File dayFolder : getDayFoldersBetween(timestamp, timestamp)) {
+            for (MappedFileObject file : getMappedFiles(new File(dayFolder, label))) {
+                if (file.getStartTimeStamp() <= timestamp && file.getTimestampForLatestValue() >= timestamp) {
+                    return file.read(timestamp); // null if no value for timestamp is available
+                }
+            }
         }
         return null;
     }
 
-    public synchronized List<Record> read(String label, long start, long end) throws IOException {
+    /**
+     * Reads all values stored between start and end timestamp. Closed files are served from cached memory mappings,
+     * reading does not lock the database, so values which are not flushed to disk yet are not visible.
+     * 
+     * @param label
+     *            the label (channel ID)
+     * @param start
+     *            start time stamp
+     * @param end
+     *            end time stamp
+     * @return the records sorted by timestamp
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public List<Record> read(String label, long start, long end) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: read(" + label + ", " + start + ", " + end + ")");
         }
 
-        List<Record> toReturn = new Vector<>();
+        List<Record> toReturn = new ArrayList<>();
 
         if (start > end) {
             logger.trace("Invalid Read Request: startTS > endTS");
@@ -429,8 +462,10 @@ public final class FileObjectProxy {
         }
 
         if (start == end) {
-            toReturn.add(read(label, start)); // let other read function handle.
-            toReturn.removeAll(Collections.singleton(null));
+            Record record = read(label, start); // let other read function handle.
+            if (record != null) {
+                toReturn.add(record);
+            }
             return toReturn;
         }
         if (end > 50000000000000L) { /*
@@ -439,110 +474,62 @@ public final class FileObjectProxy {
             end = 50000000000000L;
         }
 
-        // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
-        // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
-        String strStartDate = getStrDate(start);
-        String strEndDate = getStrDate(end);
-
-        List<FileObject> toRead = new Vector<>();
-
-        if (!strStartDate.equals(strEndDate)) {
-            logger.trace("Reading Multiple Days. Scanning for Folders.");
-            List<FileObjectList> days = new Vector<>();
-
-            /*
-             * Check for Folders matching criteria: Folder contains data between start & end timestamp. Folder contains
-             * label.
-             */
-            String strSubfolder;
-            for (File folder : rootNode.listFiles()) {
-                if (folder.isDirectory()) {
-                    if (isFolderBetweenStartAndEnd(folder.getName(), start, end)) {
-                        if (Arrays.asList(folder.list()).contains(label)) {
-                            strSubfolder = rootNode.getPath() + "/" + folder.getName() + "/" + label;
-                            days.add(new FileObjectList(strSubfolder));
-                            logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
-                        }
-                    }
-                }
+        /*
+         * Day folders and the files within a folder are sorted, so the records are added in chronological order.
+         */
+        for (File dayFolder : getDayFoldersBetween(start, end)) {
+            for (MappedFileObject file : getMappedFiles(new File(dayFolder, label))) {
+                file.read(start, end, toReturn);
             }
-            /*
-             * Sort days, because rootNode.listFiles() is unsorted. FileObjectLists MUST be sorted, otherwise data
-             * output wouldn't be sorted.
-             */
-            Collections.sort(days, new Comparator<FileObjectList>() {
+        }
 
-                @Override
-                public int compare(FileObjectList f1, FileObjectList f2) {
-                    return Long.valueOf(f1.getFirstTS()).compareTo(f2.getFirstTS());
-                }
-            });
+        logger.trace("Selected " + SlotsDb.FILE_EXTENSION + " files contain " + toReturn.size() + " Values.");
+        return toReturn;
+    }
 
-            /*
-             * Create a list with all file-objects that must be read for this reading request.
-             */
-            if (days.size() == 0) {
-                return toReturn;
-            }
-            else if (days.size() == 1) {
-                toRead.addAll(days.get(0).getFileObjectsFromTo(start, end));
-            }
-            else { // days.size()>1
-                toRead.addAll(days.get(0).getFileObjectsStartingAt(start));
-                for (int i = 1; i < days.size() - 1; i++) {
-                    toRead.addAll(days.get(i).getAllFileObjects());
-                }
-                toRead.addAll(days.get(days.size() - 1).getFileObjectsUntil(end));
-            }
-            toRead.removeAll(Collections.singleton(null));
-        }
-        else { // Start == End Folder -> only 1 FileObjectList must be read.
-            File folder = new File(rootNode.getPath() + "/" + strStartDate + "/" + label);
-            FileObjectList fol;
-            if (folder.list() != null) {
-                if (folder.list().length > 0) { // Are there Files in the
-                                                // folder, that should be read?
-                    fol = new FileObjectList(rootNode.getPath() + "/" + strStartDate + "/" + label);
-                    toRead.addAll(fol.getFileObjectsFromTo(start, end));
-                }
-            }
+    /**
+     * Reads all values stored between start and end timestamp into primitive columns. See
+     * {@link #read(String, long, long)}.
+     * 
+     * @param label
+     *            the label (channel ID)
+     * @param start
+     *            start time stamp
+     * @param end
+     *            end time stamp
+     * @return the values sorted by timestamp
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public RecordColumns readColumns(String label, long start, long end) throws IOException {
+        RecordColumns toReturn = new RecordColumns();
+
+        if (start > end) {
+            logger.trace("Invalid Read Request: startTS > endTS");
+            return toReturn;
         }
-        logger.trace("Found " + toRead.size() + " " + SlotsDb.FILE_EXTENSION + " files to read from.");
 
-        /*
-         * Read all FileObjects: first (2nd,3rd,4th....n-1) last first and last will be read separately, to not exceed
-         * timestamp range.
-         */
-        if (toRead != null) {
-            if (toRead.size() > 1) {
-                toReturn.addAll(toRead.get(0).read(start, toRead.get(0).getTimestampForLatestValue()));
-                toRead.get(0).close();
-                for (int i = 1; i < toRead.size() - 1; i++) {
-                    toReturn.addAll(toRead.get(i).readFully());
-                    toRead.get(i).close();
-                }
-                toReturn.addAll(
-                        toRead.get(toRead.size() - 1).read(toRead.get(toRead.size() - 1).getStartTimeStamp(), end));
-                toRead.get(toRead.size() - 1).close();
+        if (start == end) {
+            toReturn.add(read(label, start));
+            return toReturn;
+        }
+        if (end > 50000000000000L) {
+            end = 50000000000000L;
+        }
 
-                /*
-                 * Some Values might be null -> remove
-                 */
-                toReturn.removeAll(Collections.singleton(null));
+        label = encodeLabel(label);
 
-            }
-            else if (toRead.size() == 1) { // single FileObject
-                toReturn.addAll(toRead.get(0).read(start, end));
-                toReturn.removeAll(Collections.singleton(null));
+        for (File dayFolder : getDayFoldersBetween(start, end)) {
+            for (MappedFileObject file : getMappedFiles(new File(dayFolder, label))) {
+                file.read(start, end, toReturn);
             }
         }
-        logger.trace("Selected " + SlotsDb.FILE_EXTENSION + " files contain " + toReturn.size() + " Values.");
         return toReturn;
     }
 
-    public synchronized Record readLatest(String label) throws IOException {
+    public Record readLatest(String label) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: readLatest(" + label + ")");
         }
@@ -551,95 +538,89 @@ public final class FileObjectProxy {
         /*
          * Checks for the folder with the latest day
          */
-        long latestDay = 0;
         File latestFolder = null;
-        for (File folder : rootNode.listFiles()) {
-            if (folder.isDirectory()) {
-                if (getFolderTimestamp(folder.getName()) > latestDay) {
-                    latestFolder = folder;
-                    latestDay = getFolderTimestamp(folder.getName());
-                }
+        for (File folder : listDayFolders()) {
+            if (latestFolder == null || folder.getName().compareTo(latestFolder.getName()) > 0) {
+                latestFolder = folder;
             }
         }
         if (latestFolder == null) {
             return null;
         }
 
-        /*
-         * Get list of all fileObjects
-         */
-        String strSubfolder;
-        FileObjectList fileObjects = null;
-        if (Arrays.asList(latestFolder.list()).contains(label)) {
-            strSubfolder = rootNode.getPath() + "/" + latestFolder.getName() + "/" + label;
-            fileObjects = new FileObjectList(strSubfolder);
-            logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
-        }
-
         /*
          * For each file get the latest Record and compare those
          */
-        List<FileObject> toRead = new Vector<>();
-        toRead = fileObjects.getAllFileObjects();
         long latestTimestamp = 0;
         Record latestRecord = null;
-        for (FileObject file : toRead) {
+        for (MappedFileObject file : getMappedFiles(new File(latestFolder, label))) {
             long timestamp = file.getTimestampForLatestValue();
             if (timestamp > latestTimestamp) {
                 latestTimestamp = timestamp;
-                latestRecord = file.read(timestamp); // function calculates closest available timestamp to given
-                                                     // timestamp. This should always be equal though
+                latestRecord = file.read(timestamp);
             }
         }
         return latestRecord;
     }
 
-    /**
-     * Return timestamp of the folder with given name
-     * 
-     * @param name
-     *            of the folder
-     * @return timestamp in ms
+    /*
+     * Lists all day folders. Their yyyyMMdd names sort in chronological order. Used by readers, so it must not use the
+     * shared date format of the writer.
      */
-    private long getFolderTimestamp(String name) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+    private List<File> listDayFolders() {
+        List<File> dayFolders = new ArrayList<>();
+        File[] folders = rootNode.listFiles();
+        if (folders != null) {
+            for (File folder : folders) {
+                if (DAY_FOLDER_PATTERN.matcher(folder.getName()).matches() && folder.isDirectory()) {
+                    dayFolders.add(folder);
+                }
+            }
         }
-        return sdf.getCalendar().getTimeInMillis();
+        return dayFolders;
     }
 
-    /**
-     * Parses a Timestamp in Milliseconds from a String in yyyyMMdd Format <br>
-     * e.g.: 25.Sept.2011: 20110925 <br>
-     * would return: 1316901600000 ms. equal to (25.09.2011 - 00:00:00) <br>
-     * 
-     * @param name
-     *            in "yyyyMMdd" Format
-     * @param start
-     *            start time stamp
-     * @param end
-     *            end time stamp
-     * @return boolean true if yes else false
+    /*
+     * Returns the sorted day folders which may contain data between start and end timestamp.
      */
-    private boolean isFolderBetweenStartAndEnd(String name, long start, long end) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
-        }
-        if (start <= sdf.getCalendar().getTimeInMillis() + 86399999 && sdf.getCalendar().getTimeInMillis() <= end) { // if
-                                                                                                                     // start
-                                                                                                                     // <=
-                                                                                                                     // folder.lastTSofDay
-                                                                                                                     // &&
-                                                                                                                     // folder.firstTSofDay
-                                                                                                                     // <=
-                                                                                                                     // end
-            return true;
-        }
-        return false;
+    private List<File> getDayFoldersBetween(long start, long end) {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("yyyyMMdd");
+        String firstDay = dayFormat.format(new Date(Math.max(start, 0)));
+        String lastDay = dayFormat.format(new Date(Math.max(end, 0)));
+
+        List<File> dayFolders = new ArrayList<>();
+        for (File folder : listDayFolders()) {
+            String day = folder.getName();
+            if (day.compareTo(firstDay) >= 0 && day.compareTo(lastDay) <= 0) {
+                dayFolders.add(folder);
+            }
+        }
+        Collections.sort(dayFolders);
+        return dayFolders;
+    }
+
+    /*
+     * Returns the mapped files of a label folder sorted by their start timestamp. Usually there is only one file, there
+     * might be more if the logging interval was reconfigured.
+     */
+    private List<MappedFileObject> getMappedFiles(File labelFolder) throws IOException {
+        List<MappedFileObject> toReturn = new ArrayList<>(1);
+        File[] files = labelFolder.listFiles();
+        if (files == null) {
+            return toReturn;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SlotsDb.FILE_EXTENSION)) {
+                MappedFileObject mappedFile = mappedFiles.get(file);
+                if (mappedFile != null) {
+                    toReturn.add(mappedFile);
+                }
+            }
+        }
+        if (toReturn.size() > 1) {
+            toReturn.sort(Comparator.comparingLong(MappedFileObject::getStartTimeStamp));
+        }
+        return toReturn;
     }
 
     /*
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of memory mapped slots files.<br>
+ * <br>
+ * Files of past days are mapped only once. When records were appended to the file of the current day, the cached
+ * mapping is extended by the new records and only remapped after it grew by {@link MappedFileObject#MAX_TAIL_SIZE}.
+ * Mapping is done outside of the cache lock, readers never wait for each other or for the writer.
+ */
+final class MappedFileCache {
+
+    private final Map<String, MappedFileObject> files;
+
+    /**
+     * @param maxMappedFiles
+     *            maximum number of mappings kept
+     */
+    MappedFileCache(final int maxMappedFiles) {
+        files = new LinkedHashMap<String, MappedFileObject>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedFileObject> eldest) {
+                return size() > maxMappedFiles;
+            }
+        };
+    }
+
+    /**
+     * Returns a mapping of the complete records of the given file.
+     * 
+     * @param file
+     *            the slots file
+     * @return the mapped file or <code>null</code> if the file has no complete header
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    MappedFileObject get(File file) throws IOException {
+        String key = file.getPath();
+        long mappedSize = MappedFileObject.getMappedSize(file.length());
+
+        MappedFileObject cached;
+        synchronized (files) {
+            cached = files.get(key);
+        }
+        if (cached != null && cached.getSize() == mappedSize) {
+            return cached;
+        }
+
+        MappedFileObject mapped;
+        if (cached != null && cached.getSize() < mappedSize) {
+            mapped = cached.extend(file, mappedSize);
+        }
+        else {
+            mapped = MappedFileObject.map(file);
+        }
+        if (mapped != null) {
+            synchronized (files) {
+                files.put(key, mapped);
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Drops all mappings, e.g. before files are deleted. The mappings are released once they are garbage collected.
+     */
+    void clear() {
+        synchronized (files) {
+            files.clear();
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
+
+/**
+ * Read-only view of a slots file backed by a memory mapping.<br>
+ * <br>
+ * Only the records which were completely written when the file was mapped or extended are visible. Records appended
+ * after the mapping are read into a small heap buffer by {@link #extend(File, long)}, so the file of the current day
+ * is not remapped every time it grew. The view only uses absolute reads, so it can be shared by concurrent readers and
+ * never interferes with the {@link FileObject} appending to the same file.
+ */
+final class MappedFileObject {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 9;
+    private static final ByteBuffer EMPTY_TAIL = ByteBuffer.allocate(0);
+
+    /**
+     * Maximum size of the records read after the mapping before the file is mapped again.
+     */
+    static final int MAX_TAIL_SIZE = 64 * 1024 / RECORD_SIZE * RECORD_SIZE;
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer tail;
+    private final long startTimeStamp;
+    private final long storagePeriod;
+    private final int recordCount;
+
+    private MappedFileObject(ByteBuffer buffer, ByteBuffer tail) {
+        this.buffer = buffer;
+        this.tail = tail;
+        startTimeStamp = buffer.getLong(0);
+        storagePeriod = buffer.getLong(8);
+        recordCount = (buffer.capacity() + tail.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Maps the complete records of a slots file.
+     * 
+     * @param file
+     *            the slots file
+     * @return the mapped file or <code>null</code> if the file has no complete header
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    static MappedFileObject map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = getMappedSize(channel.size());
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            return new MappedFileObject(channel.map(MapMode.READ_ONLY, 0, size), EMPTY_TAIL);
+        }
+    }
+
+    /**
+     * Returns a view which additionally contains the records appended to the file since this view was created. The
+     * mapping is shared, only the new records are read. If too many records were appended, the file is mapped again.
+     * 
+     * @param file
+     *            the slots file of this view
+     * @param size
+     *            the size of the file's complete records, see {@link #getMappedSize(long)}, must not be smaller than
+     *            {@link #getSize()}
+     * @return the extended view
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    MappedFileObject extend(File file, long size) throws IOException {
+        long tailSize = size - buffer.capacity();
+        if (tailSize > MAX_TAIL_SIZE) {
+            return map(file);
+        }
+
+        ByteBuffer newTail = ByteBuffer.allocate((int) tailSize);
+        newTail.put(tail.duplicate());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = getSize();
+            while (newTail.hasRemaining()) {
+                int read = channel.read(newTail, position);
+                if (read < 0) {
+                    // the file was truncated or replaced in the meantime
+                    return map(file);
+                }
+                position += read;
+            }
+        }
+        // the tail is only read with absolute gets, a later extension copies it from position 0
+        newTail.flip();
+        return new MappedFileObject(buffer, newTail);
+    }
+
+    /**
+     * Returns the number of bytes of a file with the given length that hold the header and complete records.
+     * 
+     * @param fileLength
+     *            length of the file in bytes
+     * @return size of the mapping in bytes
+     */
+    static long getMappedSize(long fileLength) {
+        if (fileLength < HEADER_SIZE) {
+            return fileLength;
+        }
+        return HEADER_SIZE + (fileLength - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    /**
+     * @return the number of bytes which are memory mapped
+     */
+    long getMappedSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return the number of bytes of the file visible in this view
+     */
+    long getSize() {
+        return buffer.capacity() + tail.capacity();
+    }
+
+    long getStartTimeStamp() {
+        return startTimeStamp;
+    }
+
+    long getStoringPeriod() {
+        return storagePeriod;
+    }
+
+    long getTimestampForLatestValue() {
+        return startTimeStamp + (recordCount - 1) * storagePeriod;
+    }
+
+    /*
+     * Rounds to the closest slot like FileObject.getBytePosition().
+     */
+    private long getSlot(long timestamp) {
+        if (storagePeriod <= 0) {
+            return 0;
+        }
+        return Math.round((double) (timestamp - startTimeStamp) / storagePeriod);
+    }
+
+    /**
+     * Returns the record stored in the slot closest to the given timestamp.
+     * 
+     * @param timestamp
+     *            the searched timestamp
+     * @return the record or <code>null</code> if no value is stored for the timestamp
+     */
+    Record read(long timestamp) {
+        long slot = getSlot(timestamp);
+        if (slot < 0 || slot >= recordCount) {
+            return null;
+        }
+        return readSlot((int) slot);
+    }
+
+    /**
+     * Adds the records stored between start and end timestamp to the given list.
+     * 
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param records
+     *            the list the records are added to
+     */
+    void read(long start, long end, List<Record> records) {
+        long lastSlot = getLastSlot(end);
+        for (long slot = getFirstSlot(start); slot <= lastSlot; slot++) {
+            Record record = readSlot((int) slot);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+    }
+
+    /**
+     * Adds the values stored between start and end timestamp to the given columns without creating record objects.
+     * 
+     * @param start
+     *            start timestamp
+     * @param end
+     *            end timestamp
+     * @param columns
+     *            the columns the values are added to
+     */
+    void read(long start, long end, RecordColumns columns) {
+        long lastSlot = getLastSlot(end);
+        for (long slot = getFirstSlot(start); slot <= lastSlot; slot++) {
+            int position = HEADER_SIZE + (int) slot * RECORD_SIZE;
+            double value = getDouble(position);
+            if (!Double.isNaN(value)) {
+                columns.add(startTimeStamp + slot * storagePeriod, value, getFlag(position));
+            }
+        }
+    }
+
+    private long getFirstSlot(long start) {
+        return Math.max(getSlot(start), 0);
+    }
+
+    private long getLastSlot(long end) {
+        return Math.min(getSlot(end), recordCount - 1);
+    }
+
+    private Record readSlot(int slot) {
+        int position = HEADER_SIZE + slot * RECORD_SIZE;
+        double value = getDouble(position);
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        return new Record(new DoubleValue(value), startTimeStamp + slot * storagePeriod,
+                Flag.newFlag(getFlag(position)));
+    }
+
+    /*
+     * Records never span the mapping and the tail since both hold complete records only.
+     */
+    private double getDouble(int position) {
+        if (position < buffer.capacity()) {
+            return buffer.getDouble(position);
+        }
+        return tail.getDouble(position - buffer.capacity());
+    }
+
+    private byte getFlag(int recordPosition) {
+        if (recordPosition < buffer.capacity()) {
+            return buffer.get(recordPosition + 8);
+        }
+        return tail.get(recordPosition - buffer.capacity() + 8);
+    }
+
+}
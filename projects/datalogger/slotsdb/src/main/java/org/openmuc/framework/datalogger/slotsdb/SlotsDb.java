@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
@@ -67,6 +68,13 @@ public final class SlotsDb implements DataLoggerService {
     public static final String MAX_OPEN_FOLDERS = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".max_open_folders");
     public static final int MAX_OPEN_FOLDERS_DEFAULT = 512;
+    /*
+     * limit of memory mapped files kept open for reading. Files of past days are mapped once and served from the
+     * mapping until they are evicted.
+     */
+    public static final String MAX_MAPPED_FILES = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".max_mapped_files");
+    public static final int MAX_MAPPED_FILES_DEFAULT = 256;
     /*
      * configures the data flush period. The less you flush, the faster SLOTSDB will be. unset this System Property (or
      * set to 0) to flush data directly to disk.
@@ -124,6 +132,11 @@ public final class SlotsDb implements DataLoggerService {
         return fileObjectProxy.read(channelId, startTime, endTime);
     }
 
+    @Override
+    public RecordColumns getRecordColumns(String channelId, long startTime, long endTime) throws IOException {
+        return fileObjectProxy.readColumns(channelId, startTime, endTime);
+    }
+
     @Override
     public Record getLatestLogRecord(String channelId) throws IOException {
         return fileObjectProxy.readLatest(channelId);
@@ -137,6 +150,17 @@ public final class SlotsDb implements DataLoggerService {
         }
     }
 
+    @Override
+    public boolean updateChannelsToLog(List<LogChannel> changedChannels, List<String> removedChannelIds) {
+        for (String channelId : removedChannelIds) {
+            loggingIntervalsById.remove(channelId);
+        }
+        for (LogChannel channel : changedChannels) {
+            loggingIntervalsById.put(channel.getId(), channel.getLoggingInterval());
+        }
+        return true;
+    }
+
     @Override
     public void log(List<LoggingRecord> containers, long timestamp) {
         for (LoggingRecord container : containers) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
+
+public class FileObjectProxyTest {
+
+    private static final String CHANNEL = "power/1";
+    private static final long PERIOD = 1000;
+
+    private File directory;
+    private FileObjectProxy proxy;
+    private long start;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("slotsdb").toFile();
+        proxy = new FileObjectProxy(directory.getPath());
+        // noon of a fixed day, so all values are stored in the same day folder in every time zone
+        start = 1_600_000_000_000L / 86_400_000L * 86_400_000L + 12 * 3_600_000L;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        deleteRecursive(directory);
+    }
+
+    @Test
+    public void testReadsOfGrowingFile() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            append(i, i);
+        }
+
+        assertEquals(1.0, proxy.read(CHANNEL, start + PERIOD).getValue().asDouble());
+        assertEquals(3, proxy.read(CHANNEL, start, start + 10 * PERIOD).size());
+        assertEquals(start + 2 * PERIOD, proxy.readLatest(CHANNEL).getTimestamp().longValue());
+
+        // the file of the current day grows after it was mapped
+        append(3, 3);
+        append(4, 4);
+
+        List<Record> records = proxy.read(CHANNEL, start, start + 10 * PERIOD);
+        assertEquals(5, records.size());
+        assertEquals(4.0, records.get(4).getValue().asDouble());
+        assertEquals(Flag.VALID, records.get(4).getFlag());
+        assertEquals(start + 4 * PERIOD, proxy.readLatest(CHANNEL).getTimestamp().longValue());
+
+        RecordColumns columns = proxy.readColumns(CHANNEL, start + PERIOD, start + 3 * PERIOD);
+        assertEquals(3, columns.size());
+        assertEquals(start + PERIOD, columns.getTimestamp(0));
+        assertEquals(3.0, columns.getValue(2));
+    }
+
+    @Test
+    public void testMissingSlotsAreNotReturned() throws IOException {
+        append(0, 1.0);
+        append(3, 4.0);
+
+        assertNull(proxy.read(CHANNEL, start + PERIOD));
+        List<Record> records = proxy.read(CHANNEL, start, start + 3 * PERIOD);
+        assertEquals(2, records.size());
+        assertEquals(start + 3 * PERIOD, records.get(1).getTimestamp().longValue());
+    }
+
+    @Test
+    public void testUnknownChannelIsEmpty() throws IOException {
+        append(0, 1.0);
+
+        assertNull(proxy.read("unknown", start));
+        assertEquals(0, proxy.read("unknown", start, start + PERIOD).size());
+        assertNull(proxy.readLatest("unknown"));
+    }
+
+    private void append(int slot, double value) throws IOException {
+        proxy.appendValue(CHANNEL, value, start + slot * PERIOD, Flag.VALID.getCode(), PERIOD);
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MappedFileCacheTest {
+
+    private static final long START = 1_600_000_000_000L;
+    private static final long PERIOD = 1000;
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("slotsdb-cache").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testUnchangedFileIsMappedOnce() throws IOException {
+        File file = createFile("a", 3);
+        MappedFileCache cache = new MappedFileCache(4);
+
+        MappedFileObject mapped = cache.get(file);
+        assertSame(mapped, cache.get(file));
+    }
+
+    @Test
+    public void testGrowingFileIsExtendedInsteadOfRemapped() throws IOException {
+        File file = createFile("a", 3);
+        MappedFileCache cache = new MappedFileCache(4);
+        MappedFileObject mapped = cache.get(file);
+
+        MappedFileObjectTest.appendRecords(file, 3, 2);
+        MappedFileObject extended = cache.get(file);
+        assertNotSame(mapped, extended);
+        assertEquals(mapped.getMappedSize(), extended.getMappedSize());
+        assertEquals(START + 4 * PERIOD, extended.getTimestampForLatestValue());
+        assertEquals(4.0, extended.read(START + 4 * PERIOD).getValue().asDouble());
+
+        // the extended view is cached as long as the file does not grow again
+        assertSame(extended, cache.get(file));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedMappingIsEvicted() throws IOException {
+        File fileA = createFile("a", 1);
+        File fileB = createFile("b", 1);
+        File fileC = createFile("c", 1);
+        MappedFileCache cache = new MappedFileCache(2);
+
+        MappedFileObject mappedA = cache.get(fileA);
+        MappedFileObject mappedB = cache.get(fileB);
+        assertSame(mappedA, cache.get(fileA));
+
+        cache.get(fileC);
+        assertSame(mappedA, cache.get(fileA));
+        assertNotSame(mappedB, cache.get(fileB));
+    }
+
+    @Test
+    public void testClearDropsMappings() throws IOException {
+        File file = createFile("a", 1);
+        MappedFileCache cache = new MappedFileCache(2);
+        MappedFileObject mapped = cache.get(file);
+
+        cache.clear();
+        assertNotSame(mapped, cache.get(file));
+    }
+
+    private File createFile(String name, int recordCount) throws IOException {
+        File file = new File(directory, name + SlotsDb.FILE_EXTENSION);
+        MappedFileObjectTest.writeFile(file, START, PERIOD, 0, recordCount);
+        return file;
+    }
+
+}
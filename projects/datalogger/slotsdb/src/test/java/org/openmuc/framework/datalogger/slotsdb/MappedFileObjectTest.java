@@ -0,0 +1,193 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
+
+public class MappedFileObjectTest {
+
+    private static final long START = 1_600_000_000_000L;
+    private static final long PERIOD = 1000;
+
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile("mapped", SlotsDb.FILE_EXTENSION).toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testHeaderAndRecordOffsets() throws IOException {
+        writeFile(file, START, PERIOD, 0, 3);
+        MappedFileObject mapped = MappedFileObject.map(file);
+
+        assertEquals(START, mapped.getStartTimeStamp());
+        assertEquals(PERIOD, mapped.getStoringPeriod());
+        assertEquals(16 + 3 * 9, mapped.getSize());
+        assertEquals(START + 2 * PERIOD, mapped.getTimestampForLatestValue());
+
+        Record record = mapped.read(START + PERIOD);
+        assertEquals(1.0, record.getValue().asDouble());
+        assertEquals(START + PERIOD, record.getTimestamp().longValue());
+        assertEquals(Flag.VALID, record.getFlag());
+
+        // timestamps are rounded to the closest slot
+        assertEquals(2.0, mapped.read(START + 2 * PERIOD - PERIOD / 3).getValue().asDouble());
+        assertNull(mapped.read(START - PERIOD));
+        assertNull(mapped.read(START + 3 * PERIOD));
+    }
+
+    @Test
+    public void testNaNSlotsAreSkipped() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeLong(START);
+            out.writeLong(PERIOD);
+            writeRecord(out, 0.5);
+            writeRecord(out, Double.NaN);
+            writeRecord(out, 2.5);
+        }
+        MappedFileObject mapped = MappedFileObject.map(file);
+
+        assertNull(mapped.read(START + PERIOD));
+        List<Record> records = new ArrayList<>();
+        mapped.read(START, START + 2 * PERIOD, records);
+        assertEquals(2, records.size());
+        assertEquals(START + 2 * PERIOD, records.get(1).getTimestamp().longValue());
+
+        RecordColumns columns = new RecordColumns();
+        mapped.read(START, START + 2 * PERIOD, columns);
+        assertEquals(2, columns.size());
+        assertEquals(2.5, columns.getValue(1));
+        assertEquals(Flag.VALID, columns.getFlag(1));
+    }
+
+    @Test
+    public void testPartialTrailingRecordIsInvisible() throws IOException {
+        writeFile(file, START, PERIOD, 0, 2);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5 });
+        }
+
+        assertEquals(16 + 2 * 9, MappedFileObject.getMappedSize(file.length()));
+        MappedFileObject mapped = MappedFileObject.map(file);
+        assertEquals(16 + 2 * 9, mapped.getSize());
+        assertEquals(START + PERIOD, mapped.getTimestampForLatestValue());
+        assertNull(mapped.read(START + 2 * PERIOD));
+    }
+
+    @Test
+    public void testFileWithoutCompleteHeaderIsNotMapped() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[10]);
+        }
+        assertNull(MappedFileObject.map(file));
+    }
+
+    @Test
+    public void testExtendReadsAppendedRecordsWithoutRemapping() throws IOException {
+        writeFile(file, START, PERIOD, 0, 2);
+        MappedFileObject mapped = MappedFileObject.map(file);
+
+        appendRecords(file, 2, 3);
+        MappedFileObject extended = mapped.extend(file, MappedFileObject.getMappedSize(file.length()));
+        assertEquals(mapped.getMappedSize(), extended.getMappedSize());
+        assertEquals(16 + 5 * 9, extended.getSize());
+
+        appendRecords(file, 5, 1);
+        extended = extended.extend(file, MappedFileObject.getMappedSize(file.length()));
+        assertEquals(mapped.getMappedSize(), extended.getMappedSize());
+
+        List<Record> records = new ArrayList<>();
+        extended.read(START, START + 10 * PERIOD, records);
+        assertEquals(6, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getValue().asDouble());
+            assertEquals(START + i * PERIOD, records.get(i).getTimestamp().longValue());
+        }
+        assertEquals(5.0, extended.read(extended.getTimestampForLatestValue()).getValue().asDouble());
+
+        RecordColumns columns = new RecordColumns();
+        extended.read(START + PERIOD, START + 4 * PERIOD, columns);
+        assertEquals(4, columns.size());
+        assertEquals(4.0, columns.getValue(3));
+    }
+
+    @Test
+    public void testExtendRemapsLargeGrowth() throws IOException {
+        writeFile(file, START, PERIOD, 0, 1);
+        MappedFileObject mapped = MappedFileObject.map(file);
+
+        appendRecords(file, 1, MappedFileObject.MAX_TAIL_SIZE / 9 + 1);
+        long size = MappedFileObject.getMappedSize(file.length());
+        MappedFileObject extended = mapped.extend(file, size);
+
+        assertNotSame(mapped, extended);
+        assertEquals(size, extended.getMappedSize());
+        assertEquals(size, extended.getSize());
+    }
+
+    static void writeFile(File file, long start, long period, int firstValue, int count) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeLong(start);
+            out.writeLong(period);
+            for (int i = 0; i < count; i++) {
+                writeRecord(out, firstValue + i);
+            }
+        }
+    }
+
+    static void appendRecords(File file, int firstValue, int count) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            for (int i = 0; i < count; i++) {
+                writeRecord(out, firstValue + i);
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, double value) throws IOException {
+        out.writeDouble(value);
+        out.writeByte(Flag.VALID.getCode());
+    }
+
+}
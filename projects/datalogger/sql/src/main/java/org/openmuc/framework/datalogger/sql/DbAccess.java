@@ -24,22 +24,30 @@ package org.openmuc.framework.datalogger.sql;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.VALUE;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.openmuc.framework.datalogger.sql.utils.PropertyHandlerProvider;
 import org.openmuc.framework.datalogger.sql.utils.Settings;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +58,10 @@ public class DbAccess {
     private final String url;
     private final DbConnector dbConnector;
 
+    // prepared insert statements per table, only valid for insertConnection
+    private final Map<String, PreparedStatement> insertStatements = new HashMap<>();
+    private Connection insertConnection;
+
     public DbAccess() {
         dbConnector = new DbConnector();
         PropertyHandler propertyHandler = PropertyHandlerProvider.getInstance().getPropertyHandler();
@@ -95,6 +107,147 @@ public class DbAccess {
         }
     }
 
+    /**
+     * Inserts the records into their channel tables within a single transaction. One prepared statement per table is
+     * cached and all rows of a table are sent as one JDBC batch.
+     * <p>
+     * If the transaction fails, it is rolled back and every table is retried in a transaction of its own, so a single
+     * broken table (e.g. dropped or with a wrong column type) does not discard the rows of all other channels.
+     *
+     * @param recordsByTable
+     *            records grouped by the name of the table they are inserted into
+     * @param timestamp
+     *            the timestamp used for all rows or <code>null</code> to use the timestamps of the records
+     * @return the number of inserted rows
+     */
+    public int executeBatchInsert(Map<String, List<LoggingRecord>> recordsByTable, Timestamp timestamp) {
+        if (recordsByTable.isEmpty()) {
+            return 0;
+        }
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        synchronized (dbConnector) {
+            Connection connection = dbConnector.getConnection();
+            if (connection == null) {
+                logger.error("Unable to insert records, no connection to the database");
+                return 0;
+            }
+            if (connection != insertConnection) {
+                closeInsertStatements();
+                insertConnection = connection;
+            }
+            return synchronizeBatchInsert(connection, recordsByTable, timestamp);
+        }
+    }
+
+    private int synchronizeBatchInsert(Connection connection, Map<String, List<LoggingRecord>> recordsByTable,
+            Timestamp timestamp) {
+        int rows = 0;
+        String table = null;
+        try {
+            connection.setAutoCommit(false);
+            for (Map.Entry<String, List<LoggingRecord>> entry : recordsByTable.entrySet()) {
+                table = entry.getKey();
+                rows += insertTable(connection, table, entry.getValue(), timestamp);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            logger.warn(MessageFormat.format("Error inserting records into table {0}: {1}, retrying per table", table,
+                    e.getMessage()));
+            rollback(connection);
+            // a statement of a failed batch may be left in an undefined state
+            closeInsertStatement(table);
+            rows = insertPerTable(connection, recordsByTable, timestamp);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.debug(e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Inserts and commits every table on its own. Used after the transaction of all tables failed.
+     */
+    private int insertPerTable(Connection connection, Map<String, List<LoggingRecord>> recordsByTable,
+            Timestamp timestamp) {
+        int rows = 0;
+        for (Map.Entry<String, List<LoggingRecord>> entry : recordsByTable.entrySet()) {
+            String table = entry.getKey();
+            try {
+                int tableRows = insertTable(connection, table, entry.getValue(), timestamp);
+                connection.commit();
+                rows += tableRows;
+            } catch (SQLException e) {
+                logger.error(MessageFormat.format("Error inserting records into table {0}: {1}", table,
+                        e.getMessage()));
+                logger.error(MessageFormat.format("SQLState:     {0}", e.getSQLState()));
+                logger.error(MessageFormat.format("VendorError:  {0}", e.getErrorCode()));
+                rollback(connection);
+                closeInsertStatement(table);
+            }
+        }
+        return rows;
+    }
+
+    private int insertTable(Connection connection, String table, List<LoggingRecord> loggingRecords,
+            Timestamp timestamp) throws SQLException {
+        PreparedStatement statement = getInsertStatement(connection, table);
+        for (LoggingRecord loggingRecord : loggingRecords) {
+            Record record = loggingRecord.getRecord();
+            statement.setTimestamp(1, timestamp != null ? timestamp : new Timestamp(record.getTimestamp()));
+            statement.setInt(2, record.getFlag().getCode());
+            SqlValues.setValue(record.getValue(), statement, 3);
+            statement.addBatch();
+        }
+        statement.executeBatch();
+        return loggingRecords.size();
+    }
+
+    private PreparedStatement getInsertStatement(Connection connection, String table) throws SQLException {
+        PreparedStatement statement = insertStatements.get(table);
+        if (statement == null) {
+            statement = connection
+                    .prepareStatement("INSERT INTO " + table + " (time,flag,\"VALUE\") VALUES (?,?,?)");
+            insertStatements.put(table, statement);
+        }
+        return statement;
+    }
+
+    private void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.error(MessageFormat.format("Rollback failed: {0}", e.getMessage()));
+        }
+    }
+
+    private void closeInsertStatement(String table) {
+        PreparedStatement statement = insertStatements.remove(table);
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void closeInsertStatements() {
+        for (PreparedStatement statement : insertStatements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+        insertStatements.clear();
+    }
+
     public ResultSet executeQuery(StringBuilder sb) throws SQLException {
         Statement statement = dbConnector.createStatementWithConnection();
         return statement.executeQuery(sb.toString());
@@ -113,6 +266,16 @@ public class DbAccess {
         return false;
     }
 
+    /**
+     * @return true if the database is able to aggregate values with the timescale <code>time_bucket</code> function
+     */
+    public boolean supportsTimeBuckets() {
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        return dbConnector.isTimescaleActive();
+    }
+
     /**
      * Queries the database for a columns length and then returns it as a list of ints
      *
@@ -149,6 +312,10 @@ public class DbAccess {
     }
 
     public void closeConnection() {
+        synchronized (dbConnector) {
+            closeInsertStatements();
+            insertConnection = null;
+        }
         dbConnector.closeConnection();
     }
 
@@ -192,4 +359,37 @@ public class DbAccess {
 
         return records;
     }
+
+    /**
+     * Retrieves data from database into primitive columns. Numeric and boolean values are read without creating a
+     * record per row.
+     */
+    public RecordColumns queryRecordColumns(StringBuilder sb, ValueType valuetype) {
+        RecordColumns columns = new RecordColumns();
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        try (ResultSet resultSet = executeQuery(sb)) {
+            while (resultSet.next()) {
+                long timestamp = resultSet.getTimestamp("time").getTime();
+                if (valuetype == ValueType.STRING) {
+                    columns.add(new Record(new StringValue(resultSet.getString(VALUE)), timestamp, Flag.VALID));
+                }
+                else if (valuetype == ValueType.BYTE_ARRAY) {
+                    columns.add(new Record(new ByteArrayValue(resultSet.getBytes(VALUE)), timestamp, Flag.VALID));
+                }
+                else if (valuetype == ValueType.BOOLEAN) {
+                    columns.add(timestamp, resultSet.getBoolean(VALUE) ? 1 : 0, Flag.VALID);
+                }
+                else {
+                    columns.add(timestamp, resultSet.getDouble(VALUE), Flag.VALID);
+                }
+            }
+        } catch (SQLException e) {
+            String sql = sb.toString();
+            logger.error(MessageFormat.format("Error executing SQL: \n{0}", sql), e.getMessage());
+        }
+
+        return columns;
+    }
 }
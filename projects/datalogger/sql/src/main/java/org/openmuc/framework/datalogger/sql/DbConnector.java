@@ -86,6 +86,13 @@ public class DbConnector {
         dataSourceFactory = (DataSourceFactory) context.getService(reference);
     }
 
+    /**
+     * @return true if the connected PostgreSQL database has the timescale extension installed
+     */
+    public boolean isTimescaleActive() {
+        return timescaleActive;
+    }
+
     public boolean isConnected() {
         try {
             if (connection == null || connection.isClosed()) {
@@ -122,6 +129,13 @@ public class DbConnector {
         return connection.createStatement();
     }
 
+    /**
+     * @return the current connection to the database or <code>null</code> if no connection has been established
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
     /**
      * Sets the proper dataSourceFactory, depending on the URL, using {@link #setDataSourceFactory()} and creates a
      * dataSource with it, creates a connection to the database and in case PostgreSQL is used it checks if timescale is
@@ -26,7 +26,9 @@ import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.List;
 
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
@@ -85,6 +87,9 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
      */
     public void shutdown() {
         logger.info("Deactivating SQL Logger");
+        if (writer != null) {
+            logger.info("SQL logger statistics: {}", writer);
+        }
         if (dbAccess != null) {
             dbAccess.closeConnection();
         }
@@ -149,6 +154,28 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return records;
     }
 
+    @Override
+    public RecordColumns getRecordColumns(String channelId, long startTime, long endTime) throws IOException {
+        for (LogChannel temp : this.channels) {
+            if (temp.getId().equals(channelId)) {
+                return reader.readRecordColumnsFromDb(channelId, temp.getValueType(), startTime, endTime);
+            }
+        }
+        return new RecordColumns(0);
+    }
+
+    @Override
+    public RecordColumns getAggregatedRecordColumns(String channelId, long startTime, long endTime, long interval,
+            Aggregation aggregation) throws IOException {
+        for (LogChannel temp : this.channels) {
+            if (temp.getId().equals(channelId)) {
+                return reader.readAggregatedRecordColumnsFromDb(channelId, temp.getValueType(), startTime, endTime,
+                        interval, aggregation);
+            }
+        }
+        return new RecordColumns(0);
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results will not be consistent.
@@ -26,7 +26,9 @@ import static org.openmuc.framework.datalogger.sql.utils.SqlValues.AND;
 import java.sql.Timestamp;
 import java.util.List;
 
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.ValueType;
 
 public class SqlReader {
@@ -46,6 +48,34 @@ public class SqlReader {
 
     }
 
+    public RecordColumns readRecordColumnsFromDb(String channelId, ValueType valuetype, long startTime,
+            long endTime) {
+        Timestamp startTimestamp = new Timestamp(startTime);
+        Timestamp endTimestamp = new Timestamp(endTime);
+        StringBuilder sbTable = new StringBuilder();
+        selectFromTable(channelId, startTimestamp, endTimestamp, sbTable);
+        return dbAccess.queryRecordColumns(sbTable, valuetype);
+    }
+
+    /**
+     * Aggregates the values in the database using the timescale <code>time_bucket</code> function. Buckets are aligned
+     * to <code>startTime</code>.
+     *
+     * @return the aggregated values or null if the database can not aggregate the values of this channel
+     */
+    public RecordColumns readAggregatedRecordColumnsFromDb(String channelId, ValueType valuetype, long startTime,
+            long endTime, long interval, Aggregation aggregation) {
+        if (valuetype == ValueType.STRING || valuetype == ValueType.BYTE_ARRAY || !dbAccess.supportsTimeBuckets()) {
+            return null;
+        }
+        Timestamp startTimestamp = new Timestamp(startTime);
+        Timestamp endTimestamp = new Timestamp(endTime);
+        StringBuilder sb = new StringBuilder();
+        selectAggregatedFromTable(channelId, valuetype, startTimestamp, endTimestamp, interval, aggregation, sb);
+        // aggregated values are numeric regardless of the channel's value type
+        return dbAccess.queryRecordColumns(sb, ValueType.DOUBLE);
+    }
+
     /**
      * Get the latest Record by retrieving records in descending order - ordered by time - and limiting to 1 result
      * 
@@ -99,4 +129,39 @@ public class SqlReader {
                 .append(endTimestamp)
                 .append("';");
     }
+
+    private void selectAggregatedFromTable(String channelId, ValueType valuetype, Timestamp startTimestamp,
+            Timestamp endTimestamp, long interval, Aggregation aggregation, StringBuilder sb) {
+        String value = valuetype == ValueType.BOOLEAN ? "CAST(\"VALUE\" AS INTEGER)" : "\"VALUE\"";
+        String bucket = "time_bucket(INTERVAL '" + interval + " milliseconds', time, TIMESTAMPTZ '" + startTimestamp
+                + "')";
+
+        switch (aggregation) {
+        case FIRST:
+            sb.append("SELECT min(time) AS time, first(").append(value).append(", time)");
+            break;
+        case LAST:
+            sb.append("SELECT max(time) AS time, last(").append(value).append(", time)");
+            break;
+        default:
+            sb.append("SELECT ")
+                    .append(bucket)
+                    .append(" AS time, ")
+                    .append(aggregation.name().toLowerCase())
+                    .append('(')
+                    .append(value)
+                    .append(')');
+            break;
+        }
+
+        sb.append(" AS \"VALUE\" FROM ")
+                .append(channelId)
+                .append(" WHERE time BETWEEN '")
+                .append(startTimestamp)
+                .append(AND)
+                .append(endTimestamp)
+                .append("' GROUP BY ")
+                .append(bucket)
+                .append(" ORDER BY 1;");
+    }
 }
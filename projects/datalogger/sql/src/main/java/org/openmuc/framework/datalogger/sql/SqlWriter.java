@@ -23,106 +23,120 @@ package org.openmuc.framework.datalogger.sql;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
-import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes logged records to the channel tables. The records of one call are grouped by table and inserted with one
+ * batch per table in a single transaction, see {@link DbAccess#executeBatchInsert(Map, Timestamp)}.
+ * <p>
+ * The write statistics are logged at info level every <code>statisticsInterval</code> minutes (system property
+ * <code>org.openmuc.framework.datalogger.sql.statisticsInterval</code>, 0 disables the report).
+ */
 public class SqlWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(SqlWriter.class);
+    private static final long STATISTICS_INTERVAL = TimeUnit.MINUTES
+            .toNanos(Long.getLong("org.openmuc.framework.datalogger.sql.statisticsInterval", 15));
+
     private final DbAccess dbAccess;
-    private final List<StringBuilder> tableListChannel;
+
+    private long writes = 0;
+    private long insertedRows = 0;
+    private long failedRows = 0;
+    private long totalWriteTime = 0;
+    private long maxWriteTime = 0;
+    private long lastWriteTime = 0;
+    private long lastReport = System.nanoTime();
 
     public SqlWriter(DbAccess dbAccess) {
         this.dbAccess = dbAccess;
-        tableListChannel = new ArrayList<>();
-
     }
 
     public void writeEventBasedContainerToDb(List<LoggingRecord> containers) {
-        synchronized (tableListChannel) {
-            writeAsTableList(containers);
-            tableListChannel.clear();
-        }
-    }
-
-    private void writeAsTableList(List<LoggingRecord> containers) {
-        // createTableList();
-        addRecordsFromContainersToList(containers);
-
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
-            }
-        }
-
-    }
-
-    private void addRecordsFromContainersToList(List<LoggingRecord> containers) {
+        Map<String, List<LoggingRecord>> recordsByTable = new LinkedHashMap<>();
         for (LoggingRecord logRecordContainer : containers) {
             if (logRecordContainer.getRecord().getTimestamp() != null) {
-                long recordTs = logRecordContainer.getRecord().getTimestamp();
-                Timestamp sqlTimestamp = new Timestamp(recordTs);
-                addContainerToList(sqlTimestamp, logRecordContainer);
+                addContainerToTable(recordsByTable, logRecordContainer);
             }
         }
+        write(recordsByTable, null);
     }
 
     public void writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
-        Timestamp sqlTimestamp = new Timestamp(timestamp);
-        // createTableList();
-
+        Map<String, List<LoggingRecord>> recordsByTable = new LinkedHashMap<>();
         for (LoggingRecord logRecordContainer : containers) {
-            addContainerToList(sqlTimestamp, logRecordContainer);
+            addContainerToTable(recordsByTable, logRecordContainer);
         }
-
-        for (StringBuilder table : tableListChannel) {
-            if (table.toString().contains("),")) {
-                table.replace(table.length() - 1, table.length(), ";");
-                dbAccess.executeSQL(table);
-            }
-        }
-
+        write(recordsByTable, new Timestamp(timestamp));
     }
 
     /**
-     * Continues building the insert query and calls {@link #addValue(Record, StringBuilder, Integer)} using the
-     * appropriate parameters for the records' value type
+     * Adds the container to the records of its channel table. Records without value are not logged.
      *
-     * @param sqlTimestamp
-     *            The current timestamp
+     * @param recordsByTable
+     *            records grouped by table
      * @param logRecordContainer
      *            Container object for the record
      */
-    private void addContainerToList(Timestamp sqlTimestamp, LoggingRecord logRecordContainer) {
-        String channelId = logRecordContainer.getChannelId();
-        Record record = logRecordContainer.getRecord();
-
-        if (record.getValue() != null) {
-            StringBuilder sbChannel = new StringBuilder("INSERT INTO " + channelId + " (time,flag,\"VALUE\") VALUES ");
-            StringBuilder sbQuery2 = new StringBuilder();
-            sbQuery2.append("('")
-                    .append(sqlTimestamp)
-                    .append("',")
-                    .append(logRecordContainer.getRecord().getFlag().getCode())
-                    .append(',');
+    private void addContainerToTable(Map<String, List<LoggingRecord>> recordsByTable,
+            LoggingRecord logRecordContainer) {
+        if (logRecordContainer.getRecord().getValue() != null) {
+            recordsByTable.computeIfAbsent(logRecordContainer.getChannelId(), table -> new ArrayList<>())
+                    .add(logRecordContainer);
+        }
+    }
 
-            sbChannel.append(sbQuery2);
-            if (record.getValue() != null) {
-                SqlValues.appendValue(record.getValue(), sbChannel);
+    private void write(Map<String, List<LoggingRecord>> recordsByTable, Timestamp timestamp) {
+        if (recordsByTable.isEmpty()) {
+            return;
+        }
+        int total = 0;
+        for (List<LoggingRecord> records : recordsByTable.values()) {
+            total += records.size();
+        }
+        long start = System.nanoTime();
+        int rows = dbAccess.executeBatchInsert(recordsByTable, timestamp);
+        long end = System.nanoTime();
+        long writeTime = TimeUnit.NANOSECONDS.toMicros(end - start);
+
+        boolean report = false;
+        synchronized (this) {
+            writes++;
+            insertedRows += rows;
+            failedRows += total - rows;
+            totalWriteTime += writeTime;
+            lastWriteTime = writeTime;
+            if (writeTime > maxWriteTime) {
+                maxWriteTime = writeTime;
             }
-            else {
-                sbChannel.append("NULL");
+            if (STATISTICS_INTERVAL > 0 && end - lastReport >= STATISTICS_INTERVAL) {
+                lastReport = end;
+                report = true;
             }
-            sbChannel.append("),");
-            Collections.addAll(tableListChannel, sbChannel);
         }
+        if (report) {
+            logger.info("SQL logger statistics: {}", this);
+        }
+        logger.debug("Inserted {} rows into {} tables in {} ms", rows, recordsByTable.size(), writeTime / 1000.0);
+    }
+
+    /**
+     * @return statistics about the number of inserted rows and the time needed per write
+     */
+    @Override
+    public synchronized String toString() {
+        long averageWriteTime = writes == 0 ? 0 : totalWriteTime / writes;
+        double rowsPerSecond = totalWriteTime == 0 ? 0 : insertedRows * 1_000_000.0 / totalWriteTime;
+        return "writes: " + writes + ", inserted rows: " + insertedRows + ", failed rows: " + failedRows
+                + ", throughput: " + String.format("%.0f", rowsPerSecond) + " rows/s, write time last/avg/max: "
+                + lastWriteTime / 1000.0 + "/" + averageWriteTime / 1000.0 + "/" + maxWriteTime / 1000.0 + " ms";
     }
 
 }
@@ -22,6 +22,9 @@
 package org.openmuc.framework.datalogger.sql.utils;
 
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
 
@@ -104,6 +107,58 @@ public class SqlValues {
         }
     }
 
+    /**
+     * Binds the value to a parameter of a prepared statement, using the setter matching the records' value type
+     *
+     * @param value
+     *            the value, may be <code>null</code>
+     * @param ps
+     *            the prepared statement
+     * @param parameterIndex
+     *            index of the parameter, the first parameter is 1
+     * @throws SQLException
+     *             if the parameter could not be set
+     */
+    public static void setValue(Value value, PreparedStatement ps, int parameterIndex) throws SQLException {
+        if (value == null) {
+            ps.setNull(parameterIndex, Types.NULL);
+            return;
+        }
+
+        switch (value.getClass().getSimpleName()) {
+        case "BooleanValue":
+            ps.setBoolean(parameterIndex, value.asBoolean());
+            break;
+        case "ByteValue":
+            ps.setShort(parameterIndex, value.asByte());
+            break;
+        case "ByteArrayValue":
+            ps.setBytes(parameterIndex, value.asByteArray());
+            break;
+        case "DoubleValue":
+            ps.setDouble(parameterIndex, value.asDouble());
+            break;
+        case "FloatValue":
+            ps.setFloat(parameterIndex, value.asFloat());
+            break;
+        case "IntValue":
+            ps.setInt(parameterIndex, value.asInt());
+            break;
+        case "LongValue":
+            ps.setLong(parameterIndex, value.asLong());
+            break;
+        case "ShortValue":
+            ps.setShort(parameterIndex, value.asShort());
+            break;
+        case "StringValue":
+            ps.setString(parameterIndex, value.asString());
+            break;
+        default:
+            ps.setNull(parameterIndex, Types.NULL);
+            break;
+        }
+    }
+
     private static void byteArrayToHexString(StringBuilder sb, byte[] byteArray) {
         char[] hexChars = new char[byteArray.length * 2];
         for (int j = 0; j < byteArray.length; j++) {
@@ -48,6 +48,11 @@ public class DbConnectorTestable extends DbConnector {
         return testableConnection.createStatement();
     }
 
+    @Override
+    public Connection getConnection() {
+        return testableConnection;
+    }
+
     @Override
     protected void initConnector() {
     }
@@ -21,62 +21,111 @@
 
 package org.openmuc.framework.datalogger.sql;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 
 class SqlWriterTest {
 
     private SqlWriter sqlWriter;
-    private DbAccess dbAccessMock;
     private Connection connection;
 
     @BeforeEach
     void setup() throws SQLException {
-        connection = TestConnectionHelper.getConnection();
+        DbConnectorTestable dbConnector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        connection = dbConnector.getConnection();
 
-        dbAccessMock = mock(DbAccess.class);
-
-        doAnswer(invocation -> { // pass any executed sql statements to the test connection
-            TestConnectionHelper.executeSQL(connection, invocation.getArgument(0).toString());
-            return null;
-        }).when(dbAccessMock).executeSQL(any());
+        sqlWriter = new SqlWriter(DbAccess.getTestInstance(dbConnector));
+    }
 
-        sqlWriter = new SqlWriter(dbAccessMock);
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
     }
 
     @Test
     void writeEventBasedContainerToDb() throws SQLException {
-        List<LoggingRecord> recordList = buildLoggingRecordList(5);
-
-        TestConnectionHelper.executeSQL(connection, String.format( // create table for the tests to write to
-                "CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)",
-                recordList.get(0).getChannelId()));
+        List<LoggingRecord> recordList = buildLoggingRecordList("testChannel", 5);
+        createDoubleTable("testChannel");
 
         sqlWriter.writeEventBasedContainerToDb(recordList);
 
-        verify(dbAccessMock, times(5)).executeSQL(any());
+        assertEquals(5, countRows("testChannel"));
+    }
 
-        connection.close();
+    @Test
+    void writeRecordContainerToDbGroupsByTable() throws SQLException {
+        createDoubleTable("channelA");
+        createDoubleTable("channelB");
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE channelC (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" VARCHAR(20))");
+
+        List<LoggingRecord> recordList = new ArrayList<>();
+        recordList.addAll(buildLoggingRecordList("channelA", 3));
+        recordList.addAll(buildLoggingRecordList("channelB", 2));
+        recordList.add(new LoggingRecord("channelC", new Record(new StringValue("it's"), 1599569019000L)));
+        recordList.add(new LoggingRecord("channelA", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+
+        sqlWriter.writeRecordContainerToDb(recordList, 1599569019000L);
+        sqlWriter.writeRecordContainerToDb(recordList, 1599569079000L);
+
+        assertEquals(6, countRows("channelA"));
+        assertEquals(4, countRows("channelB"));
+        try (ResultSet resultSet = TestConnectionHelper.executeQuery(connection,
+                "SELECT \"VALUE\" FROM channelC")) {
+            resultSet.next();
+            assertEquals("it's", resultSet.getString(1));
+        }
+    }
+
+    @Test
+    void failingTableDoesNotDiscardOtherTables() throws SQLException {
+        createDoubleTable("channelA");
+        createDoubleTable("channelC");
+
+        List<LoggingRecord> recordList = new ArrayList<>();
+        recordList.addAll(buildLoggingRecordList("channelA", 3));
+        // table of channelB does not exist
+        recordList.addAll(buildLoggingRecordList("channelB", 2));
+        recordList.addAll(buildLoggingRecordList("channelC", 1));
+
+        sqlWriter.writeRecordContainerToDb(recordList, 1599569019000L);
+        sqlWriter.writeRecordContainerToDb(recordList, 1599569079000L);
+
+        assertEquals(6, countRows("channelA"));
+        assertEquals(2, countRows("channelC"));
+        assertTrue(sqlWriter.toString().contains("failed rows: 4"));
+    }
+
+    private void createDoubleTable(String table) throws SQLException {
+        TestConnectionHelper.executeSQL(connection, String.format( // create table for the tests to write to
+                "CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)", table));
+    }
+
+    private int countRows(String table) throws SQLException {
+        try (ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
     }
 
-    private List<LoggingRecord> buildLoggingRecordList(int numOfElements) {
-        String channelId = "testChannel";
+    private List<LoggingRecord> buildLoggingRecordList(String channelId, int numOfElements) {
         Value value = new DoubleValue(5);
         long timestamp = 1599569019000L;
         Record record = new Record(value, timestamp, Flag.VALID);
@@ -101,7 +101,8 @@ public class AmqpDriverConnection implements Connection {
             byte[] message = reader.read(queue);
 
             if (message != null) {
-                Record record = getRecord(message, container.getChannel().getValueType());
+                Record record = getRecord(message, container.getChannel().getValueType(),
+                        container.getChannel().getId());
                 container.setRecord(record);
             }
             else {
@@ -120,7 +121,8 @@ public class AmqpDriverConnection implements Connection {
 
             reader.listen(Collections.singleton(queue), (String receivedQueue, byte[] message) -> {
 
-                Record record = getRecord(message, container.getChannel().getValueType());
+                Record record = getRecord(message, container.getChannel().getValueType(),
+                        container.getChannel().getId());
 
                 if (recordsIsOld(container.getChannel().getId(), record)) {
                     return;
@@ -203,10 +205,10 @@ public class AmqpDriverConnection implements Connection {
         parsers.put(parserId, parser);
     }
 
-    private Record getRecord(byte[] message, ValueType valueType) {
+    private Record getRecord(byte[] message, ValueType valueType, String channelId) {
         Record record;
         if (parsers.containsKey(setting.parser)) {
-            record = parsers.get(setting.parser).deserialize(message, valueType);
+            record = parsers.get(setting.parser).deserialize(message, valueType, channelId);
         }
         else {
             record = new Record(new ByteArrayValue(message), System.currentTimeMillis());
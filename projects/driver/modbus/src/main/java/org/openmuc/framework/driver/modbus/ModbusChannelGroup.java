@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
@@ -35,7 +36,8 @@ import com.ghgande.j2mod.modbus.procimg.InputRegister;
 import com.ghgande.j2mod.modbus.util.BitVector;
 
 /**
- * Represents a group of channels which is used for a multiple read request
+ * Represents a group of channels which is used for a multiple read request. All channels of the group are read with a
+ * single request, see {@link ModbusReadPlan} for how the groups of a sampling group are planned.
  */
 public class ModbusChannelGroup {
 
@@ -46,6 +48,9 @@ public class ModbusChannelGroup {
     private EPrimaryTable primaryTable;
     private final ArrayList<ModbusChannel> channels;
 
+    /** Index of the container of each channel within the container list of the read call */
+    private final int[] containerIndices;
+
     /** Start address to read from */
     private int startAddress;
 
@@ -57,8 +62,13 @@ public class ModbusChannelGroup {
     private final String samplingGroup;
 
     public ModbusChannelGroup(String samplingGroup, ArrayList<ModbusChannel> channels) {
+        this(samplingGroup, channels, consecutiveIndices(channels.size()));
+    }
+
+    ModbusChannelGroup(String samplingGroup, ArrayList<ModbusChannel> channels, int[] containerIndices) {
         this.samplingGroup = samplingGroup;
         this.channels = channels;
+        this.containerIndices = containerIndices;
         setPrimaryTable();
         setUnitId();
         setStartAddress();
@@ -66,6 +76,14 @@ public class ModbusChannelGroup {
         setFunctionCode();
     }
 
+    private static int[] consecutiveIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
     public String getInfo() {
         String info = "SamplingGroup: '" + samplingGroup + "' Channels: ";
         for (ModbusChannel channel : channels) {
@@ -175,7 +193,8 @@ public class ModbusChannelGroup {
 
     public void setChannelValues(InputRegister[] inputRegisters, List<ChannelRecordContainer> containers) {
 
-        for (ModbusChannel channel : channels) {
+        for (int i = 0; i < channels.size(); i++) {
+            ModbusChannel channel = channels.get(i);
             // determine start index of the registers which contain the values of the channel
             int registerIndex = channel.getStartAddress() - getStartAddress();
             // create a temporary register array
@@ -184,11 +203,18 @@ public class ModbusChannelGroup {
             System.arraycopy(inputRegisters, registerIndex, registers, 0, channel.getCount());
 
             // now we have a register array which contains the value of the channel
-            ChannelRecordContainer container = searchContainer(channel.getChannelAddress(), containers);
+            ChannelRecordContainer container = getContainer(i, channel.getChannelAddress(), containers);
 
             long receiveTime = System.currentTimeMillis();
 
-            Value value = ModbusDriverUtil.getRegistersValue(registers, channel.getDatatype());
+            Value value;
+            try {
+                value = ModbusDriverUtil.getRegistersValue(registers, channel.getDatatype());
+            } catch (RuntimeException e) {
+                logger.error("Unable to decode value of channel " + channel.getChannelAddress(), e);
+                container.setRecord(new Record(Flag.UNKNOWN_ERROR));
+                continue;
+            }
 
             if (logger.isTraceEnabled()) {
                 logger.trace("response value channel " + channel.getChannelAddress() + ": " + value.toString());
@@ -200,7 +226,8 @@ public class ModbusChannelGroup {
 
     public void setChannelValues(BitVector bitVector, List<ChannelRecordContainer> containers) {
 
-        for (ModbusChannel channel : channels) {
+        for (int i = 0; i < channels.size(); i++) {
+            ModbusChannel channel = channels.get(i);
 
             long receiveTime = System.currentTimeMillis();
 
@@ -208,11 +235,35 @@ public class ModbusChannelGroup {
             int index = channel.getStartAddress() - getStartAddress();
 
             BooleanValue value = new BooleanValue(bitVector.getBit(index));
-            ChannelRecordContainer container = searchContainer(channel.getChannelAddress(), containers);
+            ChannelRecordContainer container = getContainer(i, channel.getChannelAddress(), containers);
             container.setRecord(new Record(value, receiveTime));
         }
     }
 
+    /**
+     * Sets the given flag for the containers of all channels of the group.
+     */
+    public void setChannelsWithErrorFlag(Flag flag, List<ChannelRecordContainer> containers) {
+        for (int i = 0; i < channels.size(); i++) {
+            getContainer(i, channels.get(i).getChannelAddress(), containers).setRecord(new Record(flag));
+        }
+    }
+
+    /**
+     * The channels of the group have been created from the containers, so the container is usually found at the
+     * container index of the channel.
+     */
+    ChannelRecordContainer getContainer(int index, String channelAddress, List<ChannelRecordContainer> containers) {
+        int containerIndex = containerIndices[index];
+        if (containerIndex < containers.size()) {
+            ChannelRecordContainer container = containers.get(containerIndex);
+            if (container.getChannelAddress().equalsIgnoreCase(channelAddress)) {
+                return container;
+            }
+        }
+        return searchContainer(channelAddress, containers);
+    }
+
     private ChannelRecordContainer searchContainer(String channelAddress, List<ChannelRecordContainer> containers) {
         for (ChannelRecordContainer container : containers) {
             if (container.getChannelAddress().equalsIgnoreCase(channelAddress)) {
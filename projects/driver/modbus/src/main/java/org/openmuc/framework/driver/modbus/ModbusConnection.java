@@ -23,6 +23,8 @@ package org.openmuc.framework.driver.modbus;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
@@ -64,6 +66,12 @@ public abstract class ModbusConnection implements Connection {
 
     private static final Logger logger = LoggerFactory.getLogger(ModbusConnection.class);
 
+    /**
+     * By default an explicit sampling group is read with one request spanning all of its channels, as far as the
+     * request size allows, and other channels only if their addresses are adjacent. See {@link ModbusReadPlan}.
+     */
+    public static final int DEFAULT_MAX_GAP = -1;
+
     private ModbusTransaction transaction;
     // List do manage Channel Objects to avoid to check the syntax of each channel address for every read or write
     private final Hashtable<String, ModbusChannel> modbusChannels;
@@ -72,6 +80,9 @@ public abstract class ModbusConnection implements Connection {
     private final int MAX_RETRIES_FOR_JAMOD = 0;
     private final int MAX_RETRIES_FOR_DRIVER = 3;
 
+    private int maxGap = DEFAULT_MAX_GAP;
+    private int maxRegisters = ModbusReadPlan.MAX_REGISTERS;
+
     public abstract void connect() throws ConnectionException;
 
     public ModbusConnection() {
@@ -95,6 +106,19 @@ public abstract class ModbusConnection implements Connection {
         this.transaction.setRetries(MAX_RETRIES_FOR_JAMOD);
     }
 
+    /**
+     * Sets the limits used to coalesce the channels of a sampling group into read requests.
+     * 
+     * @param maxGap
+     *            maximum number of unused registers (or coils) between two channels read with the same request
+     * @param maxRegisters
+     *            maximum number of registers read with one request
+     */
+    public void setReadPlanLimits(int maxGap, int maxRegisters) {
+        this.maxGap = maxGap;
+        this.maxRegisters = maxRegisters;
+    }
+
     public Value readChannel(ModbusChannel channel) throws ModbusException {
 
         if (logger.isDebugEnabled()) {
@@ -123,46 +147,111 @@ public abstract class ModbusConnection implements Connection {
         return value;
     }
 
+    /**
+     * Reads all channels of a sampling group. The channels are coalesced into as few requests as possible using a
+     * {@link ModbusReadPlan}, which is returned as the container list handle.
+     */
     public Object readChannelGroupHighLevel(List<ChannelRecordContainer> containers, Object containerListHandle,
             String samplingGroup) throws ConnectionException {
 
         // NOTE: containerListHandle is null if something changed in configuration!!!
 
-        ModbusChannelGroup channelGroup = null;
+        ModbusReadPlan readPlan = null;
 
-        // use existing channelGroup
+        // use existing read plan
         if (containerListHandle != null) {
-            if (containerListHandle instanceof ModbusChannelGroup) {
-                channelGroup = (ModbusChannelGroup) containerListHandle;
+            if (containerListHandle instanceof ModbusReadPlan) {
+                readPlan = (ModbusReadPlan) containerListHandle;
             }
         }
 
-        // create new channelGroup
-        if (channelGroup == null) {
+        // create new read plan
+        if (readPlan == null) {
             ArrayList<ModbusChannel> channelList = new ArrayList<>();
             for (ChannelRecordContainer container : containers) {
                 channelList.add(getModbusChannel(container.getChannelAddress(), EAccess.READ));
             }
-            channelGroup = new ModbusChannelGroup(samplingGroup, channelList);
+            readPlan = new ModbusReadPlan(samplingGroup, channelList, maxGap, maxRegisters);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("created read plan for {} channels: {}", channelList.size(), readPlan.getInfo());
+            }
         }
 
-        // read all channels of the group
-        try {
-            readChannelGroup(channelGroup, containers);
+        // connections which allow several outstanding requests send the requests of all channel groups before the
+        // first response is awaited
+        List<ModbusChannelGroup> channelGroups = readPlan.getChannelGroups();
+        List<CompletableFuture<ModbusResponse>> responses = sendReadRequests(channelGroups);
 
-        } catch (ModbusIOException e) {
-            logger.error("ModbusIOException while reading samplingGroup:" + samplingGroup, e);
-            disconnect();
-            
-            throw new ConnectionException(e);
-        } catch (ModbusException e) {
-            logger.error("Unable to read ChannelGroup " + samplingGroup, e);
+        // read all channel groups of the plan
+        for (int i = 0; i < channelGroups.size(); i++) {
+            ModbusChannelGroup channelGroup = channelGroups.get(i);
+            try {
+                if (responses == null) {
+                    readChannelGroup(channelGroup, containers);
+                }
+                else {
+                    setChannelValues(channelGroup, awaitResponse(responses.get(i)), containers);
+                }
+
+            } catch (ModbusSlaveBackoffException e) {
+                logger.debug("Skipped ChannelGroup {}: {}", channelGroup.getInfo(), e.getMessage());
+                channelGroup.setChannelsWithErrorFlag(Flag.TIMEOUT, containers);
+
+            } catch (ModbusIOException e) {
+                logger.error("ModbusIOException while reading samplingGroup:" + samplingGroup, e);
+                disconnect();
 
+                throw new ConnectionException(e);
+            } catch (ModbusException e) {
+                logger.error("Unable to read ChannelGroup " + channelGroup.getInfo(), e);
+
+                // the device might not allow to read some of the registers between the channels, so the channels are
+                // read one by one
+                readChannelsIndividually(channelGroup, containers);
+            }
+        }
+        return readPlan;
+    }
+
+    private void readChannelsIndividually(ModbusChannelGroup channelGroup, List<ChannelRecordContainer> containers)
+            throws ConnectionException {
+
+        if (channelGroup.getChannels().size() == 1) {
             // set channel values and flag, otherwise the datamanager will throw a null pointer exception
             // and the framework collapses.
-            setChannelsWithErrorFlag(containers);
+            channelGroup.setChannelsWithErrorFlag(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE, containers);
+            return;
+        }
+
+        List<ModbusChannel> channels = channelGroup.getChannels();
+        for (int i = 0; i < channels.size(); i++) {
+            ModbusChannel channel = channels.get(i);
+            ChannelRecordContainer container = channelGroup.getContainer(i, channel.getChannelAddress(), containers);
+            long receiveTime = System.currentTimeMillis();
+
+            try {
+                container.setRecord(new Record(readChannel(channel), receiveTime));
+
+            } catch (ModbusSlaveBackoffException e) {
+                logger.debug("Skipped channel {}: {}", channel.getChannelAddress(), e.getMessage());
+                container.setRecord(new Record(Flag.TIMEOUT));
+
+            } catch (ModbusIOException e) {
+                logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress(), e);
+                disconnect();
+                throw new ConnectionException(e);
+
+            } catch (ModbusException e) {
+                logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
+                container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
+
+            } catch (Exception e) {
+                // catch all possible exceptions and provide info about the channel
+                logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
+                container.setRecord(new Record(Flag.UNKNOWN_ERROR));
+            }
         }
-        return channelGroup;
     }
 
     private void readChannelGroup(ModbusChannelGroup channelGroup, List<ChannelRecordContainer> containers)
@@ -190,6 +279,39 @@ public abstract class ModbusConnection implements Connection {
         }
     }
 
+    /**
+     * @return the future responses of the channel groups or null if the connection executes one transaction at a time
+     */
+    private List<CompletableFuture<ModbusResponse>> sendReadRequests(List<ModbusChannelGroup> channelGroups) {
+        List<CompletableFuture<ModbusResponse>> responses = new ArrayList<>(channelGroups.size());
+        for (ModbusChannelGroup channelGroup : channelGroups) {
+            ModbusRequest request = createReadRequest(channelGroup.getFunctionCode(), channelGroup.getStartAddress(),
+                    channelGroup.getCount(), channelGroup.getUnitId());
+            CompletableFuture<ModbusResponse> response = sendRequest(request);
+            if (response == null) {
+                return null;
+            }
+            printRequestTraceMsg(request);
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private void setChannelValues(ModbusChannelGroup channelGroup, ModbusResponse response,
+            List<ChannelRecordContainer> containers) {
+        printResponseTraceMsg(response);
+
+        switch (channelGroup.getFunctionCode()) {
+        case FC_01_READ_COILS:
+        case FC_02_READ_DISCRETE_INPUTS:
+            channelGroup.setChannelValues(getBitVector(response, channelGroup.getCount()), containers);
+            break;
+        default:
+            channelGroup.setChannelValues(getRegisters(response), containers);
+            break;
+        }
+    }
+
     public void writeChannel(ModbusChannel channel, Value value) throws ModbusException, RuntimeException {
 
         if (logger.isDebugEnabled()) {
@@ -246,12 +368,13 @@ public abstract class ModbusConnection implements Connection {
 
     // TODO refactoring - to evaluate the transaction id the execution should be part of the modbus tcp connection and
     // not part of the common modbusConnection since RTU has no transaction id
-    private ModbusResponse executeReadTransaction() throws ModbusException {
+    private ModbusResponse executeReadTransaction(ModbusRequest request) throws ModbusException {
 
         ModbusResponse response = null;
 
         // see: performModbusTCPReadTransactionWithRetry()
-        response = performModbusReadTransaction();
+        printRequestTraceMsg(request);
+        response = executeTransaction(request, EAccess.READ);
 
         if (response == null) {
             throw new ModbusException("received response object is null");
@@ -263,11 +386,57 @@ public abstract class ModbusConnection implements Connection {
         return response;
     }
 
-    private ModbusResponse performModbusReadTransaction() throws ModbusException {
-        printRequestTraceMsg();
+    /**
+     * Executes a single request and returns the response of the device. Connections which share their physical line
+     * with other connections override this to schedule the request.
+     * 
+     * @param request
+     *            the request to execute
+     * @param access
+     *            whether the request reads or writes values
+     * @return the response of the device
+     * @throws ModbusException
+     *             if the transaction failed
+     */
+    protected ModbusResponse executeTransaction(ModbusRequest request, EAccess access) throws ModbusException {
+        transaction.setRequest(request);
         transaction.execute();
-        ModbusResponse response = transaction.getResponse();
-        return response;
+        return transaction.getResponse();
+    }
+
+    /**
+     * Sends a request without waiting for its response. Connections which allow several outstanding requests override
+     * this so that the requests of all channel groups of a sampling group are sent at once.
+     * 
+     * @param request
+     *            the request to send
+     * @return the future response or null if the connection executes one transaction at a time
+     */
+    protected CompletableFuture<ModbusResponse> sendRequest(ModbusRequest request) {
+        return null;
+    }
+
+    /**
+     * Waits for the response of a request sent with {@link #sendRequest(ModbusRequest)}.
+     * 
+     * @param response
+     *            the future response
+     * @return the response of the device
+     * @throws ModbusException
+     *             if the transaction failed
+     */
+    protected static ModbusResponse awaitResponse(CompletableFuture<ModbusResponse> response) throws ModbusException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModbusIOException("Interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ModbusException) {
+                throw (ModbusException) e.getCause();
+            }
+            throw new ModbusIOException(String.valueOf(e.getCause()));
+        }
     }
 
     // FIXME concept with retry is not working after a java.net.SocketTimeoutException: Read timed out
@@ -287,7 +456,7 @@ public abstract class ModbusConnection implements Connection {
             // +1 because id is incremented within transaction execution
 
             // int requestId = transaction.getTransactionID() + 1;
-            printRequestTraceMsg();
+            printRequestTraceMsg(transaction.getRequest());
 
             try {
                 transaction.execute();
@@ -343,31 +512,75 @@ public abstract class ModbusConnection implements Connection {
         return isMatching;
     }
 
-    private void executeWriteTransaction() throws ModbusException {
-        printRequestTraceMsg();
-        transaction.execute();
+    private void executeWriteTransaction(ModbusRequest request) throws ModbusException {
+        printRequestTraceMsg(request);
         // FIXME evaluate response
-        ModbusResponse response = transaction.getResponse();
+        ModbusResponse response = executeTransaction(request, EAccess.WRITE);
         printResponseTraceMsg(response);
     }
 
-    private synchronized BitVector readCoils(int startAddress, int count, int unitID) throws ModbusException {
-        ReadCoilsRequest readCoilsRequest = new ReadCoilsRequest();
-        readCoilsRequest.setReference(startAddress);
-        readCoilsRequest.setBitCount(count);
-        readCoilsRequest.setUnitID(unitID);
+    private ModbusRequest createReadRequest(EFunctionCode functionCode, int startAddress, int count, int unitID) {
+        ModbusRequest request;
+        switch (functionCode) {
+        case FC_01_READ_COILS:
+            ReadCoilsRequest readCoilsRequest = new ReadCoilsRequest();
+            readCoilsRequest.setReference(startAddress);
+            readCoilsRequest.setBitCount(count);
+            request = readCoilsRequest;
+            break;
+        case FC_02_READ_DISCRETE_INPUTS:
+            ReadInputDiscretesRequest readInputDiscretesRequest = new ReadInputDiscretesRequest();
+            readInputDiscretesRequest.setReference(startAddress);
+            readInputDiscretesRequest.setBitCount(count);
+            request = readInputDiscretesRequest;
+            break;
+        case FC_03_READ_HOLDING_REGISTERS:
+            ReadMultipleRegistersRequest readHoldingRegisterRequest = new ReadMultipleRegistersRequest();
+            readHoldingRegisterRequest.setReference(startAddress);
+            readHoldingRegisterRequest.setWordCount(count);
+            request = readHoldingRegisterRequest;
+            break;
+        case FC_04_READ_INPUT_REGISTERS:
+            ReadInputRegistersRequest readInputRegistersRequest = new ReadInputRegistersRequest();
+            readInputRegistersRequest.setReference(startAddress);
+            readInputRegistersRequest.setWordCount(count);
+            request = readInputRegistersRequest;
+            break;
+        default:
+            throw new RuntimeException("FunctionCode " + functionCode + " not supported yet");
+        }
+        request.setUnitID(unitID);
 
         if (transaction instanceof ModbusSerialTransaction) {
-            readCoilsRequest.setHeadless();
+            request.setHeadless();
         }
+        return request;
+    }
 
-        transaction.setRequest(readCoilsRequest);
-        ModbusResponse response = executeReadTransaction();
-        BitVector bitvector = ((ReadCoilsResponse) response).getCoils();
+    private static BitVector getBitVector(ModbusResponse response, int count) {
+        BitVector bitvector;
+        if (response instanceof ReadCoilsResponse) {
+            bitvector = ((ReadCoilsResponse) response).getCoils();
+        }
+        else {
+            bitvector = ((ReadInputDiscretesResponse) response).getDiscretes();
+        }
         bitvector.forceSize(count);
         return bitvector;
     }
 
+    private static InputRegister[] getRegisters(ModbusResponse response) {
+        if (response instanceof ReadMultipleRegistersResponse) {
+            return ((ReadMultipleRegistersResponse) response).getRegisters();
+        }
+        return ((ReadInputRegistersResponse) response).getRegisters();
+    }
+
+    private synchronized BitVector readCoils(int startAddress, int count, int unitID) throws ModbusException {
+        ModbusRequest request = createReadRequest(EFunctionCode.FC_01_READ_COILS, startAddress, count, unitID);
+        return getBitVector(executeReadTransaction(request), count);
+    }
+
     public BitVector readCoils(ModbusChannel channel) throws ModbusException {
         return readCoils(channel.getStartAddress(), channel.getCount(), channel.getUnitId());
     }
@@ -377,20 +590,9 @@ public abstract class ModbusConnection implements Connection {
     }
 
     private synchronized BitVector readDiscreteInputs(int startAddress, int count, int unitID) throws ModbusException {
-        ReadInputDiscretesRequest readInputDiscretesRequest = new ReadInputDiscretesRequest();
-        readInputDiscretesRequest.setReference(startAddress);
-        readInputDiscretesRequest.setBitCount(count);
-        readInputDiscretesRequest.setUnitID(unitID);
-
-        if (transaction instanceof ModbusSerialTransaction) {
-            readInputDiscretesRequest.setHeadless();
-        }
-
-        transaction.setRequest(readInputDiscretesRequest);
-        ModbusResponse response = executeReadTransaction();
-        BitVector bitvector = ((ReadInputDiscretesResponse) response).getDiscretes();
-        bitvector.forceSize(count);
-        return bitvector;
+        ModbusRequest request = createReadRequest(EFunctionCode.FC_02_READ_DISCRETE_INPUTS, startAddress, count,
+                unitID);
+        return getBitVector(executeReadTransaction(request), count);
     }
 
     public BitVector readDiscreteInputs(ModbusChannel channel) throws ModbusException {
@@ -403,18 +605,9 @@ public abstract class ModbusConnection implements Connection {
 
     private synchronized Register[] readHoldingRegisters(int startAddress, int count, int unitID)
             throws ModbusException {
-        ReadMultipleRegistersRequest readHoldingRegisterRequest = new ReadMultipleRegistersRequest();
-        readHoldingRegisterRequest.setReference(startAddress);
-        readHoldingRegisterRequest.setWordCount(count);
-        readHoldingRegisterRequest.setUnitID(unitID);
-
-        if (transaction instanceof ModbusSerialTransaction) {
-            readHoldingRegisterRequest.setHeadless();
-        }
-
-        transaction.setRequest(readHoldingRegisterRequest);
-        ModbusResponse response = executeReadTransaction();
-        return ((ReadMultipleRegistersResponse) response).getRegisters();
+        ModbusRequest request = createReadRequest(EFunctionCode.FC_03_READ_HOLDING_REGISTERS, startAddress, count,
+                unitID);
+        return ((ReadMultipleRegistersResponse) executeReadTransaction(request)).getRegisters();
     }
 
     public Register[] readHoldingRegisters(ModbusChannel channel) throws ModbusException {
@@ -431,18 +624,9 @@ public abstract class ModbusConnection implements Connection {
      */
     private synchronized InputRegister[] readInputRegisters(int startAddress, int count, int unitID)
             throws ModbusIOException, ModbusSlaveException, ModbusException {
-        ReadInputRegistersRequest readInputRegistersRequest = new ReadInputRegistersRequest();
-        readInputRegistersRequest.setReference(startAddress);
-        readInputRegistersRequest.setWordCount(count);
-        readInputRegistersRequest.setUnitID(unitID);
-
-        if (transaction instanceof ModbusSerialTransaction) {
-            readInputRegistersRequest.setHeadless();
-        }
-
-        transaction.setRequest(readInputRegistersRequest);
-        ModbusResponse response = executeReadTransaction();
-        return ((ReadInputRegistersResponse) response).getRegisters();
+        ModbusRequest request = createReadRequest(EFunctionCode.FC_04_READ_INPUT_REGISTERS, startAddress, count,
+                unitID);
+        return getRegisters(executeReadTransaction(request));
     }
 
     /**
@@ -476,8 +660,7 @@ public abstract class ModbusConnection implements Connection {
         writeCoilRequest.setReference(channel.getStartAddress());
         writeCoilRequest.setCoil(state);
         writeCoilRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeCoilRequest);
-        executeWriteTransaction();
+        executeWriteTransaction(writeCoilRequest);
     }
 
     public synchronized void writeMultipleCoils(ModbusChannel channel, BitVector coils) throws ModbusException {
@@ -485,8 +668,7 @@ public abstract class ModbusConnection implements Connection {
         writeMultipleCoilsRequest.setReference(channel.getStartAddress());
         writeMultipleCoilsRequest.setCoils(coils);
         writeMultipleCoilsRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeMultipleCoilsRequest);
-        executeWriteTransaction();
+        executeWriteTransaction(writeMultipleCoilsRequest);
     }
 
     public synchronized void writeSingleRegister(ModbusChannel channel, Register register) throws ModbusException {
@@ -494,8 +676,7 @@ public abstract class ModbusConnection implements Connection {
         writeSingleRegisterRequest.setReference(channel.getStartAddress());
         writeSingleRegisterRequest.setRegister(register);
         writeSingleRegisterRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeSingleRegisterRequest);
-        executeWriteTransaction();
+        executeWriteTransaction(writeSingleRegisterRequest);
     }
 
     public synchronized void writeMultipleRegisters(ModbusChannel channel, Register[] registers)
@@ -504,28 +685,25 @@ public abstract class ModbusConnection implements Connection {
         writeMultipleRegistersRequest.setReference(channel.getStartAddress());
         writeMultipleRegistersRequest.setRegisters(registers);
         writeMultipleRegistersRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeMultipleRegistersRequest);
-        executeWriteTransaction();
+        executeWriteTransaction(writeMultipleRegistersRequest);
     }
 
     // FIXME transaction ID unsupported by RTU since it is headless... create own debug for RTU
-    private void printRequestTraceMsg() {
+    private void printRequestTraceMsg(ModbusRequest request) {
 
         if (logger.isTraceEnabled()) {
-            logger.trace(createRequestTraceMsg());
+            logger.trace(createRequestTraceMsg(request));
         }
     }
 
     // FIXME: This debug message should be inside the transaction.execute() of the jamod.
     // The problem is, that the hex message (especially the transaction ID) is set within the execute method. The hex
     // message here shows a wrong transaction id.
-    private String createRequestTraceMsg() {
-
-        ModbusRequest request = transaction.getRequest();
+    private String createRequestTraceMsg(ModbusRequest request) {
 
         // Transaction ID is incremented within the transaction.execute command. To view correct transaction Id in debug
         // output the value is incremented by one
-        requestTransactionId = transaction.getTransactionID() + 1;
+        requestTransactionId = transaction != null ? transaction.getTransactionID() + 1 : request.getTransactionID();
 
         String traceMsg = "";
 
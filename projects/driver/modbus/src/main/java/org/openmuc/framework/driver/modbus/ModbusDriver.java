@@ -45,6 +45,7 @@ public final class ModbusDriver implements DriverService {
 
     private static final Logger logger = LoggerFactory.getLogger(ModbusDriver.class);
     private static final int DEFAULT_TIMEOUT_MS = 3000;
+    private static final int MAX_OUTSTANDING_REQUESTS = 64;
 
     @Override
     public DriverInfo getInfo() {
@@ -67,12 +68,15 @@ public final class ModbusDriver implements DriverService {
         // TCP: m_Socket.setSoTimeout(m_Timeout);
         // RTU: m_SerialPort.enableReceiveTimeout(ms);
 
-        final String TCP_SETTINGS = "  TCP[:timeout=<timoutInMs>] (e.g. TCP or TCP:timeout=3000)";
+        final String TCP_SETTINGS = "  TCP[:timeout=<timoutInMs>][:pipeline=<maxOutstandingRequests>] (e.g. TCP or TCP:timeout=3000)";
         final String UDP_SETTINGS = "  UDP[:timeout=<timoutInMs>] (e.g. UDP or UDP:timeout=3000)";
         final String RTUTCP_SETTINGS = "  RTUTCP[:timeout=<timoutInMs>] ";
         final String RTU_SETTINGS = "  RTU:<ENCODING>:<BAUDRATE>:<DATABITS>:<PARITY>:<STOPBITS>:<ECHO>:<FLOWCONTROL_IN>:<FLOWCONTEOL_OUT>[:timeout=<timoutInMs>]";
+        final String READ_PLAN_SETTINGS = "All types additionally accept [:maxGap=<registers>][:maxRegisters=<registers>] to limit how channels are coalesced into read requests (defaults: "
+                + "maxGap spans a sampling group and is 0 otherwise, maxRegisters=" + ModbusReadPlan.MAX_REGISTERS
+                + ")";
         final String DEVICE_SETTINGS = "Device settings depend on selected type: \n" + TCP_SETTINGS + "\n"
-                + UDP_SETTINGS + "\n" + RTUTCP_SETTINGS + "\n" + RTU_SETTINGS;
+                + UDP_SETTINGS + "\n" + RTUTCP_SETTINGS + "\n" + RTU_SETTINGS + "\n" + READ_PLAN_SETTINGS;
 
         final String CHANNEL_ADDRESS = "<UnitId>:<PrimaryTable>:<Address>:<Datatyp>";
 
@@ -109,8 +113,8 @@ public final class ModbusDriver implements DriverService {
                 }
             }
             else if (mode.equalsIgnoreCase("TCP")) {
-
-                connection = new ModbusTCPConnection(deviceAddress, timeoutMs, false);
+                int maxInFlight = getIntFromSettings(settingsArray, "pipeline", 1, 1, MAX_OUTSTANDING_REQUESTS);
+                connection = new ModbusTCPConnection(deviceAddress, timeoutMs, false, maxInFlight);
             }
             else if (mode.equalsIgnoreCase("RTUTCP")) {
                 connection = new ModbusTCPConnection(deviceAddress, timeoutMs, true);
@@ -121,6 +125,12 @@ public final class ModbusDriver implements DriverService {
             else {
                 throw new ConnectionException("Unknown Mode. Use RTU, TCP or RTUTCP.");
             }
+
+            int maxGap = getIntFromSettings(settingsArray, "maxGap", ModbusConnection.DEFAULT_MAX_GAP, 0,
+                    ModbusReadPlan.MAX_BITS);
+            int maxRegisters = getIntFromSettings(settingsArray, "maxRegisters", ModbusReadPlan.MAX_REGISTERS, 1,
+                    ModbusReadPlan.MAX_REGISTERS);
+            connection.setReadPlanLimits(maxGap, maxRegisters);
         }
         return connection;
 
@@ -162,6 +172,28 @@ public final class ModbusDriver implements DriverService {
         return timeoutMs;
     }
 
+    private int getIntFromSettings(String[] settingsArray, String name, int defaultValue, int minValue,
+            int maxValue) {
+
+        for (String setting : settingsArray) {
+            String[] param = setting.split("=");
+            if (param.length == 2 && param[0].trim().equalsIgnoreCase(name)) {
+                try {
+                    int value = Integer.parseInt(param[1].trim());
+                    if (value >= minValue && value <= maxValue) {
+                        return value;
+                    }
+                } catch (NumberFormatException e) {
+                    // warning below
+                }
+                logger.warn("Invalid setting {}. Value must be between {} and {}. Using default of {}.", setting,
+                        minValue, maxValue, defaultValue);
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
     @Override
     public void scanForDevices(String settings, DriverDeviceScanListener listener)
             throws UnsupportedOperationException, ArgumentSyntaxException, ScanException, ScanInterruptedException {
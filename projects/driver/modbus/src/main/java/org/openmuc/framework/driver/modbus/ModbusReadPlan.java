@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.modbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans the read requests for the channels of one read call of a device. Channels with the same unit id and function
+ * code are coalesced into as few {@link ModbusChannelGroup}s as possible, each of which is read with a single request.
+ * Two channels are read with the same request if there are at most <code>maxGap</code> unused registers (or coils)
+ * between them and the request does not exceed the maximum number of registers (or coils) of one request. Unless
+ * <code>maxGap</code> is set, the channels of an explicit sampling group are read with one request spanning all of
+ * them, regardless of unused registers in between, and the other channels only if their addresses are adjacent.
+ */
+public class ModbusReadPlan {
+
+    /** Maximum number of registers which can be read with one FC03/FC04 request */
+    public static final int MAX_REGISTERS = 125;
+
+    /** Maximum number of coils or discrete inputs which can be read with one FC01/FC02 request */
+    public static final int MAX_BITS = 2000;
+
+    private final String samplingGroup;
+    private final List<ModbusChannelGroup> channelGroups = new ArrayList<>();
+
+    /**
+     * @param samplingGroup
+     *            the sampling group the channels are read for
+     * @param channels
+     *            the channels in the order of their containers
+     * @param maxGap
+     *            maximum number of unused registers (or coils) between two channels read with the same request,
+     *            or a negative value for the default described above
+     * @param maxRegisters
+     *            maximum number of registers read with one request, must not exceed {@link #MAX_REGISTERS}
+     */
+    public ModbusReadPlan(String samplingGroup, List<ModbusChannel> channels, int maxGap, int maxRegisters) {
+        this.samplingGroup = samplingGroup;
+
+        Map<String, List<Integer>> channelsPerRequestType = new LinkedHashMap<>();
+        for (int i = 0; i < channels.size(); i++) {
+            ModbusChannel channel = channels.get(i);
+            String requestType = channel.getUnitId() + ":" + channel.getFunctionCode();
+            channelsPerRequestType.computeIfAbsent(requestType, key -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> indices : channelsPerRequestType.values()) {
+            EFunctionCode functionCode = channels.get(indices.get(0)).getFunctionCode();
+            int maxCount = isBitFunctionCode(functionCode) ? MAX_BITS : Math.min(maxRegisters, MAX_REGISTERS);
+            addChannelGroups(channels, indices, maxGap >= 0 ? maxGap : getDefaultMaxGap(maxCount), maxCount);
+        }
+    }
+
+    private int getDefaultMaxGap(int maxCount) {
+        if (samplingGroup == null || samplingGroup.isEmpty()) {
+            return 0;
+        }
+        return maxCount;
+    }
+
+    private static boolean isBitFunctionCode(EFunctionCode functionCode) {
+        return functionCode == EFunctionCode.FC_01_READ_COILS
+                || functionCode == EFunctionCode.FC_02_READ_DISCRETE_INPUTS;
+    }
+
+    /**
+     * Coalesces channels of the same request type in the order of their addresses. Starting a new group only if the
+     * next channel does not fit into the current one results in the least number of groups.
+     */
+    private void addChannelGroups(List<ModbusChannel> channels, List<Integer> indices, int maxGap, int maxCount) {
+        Collections.sort(indices, Comparator.comparingInt(index -> channels.get(index).getStartAddress()));
+
+        List<Integer> groupIndices = new ArrayList<>();
+        int groupStart = 0;
+        int groupEnd = 0;
+
+        for (int index : indices) {
+            ModbusChannel channel = channels.get(index);
+            int channelStart = channel.getStartAddress();
+            int channelEnd = channelStart + channel.getCount();
+
+            if (!groupIndices.isEmpty() && (channelStart - groupEnd > maxGap
+                    || Math.max(groupEnd, channelEnd) - groupStart > maxCount)) {
+                addChannelGroup(channels, groupIndices);
+                groupIndices = new ArrayList<>();
+            }
+
+            if (groupIndices.isEmpty()) {
+                groupStart = channelStart;
+                groupEnd = channelEnd;
+            }
+            else {
+                groupEnd = Math.max(groupEnd, channelEnd);
+            }
+            groupIndices.add(index);
+        }
+
+        if (!groupIndices.isEmpty()) {
+            addChannelGroup(channels, groupIndices);
+        }
+    }
+
+    private void addChannelGroup(List<ModbusChannel> channels, List<Integer> groupIndices) {
+        ArrayList<ModbusChannel> groupChannels = new ArrayList<>(groupIndices.size());
+        int[] containerIndices = new int[groupIndices.size()];
+        for (int i = 0; i < groupIndices.size(); i++) {
+            groupChannels.add(channels.get(groupIndices.get(i)));
+            containerIndices[i] = groupIndices.get(i);
+        }
+        channelGroups.add(new ModbusChannelGroup(samplingGroup, groupChannels, containerIndices));
+    }
+
+    public String getInfo() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SamplingGroup: '").append(samplingGroup).append("' Requests: ").append(channelGroups.size());
+        for (ModbusChannelGroup channelGroup : channelGroups) {
+            sb.append("\n  ")
+                    .append(channelGroup.getUnitId())
+                    .append(':')
+                    .append(channelGroup.getFunctionCode())
+                    .append(':')
+                    .append(channelGroup.getStartAddress())
+                    .append(" count ")
+                    .append(channelGroup.getCount())
+                    .append(", channels: ")
+                    .append(channelGroup.getChannels().size());
+        }
+        return sb.toString();
+    }
+
+    public String getSamplingGroup() {
+        return samplingGroup;
+    }
+
+    public List<ModbusChannelGroup> getChannelGroups() {
+        return channelGroups;
+    }
+
+}
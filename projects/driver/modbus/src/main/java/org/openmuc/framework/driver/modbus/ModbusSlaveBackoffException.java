@@ -18,25 +18,21 @@
  * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
  *
  */
+package org.openmuc.framework.driver.modbus;
 
-package org.openmuc.framework.core.datamanager;
+import com.ghgande.j2mod.modbus.ModbusException;
 
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.dataaccess.RecordListener;
-
-public final class ListenerNotifier extends Thread {
-
-    RecordListener listener;
-    Record record;
+/**
+ * Thrown instead of sending a request to a slave which is backed off because it did not respond several times in a
+ * row. Unlike a {@link com.ghgande.j2mod.modbus.ModbusIOException} the connection itself is fine, so the request's
+ * channels time out without the connection being closed.
+ */
+public class ModbusSlaveBackoffException extends ModbusException {
 
-    public ListenerNotifier(RecordListener listener, Record record) {
-        this.listener = listener;
-        this.record = record;
-    }
+    private static final long serialVersionUID = -2290347516081268795L;
 
-    @Override
-    public void run() {
-        listener.newRecord(record);
+    public ModbusSlaveBackoffException(String message) {
+        super(message);
     }
 
 }
@@ -26,12 +26,10 @@ import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
-import org.openmuc.framework.driver.modbus.EDatatype;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
+import org.openmuc.framework.driver.modbus.ModbusSlaveBackoffException;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.openmuc.framework.driver.spi.ChannelValueContainer;
 import org.openmuc.framework.driver.spi.ConnectionException;
@@ -43,15 +41,14 @@ import com.fazecast.jSerialComm.SerialPort;
 import com.ghgande.j2mod.modbus.Modbus;
 import com.ghgande.j2mod.modbus.ModbusException;
 import com.ghgande.j2mod.modbus.ModbusIOException;
-import com.ghgande.j2mod.modbus.io.ModbusSerialTransaction;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
 import com.ghgande.j2mod.modbus.net.AbstractSerialConnection;
-import com.ghgande.j2mod.modbus.net.SerialConnection;
 import com.ghgande.j2mod.modbus.util.SerialParameters;
 
 /**
- * 
- * TODO
- * 
+ * Modbus connection using a serial port. Devices connected to the same serial port share the port through a
+ * {@link ModbusSerialBus}.
  */
 public class ModbusRTUConnection extends ModbusConnection {
 
@@ -71,25 +68,20 @@ public class ModbusRTUConnection extends ModbusConnection {
     private static final String ECHO_TRUE = "ECHO_TRUE";
     private static final String ECHO_FALSE = "ECHO_FALSE";
 
-    private final SerialConnection connection;
-    private ModbusSerialTransaction transaction;
+    private final SerialParameters params;
+    private volatile ModbusSerialBus bus;
 
     public ModbusRTUConnection(String deviceAddress, String[] settings, int timoutMs)
             throws ModbusConfigurationException {
 
         super();
 
-        SerialParameters params = setParameters(deviceAddress, settings);
-        connection = new SerialConnection(params);
+        params = setParameters(deviceAddress, settings);
 
         try {
-            connect();
-            // connection.setReceiveTimeout(timoutMs);
-            transaction = new ModbusSerialTransaction(connection);
-            transaction.setSerialConnection(connection);
-            setTransaction(transaction);
-
-        } catch (Exception e) {
+            // all devices on the same serial port share its connection
+            bus = ModbusSerialBus.acquire(params);
+        } catch (ConnectionException e) {
             logger.error("Unable to connect to device " + deviceAddress, e);
             throw new ModbusConfigurationException("Wrong Modbus RTU configuration. Check configuration file");
         }
@@ -97,21 +89,31 @@ public class ModbusRTUConnection extends ModbusConnection {
     }
 
     @Override
-    public void connect() throws ConnectionException {
-        if (!connection.isOpen()) {
+    public synchronized void connect() throws ConnectionException {
+        if (bus == null) {
             try {
-                connection.open();
-            } catch (Exception e) {
-                throw new ConnectionException(e);
+                bus = ModbusSerialBus.acquire(params);
+            } catch (ModbusConfigurationException e) {
+                throw new ConnectionException(e.getMessage());
             }
         }
     }
 
     @Override
-    public void disconnect() {
-        if (connection.isOpen()) {
-            connection.close();
+    public synchronized void disconnect() {
+        if (bus != null) {
+            bus.release();
+            bus = null;
+        }
+    }
+
+    @Override
+    protected ModbusResponse executeTransaction(ModbusRequest request, EAccess access) throws ModbusException {
+        ModbusSerialBus currentBus = bus;
+        if (currentBus == null) {
+            throw new ModbusIOException("Serial port " + params.getPortName() + " is not connected");
         }
+        return currentBus.execute(request, access);
     }
 
     private SerialParameters setParameters(String address, String[] settings) throws ModbusConfigurationException {
@@ -258,57 +260,9 @@ public class ModbusRTUConnection extends ModbusConnection {
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws UnsupportedOperationException, ConnectionException {
 
-        if (samplingGroup.isEmpty()) {
-            for (ChannelRecordContainer container : containers) {
-
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
-
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        printResponseValue(channel, value);
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress(), e);
-                    disconnect();
-                    throw new ConnectionException("ModbusIOException");
-
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
-
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-            }
-        }
-        // reads whole samplingGroup at once
-        else {
-            readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
-        }
-
-        return null;
-    }
-
-    private void printResponseValue(ModbusChannel channel, Value value) {
-        if (channel.getDatatype().equals(EDatatype.BYTEARRAY)) {
-            final StringBuilder sb = new StringBuilder();
-            for (byte b : value.asByteArray()) {
-                sb.append(String.format("%02x ", b));
-            }
-            logger.trace("Value of response: " + sb.toString());
-        }
-        else {
-            logger.trace("Value of response: " + value.toString());
-        }
+        // reads all channels with as few requests as possible, channels of different sampling groups are read with
+        // separate calls
+        return readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
     }
 
     @Override
@@ -323,6 +277,10 @@ public class ModbusRTUConnection extends ModbusConnection {
                 writeChannel(channel, container.getValue());
                 container.setFlag(Flag.VALID);
 
+            } catch (ModbusSlaveBackoffException e) {
+                logger.debug("Skipped writing channel {}: {}", channel.getChannelAddress(), e.getMessage());
+                container.setFlag(Flag.TIMEOUT);
+
             } catch (ModbusIOException e) {
                 logger.error("ModbusIOException while writing channel:" + channel.getChannelAddress(), e);
                 disconnect();
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.rtu;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusSlaveBackoffException;
+import org.openmuc.framework.driver.spi.ConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.io.ModbusSerialTransaction;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.net.SerialConnection;
+import com.ghgande.j2mod.modbus.util.SerialParameters;
+
+/**
+ * Arbitrates the access of all Modbus RTU devices connected to the same serial port. The bus owns the serial
+ * connection of the port and executes the transactions of all devices one after another: writes before reads,
+ * otherwise in the order they were requested. Between two frames the bus stays silent for at least 3.5 character
+ * times.
+ * <p>
+ * The response times of every slave on the bus are tracked. A slave which fails to respond
+ * {@link #BACKOFF_THRESHOLD} times in a row is backed off: its requests fail immediately with a
+ * {@link ModbusSlaveBackoffException} until the backoff time has passed, which doubles with every further failure, so
+ * that it does not use up the time of the other slaves.
+ */
+class ModbusSerialBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusSerialBus.class);
+
+    /** Number of consecutive failures after which a slave is backed off */
+    static final int BACKOFF_THRESHOLD = 3;
+    static final long MIN_BACKOFF_MS = 1000;
+    static final long MAX_BACKOFF_MS = 60000;
+
+    private static final int PRIORITY_WRITE = 0;
+    private static final int PRIORITY_READ = 1;
+
+    /** Buses of all open serial ports, by port name */
+    private static final Map<String, ModbusSerialBus> buses = new HashMap<>();
+
+    /**
+     * Executes single transactions on the serial line.
+     */
+    interface Transport {
+
+        ModbusResponse execute(ModbusRequest request) throws ModbusException;
+
+        void close();
+    }
+
+    private final String portName;
+    private final SerialParameters parameters;
+    private final Transport transport;
+    private final long interFrameSilenceNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition busReleased = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+    private final Map<Integer, UnitStatistics> statistics = new HashMap<>();
+    private long nextSequenceNumber = 0;
+    private boolean busy = false;
+    private long lastFrameEndNanos;
+
+    /** Number of connections using the bus, only accessed while holding the lock of {@link #buses} */
+    private int users = 0;
+
+    ModbusSerialBus(String portName, SerialParameters parameters, Transport transport, long interFrameSilenceNanos) {
+        this.portName = portName;
+        this.parameters = parameters;
+        this.transport = transport;
+        this.interFrameSilenceNanos = interFrameSilenceNanos;
+        this.lastFrameEndNanos = System.nanoTime() - interFrameSilenceNanos;
+    }
+
+    /**
+     * Returns the bus of the serial port of the given parameters and opens the port if it is not used by another
+     * device yet. Every call has to be followed by a call to {@link #release()}.
+     */
+    static ModbusSerialBus acquire(SerialParameters parameters)
+            throws ModbusConfigurationException, ConnectionException {
+        synchronized (buses) {
+            ModbusSerialBus bus = buses.get(parameters.getPortName());
+            if (bus == null) {
+                bus = new ModbusSerialBus(parameters.getPortName(), parameters, openTransport(parameters),
+                        getInterFrameSilenceNanos(parameters.getBaudRate()));
+                buses.put(parameters.getPortName(), bus);
+                logger.info("Opened serial port {} for Modbus RTU", parameters.getPortName());
+            }
+            else if (!hasEqualLineSettings(bus.parameters, parameters)) {
+                throw new ModbusConfigurationException("Serial port " + parameters.getPortName()
+                        + " is already used by a Modbus device with different settings. Check configuration file");
+            }
+            bus.users++;
+            return bus;
+        }
+    }
+
+    /**
+     * Releases the bus. The serial port is closed once it is no longer used by any device.
+     */
+    void release() {
+        synchronized (buses) {
+            users--;
+            if (users == 0) {
+                buses.remove(portName);
+                transport.close();
+                logger.info("Closed serial port {}, {}", portName, getStatisticsInfo());
+            }
+        }
+    }
+
+    private static Transport openTransport(SerialParameters parameters) throws ConnectionException {
+        SerialConnection connection = new SerialConnection(parameters);
+        try {
+            connection.open();
+        } catch (Exception e) {
+            throw new ConnectionException(e);
+        }
+
+        ModbusSerialTransaction transaction = new ModbusSerialTransaction(connection);
+        // retries are done by the framework, a retry would delay the other devices on the bus
+        transaction.setRetries(0);
+
+        return new Transport() {
+
+            @Override
+            public ModbusResponse execute(ModbusRequest request) throws ModbusException {
+                transaction.setRequest(request);
+                transaction.execute();
+                return transaction.getResponse();
+            }
+
+            @Override
+            public void close() {
+                connection.close();
+            }
+        };
+    }
+
+    private static boolean hasEqualLineSettings(SerialParameters parameters, SerialParameters other) {
+        return parameters.getBaudRate() == other.getBaudRate() && parameters.getDatabits() == other.getDatabits()
+                && parameters.getParity() == other.getParity() && parameters.getStopbits() == other.getStopbits()
+                && parameters.getEncoding().equals(other.getEncoding());
+    }
+
+    /**
+     * The Modbus serial line specification requires a silent interval of 3.5 characters between two frames. Above
+     * 19200 baud a fixed interval of 1.75 ms is recommended.
+     */
+    static long getInterFrameSilenceNanos(int baudRate) {
+        if (baudRate <= 0 || baudRate > 19200) {
+            return TimeUnit.MICROSECONDS.toNanos(1750);
+        }
+        // one character consists of 11 bits: start bit, 8 data bits, parity bit and stop bit
+        return (long) Math.ceil(3.5 * 11 * TimeUnit.SECONDS.toNanos(1) / baudRate);
+    }
+
+    /**
+     * Executes the request as soon as it is the request's turn on the bus.
+     *
+     * @param request
+     *            the request to execute
+     * @param access
+     *            writes are executed before waiting reads
+     * @return the response of the slave
+     * @throws ModbusIOException
+     *             if the slave did not respond
+     * @throws ModbusSlaveBackoffException
+     *             if the slave is backed off
+     * @throws ModbusException
+     *             if the slave responded with an exception
+     */
+    ModbusResponse execute(ModbusRequest request, EAccess access) throws ModbusException {
+        UnitStatistics unit = awaitTurn(request.getUnitID(), access);
+
+        long startNanos = System.nanoTime();
+        try {
+            awaitInterFrameSilence(startNanos);
+            startNanos = System.nanoTime();
+
+            ModbusResponse response = transport.execute(request);
+            unit.responseReceived(System.nanoTime() - startNanos);
+            return response;
+
+        } catch (ModbusIOException e) {
+            unit.responseFailed(System.nanoTime());
+            throw e;
+        } catch (ModbusException e) {
+            // the slave responded with an exception response
+            unit.responseReceived(System.nanoTime() - startNanos);
+            throw e;
+        } finally {
+            releaseTurn();
+        }
+    }
+
+    private UnitStatistics awaitTurn(int unitId, EAccess access)
+            throws ModbusIOException, ModbusSlaveBackoffException {
+        lock.lock();
+        try {
+            UnitStatistics unit = statistics.computeIfAbsent(unitId, UnitStatistics::new);
+            unit.checkBackoff(System.nanoTime());
+
+            Ticket ticket = new Ticket(access == EAccess.WRITE ? PRIORITY_WRITE : PRIORITY_READ,
+                    nextSequenceNumber++);
+            queue.add(ticket);
+            try {
+                while (busy || queue.peek() != ticket) {
+                    busReleased.await();
+                }
+            } catch (InterruptedException e) {
+                queue.remove(ticket);
+                busReleased.signalAll();
+                Thread.currentThread().interrupt();
+                throw new ModbusIOException("Interrupted while waiting for serial port " + portName);
+            }
+
+            queue.poll();
+            try {
+                // the slave might have been backed off while waiting
+                unit.checkBackoff(System.nanoTime());
+            } catch (ModbusSlaveBackoffException e) {
+                busReleased.signalAll();
+                throw e;
+            }
+            busy = true;
+            return unit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseTurn() {
+        lock.lock();
+        try {
+            lastFrameEndNanos = System.nanoTime();
+            busy = false;
+            busReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitInterFrameSilence(long nowNanos) {
+        long silenceNanos = lastFrameEndNanos + interFrameSilenceNanos - nowNanos;
+        if (silenceNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(silenceNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of the slave or null if no request has been sent to it yet
+     */
+    UnitStatistics getStatistics(int unitId) {
+        lock.lock();
+        try {
+            return statistics.get(unitId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String getStatisticsInfo() {
+        lock.lock();
+        try {
+            return statistics.values().toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getInterFrameSilenceNanos() {
+        return interFrameSilenceNanos;
+    }
+
+    private static class Ticket implements Comparable<Ticket> {
+
+        private final int priority;
+        private final long sequenceNumber;
+
+        Ticket(int priority, long sequenceNumber) {
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    /**
+     * Response time statistics of one slave on the bus.
+     */
+    static class UnitStatistics {
+
+        private final int unitId;
+        private long responses = 0;
+        private long failures = 0;
+        private int consecutiveFailures = 0;
+        private long totalResponseNanos = 0;
+        private long maxResponseNanos = 0;
+        private long backoffEndNanos = 0;
+
+        UnitStatistics(int unitId) {
+            this.unitId = unitId;
+        }
+
+        synchronized void checkBackoff(long nowNanos) throws ModbusSlaveBackoffException {
+            if (consecutiveFailures >= BACKOFF_THRESHOLD && nowNanos - backoffEndNanos < 0) {
+                throw new ModbusSlaveBackoffException("Slave " + unitId + " did not respond " + consecutiveFailures
+                        + " times in a row. Backing off for another "
+                        + TimeUnit.NANOSECONDS.toMillis(backoffEndNanos - nowNanos) + " ms");
+            }
+        }
+
+        synchronized void responseReceived(long responseNanos) {
+            responses++;
+            totalResponseNanos += responseNanos;
+            maxResponseNanos = Math.max(maxResponseNanos, responseNanos);
+            if (consecutiveFailures >= BACKOFF_THRESHOLD) {
+                logger.info("Slave {} responds again", unitId);
+            }
+            consecutiveFailures = 0;
+        }
+
+        synchronized void responseFailed(long nowNanos) {
+            failures++;
+            consecutiveFailures++;
+            if (consecutiveFailures >= BACKOFF_THRESHOLD) {
+                int exponent = Math.min(consecutiveFailures - BACKOFF_THRESHOLD, 16);
+                long backoffMs = Math.min(MIN_BACKOFF_MS << exponent, MAX_BACKOFF_MS);
+                backoffEndNanos = nowNanos + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+                logger.warn("Slave {} did not respond {} times in a row, backing off for {} ms", unitId,
+                        consecutiveFailures, backoffMs);
+            }
+        }
+
+        synchronized long getResponses() {
+            return responses;
+        }
+
+        synchronized long getFailures() {
+            return failures;
+        }
+
+        synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        synchronized long getAverageResponseTimeMs() {
+            return responses == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalResponseNanos / responses);
+        }
+
+        synchronized long getMaxResponseTimeMs() {
+            return TimeUnit.NANOSECONDS.toMillis(maxResponseNanos);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "slave " + unitId + ": responses=" + responses + ", failures=" + failures + ", avg="
+                    + getAverageResponseTimeMs() + " ms, max=" + getMaxResponseTimeMs() + " ms";
+        }
+    }
+
+}
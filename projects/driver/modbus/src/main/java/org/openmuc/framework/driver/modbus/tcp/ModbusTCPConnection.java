@@ -20,14 +20,15 @@
  */
 package org.openmuc.framework.driver.modbus.tcp;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
@@ -42,10 +43,13 @@ import org.slf4j.LoggerFactory;
 import com.ghgande.j2mod.modbus.ModbusException;
 import com.ghgande.j2mod.modbus.ModbusIOException;
 import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
 import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
 
 /**
- * Modbus connection using TCP for data transfer
+ * Modbus connection using TCP for data transfer. Optionally several requests can be outstanding at the same time, see
+ * {@link ModbusTCPPipeline}.
  */
 public class ModbusTCPConnection extends ModbusConnection {
 
@@ -56,16 +60,42 @@ public class ModbusTCPConnection extends ModbusConnection {
     private final int timeoutMs;
     private final boolean isRTUTCP;
 
+    /** Used instead of the j2mod connection if several outstanding requests are allowed */
+    private volatile ModbusTCPPipeline pipeline;
+    private InetSocketAddress pipelineAddress;
+    private final int maxInFlight;
+
     public ModbusTCPConnection(String deviceAddress, int timeoutMs, boolean isRTUTCP) throws ConnectionException {
+        this(deviceAddress, timeoutMs, isRTUTCP, 1);
+    }
+
+    /**
+     * @param maxInFlight
+     *            maximum number of outstanding requests. If greater than 1, requests are sent without waiting for the
+     *            responses of previous requests. Not supported for RTU over TCP, which has no transaction id.
+     */
+    public ModbusTCPConnection(String deviceAddress, int timeoutMs, boolean isRTUTCP, int maxInFlight)
+            throws ConnectionException {
 
         super();
         this.timeoutMs = timeoutMs;
         this.isRTUTCP = isRTUTCP;
 
+        if (maxInFlight > 1 && isRTUTCP) {
+            logger.warn("RTU over TCP has no transaction id, ignoring maximum of {} outstanding requests", maxInFlight);
+            maxInFlight = 1;
+        }
+        this.maxInFlight = maxInFlight;
+
         ModbusIpDeviceAddress address = new ModbusIpDeviceAddress(deviceAddress);
         try {
-            connection = new TCPMasterConnection(address.getInetAddress());
-            connection.setPort(address.getPort());
+            if (isPipelined()) {
+                pipelineAddress = new InetSocketAddress(address.getInetAddress(), address.getPort());
+            }
+            else {
+                connection = new TCPMasterConnection(address.getInetAddress());
+                connection.setPort(address.getPort());
+            }
             connect();
         } catch (Exception e) {
             logger.error("Unable to connect to device " + deviceAddress, e);
@@ -74,9 +104,26 @@ public class ModbusTCPConnection extends ModbusConnection {
         logger.info("Modbus Device: {} connected", deviceAddress);
     }
 
+    private boolean isPipelined() {
+        return maxInFlight > 1;
+    }
+
     @Override
     public void connect() throws ConnectionException {
 
+        if (isPipelined()) {
+            if (pipeline == null || !pipeline.isConnected()) {
+                ModbusTCPPipeline newPipeline = new ModbusTCPPipeline(pipelineAddress, maxInFlight, timeoutMs);
+                try {
+                    newPipeline.connect();
+                } catch (IOException e) {
+                    throw new ConnectionException(e);
+                }
+                pipeline = newPipeline;
+            }
+            return;
+        }
+
         if (connection != null && !connection.isConnected()) {
             try {
                 connection.connect(isRTUTCP);
@@ -96,6 +143,9 @@ public class ModbusTCPConnection extends ModbusConnection {
     public void disconnect() {
         try {
             logger.info("Disconnect Modbus TCP device");
+            if (pipeline != null) {
+                pipeline.close();
+            }
             if (connection != null && connection.isConnected()) {
                 connection.close();
                 transaction = null;
@@ -106,60 +156,40 @@ public class ModbusTCPConnection extends ModbusConnection {
 
     }
 
-    @Override
-    public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
-            throws UnsupportedOperationException, ConnectionException {
-
-        // reads channels one by one
-        if (samplingGroup.isEmpty()) {
-            for (ChannelRecordContainer container : containers) {
+    private boolean isConnected() {
+        if (isPipelined()) {
+            return pipeline != null && pipeline.isConnected();
+        }
+        return connection.isConnected();
+    }
 
-                // TODO consider retries in sampling timeout (e.g. one time 12000 ms or three times 4000 ms)
-                // FIXME quite inconvenient/complex to get the timeout from config, since the driver doesn't know the
-                // device id!
+    @Override
+    protected ModbusResponse executeTransaction(ModbusRequest request, EAccess access) throws ModbusException {
+        if (isPipelined()) {
+            return awaitResponse(pipeline.submit(request));
+        }
+        return super.executeTransaction(request, access);
+    }
 
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
+    @Override
+    protected CompletableFuture<ModbusResponse> sendRequest(ModbusRequest request) {
+        if (isPipelined()) {
+            return pipeline.submit(request);
+        }
+        return null;
+    }
 
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Value of response: {}", value.toString());
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress()
-                            + " used timeout: " + timeoutMs + " ms", e);
-                    disconnect();
-                    throw new ConnectionException("Try to solve issue with reconnect.");
-
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-                if (!connection.isConnected()) {
-                    throw new ConnectionException("Lost connection.");
-                }
+    @Override
+    public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
+            throws UnsupportedOperationException, ConnectionException {
 
-            }
+        // reads all channels with as few requests as possible, channels of different sampling groups are read with
+        // separate calls
+        Object readPlan = readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
+        if (!isConnected()) {
+            throw new ConnectionException("Lost connection.");
         }
-        // reads whole samplingGroup at once
-        else {
-            readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
-            if (!connection.isConnected()) {
-                throw new ConnectionException("Lost connection.");
-            }
-        }
-
-        return null;
+        return readPlan;
     }
 
     @Override
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ExceptionResponse;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+/**
+ * Modbus TCP connection which allows several outstanding requests. Requests are sent without waiting for the
+ * responses of previous requests and responses are matched to their requests by the transaction id of the MBAP header,
+ * so a gateway which processes requests in parallel may also respond out of order. The socket is served by a single
+ * thread using a non-blocking channel.
+ * <p>
+ * Every request times out individually. A response which arrives after its request timed out is discarded.
+ */
+class ModbusTCPPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusTCPPipeline.class);
+
+    /** Transaction id, protocol id and length, the unit id is already counted by the length */
+    private static final int MBAP_HEADER_LENGTH = 6;
+    private static final int MAX_FRAME_LENGTH = 260;
+    private static final int MAX_TRANSACTION_ID = 0xFFFF;
+
+    private final InetSocketAddress address;
+    private final int timeoutMs;
+    private final Semaphore inFlightPermits;
+
+    private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> outgoingFrames = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(MAX_FRAME_LENGTH * 4);
+    private ByteBuffer currentFrame;
+    private int lastTransactionId = 0;
+
+    private SocketChannel channel;
+    private Selector selector;
+    private volatile boolean connected = false;
+
+    /**
+     * @param address
+     *            address of the Modbus TCP server
+     * @param maxInFlight
+     *            maximum number of outstanding requests
+     * @param timeoutMs
+     *            timeout for connecting and for the response of every request
+     */
+    ModbusTCPPipeline(InetSocketAddress address, int maxInFlight, int timeoutMs) {
+        this.address = address;
+        this.timeoutMs = timeoutMs;
+        this.inFlightPermits = new Semaphore(maxInFlight, true);
+    }
+
+    void connect() throws IOException {
+        selector = Selector.open();
+        channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, timeoutMs);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            closeChannel();
+            throw e;
+        }
+        connected = true;
+
+        Thread ioThread = new Thread(this::serve, "OpenMUC Modbus TCP Pipeline - " + address);
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Closes the connection. All outstanding requests fail.
+     */
+    void close() {
+        connected = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        failPendingRequests("Connection to " + address + " closed");
+    }
+
+    /**
+     * Sends the request as soon as less than the maximum number of requests are outstanding.
+     *
+     * @param request
+     *            the request to send, its transaction id is set by the pipeline
+     * @return the future response, which completes exceptionally with a {@link ModbusIOException} if the request timed
+     *         out or the connection was closed and with a {@link ModbusSlaveException} if the server responded with an
+     *         exception response.
+     */
+    CompletableFuture<ModbusResponse> submit(ModbusRequest request) {
+        CompletableFuture<ModbusResponse> response = new CompletableFuture<>();
+        if (!connected) {
+            response.completeExceptionally(new ModbusIOException("Not connected to " + address));
+            return response;
+        }
+
+        try {
+            if (!inFlightPermits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                response.completeExceptionally(new ModbusIOException(
+                        "Timeout while waiting for an outstanding request to " + address + " to complete"));
+                return response;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.completeExceptionally(new ModbusIOException("Interrupted while waiting to send request"));
+            return response;
+        }
+
+        ByteBuffer frame;
+        PendingRequest pendingRequest;
+        synchronized (this) {
+            int transactionId = nextTransactionId();
+            request.setTransactionID(transactionId);
+            pendingRequest = new PendingRequest(transactionId, request.getFunctionCode(), response,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            pendingRequests.put(transactionId, pendingRequest);
+        }
+        response.whenComplete((result, e) -> {
+            pendingRequests.remove(pendingRequest.transactionId, pendingRequest);
+            inFlightPermits.release();
+        });
+
+        try {
+            frame = encode(request);
+        } catch (IOException e) {
+            response.completeExceptionally(new ModbusIOException("Unable to encode request: " + e.getMessage()));
+            return response;
+        }
+
+        outgoingFrames.add(frame);
+        selector.wakeup();
+
+        // the connection might have been closed after the pending requests were failed
+        if (!connected) {
+            response.completeExceptionally(new ModbusIOException("Connection to " + address + " closed"));
+        }
+        return response;
+    }
+
+    private int nextTransactionId() {
+        do {
+            lastTransactionId = lastTransactionId % MAX_TRANSACTION_ID + 1;
+        } while (pendingRequests.containsKey(lastTransactionId));
+        return lastTransactionId;
+    }
+
+    private static ByteBuffer encode(ModbusRequest request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_FRAME_LENGTH);
+        request.writeTo(new DataOutputStream(bytes));
+        byte[] frame = bytes.toByteArray();
+
+        // length of the unit id, function code and data
+        int length = frame.length - MBAP_HEADER_LENGTH;
+        frame[4] = (byte) (length >> 8);
+        frame[5] = (byte) length;
+        return ByteBuffer.wrap(frame);
+    }
+
+    private void serve() {
+        String reason = "Connection to " + address + " closed";
+        try {
+            SelectionKey key = channel.keyFor(selector);
+            while (connected) {
+                selector.select(expireRequests());
+                if (selector.selectedKeys().remove(key) && key.isReadable()) {
+                    read();
+                }
+                write(key);
+            }
+        } catch (IOException e) {
+            logger.warn("Connection to {} failed: {}", address, e.getMessage());
+            reason = "Connection to " + address + " failed: " + e.getMessage();
+        } finally {
+            connected = false;
+            closeChannel();
+            failPendingRequests(reason);
+        }
+    }
+
+    /**
+     * Fails all requests which timed out.
+     *
+     * @return the time in ms until the next request times out or 0 if no request is outstanding
+     */
+    private long expireRequests() {
+        long now = System.nanoTime();
+        long nextTimeout = Long.MAX_VALUE;
+        for (PendingRequest pendingRequest : pendingRequests.values()) {
+            long remaining = pendingRequest.deadlineNanos - now;
+            if (remaining <= 0) {
+                pendingRequest.response.completeExceptionally(new ModbusIOException("No response to transaction "
+                        + pendingRequest.transactionId + " within " + timeoutMs + " ms"));
+            }
+            else {
+                nextTimeout = Math.min(nextTimeout, remaining);
+            }
+        }
+        if (nextTimeout == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextTimeout) + 1);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        while (true) {
+            if (currentFrame == null) {
+                currentFrame = outgoingFrames.poll();
+                if (currentFrame == null) {
+                    break;
+                }
+            }
+            channel.write(currentFrame);
+            if (currentFrame.hasRemaining()) {
+                break;
+            }
+            currentFrame = null;
+        }
+        key.interestOps(currentFrame == null ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new IOException("connection closed by server");
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= MBAP_HEADER_LENGTH) {
+            int start = readBuffer.position();
+            int length = readBuffer.getShort(start + 4) & 0xFFFF;
+            if (length < 2 || length > MAX_FRAME_LENGTH - MBAP_HEADER_LENGTH) {
+                throw new IOException("invalid length " + length + " in MBAP header");
+            }
+            if (readBuffer.remaining() < MBAP_HEADER_LENGTH + length) {
+                break;
+            }
+            byte[] frame = new byte[MBAP_HEADER_LENGTH + length];
+            readBuffer.get(frame);
+            receive(frame);
+        }
+        readBuffer.compact();
+    }
+
+    private void receive(byte[] frame) {
+        int transactionId = ((frame[0] & 0xFF) << 8) | (frame[1] & 0xFF);
+        PendingRequest pendingRequest = pendingRequests.get(transactionId);
+        if (pendingRequest == null) {
+            logger.debug("Discarding response with unknown transaction id {} from {}, the request probably timed out",
+                    transactionId, address);
+            return;
+        }
+
+        int functionCode = frame[MBAP_HEADER_LENGTH + 1] & 0xFF;
+        if ((functionCode & 0x7F) != pendingRequest.functionCode) {
+            pendingRequest.response.completeExceptionally(new ModbusIOException("Function code " + functionCode
+                    + " of response does not match request function code " + pendingRequest.functionCode));
+            return;
+        }
+
+        try {
+            ModbusResponse response = ModbusResponse.createModbusResponse(functionCode);
+            response.setHeadless();
+            response.readFrom(new DataInputStream(
+                    new ByteArrayInputStream(frame, MBAP_HEADER_LENGTH, frame.length - MBAP_HEADER_LENGTH)));
+            response.setTransactionID(transactionId);
+
+            if (response instanceof ExceptionResponse) {
+                pendingRequest.response
+                        .completeExceptionally(new ModbusSlaveException(((ExceptionResponse) response).getExceptionCode()));
+            }
+            else {
+                pendingRequest.response.complete(response);
+            }
+        } catch (IOException e) {
+            pendingRequest.response
+                    .completeExceptionally(new ModbusIOException("Unable to decode response: " + e.getMessage()));
+        }
+    }
+
+    private void failPendingRequests(String reason) {
+        for (PendingRequest pendingRequest : pendingRequests.values()) {
+            pendingRequest.response.completeExceptionally(new ModbusIOException(reason));
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to close connection to {}", address, e);
+        }
+    }
+
+    private static class PendingRequest {
+
+        private final int transactionId;
+        private final int functionCode;
+        private final CompletableFuture<ModbusResponse> response;
+        private final long deadlineNanos;
+
+        PendingRequest(int transactionId, int functionCode, CompletableFuture<ModbusResponse> response,
+                long deadlineNanos) {
+            this.transactionId = transactionId;
+            this.functionCode = functionCode;
+            this.response = response;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+}
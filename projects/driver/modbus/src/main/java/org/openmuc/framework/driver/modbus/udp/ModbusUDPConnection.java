@@ -26,8 +26,6 @@ import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
@@ -108,56 +106,13 @@ public class ModbusUDPConnection extends ModbusConnection {
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws UnsupportedOperationException, ConnectionException {
 
-        // reads channels one by one
-        if (samplingGroup.isEmpty()) {
-            for (ChannelRecordContainer container : containers) {
-
-                // TODO consider retries in sampling timeout (e.g. one time 12000 ms or three times 4000 ms)
-                // FIXME quite inconvenient/complex to get the timeout from config, since the driver doesn't know the
-                // device id!
-
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
-
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Value of response: {}", value.toString());
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress()
-                            + " used timeout: " + timeoutMs + " ms", e);
-                    disconnect();
-                    throw new ConnectionException("Try to solve issue with reconnect.");
-
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-                if (!connection.isConnected()) {
-                    throw new ConnectionException("Lost connection.");
-                }
-
-            }
+        // reads all channels with as few requests as possible, channels of different sampling groups are read with
+        // separate calls
+        Object readPlan = readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
+        if (!connection.isConnected()) {
+            throw new ConnectionException("Lost connection.");
         }
-        // reads whole samplingGroup at once
-        else {
-            readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
-            if (!connection.isConnected()) {
-                throw new ConnectionException("Lost connection.");
-            }
-        }
-
-        return null;
+        return readPlan;
     }
 
     @Override
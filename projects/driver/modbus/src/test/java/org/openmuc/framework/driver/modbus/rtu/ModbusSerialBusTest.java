@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.rtu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusSlaveBackoffException;
+import org.openmuc.framework.driver.modbus.rtu.ModbusSerialBus.UnitStatistics;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+
+public class ModbusSerialBusTest {
+
+    @Test
+    public void testWritesAreExecutedBeforeWaitingReads() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> executedUnits = new CopyOnWriteArrayList<>();
+        ModbusSerialBus bus = new ModbusSerialBus("test", null, new TestTransport() {
+            @Override
+            public ModbusResponse execute(ModbusRequest request) throws ModbusException {
+                executedUnits.add(request.getUnitID());
+                if (request.getUnitID() == 1) {
+                    await(release);
+                }
+                return new ReadMultipleRegistersResponse();
+            }
+        }, 0);
+
+        Thread blocking = startExecute(bus, 1, EAccess.READ);
+        awaitSize(executedUnits, 1);
+        Thread read = startExecute(bus, 2, EAccess.READ);
+        awaitWaiting(read);
+        Thread write = startExecute(bus, 3, EAccess.WRITE);
+        awaitWaiting(write);
+        Thread secondRead = startExecute(bus, 4, EAccess.READ);
+        awaitWaiting(secondRead);
+
+        release.countDown();
+        for (Thread thread : Arrays.asList(blocking, read, write, secondRead)) {
+            thread.join(5000);
+        }
+
+        assertEquals(Arrays.asList(1, 3, 2, 4), executedUnits);
+    }
+
+    @Test
+    public void testNotRespondingSlaveIsBackedOff() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        ModbusSerialBus bus = new ModbusSerialBus("test", null, new TestTransport() {
+            @Override
+            public ModbusResponse execute(ModbusRequest request) throws ModbusException {
+                executions.incrementAndGet();
+                if (request.getUnitID() == 5) {
+                    throw new ModbusIOException("timeout");
+                }
+                return new ReadMultipleRegistersResponse();
+            }
+        }, 0);
+
+        for (int i = 0; i < ModbusSerialBus.BACKOFF_THRESHOLD; i++) {
+            assertThrows(ModbusIOException.class, () -> bus.execute(createRequest(5), EAccess.READ));
+        }
+        assertEquals(ModbusSerialBus.BACKOFF_THRESHOLD, executions.get());
+
+        // the backed off slave is not asked again, the other slaves are not affected
+        assertThrows(ModbusSlaveBackoffException.class, () -> bus.execute(createRequest(5), EAccess.READ));
+        assertEquals(ModbusSerialBus.BACKOFF_THRESHOLD, executions.get());
+        bus.execute(createRequest(6), EAccess.READ);
+        assertEquals(ModbusSerialBus.BACKOFF_THRESHOLD + 1, executions.get());
+
+        UnitStatistics statistics = bus.getStatistics(5);
+        assertEquals(0, statistics.getResponses());
+        assertEquals(ModbusSerialBus.BACKOFF_THRESHOLD, statistics.getFailures());
+        assertEquals(ModbusSerialBus.BACKOFF_THRESHOLD, statistics.getConsecutiveFailures());
+        assertEquals(1, bus.getStatistics(6).getResponses());
+    }
+
+    @Test
+    public void testInterFrameSilence() throws Exception {
+        List<Long> executionTimes = new CopyOnWriteArrayList<>();
+        long silenceNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        ModbusSerialBus bus = new ModbusSerialBus("test", null, new TestTransport() {
+            @Override
+            public ModbusResponse execute(ModbusRequest request) throws ModbusException {
+                executionTimes.add(System.nanoTime());
+                return new ReadMultipleRegistersResponse();
+            }
+        }, silenceNanos);
+
+        bus.execute(createRequest(1), EAccess.READ);
+        bus.execute(createRequest(2), EAccess.READ);
+
+        assertTrue(executionTimes.get(1) - executionTimes.get(0) >= silenceNanos);
+    }
+
+    @Test
+    public void testInterFrameSilenceDependsOnBaudRate() {
+        // 3.5 characters of 11 bits
+        assertEquals(4010417, ModbusSerialBus.getInterFrameSilenceNanos(9600));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1750), ModbusSerialBus.getInterFrameSilenceNanos(38400));
+    }
+
+    private static ModbusRequest createRequest(int unitId) {
+        ReadMultipleRegistersRequest request = new ReadMultipleRegistersRequest(0, 1);
+        request.setUnitID(unitId);
+        return request;
+    }
+
+    private static Thread startExecute(ModbusSerialBus bus, int unitId, EAccess access) {
+        Thread thread = new Thread(() -> {
+            try {
+                bus.execute(createRequest(unitId), access);
+            } catch (ModbusException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitSize(List<Integer> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(size, list.size());
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private abstract static class TestTransport implements ModbusSerialBus.Transport {
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
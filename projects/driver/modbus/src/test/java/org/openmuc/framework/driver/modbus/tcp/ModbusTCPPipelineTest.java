@@ -0,0 +1,250 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.tcp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.procimg.SimpleProcessImage;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+import com.ghgande.j2mod.modbus.slave.ModbusSlave;
+import com.ghgande.j2mod.modbus.slave.ModbusSlaveFactory;
+
+public class ModbusTCPPipelineTest {
+
+    private static final int UNIT_ID = 1;
+
+    @Test
+    public void testOutstandingRequestsAgainstSlave() throws Exception {
+        SimpleProcessImage processImage = new SimpleProcessImage(UNIT_ID);
+        for (int i = 0; i < 100; i++) {
+            processImage.addRegister(new SimpleRegister(i * 3));
+        }
+        int port = getFreePort();
+        ModbusSlave slave = ModbusSlaveFactory.createTCPSlave(port, 4);
+        slave.addProcessImage(UNIT_ID, processImage);
+        slave.open();
+
+        ModbusTCPPipeline pipeline = new ModbusTCPPipeline(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4, 2000);
+        try {
+            pipeline.connect();
+
+            List<CompletableFuture<ModbusResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(pipeline.submit(readRegisters(i * 5, 5)));
+            }
+
+            for (int i = 0; i < 20; i++) {
+                ReadMultipleRegistersResponse response = (ReadMultipleRegistersResponse) responses.get(i)
+                        .get(5, TimeUnit.SECONDS);
+                assertEquals(5, response.getWordCount());
+                for (int j = 0; j < 5; j++) {
+                    assertEquals((i * 5 + j) * 3, response.getRegisterValue(j));
+                }
+            }
+        } finally {
+            pipeline.close();
+            ModbusSlaveFactory.close(slave);
+        }
+    }
+
+    @Test
+    public void testResponsesAreMatchedByTransactionId() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread server = startServer(serverSocket, (in, out) -> {
+                int first = readTransactionId(in);
+                int second = readTransactionId(in);
+                writeRegisterResponse(out, second, 2);
+                writeRegisterResponse(out, first, 1);
+            });
+
+            ModbusTCPPipeline pipeline = new ModbusTCPPipeline(
+                    (InetSocketAddress) serverSocket.getLocalSocketAddress(), 2, 2000);
+            try {
+                pipeline.connect();
+                CompletableFuture<ModbusResponse> first = pipeline.submit(readRegisters(0, 1));
+                CompletableFuture<ModbusResponse> second = pipeline.submit(readRegisters(1, 1));
+
+                assertEquals(1, ((ReadMultipleRegistersResponse) first.get(5, TimeUnit.SECONDS)).getRegisterValue(0));
+                assertEquals(2, ((ReadMultipleRegistersResponse) second.get(5, TimeUnit.SECONDS)).getRegisterValue(0));
+            } finally {
+                pipeline.close();
+                server.join(5000);
+            }
+        }
+    }
+
+    @Test
+    public void testLateResponseIsDiscarded() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread server = startServer(serverSocket, (in, out) -> {
+                int first = readTransactionId(in);
+                int second = readTransactionId(in);
+                // answers the first request after it timed out
+                writeRegisterResponse(out, first, 1);
+                writeRegisterResponse(out, second, 2);
+            });
+
+            ModbusTCPPipeline pipeline = new ModbusTCPPipeline(
+                    (InetSocketAddress) serverSocket.getLocalSocketAddress(), 1, 200);
+            try {
+                pipeline.connect();
+                CompletableFuture<ModbusResponse> first = pipeline.submit(readRegisters(0, 1));
+                ExecutionException e = assertThrows(first);
+                assertTrue(e.getCause() instanceof ModbusIOException);
+
+                CompletableFuture<ModbusResponse> second = pipeline.submit(readRegisters(1, 1));
+                assertEquals(2, ((ReadMultipleRegistersResponse) second.get(5, TimeUnit.SECONDS)).getRegisterValue(0));
+                assertTrue(pipeline.isConnected());
+            } finally {
+                pipeline.close();
+                server.join(5000);
+            }
+        }
+    }
+
+    @Test
+    public void testExceptionResponse() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread server = startServer(serverSocket, (in, out) -> {
+                int transactionId = readTransactionId(in);
+                out.writeShort(transactionId);
+                out.writeShort(0);
+                out.writeShort(3);
+                out.writeByte(UNIT_ID);
+                out.writeByte(0x83);
+                out.writeByte(2);
+                out.flush();
+            });
+
+            ModbusTCPPipeline pipeline = new ModbusTCPPipeline(
+                    (InetSocketAddress) serverSocket.getLocalSocketAddress(), 1, 2000);
+            try {
+                pipeline.connect();
+                ExecutionException e = assertThrows(pipeline.submit(readRegisters(0, 1)));
+                assertTrue(e.getCause() instanceof ModbusSlaveException);
+                assertEquals(2, ((ModbusSlaveException) e.getCause()).getType());
+            } finally {
+                pipeline.close();
+                server.join(5000);
+            }
+        }
+    }
+
+    @Test
+    public void testPendingRequestsFailOnClose() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            ModbusTCPPipeline pipeline = new ModbusTCPPipeline(
+                    (InetSocketAddress) serverSocket.getLocalSocketAddress(), 2, 10000);
+            pipeline.connect();
+            CompletableFuture<ModbusResponse> response = pipeline.submit(readRegisters(0, 1));
+            pipeline.close();
+
+            ExecutionException e = assertThrows(response);
+            assertTrue(e.getCause() instanceof ModbusIOException);
+            assertTrue(pipeline.submit(readRegisters(0, 1)).isCompletedExceptionally());
+        }
+    }
+
+    private static ReadMultipleRegistersRequest readRegisters(int startAddress, int count) {
+        ReadMultipleRegistersRequest request = new ReadMultipleRegistersRequest(startAddress, count);
+        request.setUnitID(UNIT_ID);
+        return request;
+    }
+
+    private static ExecutionException assertThrows(CompletableFuture<ModbusResponse> response) throws Exception {
+        try {
+            response.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e;
+        }
+        throw new AssertionError("response completed normally");
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    private static int readTransactionId(DataInputStream in) throws IOException {
+        int transactionId = in.readUnsignedShort();
+        in.readUnsignedShort();
+        byte[] pdu = new byte[in.readUnsignedShort()];
+        in.readFully(pdu);
+        return transactionId;
+    }
+
+    private static void writeRegisterResponse(DataOutputStream out, int transactionId, int value) throws IOException {
+        out.writeShort(transactionId);
+        out.writeShort(0);
+        out.writeShort(5);
+        out.writeByte(UNIT_ID);
+        out.writeByte(3);
+        out.writeByte(2);
+        out.writeShort(value);
+        out.flush();
+    }
+
+    private static Thread startServer(ServerSocket serverSocket, Server server) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                server.serve(new DataInputStream(socket.getInputStream()),
+                        new DataOutputStream(socket.getOutputStream()));
+                // keeps the connection open until the client closes it
+                while (socket.getInputStream().read() >= 0) {
+                }
+            } catch (IOException e) {
+                // the client closed the connection
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private interface Server {
+        void serve(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ArgumentSyntaxException;
+import org.openmuc.framework.config.ChannelScanInfo;
+import org.openmuc.framework.config.ScanException;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusConnection;
+import org.openmuc.framework.driver.modbus.ModbusSlaveBackoffException;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.ChannelValueContainer;
+import org.openmuc.framework.driver.spi.ConnectionException;
+import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+
+public class ModbusConnectionTest {
+
+    @Test
+    public void testBackedOffSlaveTimesOutWithoutDisconnect() throws Exception {
+        TestConnection connection = new TestConnection();
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        containers.add(new TestChannelRecordContainer("5:HOLDING_REGISTERS:0:INT16"));
+        containers.add(new TestChannelRecordContainer("6:HOLDING_REGISTERS:0:INT16"));
+
+        connection.readChannelGroupHighLevel(containers, null, "");
+
+        assertEquals(Flag.TIMEOUT, containers.get(0).getRecord().getFlag());
+        assertEquals(Flag.VALID, containers.get(1).getRecord().getFlag());
+        assertEquals(42, containers.get(1).getRecord().getValue().asShort());
+        assertFalse(connection.disconnected);
+    }
+
+    private static class TestConnection extends ModbusConnection {
+
+        private boolean disconnected = false;
+
+        @Override
+        protected ModbusResponse executeTransaction(ModbusRequest request, EAccess access) throws ModbusException {
+            if (request.getUnitID() == 5) {
+                throw new ModbusSlaveBackoffException("backed off");
+            }
+            return new ReadMultipleRegistersResponse(new Register[] { new SimpleRegister(42) });
+        }
+
+        @Override
+        public void connect() throws ConnectionException {
+        }
+
+        @Override
+        public void disconnect() {
+            disconnected = true;
+        }
+
+        @Override
+        public List<ChannelScanInfo> scanForChannels(String settings)
+                throws UnsupportedOperationException, ArgumentSyntaxException, ScanException, ConnectionException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
+                throws UnsupportedOperationException, ConnectionException {
+            return readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
+        }
+
+        @Override
+        public void startListening(List<ChannelRecordContainer> containers, RecordsReceivedListener listener)
+                throws UnsupportedOperationException, ConnectionException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object write(List<ChannelValueContainer> containers, Object containerListHandle)
+                throws UnsupportedOperationException, ConnectionException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestChannelRecordContainer implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        TestChannelRecordContainer(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.EFunctionCode;
+import org.openmuc.framework.driver.modbus.ModbusChannel;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusChannelGroup;
+import org.openmuc.framework.driver.modbus.ModbusConnection;
+import org.openmuc.framework.driver.modbus.ModbusReadPlan;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+import com.ghgande.j2mod.modbus.util.BitVector;
+
+public class ModbusReadPlanTest {
+
+    @Test
+    public void testAdjacentChannelsAreReadWithOneRequest() {
+        ModbusReadPlan plan = createPlan(0, ModbusReadPlan.MAX_REGISTERS, "1:HOLDING_REGISTERS:3:INT16",
+                "1:HOLDING_REGISTERS:1:INT16", "1:HOLDING_REGISTERS:2:INT16", "1:HOLDING_REGISTERS:4:FLOAT");
+
+        assertEquals(1, plan.getChannelGroups().size());
+        ModbusChannelGroup group = plan.getChannelGroups().get(0);
+        assertEquals(1, group.getUnitId());
+        assertEquals(EFunctionCode.FC_03_READ_HOLDING_REGISTERS, group.getFunctionCode());
+        assertEquals(1, group.getStartAddress());
+        assertEquals(5, group.getCount());
+    }
+
+    @Test
+    public void testChannelsAreSplitByUnitIdAndFunctionCode() {
+        ModbusReadPlan plan = createPlan(0, ModbusReadPlan.MAX_REGISTERS, "1:HOLDING_REGISTERS:1:INT16",
+                "2:HOLDING_REGISTERS:2:INT16", "1:INPUT_REGISTERS:2:INT16", "1:COILS:2:BOOLEAN",
+                "1:HOLDING_REGISTERS:2:INT16", "1:COILS:3:BOOLEAN");
+
+        List<ModbusChannelGroup> groups = plan.getChannelGroups();
+        assertEquals(4, groups.size());
+        assertGroup(groups.get(0), EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 1, 2);
+        assertGroup(groups.get(1), EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 2, 1);
+        assertGroup(groups.get(2), EFunctionCode.FC_04_READ_INPUT_REGISTERS, 2, 1);
+        assertGroup(groups.get(3), EFunctionCode.FC_01_READ_COILS, 2, 2);
+        assertEquals(2, groups.get(1).getUnitId());
+    }
+
+    @Test
+    public void testMaxGap() {
+        String[] addresses = { "1:HOLDING_REGISTERS:0:INT16", "1:HOLDING_REGISTERS:3:INT16",
+                "1:HOLDING_REGISTERS:10:INT16" };
+
+        assertEquals(3, createPlan(0, ModbusReadPlan.MAX_REGISTERS, addresses).getChannelGroups().size());
+
+        List<ModbusChannelGroup> groups = createPlan(2, ModbusReadPlan.MAX_REGISTERS, addresses).getChannelGroups();
+        assertEquals(2, groups.size());
+        assertGroup(groups.get(0), EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 0, 4);
+        assertGroup(groups.get(1), EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 10, 1);
+
+        assertEquals(1, createPlan(6, ModbusReadPlan.MAX_REGISTERS, addresses).getChannelGroups().size());
+    }
+
+    @Test
+    public void testDefaultMaxGap() {
+        List<ModbusChannel> channels = createChannels(createContainers("1:HOLDING_REGISTERS:0:INT16",
+                "1:HOLDING_REGISTERS:3:INT16", "1:HOLDING_REGISTERS:10:INT16"));
+
+        // an explicit sampling group is read with one request as before
+        List<ModbusChannelGroup> groups = new ModbusReadPlan("group", channels, ModbusConnection.DEFAULT_MAX_GAP,
+                ModbusReadPlan.MAX_REGISTERS).getChannelGroups();
+        assertEquals(1, groups.size());
+        assertGroup(groups.get(0), EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 0, 11);
+
+        // unless the request would be too large
+        assertEquals(2,
+                new ModbusReadPlan("group", channels, ModbusConnection.DEFAULT_MAX_GAP, 10).getChannelGroups().size());
+
+        assertEquals(3, new ModbusReadPlan("", channels, ModbusConnection.DEFAULT_MAX_GAP,
+                ModbusReadPlan.MAX_REGISTERS).getChannelGroups().size());
+    }
+
+    @Test
+    public void testMaxRegisters() {
+        String[] addresses = new String[130];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = "1:INPUT_REGISTERS:" + i + ":INT16";
+        }
+
+        List<ModbusChannelGroup> groups = createPlan(0, ModbusReadPlan.MAX_REGISTERS, addresses).getChannelGroups();
+        assertEquals(2, groups.size());
+        assertGroup(groups.get(0), EFunctionCode.FC_04_READ_INPUT_REGISTERS, 0, 125);
+        assertGroup(groups.get(1), EFunctionCode.FC_04_READ_INPUT_REGISTERS, 125, 5);
+
+        // a 32 bit value must not be split between two requests
+        groups = createPlan(0, 3, "1:INPUT_REGISTERS:0:INT16", "1:INPUT_REGISTERS:1:INT32",
+                "1:INPUT_REGISTERS:3:INT16").getChannelGroups();
+        assertEquals(2, groups.size());
+        assertGroup(groups.get(0), EFunctionCode.FC_04_READ_INPUT_REGISTERS, 0, 3);
+        assertGroup(groups.get(1), EFunctionCode.FC_04_READ_INPUT_REGISTERS, 3, 1);
+    }
+
+    @Test
+    public void testValuesAreSetInTheMatchingContainers() {
+        List<ChannelRecordContainer> containers = createContainers("1:HOLDING_REGISTERS:12:INT16",
+                "1:COILS:1:BOOLEAN", "1:HOLDING_REGISTERS:10:INT16", "1:COILS:0:BOOLEAN");
+        ModbusReadPlan plan = new ModbusReadPlan("", createChannels(containers), 2, ModbusReadPlan.MAX_REGISTERS);
+
+        List<ModbusChannelGroup> groups = plan.getChannelGroups();
+        assertEquals(2, groups.size());
+
+        ModbusChannelGroup registerGroup = groups.get(0);
+        assertGroup(registerGroup, EFunctionCode.FC_03_READ_HOLDING_REGISTERS, 10, 3);
+        InputRegister[] registers = { new SimpleRegister(100), new SimpleRegister(101), new SimpleRegister(102) };
+        registerGroup.setChannelValues(registers, containers);
+
+        ModbusChannelGroup coilGroup = groups.get(1);
+        assertGroup(coilGroup, EFunctionCode.FC_01_READ_COILS, 0, 2);
+        BitVector coils = new BitVector(2);
+        coils.setBit(1, true);
+        coilGroup.setChannelValues(coils, containers);
+
+        assertEquals(102, containers.get(0).getRecord().getValue().asShort());
+        assertEquals(true, containers.get(1).getRecord().getValue().asBoolean());
+        assertEquals(100, containers.get(2).getRecord().getValue().asShort());
+        assertEquals(false, containers.get(3).getRecord().getValue().asBoolean());
+    }
+
+    private static void assertGroup(ModbusChannelGroup group, EFunctionCode functionCode, int startAddress,
+            int count) {
+        assertEquals(functionCode, group.getFunctionCode());
+        assertEquals(startAddress, group.getStartAddress());
+        assertEquals(count, group.getCount());
+    }
+
+    private static ModbusReadPlan createPlan(int maxGap, int maxRegisters, String... channelAddresses) {
+        return new ModbusReadPlan("group", createChannels(createContainers(channelAddresses)), maxGap,
+                maxRegisters);
+    }
+
+    private static List<ChannelRecordContainer> createContainers(String... channelAddresses) {
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        for (String channelAddress : Arrays.asList(channelAddresses)) {
+            containers.add(new TestChannelRecordContainer(channelAddress));
+        }
+        return containers;
+    }
+
+    private static List<ModbusChannel> createChannels(List<ChannelRecordContainer> containers) {
+        List<ModbusChannel> channels = new ArrayList<>();
+        for (ChannelRecordContainer container : containers) {
+            channels.add(new ModbusChannel(container.getChannelAddress(), EAccess.READ));
+        }
+        return channels;
+    }
+
+    private static class TestChannelRecordContainer implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        TestChannelRecordContainer(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            return null;
+        }
+    }
+
+}
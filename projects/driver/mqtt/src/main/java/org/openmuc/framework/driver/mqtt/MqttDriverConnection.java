@@ -135,7 +135,7 @@ public class MqttDriverConnection implements Connection {
         }
         mqttReader.listen(topics, (topic, message) -> {
             Channel channel = containers.get(topics.indexOf(topic)).getChannel();
-            Record record = getRecord(message, channel.getValueType());
+            Record record = getRecord(message, channel.getValueType(), channel.getId());
 
             if (recordIsOld(channel.getId(), record)) {
                 logger.debug("Ignored message because it has a older or equal timestamp as the previous message");
@@ -178,10 +178,10 @@ public class MqttDriverConnection implements Connection {
         return false;
     }
 
-    private Record getRecord(byte[] message, ValueType valueType) {
+    private Record getRecord(byte[] message, ValueType valueType, String channelId) {
         Record record;
         if (parsers.containsKey(settings.getProperty("parser"))) {
-            record = parsers.get(settings.getProperty("parser")).deserialize(message, valueType);
+            record = parsers.get(settings.getProperty("parser")).deserialize(message, valueType, channelId);
         }
         else {
             record = new Record(new ByteArrayValue(message), System.currentTimeMillis());
@@ -103,6 +103,18 @@ public class AmqpBufferHandler {
             writeBufferToFile(messageTuple);
         }
         currentBufferSize = 0;
+        flushFilePersistence();
+    }
+
+    private void flushFilePersistence() {
+        try {
+            // one disk write for all moved messages instead of one per message
+            synchronized (filePersistence) {
+                filePersistence.flush();
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
     }
 
     private void writeBufferToFile(AmqpMessageTuple messageTuple) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Messages read with {@link FilePersistence#peekMessages(String, int)} which are still stored in the buffer. They are
+ * removed with {@link FilePersistence#removeMessages(String, BufferedMessages, int)} after they have been processed.
+ */
+public final class BufferedMessages {
+
+    private final List<byte[]> messages = new ArrayList<>();
+    // position behind each message
+    private final List<long[]> positions = new ArrayList<>();
+
+    void add(byte[] message, long segment, long position) {
+        messages.add(message);
+        positions.add(new long[] { segment, position });
+    }
+
+    long getSegment(int count) {
+        return positions.get(count - 1)[0];
+    }
+
+    long getPosition(int count) {
+        return positions.get(count - 1)[1];
+    }
+
+    public List<byte[]> getMessages() {
+        return Collections.unmodifiableList(messages);
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+}
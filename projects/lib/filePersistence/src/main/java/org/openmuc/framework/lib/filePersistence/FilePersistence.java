@@ -21,36 +21,38 @@
 
 package org.openmuc.framework.lib.filePersistence;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Provides configurable RAM friendly file persistence functionality
+ * <p>
+ * Every buffer is stored as an append-only log of segment files (see {@link SegmentedLog}). Written messages are
+ * collected in memory and written to disk in batches, call {@link #flush()} to make sure everything written so far is
+ * on disk. Reading a message only advances a read position which is stored from time to time, completely read files
+ * are deleted. If the system property <code>org.openmuc.framework.lib.filePersistence.mmap</code> is set to true,
+ * completely written files are read with memory mapping.
  */
 public class FilePersistence {
     private static final Logger logger = LoggerFactory.getLogger(FilePersistence.class);
+    private static final String BUFFER_LIST_FILENAME = "buffer_list";
     private final Path DIRECTORY;
     private int maxFileCount;
     private final long MAX_FILE_SIZE_BYTES;
-    private final Map<String, Integer> nextFile = new HashMap<>();
-    private final Map<String, Long> readBytes = new HashMap<>();
-    private static final List<String> BUFFERS = new ArrayList<>();
+    private final boolean memoryMappedReads;
+    private final Map<String, SegmentedLog> logs = new HashMap<>();
+    private final Set<String> BUFFERS = new LinkedHashSet<>();
+    private boolean bufferListChanged = false;
     public static final String DEFAULT_FILENAME = "buffer.0.log";
     public static final String DEFAULT_FILE_PREFIX = "buffer";
     public static final String DEFAULT_FILE_SUFFIX = "log";
@@ -64,11 +66,28 @@ public class FilePersistence {
      *            the maximum file size in kB when fileSize is reached a new file is created or the oldest overwritten
      */
     public FilePersistence(String directory, int maxFileCount, long maxFileSizeKb) {
+        this(directory, maxFileCount, maxFileSizeKb,
+                Boolean.getBoolean("org.openmuc.framework.lib.filePersistence.mmap"));
+    }
+
+    /**
+     * @param directory
+     *            the directory in which files are stored
+     * @param maxFileCount
+     *            the maximum number of files created. Must be greater than 0
+     * @param maxFileSizeKb
+     *            the maximum file size in kB when fileSize is reached a new file is created or the oldest overwritten
+     * @param memoryMappedReads
+     *            if completely written files are read with memory mapping
+     */
+    public FilePersistence(String directory, int maxFileCount, long maxFileSizeKb, boolean memoryMappedReads) {
         DIRECTORY = FileSystems.getDefault().getPath(directory);
         // convert to byte since bytes are used internally to compare with payload
         MAX_FILE_SIZE_BYTES = maxFileSizeKb * 1024;
+        this.memoryMappedReads = memoryMappedReads;
         setMaxFileCount(maxFileCount);
         createDirectory();
+        readBufferList();
     }
 
     private void setMaxFileCount(int maxFileCount) {
@@ -86,7 +105,25 @@ public class FilePersistence {
         }
     }
 
+    private void readBufferList() {
+        Path buffers = Paths.get(DIRECTORY.toString(), BUFFER_LIST_FILENAME);
+        if (buffers.toFile().exists()) {
+            try {
+                for (String buffer : Files.readAllLines(buffers)) {
+                    if (!buffer.isEmpty()) {
+                        BUFFERS.add(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Could not read buffer_list. Message: {}", e.getMessage());
+            }
+        }
+    }
+
     /**
+     * Appends a message to a buffer. The message is written to disk when the write buffer is full or at the latest
+     * with the next call of {@link #flush()}.
+     *
      * @param buffer
      *            directory without file name. Filename is automatically added by FilePersistence
      * @param payload
@@ -94,117 +131,59 @@ public class FilePersistence {
      * @throws IOException
      *             when writing fails
      */
-    public void writeBufferToFile(String buffer, byte[] payload) throws IOException {
+    public synchronized void writeBufferToFile(String buffer, byte[] payload) throws IOException {
 
         // buffer = topic for mqtt e.g. topic/test/openmuc
 
         checkPayLoadSize(payload.length);
         registerBuffer(buffer);
-        Path filePath = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        File file = createFileIfNotExist(filePath);
-        if (isFileFull(file.length(), payload.length)) {
-            handleFullFile(buffer, payload, file);
-        }
-        else {
-            appendToFile(file, payload);
-        }
+        getLog(buffer).append(payload);
     }
 
     private void registerBuffer(String buffer) throws IOException {
-        if (!BUFFERS.contains(buffer)) {
-            BUFFERS.add(buffer);
+        if (BUFFERS.add(buffer)) {
+            // written immediately so the buffer is found after a crash
             writeBufferList();
         }
     }
 
     private void removeBufferIfEmpty(String buffer) throws IOException {
-        if (!fileExistsFor(buffer)) {
-            boolean buffersChanged = BUFFERS.remove(buffer);
-            if (buffersChanged) {
-                writeBufferList();
+        SegmentedLog log = logs.get(buffer);
+        if (log != null && !log.hasNext()) {
+            logs.remove(buffer);
+            log.close();
+            if (BUFFERS.remove(buffer)) {
+                bufferListChanged = true;
             }
         }
     }
 
     private void writeBufferList() throws IOException {
-        File buffers = Paths.get(DIRECTORY.toString(), "buffer_list").toFile();
-        FileWriter writer = new FileWriter(buffers);
+        Path buffers = Paths.get(DIRECTORY.toString(), BUFFER_LIST_FILENAME);
+        StringBuilder content = new StringBuilder();
         for (String registeredBuffer : BUFFERS) {
-            writer.write(registeredBuffer + '\n');
+            content.append(registeredBuffer).append('\n');
         }
-        writer.close();
+        Files.write(buffers, content.toString().getBytes());
+        bufferListChanged = false;
     }
 
-    public String[] getBuffers() {
-        if (BUFFERS.isEmpty()) {
-            Path buffers = Paths.get(DIRECTORY.toString(), "buffer_list");
-            if (buffers.toFile().exists()) {
-                try {
-                    BUFFERS.addAll(Files.readAllLines(buffers));
-                } catch (IOException e) {
-                    logger.error("Could not read buffer_list. Message: {}", e.getMessage());
-                }
-            }
-        }
+    public synchronized String[] getBuffers() {
         return BUFFERS.toArray(new String[0]);
     }
 
-    private File createFileIfNotExist(Path filePath) throws IOException {
-        File file = filePath.toFile();
-        if (!file.exists()) {
-            logger.info("create new file: {}", file.getAbsolutePath());
-            Path storagePath = Paths.get(file.getAbsolutePath());
-            Files.createDirectories(storagePath.getParent());
-            Files.createFile(storagePath);
+    private SegmentedLog getLog(String buffer) throws IOException {
+        SegmentedLog log = logs.get(buffer);
+        if (log == null) {
+            log = SegmentedLog.open(Paths.get(DIRECTORY.toString(), buffer), MAX_FILE_SIZE_BYTES, maxFileCount,
+                    memoryMappedReads);
+            logs.put(buffer, log);
         }
-        return file;
-    }
-
-    private void appendToFile(File file, byte[] payload) throws IOException {
-        FileOutputStream fileStream = new FileOutputStream(file, true);
-        fileStream.write(payload);
-        fileStream.write("\n".getBytes());
-        fileStream.close();
-    }
-
-    private void handleFullFile(String filePath, byte[] payload, File file) throws IOException {
-        if (maxFileCount > 1) {
-            handleMultipleFiles(filePath, payload, file);
-
-        }
-        else {
-            handleSingleFile(filePath, payload, file);
-        }
-    }
-
-    private void handleSingleFile(String filePath, byte[] payload, File file) {
-        throw new UnsupportedOperationException("right now only maxFileCount >= 2 supported");
-    }
-
-    private void handleMultipleFiles(String buffer, byte[] payload, File file) throws IOException {
-
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        String newFileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-        if (++nextFile == maxFileCount) {
-            nextFile = 1;
-        }
-        this.nextFile.put(buffer, nextFile);
-        Path path = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        Path newPath = Paths.get(DIRECTORY.toString(), buffer, newFileName);
-        Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
-
-        logger.info("move file from: {} to {}", path, newPath);
-
-        Files.createFile(path);
-        appendToFile(path.toFile(), payload);
-    }
-
-    private boolean isFileFull(long fileLength, int payloadLength) {
-        return fileLength + payloadLength + 1 > MAX_FILE_SIZE_BYTES;
+        return log;
     }
 
     private void checkPayLoadSize(int payloadLength) throws IOException {
-        if (payloadLength >= MAX_FILE_SIZE_BYTES) {
+        if (payloadLength + SegmentedLog.RECORD_HEADER_SIZE > MAX_FILE_SIZE_BYTES) {
             throw new IOException("Payload is bigger than maxFileSize. Current maxFileSize is "
                     + (MAX_FILE_SIZE_BYTES / 1024) + "kB");
         }
@@ -213,128 +192,135 @@ public class FilePersistence {
     /**
      * @param buffer
      *            the name of the buffer (e.g. the topic or queue name)
-     * @return if a file buffer exists
+     * @return if the buffer contains unread messages
      */
-    public boolean fileExistsFor(String buffer) {
-        String fileName = DEFAULT_FILE_PREFIX + ".0." + DEFAULT_FILE_SUFFIX;
-        return Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists();
-    }
-
-    public byte[] getMessage(String buffer) {
-        Path filePath = getOldestFilePath(buffer);
-        Long position = getFilePosition(filePath.toString());
-        String message = "";
+    public synchronized boolean fileExistsFor(String buffer) {
+        if (!BUFFERS.contains(buffer)) {
+            return false;
+        }
         try {
-            message = readLine(buffer, filePath.toFile(), position);
+            return getLog(buffer).hasNext();
         } catch (IOException e) {
-            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
+            logger.error("An error occurred while opening the buffer {}. Error message: {}", buffer, e.getMessage());
+            return false;
         }
-
-        return message.getBytes();
     }
 
-    private String readLine(String buffer, File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        StringBuilder lineBuilder = new StringBuilder();
-        fileStream.skip(position);
-
-        int nextChar = fileStream.read();
-        position++;
-        while (nextChar != -1 && nextChar != '\n') {
-            lineBuilder.appendCodePoint(nextChar);
-            nextChar = fileStream.read();
-            position++;
+    /**
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @return the oldest unread message of the buffer or an empty array if there is none
+     */
+    public synchronized byte[] getMessage(String buffer) {
+        byte[] message = null;
+        try {
+            if (BUFFERS.contains(buffer)) {
+                message = getLog(buffer).next();
+                removeBufferIfEmpty(buffer);
+            }
+        } catch (IOException e) {
+            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
         }
-        fileStream.close();
-
-        setFilePosition(file.toString(), position);
-        deleteIfEmpty(file, position);
-        removeBufferIfEmpty(buffer);
-
-        return lineBuilder.toString();
+        return message != null ? message : new byte[0];
     }
 
-    private void deleteIfEmpty(File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        fileStream.skip(position);
-        int nextChar = fileStream.read();
-        fileStream.close();
-        if (nextChar == -1) {
-            boolean deleted = file.delete();
-            if (!deleted) {
-                throw new IOException("Empty file could not be deleted!");
-            }
-            else {
-                setFilePosition(file.toString(), 0L);
+    /**
+     * Reads up to maxCount of the oldest unread messages without removing them. Unlike {@link #getMessage(String)} the
+     * messages are read again after a restart until they are removed with
+     * {@link #removeMessages(String, BufferedMessages, int)}.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @param maxCount
+     *            maximum number of messages
+     * @return the messages, empty if there are none
+     */
+    public synchronized BufferedMessages peekMessages(String buffer, int maxCount) {
+        try {
+            if (BUFFERS.contains(buffer)) {
+                return getLog(buffer).peek(maxCount);
             }
+        } catch (IOException e) {
+            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
         }
+        return new BufferedMessages();
     }
 
-    private void setFilePosition(String filePathString, Long position) {
-        readBytes.put(filePathString, position);
+    /**
+     * Removes the first count messages returned by {@link #peekMessages(String, int)}.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @param messages
+     *            the peeked messages
+     * @param count
+     *            the number of messages to remove
+     */
+    public synchronized void removeMessages(String buffer, BufferedMessages messages, int count) {
+        if (count <= 0 || !BUFFERS.contains(buffer)) {
+            return;
+        }
+        try {
+            getLog(buffer).consume(messages.getSegment(count), messages.getPosition(count));
+            removeBufferIfEmpty(buffer);
+        } catch (IOException e) {
+            logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
+        }
     }
 
-    private Long getFilePosition(String filePathString) {
-        Long position = readBytes.get(filePathString);
-        if (position == null) {
-            position = 0L;
+    /**
+     * @return the number of bytes of all unread messages, including a small per message overhead
+     */
+    public synchronized long getUnreadBytes() {
+        long unread = 0;
+        for (String buffer : BUFFERS) {
+            try {
+                unread += getLog(buffer).getUnreadBytes();
+            } catch (IOException e) {
+                logger.error("An error occurred while opening the buffer {}. Error message: {}", buffer,
+                        e.getMessage());
+            }
         }
-        return position;
+        return unread;
     }
 
-    private Path getOldestFilePath(String buffer) {
-        Path directoryPath = Paths.get(DIRECTORY.toString(), buffer);
-        String[] bufferFiles = directoryPath.toFile().list((file, s) -> s.endsWith(".log"));
-        String oldestFile = DEFAULT_FILENAME;
-        if (bufferFiles.length > 1) {
-            oldestFile = findOldestFile(buffer);
+    /**
+     * Writes all pending messages and read positions of all buffers to disk.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public synchronized void flush() throws IOException {
+        for (SegmentedLog log : logs.values()) {
+            log.flush(true);
+        }
+        if (bufferListChanged) {
+            writeBufferList();
         }
-        return Paths.get(directoryPath.toString(), oldestFile);
     }
 
-    private String findOldestFile(String buffer) {
-        String oldestFile = DEFAULT_FILENAME;
-        int nextFile = this.nextFile.getOrDefault(buffer, 1);
-        for (int i = 0; i < maxFileCount; i++) {
-            String fileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
-            if (Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists()) {
-                oldestFile = fileName;
-                break;
-            }
-            if (++nextFile == maxFileCount) {
-                nextFile = 1;
-            }
-        }
-        return oldestFile;
+    /**
+     * Flushes all buffers. Read messages do not have to be removed from the files anymore since completely read files
+     * are deleted while reading.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public synchronized void restructure() throws IOException {
+        flush();
     }
 
-    public void restructure() throws IOException {
-        for (String buffer : getBuffers()) {
-            Path bufferPath = getOldestFilePath(buffer);
-            Long position = getFilePosition(bufferPath.toString());
-            if (position.equals(0L)) {
-                continue;
-            }
-            Path temp = bufferPath.getParent();
-            temp = Paths.get(temp.toString(), "temp");
-            try {
-                Files.move(bufferPath, temp, StandardCopyOption.REPLACE_EXISTING);
-            } catch (DirectoryNotEmptyException e) {
-                logger.error(bufferPath.toString() + " -> " + temp.toString());
-            }
-            Files.createFile(bufferPath);
-            FileInputStream inputStream = new FileInputStream(temp.toFile());
-            inputStream.skip(position);
-            FileOutputStream outputStream = new FileOutputStream(bufferPath.toFile(), true);
-            int nextChar = inputStream.read();
-            while (nextChar != -1) {
-                outputStream.write(nextChar);
-                nextChar = inputStream.read();
-            }
-            inputStream.close();
-            outputStream.close();
-            temp.toFile().delete();
-            setFilePosition(bufferPath.toString(), 0L);
+    /**
+     * Flushes and closes all open files.
+     *
+     * @throws IOException
+     *             when writing fails
+     */
+    public synchronized void close() throws IOException {
+        flush();
+        for (SegmentedLog log : logs.values()) {
+            log.close();
         }
+        logs.clear();
     }
 }
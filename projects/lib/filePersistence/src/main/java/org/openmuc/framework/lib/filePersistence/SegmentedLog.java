@@ -0,0 +1,594 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of one buffer, split into segment files.
+ * <p>
+ * Segments are named <code>buffer.&lt;id&gt;.log</code> with an increasing id. Every segment starts with a header
+ * followed by records, each consisting of the payload length as int and the payload. Appends are collected in a write
+ * buffer and written with one call per batch. The read position is stored in <code>buffer.cursor</code> every
+ * {@link #CHECKPOINT_INTERVAL} messages and on {@link #flush(boolean)}, so after a crash at most that many messages
+ * are read again. A segment is deleted as soon as it has been read completely. If the maximum number of segments is
+ * exceeded, the oldest segment is dropped together with its unread messages.
+ * <p>
+ * Not thread safe, synchronization is done by {@link FilePersistence}.
+ */
+class SegmentedLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedLog.class);
+
+    static final String SEGMENT_PREFIX = FilePersistence.DEFAULT_FILE_PREFIX + '.';
+    static final String SEGMENT_SUFFIX = '.' + FilePersistence.DEFAULT_FILE_SUFFIX;
+    static final String CURSOR_FILENAME = FilePersistence.DEFAULT_FILE_PREFIX + ".cursor";
+    static final int RECORD_HEADER_SIZE = 4;
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("buffer\\.(\\d+)\\.log");
+    private static final int MAGIC = 0x4F4D4C47; // "OMLG"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int IO_BUFFER_SIZE = 16 * 1024;
+    private static final int CHECKPOINT_INTERVAL = 1000;
+
+    private final Path directory;
+    private final long maxRecordBytes;
+    private final int maxSegments;
+    private final boolean memoryMappedReads;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private long nextSegmentId = 0;
+
+    private long cursorSegment = 0;
+    private long cursorPosition = SEGMENT_HEADER_SIZE;
+    private FileChannel cursorChannel;
+    private int readsSinceCheckpoint = 0;
+
+    // appends which have not been written to the last segment yet
+    private ByteBuffer writeBuffer;
+
+    // read ahead window of the cursor segment
+    private ByteBuffer readBuffer;
+    private long readBufferSegment = -1;
+    private long readBufferOffset;
+
+    private SegmentedLog(Path directory, long maxRecordBytes, int maxSegments, boolean memoryMappedReads) {
+        this.directory = directory;
+        this.maxRecordBytes = maxRecordBytes;
+        this.maxSegments = maxSegments;
+        this.memoryMappedReads = memoryMappedReads;
+    }
+
+    /**
+     * Opens the log in the given directory and recovers segments and read position from a previous run.
+     */
+    static SegmentedLog open(Path directory, long maxRecordBytes, int maxSegments, boolean memoryMappedReads)
+            throws IOException {
+        SegmentedLog log = new SegmentedLog(directory, maxRecordBytes, maxSegments, memoryMappedReads);
+        log.recover();
+        return log;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+
+        List<byte[]> legacyMessages = new ArrayList<>();
+        File[] files = directory.toFile().listFiles((dir, name) -> SEGMENT_PATTERN.matcher(name).matches());
+        if (files != null) {
+            List<File> legacyFiles = new ArrayList<>();
+            for (File file : files) {
+                Matcher matcher = SEGMENT_PATTERN.matcher(file.getName());
+                matcher.matches();
+                long id = Long.parseLong(matcher.group(1));
+                if (hasSegmentHeader(file.toPath())) {
+                    segments.put(id, new Segment(id, file.toPath(), file.length()));
+                    nextSegmentId = Math.max(nextSegmentId, id + 1);
+                }
+                else {
+                    legacyFiles.add(file);
+                }
+            }
+            legacyMessages = readLegacyFiles(legacyFiles);
+        }
+
+        if (!segments.isEmpty()) {
+            truncateTornRecord(segments.lastEntry().getValue());
+        }
+        readCursor();
+        normalizeCursor();
+        deleteConsumedSegments();
+
+        for (byte[] message : legacyMessages) {
+            append(message);
+        }
+        if (!legacyMessages.isEmpty()) {
+            logger.info("Converted {} messages of {} to the segment format", legacyMessages.size(), directory);
+            flush(true);
+        }
+    }
+
+    private static boolean hasSegmentHeader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Reads the newline separated files written by previous versions and deletes them.
+     */
+    private static List<byte[]> readLegacyFiles(List<File> legacyFiles) throws IOException {
+        List<byte[]> messages = new ArrayList<>();
+        legacyFiles.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : legacyFiles) {
+            byte[] content = Files.readAllBytes(file.toPath());
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (byte b : content) {
+                if (b == '\n') {
+                    messages.add(line.toByteArray());
+                    line.reset();
+                }
+                else {
+                    line.write(b);
+                }
+            }
+            if (line.size() > 0) {
+                messages.add(line.toByteArray());
+            }
+            Files.delete(file.toPath());
+        }
+        return messages;
+    }
+
+    /**
+     * Cuts off a record which has only been written partially, e.g. because of a power failure.
+     */
+    private void truncateTornRecord(Segment segment) throws IOException {
+        long position = SEGMENT_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= segment.size) {
+            int length = readInt(segment, position);
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > segment.size) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position != segment.size) {
+            logger.warn("Truncating incomplete record at the end of {} ({} bytes)", segment.path,
+                    segment.size - position);
+            channel(segment).truncate(position);
+            segment.size = position;
+            invalidateReadBuffer();
+        }
+    }
+
+    private void readCursor() throws IOException {
+        Path path = directory.resolve(CURSOR_FILENAME);
+        if (!path.toFile().exists()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        int read = cursorChannel().read(buffer, 0);
+        if (read == 16) {
+            cursorSegment = buffer.getLong(0);
+            cursorPosition = buffer.getLong(8);
+        }
+    }
+
+    private void writeCursor() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(cursorSegment).putLong(cursorPosition).flip();
+        FileChannel channel = cursorChannel();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        readsSinceCheckpoint = 0;
+    }
+
+    private FileChannel cursorChannel() throws IOException {
+        if (cursorChannel == null) {
+            cursorChannel = FileChannel.open(directory.resolve(CURSOR_FILENAME), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return cursorChannel;
+    }
+
+    /**
+     * Appends a message. The message is not written before the write buffer is full or {@link #flush(boolean)} is
+     * called.
+     */
+    void append(byte[] payload) throws IOException {
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || (segment.size > SEGMENT_HEADER_SIZE
+                && (segment.size - SEGMENT_HEADER_SIZE) + recordSize > maxRecordBytes)) {
+            segment = newSegment();
+        }
+
+        if (writeBuffer == null) {
+            writeBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            writePending();
+        }
+        if (writeBuffer.remaining() < recordSize) {
+            // larger than the write buffer
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            record.putInt(payload.length).put(payload).flip();
+            write(segment, record, segment.size);
+        }
+        else {
+            writeBuffer.putInt(payload.length).put(payload);
+        }
+        segment.size += recordSize;
+    }
+
+    private Segment newSegment() throws IOException {
+        writePending();
+        Segment previous = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (previous != null && previous.id != cursorSegment) {
+            previous.close();
+        }
+
+        long id = nextSegmentId++;
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        Segment segment = new Segment(id, path, 0);
+        segment.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        write(segment, header, 0);
+        segment.size = SEGMENT_HEADER_SIZE;
+
+        if (segments.isEmpty()) {
+            cursorSegment = id;
+            cursorPosition = SEGMENT_HEADER_SIZE;
+        }
+        segments.put(id, segment);
+
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.firstEntry().getValue();
+            logger.warn("Maximum number of files reached for {}. Dropping oldest file {}", directory, oldest.path);
+            deleteSegment(oldest);
+        }
+        return segment;
+    }
+
+    private void writePending() throws IOException {
+        if (writeBuffer == null || writeBuffer.position() == 0) {
+            return;
+        }
+        Segment segment = segments.lastEntry().getValue();
+        writeBuffer.flip();
+        write(segment, writeBuffer, segment.size - writeBuffer.remaining());
+        writeBuffer.clear();
+    }
+
+    private void write(Segment segment, ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = channel(segment);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Writes all pending appends and the read position.
+     *
+     * @param force
+     *            if the data has to be forced to the storage device
+     */
+    void flush(boolean force) throws IOException {
+        writePending();
+        writeBuffer = null;
+        if (force && !segments.isEmpty()) {
+            channel(segments.lastEntry().getValue()).force(false);
+        }
+        if (cursorChannel != null || !segments.isEmpty()) {
+            writeCursor();
+            if (force) {
+                cursorChannel.force(false);
+            }
+        }
+    }
+
+    boolean hasNext() {
+        return !segments.isEmpty();
+    }
+
+    /**
+     * @return the next unread message or <code>null</code> if all messages have been read
+     */
+    byte[] next() throws IOException {
+        while (!segments.isEmpty()) {
+            Segment segment = segments.get(cursorSegment);
+            if (segment == segments.lastEntry().getValue()) {
+                writePending();
+            }
+
+            byte[] payload = null;
+            if (cursorPosition + RECORD_HEADER_SIZE <= segment.size) {
+                int length = readInt(segment, cursorPosition);
+                if (length >= 0 && cursorPosition + RECORD_HEADER_SIZE + length <= segment.size) {
+                    payload = new byte[length];
+                    read(segment, cursorPosition + RECORD_HEADER_SIZE, payload);
+                    cursorPosition += RECORD_HEADER_SIZE + length;
+                }
+            }
+            if (payload == null) {
+                logger.warn("Skipping corrupted data at position {} of {}", cursorPosition, segment.path);
+                cursorPosition = segment.size;
+            }
+
+            if (deleteConsumedSegments()) {
+                writeCursor();
+            }
+            else if (++readsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                writeCursor();
+            }
+            if (payload != null) {
+                return payload;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads up to maxCount unread messages without moving the read position.
+     */
+    BufferedMessages peek(int maxCount) throws IOException {
+        BufferedMessages messages = new BufferedMessages();
+        for (Segment segment : segments.tailMap(cursorSegment, true).values()) {
+            if (segment == segments.lastEntry().getValue()) {
+                writePending();
+            }
+            long position = segment.id == cursorSegment ? cursorPosition : SEGMENT_HEADER_SIZE;
+            while (messages.size() < maxCount && position + RECORD_HEADER_SIZE <= segment.size) {
+                int length = readInt(segment, position);
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > segment.size) {
+                    // corrupted, skipped like in next()
+                    break;
+                }
+                byte[] payload = new byte[length];
+                read(segment, position + RECORD_HEADER_SIZE, payload);
+                position += RECORD_HEADER_SIZE + length;
+                messages.add(payload, segment.id, position);
+            }
+            if (messages.size() >= maxCount) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Moves the read position behind a message returned by {@link #peek(int)}. Does nothing if the position has
+     * already been passed, e.g. because the segment has been dropped in the meantime.
+     */
+    void consume(long segmentId, long position) throws IOException {
+        if (segmentId < cursorSegment || (segmentId == cursorSegment && position <= cursorPosition)
+                || !segments.containsKey(segmentId)) {
+            return;
+        }
+        while (segments.firstKey() < segmentId) {
+            deleteSegment(segments.firstEntry().getValue());
+        }
+        cursorSegment = segmentId;
+        cursorPosition = position;
+        deleteConsumedSegments();
+        writeCursor();
+    }
+
+    private void normalizeCursor() {
+        if (segments.isEmpty()) {
+            return;
+        }
+        if (!segments.containsKey(cursorSegment)) {
+            // the segment of the cursor has been deleted after the last checkpoint
+            Long next = segments.ceilingKey(cursorSegment);
+            cursorSegment = next != null ? next : segments.firstKey();
+            cursorPosition = SEGMENT_HEADER_SIZE;
+        }
+        else if (cursorPosition < SEGMENT_HEADER_SIZE || cursorPosition > segments.get(cursorSegment).size) {
+            cursorPosition = SEGMENT_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * @return if at least one segment has been deleted
+     */
+    private boolean deleteConsumedSegments() throws IOException {
+        boolean deleted = false;
+        while (!segments.isEmpty()) {
+            Segment segment = segments.get(cursorSegment);
+            if (segment == null || cursorPosition < segment.size) {
+                break;
+            }
+            deleteSegment(segment);
+            deleted = true;
+        }
+        return deleted;
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        if (segment == segments.lastEntry().getValue() && writeBuffer != null) {
+            writeBuffer.clear();
+        }
+        segments.remove(segment.id);
+        segment.close();
+        Files.deleteIfExists(segment.path);
+        if (readBufferSegment == segment.id) {
+            invalidateReadBuffer();
+        }
+
+        if (segment.id == cursorSegment) {
+            Long next = segments.higherKey(segment.id);
+            cursorSegment = next != null ? next : nextSegmentId;
+            cursorPosition = SEGMENT_HEADER_SIZE;
+        }
+        if (segments.isEmpty()) {
+            readBuffer = null;
+        }
+    }
+
+    private int readInt(Segment segment, long position) throws IOException {
+        byte[] bytes = new byte[RECORD_HEADER_SIZE];
+        read(segment, position, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    private void read(Segment segment, long position, byte[] destination) throws IOException {
+        if (memoryMappedReads && segment != segments.lastEntry().getValue()) {
+            if (segment.map == null) {
+                segment.map = channel(segment).map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+            }
+            ByteBuffer map = segment.map.duplicate();
+            map.position((int) position);
+            map.get(destination);
+            return;
+        }
+
+        if (destination.length > IO_BUFFER_SIZE) {
+            ByteBuffer buffer = ByteBuffer.wrap(destination);
+            readFully(segment, buffer, position);
+            return;
+        }
+
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+            readBufferSegment = -1;
+        }
+        if (readBufferSegment != segment.id || position < readBufferOffset
+                || position + destination.length > readBufferOffset + readBuffer.limit()) {
+            readBuffer.clear();
+            readBuffer.limit((int) Math.min(IO_BUFFER_SIZE, segment.size - position));
+            readFully(segment, readBuffer, position);
+            readBuffer.flip();
+            readBufferSegment = segment.id;
+            readBufferOffset = position;
+        }
+        ByteBuffer window = readBuffer.duplicate();
+        window.position((int) (position - readBufferOffset));
+        window.get(destination);
+    }
+
+    private void readFully(Segment segment, ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = channel(segment);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("Unexpected end of file " + segment.path);
+            }
+            position += read;
+        }
+    }
+
+    private void invalidateReadBuffer() {
+        readBufferSegment = -1;
+    }
+
+    private FileChannel channel(Segment segment) throws IOException {
+        if (segment.channel == null) {
+            segment.channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return segment.channel;
+    }
+
+    /**
+     * @return the number of bytes of unread records including their length headers
+     */
+    long getUnreadBytes() {
+        long unread = 0;
+        for (Segment segment : segments.values()) {
+            long start = segment.id == cursorSegment ? cursorPosition : SEGMENT_HEADER_SIZE;
+            unread += Math.max(0, segment.size - start);
+        }
+        return unread;
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes pending appends and releases all files. The read position is removed if all messages have been read.
+     */
+    void close() throws IOException {
+        if (segments.isEmpty()) {
+            if (cursorChannel != null) {
+                cursorChannel.close();
+                cursorChannel = null;
+            }
+            Files.deleteIfExists(directory.resolve(CURSOR_FILENAME));
+            return;
+        }
+        flush(false);
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        if (cursorChannel != null) {
+            cursorChannel.close();
+            cursorChannel = null;
+        }
+        readBuffer = null;
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private long size;
+        private FileChannel channel;
+        private MappedByteBuffer map;
+
+        Segment(long id, Path path, long size) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+        }
+
+        void close() throws IOException {
+            map = null;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
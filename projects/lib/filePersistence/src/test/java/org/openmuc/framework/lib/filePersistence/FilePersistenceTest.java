@@ -58,17 +58,17 @@ class FilePersistenceTest {
     }
 
     private void write512Byte(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(513).getBytes());
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(516).getBytes());
     }
 
     private void write512ByteUnique(FilePersistence filePersistence, String buffer, int id) throws IOException {
-        String message = LOREM_IPSUM_1_KB.substring(514);
+        String message = LOREM_IPSUM_1_KB.substring(517);
         message += id;
         filePersistence.writeBufferToFile(buffer, message.getBytes());
     }
 
     private void write1KB(FilePersistence filePersistence, String buffer) throws IOException {
-        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(1).getBytes());
+        filePersistence.writeBufferToFile(buffer, LOREM_IPSUM_1_KB.substring(4).getBytes());
     }
 
     @Test
@@ -81,7 +81,7 @@ class FilePersistenceTest {
     @Test
     void writeWithTooBigPayload() {
         FilePersistence filePersistence = getFilePersistence();
-        // maxFileSize is 1024 Bytes, payload + newline char = 1025 Bytes
+        // maxFileSize is 1024 Bytes, length header + payload = 1028 Bytes
         Assertions.assertThrows(IOException.class,
                 () -> filePersistence.writeBufferToFile("test", LOREM_IPSUM_1_KB.getBytes()));
     }
@@ -96,23 +96,118 @@ class FilePersistenceTest {
         Assertions.assertEquals("test2", filePersistence.getBuffers()[1]);
     }
 
+    private int countFiles(String buffer) {
+        File[] files = FileSystems.getDefault()
+                .getPath(DIRECTORY, buffer)
+                .toFile()
+                .listFiles((dir, name) -> name.endsWith(".log"));
+        return files == null ? 0 : files.length;
+    }
+
     @Test
     void writeBufferToFile() throws IOException {
         FilePersistence filePersistence = getFilePersistence();
         String buffer = "test";
-        File file1 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.0.log").toFile();
-        File file2 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.1.log").toFile();
-        File file3 = FileSystems.getDefault().getPath(DIRECTORY, buffer, "buffer.2.log").toFile();
         write512Byte(filePersistence, buffer); // 512 B
-        Assertions.assertTrue(file1.exists() && !file2.exists() && !file3.exists());
+        filePersistence.flush();
+        Assertions.assertEquals(1, countFiles(buffer));
         write512Byte(filePersistence, buffer); // 512 B + 512 B = 1024 B
         // File not full
-        Assertions.assertTrue(file1.exists() && !file2.exists() && !file3.exists());
+        Assertions.assertEquals(1, countFiles(buffer));
         write512Byte(filePersistence, buffer); // 1024 B + 512 B > 1024 B -> new file 512 B
-        Assertions.assertTrue(file1.exists() && file2.exists() && !file3.exists());
-        // maxFileCount = 2 recognized -> no new file (rotation)
-        write1KB(filePersistence, buffer); // 512 B + 1024 B > 1024 B -> override file
-        Assertions.assertTrue(file1.exists() && file2.exists() && !file3.exists());
+        Assertions.assertEquals(2, countFiles(buffer));
+        // maxFileCount = 2 recognized -> oldest file is dropped
+        write1KB(filePersistence, buffer); // 512 B + 1024 B > 1024 B -> new file
+        Assertions.assertEquals(2, countFiles(buffer));
+    }
+
+    @Test
+    void writeSingleFile() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 1, 1);
+        String buffer = "test";
+        write512ByteUnique(filePersistence, buffer, 1);
+        write512ByteUnique(filePersistence, buffer, 2);
+        write512ByteUnique(filePersistence, buffer, 3); // > 1024 B -> file with 1 and 2 is dropped
+
+        Assertions.assertEquals(1, countFiles(buffer));
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        Assertions.assertEquals(0, filePersistence.getMessage(buffer).length);
+    }
+
+    @Test
+    void binaryPayload() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        byte[] payload = new byte[] { 'a', '\n', 0, -1, '\n' };
+        filePersistence.writeBufferToFile("test", payload);
+        filePersistence.writeBufferToFile("test", new byte[0]);
+
+        Assertions.assertArrayEquals(payload, filePersistence.getMessage("test"));
+        Assertions.assertTrue(filePersistence.fileExistsFor("test"));
+        Assertions.assertEquals(0, filePersistence.getMessage("test").length);
+        Assertions.assertFalse(filePersistence.fileExistsFor("test"));
+    }
+
+    @Test
+    void recoverAfterRestart() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 3, 2);
+        for (int i = 1; i <= 4; i++) {
+            write512ByteUnique(filePersistence, "test", i);
+        }
+        Assertions.assertEquals('1', filePersistence.getMessage("test")[507]);
+        filePersistence.close();
+
+        FilePersistence restarted = new FilePersistence(DIRECTORY, 3, 2);
+        Assertions.assertArrayEquals(new String[] { "test" }, restarted.getBuffers());
+        Assertions.assertEquals('2', restarted.getMessage("test")[507]);
+        Assertions.assertEquals('3', restarted.getMessage("test")[507]);
+        Assertions.assertEquals('4', restarted.getMessage("test")[507]);
+        Assertions.assertFalse(restarted.fileExistsFor("test"));
+        restarted.close();
+
+        Assertions.assertEquals(0, new FilePersistence(DIRECTORY, 3, 2).getBuffers().length);
+    }
+
+    @Test
+    void peekedMessagesStayUntilRemoved() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 3, 2);
+        for (int i = 1; i <= 5; i++) {
+            write512ByteUnique(filePersistence, "test", i);
+        }
+
+        BufferedMessages messages = filePersistence.peekMessages("test", 3);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals('3', messages.getMessages().get(2)[507]);
+        // peeking again returns the same messages
+        Assertions.assertEquals('1', filePersistence.peekMessages("test", 1).getMessages().get(0)[507]);
+
+        // the first two messages were processed, the third is read again after a restart
+        filePersistence.removeMessages("test", messages, 2);
+        filePersistence.close();
+
+        FilePersistence restarted = new FilePersistence(DIRECTORY, 3, 2);
+        messages = restarted.peekMessages("test", 10);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals('3', messages.getMessages().get(0)[507]);
+        restarted.removeMessages("test", messages, messages.size());
+        Assertions.assertFalse(restarted.fileExistsFor("test"));
+        Assertions.assertEquals(0, restarted.getBuffers().length);
+    }
+
+    @Test
+    void removingDroppedMessagesKeepsNewerMessages() throws IOException {
+        FilePersistence filePersistence = new FilePersistence(DIRECTORY, 2, 1);
+        write512ByteUnique(filePersistence, "test", 1);
+        write512ByteUnique(filePersistence, "test", 2);
+        BufferedMessages messages = filePersistence.peekMessages("test", 2);
+
+        // drops the file with the peeked messages
+        for (int i = 3; i <= 6; i++) {
+            write512ByteUnique(filePersistence, "test", i);
+        }
+        filePersistence.removeMessages("test", messages, 2);
+
+        Assertions.assertEquals('3', filePersistence.getMessage("test")[507]);
     }
 
     @Test
@@ -122,9 +217,9 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        // length header is not part of message so length is 4 Byte less
+        Assertions.assertEquals(508, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1020, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
@@ -135,9 +230,9 @@ class FilePersistenceTest {
         write512ByteUnique(filePersistence, buffer, 4); // 1024 B
         write512ByteUnique(filePersistence, buffer, 5); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[507]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
 
@@ -148,9 +243,9 @@ class FilePersistenceTest {
         write512Byte(filePersistence, buffer);
         write1KB(filePersistence, buffer);
 
-        // Newline is not part of message so length is 1 Byte less
-        Assertions.assertEquals(511, filePersistence.getMessage(buffer).length);
-        Assertions.assertEquals(1023, filePersistence.getMessage(buffer).length);
+        // length header is not part of message so length is 4 Byte less
+        Assertions.assertEquals(508, filePersistence.getMessage(buffer).length);
+        Assertions.assertEquals(1020, filePersistence.getMessage(buffer).length);
         // buffer empty
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
 
@@ -163,11 +258,11 @@ class FilePersistenceTest {
         write512ByteUnique(filePersistence, buffer, 6); // 1024 B
         write512ByteUnique(filePersistence, buffer, 7); // > 1024 B message is overriden
 
-        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[510]);
-        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('4', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('5', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('6', filePersistence.getMessage(buffer)[507]);
+        Assertions.assertEquals('7', filePersistence.getMessage(buffer)[507]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
 }
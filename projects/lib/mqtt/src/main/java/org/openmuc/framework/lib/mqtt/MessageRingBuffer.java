@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte budgeted FIFO of messages stored in one direct {@link ByteBuffer}.
+ * <p>
+ * Every message is stored as a record of topic ID, payload length and payload, wrapping around at the end of the
+ * buffer. Topics are replaced by IDs of a topic table, so a buffered message does not keep any objects on the heap.
+ * The payload budget limits the sum of the payload lengths. The buffer itself is somewhat larger for the record
+ * headers and is allocated with the first message.
+ */
+final class MessageRingBuffer {
+
+    static final int HEADER_SIZE = 8;
+
+    private final long payloadBudget;
+    private final int capacity;
+    private final List<String> topics = new ArrayList<>();
+    private final Map<String, Integer> topicIds = new HashMap<>();
+
+    private ByteBuffer ring;
+    private int head = 0;
+    private int usedBytes = 0;
+    private long payloadBytes = 0;
+
+    /**
+     * @param payloadBudget
+     *            maximum sum of the payload lengths in bytes
+     */
+    MessageRingBuffer(long payloadBudget) {
+        if (payloadBudget > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("buffer size is too large: " + payloadBudget);
+        }
+        this.payloadBudget = payloadBudget;
+        this.capacity = (int) (payloadBudget + payloadBudget / 4) + HEADER_SIZE;
+    }
+
+    /**
+     * Appends a message if it fits into the buffer.
+     *
+     * @return false if the buffer is too full
+     */
+    synchronized boolean offer(String topic, byte[] message) {
+        int recordSize = HEADER_SIZE + message.length;
+        if (payloadBytes + message.length > payloadBudget || usedBytes + recordSize > capacity) {
+            return false;
+        }
+        if (ring == null) {
+            ring = ByteBuffer.allocateDirect(capacity);
+        }
+        int tail = wrap(head + usedBytes);
+        tail = putInt(tail, topicId(topic));
+        tail = putInt(tail, message.length);
+        put(tail, message);
+        usedBytes += recordSize;
+        payloadBytes += message.length;
+        return true;
+    }
+
+    /**
+     * Removes the oldest message.
+     *
+     * @return the message or <code>null</code> if the buffer is empty
+     */
+    synchronized MessageTuple poll() {
+        if (usedBytes == 0) {
+            return null;
+        }
+        String topic = topics.get(getInt(head));
+        byte[] message = new byte[getInt(wrap(head + 4))];
+        get(wrap(head + HEADER_SIZE), message);
+
+        head = wrap(head + HEADER_SIZE + message.length);
+        usedBytes -= HEADER_SIZE + message.length;
+        payloadBytes -= message.length;
+        if (usedBytes == 0) {
+            head = 0;
+        }
+        return new MessageTuple(topic, message);
+    }
+
+    synchronized boolean isEmpty() {
+        return usedBytes == 0;
+    }
+
+    /**
+     * @return the sum of the payload lengths of all buffered messages
+     */
+    synchronized long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    private int topicId(String topic) {
+        Integer id = topicIds.get(topic);
+        if (id == null) {
+            id = topics.size();
+            topics.add(topic);
+            topicIds.put(topic, id);
+        }
+        return id;
+    }
+
+    private int wrap(int position) {
+        return position >= capacity ? position - capacity : position;
+    }
+
+    private int putInt(int position, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            ring.put(position, (byte) (value >>> shift));
+            position = wrap(position + 1);
+        }
+        return position;
+    }
+
+    private int getInt(int position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (ring.get(position) & 0xFF);
+            position = wrap(position + 1);
+        }
+        return value;
+    }
+
+    private void put(int position, byte[] source) {
+        int firstPart = Math.min(source.length, capacity - position);
+        ring.position(position);
+        ring.put(source, 0, firstPart);
+        if (firstPart < source.length) {
+            ring.position(0);
+            ring.put(source, firstPart, source.length - firstPart);
+        }
+    }
+
+    private void get(int position, byte[] destination) {
+        int firstPart = Math.min(destination.length, capacity - position);
+        ring.position(position);
+        ring.get(destination, 0, firstPart);
+        if (firstPart < destination.length) {
+            ring.position(0);
+            ring.get(destination, firstPart, destination.length - firstPart);
+        }
+    }
+}
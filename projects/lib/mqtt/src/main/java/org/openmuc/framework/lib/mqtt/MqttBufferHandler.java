@@ -22,24 +22,28 @@
 package org.openmuc.framework.lib.mqtt;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.openmuc.framework.lib.filePersistence.BufferedMessages;
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Buffer handler with RAM buffer and managed {@link FilePersistence}
+ * <p>
+ * The RAM buffer is a {@link MessageRingBuffer} outside of the heap. When it is full, its whole content is moved to
+ * the file buffer at once and written with a single flush.
  */
 public class MqttBufferHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttBufferHandler.class);
 
-    private final Queue<MessageTuple> buffer = new LinkedList<>();
+    private final MessageRingBuffer buffer;
     private final long maxBufferSizeBytes;
-    private long currentBufferSize = 0L;
     private final int maxFileCount;
     private final FilePersistence filePersistence;
 
@@ -127,6 +131,7 @@ public class MqttBufferHandler {
     public MqttBufferHandler(long maxBufferSizeKb, int maxFileCount, long maxFileSizeKb, String persistenceDirectory) {
         maxBufferSizeBytes = maxBufferSizeKb * 1024;
         this.maxFileCount = maxFileCount;
+        buffer = new MessageRingBuffer(maxBufferSizeBytes);
 
         if (isFileBufferEnabled()) {
             filePersistence = new FilePersistence(persistenceDirectory, maxFileCount, maxFileSizeKb);
@@ -142,45 +147,52 @@ public class MqttBufferHandler {
 
     public void add(String topic, byte[] message) {
 
-        if (isBufferTooFull(message)) {
+        if (!buffer.offer(topic, message)) {
             handleFull(topic, message);
         }
-        else {
-            synchronized (buffer) {
-                buffer.add(new MessageTuple(topic, message));
-                currentBufferSize += message.length;
-            }
 
-            if (logger.isTraceEnabled()) {
-                logger.trace("maxBufferSize = {}, currentBufferSize = {}, messageSize = {}", maxBufferSizeBytes,
-                        currentBufferSize, message.length);
-            }
+        if (logger.isTraceEnabled()) {
+            logger.trace("maxBufferSize = {}, currentBufferSize = {}, messageSize = {}", maxBufferSizeBytes,
+                    buffer.getPayloadBytes(), message.length);
         }
-
-    }
-
-    private boolean isBufferTooFull(byte[] message) {
-        return currentBufferSize + message.length > maxBufferSizeBytes;
     }
 
     private void handleFull(String topic, byte[] message) {
         if (isFileBufferEnabled()) {
-            addToFilePersistence();
-            add(topic, message);
+            synchronized (filePersistence) {
+                addToFilePersistence();
+                if (!buffer.offer(topic, message)) {
+                    // larger than the RAM buffer
+                    writeBufferToFile(new MessageTuple(topic, message));
+                    flushFilePersistence();
+                }
+            }
         }
         else if (message.length <= maxBufferSizeBytes) {
-            removeNextMessage();
-            add(topic, message);
+            while (!buffer.offer(topic, message) && buffer.poll() != null) {
+                // drop the oldest messages until the new one fits
+            }
         }
     }
 
     private void addToFilePersistence() {
         logger.debug("move buffered messages from RAM to file");
-        while (!buffer.isEmpty()) {
-            MessageTuple messageTuple = removeNextMessage();
+        MessageTuple messageTuple;
+        while ((messageTuple = buffer.poll()) != null) {
             writeBufferToFile(messageTuple);
         }
-        currentBufferSize = 0;
+        flushFilePersistence();
+    }
+
+    private void flushFilePersistence() {
+        try {
+            // one disk write for all moved messages instead of one per message
+            synchronized (filePersistence) {
+                filePersistence.flush();
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
     }
 
     private void writeBufferToFile(MessageTuple messageTuple) {
@@ -197,15 +209,79 @@ public class MqttBufferHandler {
         return buffer.isEmpty();
     }
 
+    /**
+     * @return the oldest message of the RAM buffer
+     * @throws NoSuchElementException
+     *             if the RAM buffer is empty
+     */
     public MessageTuple removeNextMessage() {
-        MessageTuple removedMessage;
-        synchronized (buffer) {
-            removedMessage = buffer.remove();
-            currentBufferSize -= removedMessage.message.length;
+        MessageTuple removedMessage = buffer.poll();
+        if (removedMessage == null) {
+            throw new NoSuchElementException();
         }
         return removedMessage;
     }
 
+    /**
+     * Removes up to maxCount messages from the RAM buffer.
+     *
+     * @param maxCount
+     *            maximum number of messages
+     * @return the removed messages in the order they were added, empty if the RAM buffer is empty
+     */
+    public List<MessageTuple> removeNextMessages(int maxCount) {
+        List<MessageTuple> messages = new ArrayList<>();
+        MessageTuple messageTuple;
+        while (messages.size() < maxCount && (messageTuple = buffer.poll()) != null) {
+            messages.add(messageTuple);
+        }
+        return messages;
+    }
+
+    /**
+     * Reads up to maxCount messages of a file buffer. The messages stay in the file buffer until they are removed with
+     * {@link #removeFileMessages(String, BufferedMessages, int)}.
+     *
+     * @param buffer
+     *            the file buffer, see {@link #getBuffers()}
+     * @param maxCount
+     *            maximum number of messages
+     * @return the messages in the order they were written, empty if the file buffer is empty
+     */
+    public BufferedMessages peekFileMessages(String buffer, int maxCount) {
+        if (!isFileBufferEnabled()) {
+            return new BufferedMessages();
+        }
+        synchronized (filePersistence) {
+            return filePersistence.peekMessages(buffer, maxCount);
+        }
+    }
+
+    /**
+     * Removes the first count messages read with {@link #peekFileMessages(String, int)} from the file buffer.
+     */
+    public void removeFileMessages(String buffer, BufferedMessages messages, int count) {
+        if (!isFileBufferEnabled()) {
+            return;
+        }
+        synchronized (filePersistence) {
+            filePersistence.removeMessages(buffer, messages, count);
+        }
+    }
+
+    /**
+     * @return the number of bytes of all buffered messages in RAM and in files
+     */
+    public long getBacklogBytes() {
+        long backlog = buffer.getPayloadBytes();
+        if (isFileBufferEnabled()) {
+            synchronized (filePersistence) {
+                backlog += filePersistence.getUnreadBytes();
+            }
+        }
+        return backlog;
+    }
+
     public String[] getBuffers() {
         String[] buffers;
         if (isFileBufferEnabled()) {
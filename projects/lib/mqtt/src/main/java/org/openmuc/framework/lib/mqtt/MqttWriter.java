@@ -25,13 +25,18 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.openmuc.framework.lib.filePersistence.BufferedMessages;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
@@ -40,6 +45,8 @@ import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
 public class MqttWriter {
     private static final Logger logger = LoggerFactory.getLogger(MqttWriter.class);
+    private static final int RECOVERY_WINDOW = Integer.getInteger("org.openmuc.framework.lib.mqtt.recoveryWindow",
+            64);
 
     private volatile MqttConnection connection;
     private volatile boolean connected = false;
@@ -49,6 +56,11 @@ public class MqttWriter {
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final MqttBufferHandler buffer;
     private final String pid;
+    private final TokenBucket rateLimiter;
+    private final AtomicBoolean recoveryRunning = new AtomicBoolean(false);
+    private final AtomicLong recoveredMessages = new AtomicLong();
+    private volatile long recoveryStart = 0;
+    private volatile long lastDrainRate = 0;
 
     public MqttWriter(MqttConnection connection, String pid) {
         this.connection = connection;
@@ -58,49 +70,19 @@ public class MqttWriter {
         buffer = new MqttBufferHandler(s.getMaxBufferSize(), s.getMaxFileCount(), s.getMaxFileSize(),
                 s.getPersistenceDirectory());
         this.pid = pid;
+        if (s.isRecoveryLimitSet()) {
+            rateLimiter = new TokenBucket(s.getRecoveryChunkSize() * 1000.0 / s.getRecoveryDelay(),
+                    s.getRecoveryChunkSize());
+        }
+        else {
+            rateLimiter = null;
+        }
     }
     public void markConnected() {
         this.connected = true;
         // this.connection.setConnected(true);
     }
 
-    private void emptyFileBuffer() {
-
-        log("Clearing file buffer.");
-        String[] buffers = buffer.getBuffers();
-        if (buffers.length == 0) {
-            log("File buffer already empty.");
-        }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        for (String buffer : buffers) {
-            Iterator<MessageTuple> iterator = this.buffer.getMessageIterator(buffer);
-            while (iterator.hasNext()) {
-                if (!connected) {
-                    warn("Recovery from file buffer interrupted by connection loss.");
-                    return;
-                }
-                MessageTuple messageTuple = iterator.next();
-                if (logger.isTraceEnabled()) {
-                    trace("Resend from file: {}", new String(messageTuple.message));
-                }
-                write(messageTuple.topic, messageTuple.message);
-                messageCount++;
-                if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                    messageCount = 0;
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }
-
-        log("Empty file buffer done.");
-    }
-
     private void addConnectedListener() {
         connection.addConnectedListener(context -> {
             logger.warn("[WRITER] connected listener fired");
@@ -128,37 +110,131 @@ public class MqttWriter {
         });
     }
 
+    /**
+     * Resends the buffered messages, first those of the RAM buffer, then those of the file buffers. The messages are
+     * read in batches and published asynchronously with at most {@link #RECOVERY_WINDOW} publishes in flight. If a
+     * recovery limit is configured, the rate is limited to recoveryChunkSize messages per recoveryDelay ms and live
+     * messages are counted against the same limit, so the recovery only uses what live telemetry leaves over.
+     * <p>
+     * Messages of the file buffers are only removed from the files after the publishes of their batch have completed,
+     * so they are sent again after a crash instead of being lost.
+     */
     private void emptyBuffer() {
-        log("Clearing memory (RAM) buffer.");
-        if (buffer.isEmpty()) {
-            log("Memory buffer already empty.");
+        if (!recoveryRunning.compareAndSet(false, true)) {
+            debug("Recovery already running.");
+            return;
+        }
+        try {
+            Semaphore inFlight = new Semaphore(RECOVERY_WINDOW);
+            recoveryStart = System.nanoTime();
+            recoveredMessages.set(0);
+            log("Resending {} bytes of buffered messages.", getBacklogBytes());
+            log("Clearing memory (RAM) buffer.");
+            if (buffer.isEmpty()) {
+                log("Memory buffer already empty.");
+            }
+            List<MessageTuple> batch;
+            while (!(batch = buffer.removeNextMessages(RECOVERY_WINDOW)).isEmpty()) {
+                int sent = resend(batch, inFlight);
+                if (sent < batch.size()) {
+                    warn("Recovery from memory buffer interrupted by connection loss.");
+                    for (MessageTuple messageTuple : batch.subList(sent, batch.size())) {
+                        buffer.add(messageTuple.topic, messageTuple.message);
+                    }
+                    return;
+                }
+            }
+            log("Empty memory buffer done.");
+
+            log("Clearing file buffer.");
+            String[] buffers = buffer.getBuffers();
+            if (buffers.length == 0) {
+                log("File buffer already empty.");
+            }
+            BufferedMessages fileBatch;
+            for (String fileBuffer : buffers) {
+                while (!(fileBatch = buffer.peekFileMessages(fileBuffer, RECOVERY_WINDOW)).isEmpty()) {
+                    batch = new ArrayList<>(fileBatch.size());
+                    for (byte[] message : fileBatch.getMessages()) {
+                        batch.add(new MessageTuple(fileBuffer, message));
+                    }
+                    int sent = resend(batch, inFlight);
+                    // failed publishes have been added to the RAM buffer when all permits are back
+                    inFlight.acquire(RECOVERY_WINDOW);
+                    inFlight.release(RECOVERY_WINDOW);
+                    buffer.removeFileMessages(fileBuffer, fileBatch, sent);
+                    if (sent < batch.size()) {
+                        warn("Recovery from file buffer interrupted by connection loss.");
+                        return;
+                    }
+                }
+            }
+
+            // wait for the outstanding acknowledgements
+            inFlight.acquire(RECOVERY_WINDOW);
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart);
+            log("Empty file buffer done. Resent {} messages in {} ms ({} messages/s).", recoveredMessages.get(),
+                    duration, getDrainRate());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            warn("Recovery interrupted.");
+        } finally {
+            recoveryStart = 0;
+            recoveryRunning.set(false);
         }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        while (!buffer.isEmpty()) {
+    }
+
+    /**
+     * Publishes the messages of a batch. A message whose publish fails is added to the RAM buffer before its permit is
+     * released.
+     *
+     * @return the number of messages which have been published, less than the batch size if the connection was lost
+     */
+    private int resend(List<MessageTuple> batch, Semaphore inFlight) throws InterruptedException {
+        for (int i = 0; i < batch.size(); i++) {
             if (!connected) {
-                warn("Recovery from memory buffer interrupted by connection loss.");
-                return;
+                return i;
             }
-            MessageTuple messageTuple = buffer.removeNextMessage();
+            MessageTuple messageTuple = batch.get(i);
             if (logger.isTraceEnabled()) {
-                trace("Resend from memory: {}", new String(messageTuple.message));
+                trace("Resend: {}", new String(messageTuple.message));
             }
-            write(messageTuple.topic, messageTuple.message);
-            messageCount++;
-            if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                messageCount = 0;
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
             }
+            inFlight.acquire();
+            publish(messageTuple.topic, messageTuple.message).whenComplete((publish, exception) -> {
+                if (exception != null) {
+                    warn("Connection issue: {} message could not be sent. Adding message to buffer",
+                            exception.getMessage());
+                    buffer.add(messageTuple.topic, messageTuple.message);
+                }
+                else {
+                    recoveredMessages.incrementAndGet();
+                }
+                inFlight.release();
+            });
+        }
+        return batch.size();
+    }
+
+    /**
+     * @return the number of bytes of buffered messages which still have to be sent
+     */
+    public long getBacklogBytes() {
+        return buffer.getBacklogBytes();
+    }
 
+    /**
+     * @return the resent messages per second of the running or the last recovery
+     */
+    public long getDrainRate() {
+        long start = recoveryStart;
+        if (start != 0) {
+            lastDrainRate = recoveredMessages.get() * 1000 / Math.max(1,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
-        log("Empty memory buffer done.");
-        emptyFileBuffer();
+        return lastDrainRate;
     }
 
     /**
@@ -223,6 +299,9 @@ public class MqttWriter {
         //     topic
         // );
         if (connected) {
+            if (rateLimiter != null) {
+                rateLimiter.consume();
+            }
             startPublishing(topic, message);
             // logger.info("----------------- Published message to topic {} -------------------", topic);
         }
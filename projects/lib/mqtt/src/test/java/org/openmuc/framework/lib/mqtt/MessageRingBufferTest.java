@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MessageRingBufferTest {
+
+    @Test
+    void messagesWrapAroundTheEnd() {
+        // capacity is 100 + 25 + 8 = 133 bytes
+        MessageRingBuffer buffer = new MessageRingBuffer(100);
+        byte[] message = new byte[40];
+
+        for (int i = 0; i < 10; i++) {
+            message[0] = (byte) i;
+            message[39] = (byte) i;
+            assertTrue(buffer.offer("topic" + (i % 3), message));
+            assertTrue(buffer.offer("topic" + (i % 3), message));
+            assertFalse(buffer.offer("topic", message));
+
+            MessageTuple first = buffer.poll();
+            assertEquals("topic" + (i % 3), first.topic);
+            assertArrayEquals(message, first.message);
+            assertArrayEquals(message, buffer.poll().message);
+            assertNull(buffer.poll());
+        }
+    }
+
+    @Test
+    void payloadBudget() {
+        MessageRingBuffer buffer = new MessageRingBuffer(100);
+        assertTrue(buffer.offer("a", new byte[60]));
+        assertFalse(buffer.offer("a", new byte[41]));
+        assertTrue(buffer.offer("a", new byte[40]));
+        assertEquals(100, buffer.getPayloadBytes());
+
+        buffer.poll();
+        assertEquals(40, buffer.getPayloadBytes());
+        assertTrue(buffer.offer("b", new byte[0]));
+        assertEquals(40, buffer.poll().message.length);
+        assertEquals("b", buffer.poll().topic);
+        assertTrue(buffer.isEmpty());
+    }
+}
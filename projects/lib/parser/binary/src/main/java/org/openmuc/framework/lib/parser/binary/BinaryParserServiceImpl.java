@@ -0,0 +1,411 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.parser.spi.ParserService;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Parser implementation with a compact binary encoding for bandwidth limited links.
+ * <p>
+ * The channel IDs of a message form its schema. A schema is identified by the CRC32 of its channel IDs and is only
+ * included in the first message with this schema, in the first message after {@link #reset()} and then every
+ * {@link #SCHEMA_INTERVAL} messages, so a receiver which starts later learns it after a while. The MQTT logger calls
+ * {@link #reset()} whenever the connection to the broker is lost or established. All other messages only carry the
+ * schema ID and the records in the order of the schema:
+ *
+ * <pre>
+ * header      1 byte, version in the upper 4 bits, bit 0 set if the schema is included
+ * schema ID   4 bytes
+ * [schema]    varint channel count, per channel varint length and UTF-8 channel ID
+ * count       varint number of records
+ * timestamp   zigzag varint of the base timestamp in ms
+ * per record  1 byte tag: value type in the lower 4 bits, 0x10 flag follows, 0x20 timestamp follows,
+ *             0x40 no timestamp
+ *             [flag code byte, if the flag is not VALID]
+ *             [zigzag varint timestamp difference to the previous record, if it differs]
+ *             value: zigzag varint for integer types, IEEE 754 float or double, varint length and bytes for
+ *             strings and byte arrays
+ * </pre>
+ *
+ * Doubles which can be represented as float without loss are sent as float. Messages with several records can be
+ * decoded with {@link #decode(byte[])}, {@link #deserialize(byte[], ValueType, String)} returns the record of one
+ * channel converted to the requested value type.
+ */
+public class BinaryParserServiceImpl implements ParserService {
+
+    static final int SCHEMA_INTERVAL = Integer.getInteger("org.openmuc.framework.lib.parser.binary.schemaInterval",
+            100);
+
+    private static final int VERSION = 1;
+    private static final int HEADER_SCHEMA = 0x01;
+
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_FALSE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_BYTE = 3;
+    private static final int TYPE_SHORT = 4;
+    private static final int TYPE_INTEGER = 5;
+    private static final int TYPE_LONG = 6;
+    private static final int TYPE_FLOAT = 7;
+    private static final int TYPE_DOUBLE = 8;
+    private static final int TYPE_DOUBLE_AS_FLOAT = 9;
+    private static final int TYPE_STRING = 10;
+    private static final int TYPE_BYTE_ARRAY = 11;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int TAG_FLAG = 0x10;
+    private static final int TAG_TIMESTAMP = 0x20;
+    private static final int TAG_NO_TIMESTAMP = 0x40;
+
+    private static final ThreadLocal<FrameWriter> WRITER = ThreadLocal.withInitial(FrameWriter::new);
+
+    private final Map<Integer, AtomicInteger> schemaUsage = new ConcurrentHashMap<>();
+    private final Map<Integer, String[]> knownSchemas = new ConcurrentHashMap<>();
+
+    /**
+     * Includes the schema in the next message of every schema.
+     */
+    @Override
+    public void reset() {
+        schemaUsage.clear();
+    }
+
+    @Override
+    public byte[] serialize(LoggingRecord openMucRecord) throws SerializationException {
+        return serialize(Collections.singletonList(openMucRecord));
+    }
+
+    @Override
+    public byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
+        int schemaId = schemaId(openMucRecords);
+        int usage = schemaUsage.computeIfAbsent(schemaId, id -> new AtomicInteger()).getAndIncrement();
+        boolean includeSchema = usage % SCHEMA_INTERVAL == 0;
+
+        FrameWriter writer = WRITER.get();
+        writer.reset();
+        writer.writeByte(VERSION << 4 | (includeSchema ? HEADER_SCHEMA : 0));
+        writer.writeInt(schemaId);
+        if (includeSchema) {
+            writer.writeVarLong(openMucRecords.size());
+            for (LoggingRecord loggingRecord : openMucRecords) {
+                writer.writeBytes(loggingRecord.getChannelId().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        writer.writeVarLong(openMucRecords.size());
+
+        long previousTimestamp = baseTimestamp(openMucRecords);
+        writer.writeZigZag(previousTimestamp);
+        for (LoggingRecord loggingRecord : openMucRecords) {
+            previousTimestamp = writeRecord(writer, loggingRecord.getRecord(), previousTimestamp);
+        }
+        return writer.toByteArray();
+    }
+
+    private static int schemaId(List<LoggingRecord> openMucRecords) {
+        CRC32 crc = new CRC32();
+        for (LoggingRecord loggingRecord : openMucRecords) {
+            byte[] channelId = loggingRecord.getChannelId().getBytes(StandardCharsets.UTF_8);
+            crc.update(channelId, 0, channelId.length);
+            crc.update(0);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static long baseTimestamp(List<LoggingRecord> openMucRecords) {
+        for (LoggingRecord loggingRecord : openMucRecords) {
+            Long timestamp = loggingRecord.getRecord().getTimestamp();
+            if (timestamp != null) {
+                return timestamp;
+            }
+        }
+        return 0;
+    }
+
+    private static long writeRecord(FrameWriter writer, Record record, long previousTimestamp)
+            throws SerializationException {
+        Value value = record.getValue();
+        Flag flag = record.getFlag();
+        Long timestamp = record.getTimestamp();
+
+        int type = value == null || flag != Flag.VALID ? TYPE_NONE : valueTypeTag(value);
+        int tag = type;
+        if (flag != Flag.VALID) {
+            tag |= TAG_FLAG;
+        }
+        if (timestamp == null) {
+            tag |= TAG_NO_TIMESTAMP;
+        }
+        else if (timestamp != previousTimestamp) {
+            tag |= TAG_TIMESTAMP;
+        }
+
+        writer.writeByte(tag);
+        if (flag != Flag.VALID) {
+            writer.writeByte(flag.getCode());
+        }
+        if (timestamp != null && timestamp != previousTimestamp) {
+            writer.writeZigZag(timestamp - previousTimestamp);
+            previousTimestamp = timestamp;
+        }
+
+        switch (type) {
+        case TYPE_BYTE:
+        case TYPE_SHORT:
+        case TYPE_INTEGER:
+        case TYPE_LONG:
+            writer.writeZigZag(value.asLong());
+            break;
+        case TYPE_FLOAT:
+            writer.writeInt(Float.floatToIntBits(value.asFloat()));
+            break;
+        case TYPE_DOUBLE_AS_FLOAT:
+            writer.writeInt(Float.floatToIntBits((float) value.asDouble()));
+            break;
+        case TYPE_DOUBLE:
+            writer.writeLong(Double.doubleToLongBits(value.asDouble()));
+            break;
+        case TYPE_STRING:
+            writer.writeBytes(value.asString().getBytes(StandardCharsets.UTF_8));
+            break;
+        case TYPE_BYTE_ARRAY:
+            writer.writeBytes(value.asByteArray());
+            break;
+        default:
+            break;
+        }
+        return previousTimestamp;
+    }
+
+    private static int valueTypeTag(Value value) throws SerializationException {
+        switch (value.getValueType()) {
+        case BOOLEAN:
+            return value.asBoolean() ? TYPE_TRUE : TYPE_FALSE;
+        case BYTE:
+            return TYPE_BYTE;
+        case SHORT:
+            return TYPE_SHORT;
+        case INTEGER:
+            return TYPE_INTEGER;
+        case LONG:
+            return TYPE_LONG;
+        case FLOAT:
+            return TYPE_FLOAT;
+        case DOUBLE:
+            double doubleValue = value.asDouble();
+            return (double) (float) doubleValue == doubleValue || Double.isNaN(doubleValue) ? TYPE_DOUBLE_AS_FLOAT
+                    : TYPE_DOUBLE;
+        case STRING:
+            return TYPE_STRING;
+        case BYTE_ARRAY:
+            return TYPE_BYTE_ARRAY;
+        default:
+            throw new SerializationException("Unsupported ValueType: " + value.getValueType());
+        }
+    }
+
+    /**
+     * Decodes a message with all its records.
+     *
+     * @param message
+     *            the received message
+     * @return the records with their channel IDs
+     * @throws SerializationException
+     *             if the message is malformed or its schema has not been received yet
+     */
+    public List<LoggingRecord> decode(byte[] message) throws SerializationException {
+        FrameReader reader = new FrameReader(message);
+        int header = reader.readByte();
+        if (header >> 4 != VERSION) {
+            throw new SerializationException("Unsupported version " + (header >> 4));
+        }
+        int schemaId = reader.readInt();
+
+        String[] schema;
+        if ((header & HEADER_SCHEMA) != 0) {
+            long channelCount = reader.readVarLong();
+            // every channel ID needs at least its length byte
+            if (channelCount > reader.remaining()) {
+                throw new SerializationException("Unexpected end of frame");
+            }
+            schema = new String[(int) channelCount];
+            for (int i = 0; i < schema.length; i++) {
+                schema[i] = new String(reader.readBytes(), StandardCharsets.UTF_8);
+            }
+            knownSchemas.put(schemaId, schema);
+        }
+        else {
+            schema = knownSchemas.get(schemaId);
+            if (schema == null) {
+                throw new SerializationException("Unknown schema " + Integer.toHexString(schemaId)
+                        + ", waiting for the next message containing the schema");
+            }
+        }
+
+        long count = reader.readVarLong();
+        if (count != schema.length) {
+            throw new SerializationException("Record count does not match schema " + Integer.toHexString(schemaId));
+        }
+        List<LoggingRecord> records = new ArrayList<>(schema.length);
+        long previousTimestamp = reader.readZigZag();
+        for (String channelId : schema) {
+            int tag = reader.readByte();
+            Flag flag = (tag & TAG_FLAG) != 0 ? Flag.newFlag(reader.readByte()) : Flag.VALID;
+            Long timestamp = null;
+            if ((tag & TAG_NO_TIMESTAMP) == 0) {
+                if ((tag & TAG_TIMESTAMP) != 0) {
+                    previousTimestamp += reader.readZigZag();
+                }
+                timestamp = previousTimestamp;
+            }
+            Value value = readValue(reader, tag & TYPE_MASK);
+            records.add(new LoggingRecord(channelId, new Record(value, timestamp, flag)));
+        }
+        return records;
+    }
+
+    private static Value readValue(FrameReader reader, int type) throws SerializationException {
+        switch (type) {
+        case TYPE_NONE:
+            return null;
+        case TYPE_FALSE:
+            return new BooleanValue(false);
+        case TYPE_TRUE:
+            return new BooleanValue(true);
+        case TYPE_BYTE:
+            return new ByteValue((byte) reader.readZigZag());
+        case TYPE_SHORT:
+            return new ShortValue((short) reader.readZigZag());
+        case TYPE_INTEGER:
+            return new IntValue((int) reader.readZigZag());
+        case TYPE_LONG:
+            return new LongValue(reader.readZigZag());
+        case TYPE_FLOAT:
+            return new FloatValue(Float.intBitsToFloat(reader.readInt()));
+        case TYPE_DOUBLE_AS_FLOAT:
+            return new DoubleValue(Float.intBitsToFloat(reader.readInt()));
+        case TYPE_DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(reader.readLong()));
+        case TYPE_STRING:
+            return new StringValue(new String(reader.readBytes(), StandardCharsets.UTF_8));
+        case TYPE_BYTE_ARRAY:
+            return new ByteArrayValue(reader.readBytes());
+        default:
+            throw new SerializationException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Returns the record of a message with a single record, converted to the given value type.
+     *
+     * @throws IllegalArgumentException
+     *             if the message can not be decoded or contains several records
+     */
+    @Override
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        return deserialize(byteArray, valueType, null);
+    }
+
+    /**
+     * Returns the record of the given channel, converted to the given value type. A message with a single record is
+     * also accepted if its channel ID differs, e.g. because the sender used the topic as ID.
+     *
+     * @throws IllegalArgumentException
+     *             if the message can not be decoded or does not contain a record of the channel
+     */
+    @Override
+    public Record deserialize(byte[] byteArray, ValueType valueType, String channelId) {
+        List<LoggingRecord> records;
+        try {
+            records = decode(byteArray);
+        } catch (SerializationException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+
+        Record record = null;
+        for (LoggingRecord loggingRecord : records) {
+            if (loggingRecord.getChannelId().equals(channelId)) {
+                record = loggingRecord.getRecord();
+                break;
+            }
+        }
+        if (record == null) {
+            if (records.size() != 1) {
+                throw new IllegalArgumentException(
+                        "Message with " + records.size() + " records does not contain channel " + channelId);
+            }
+            record = records.get(0).getRecord();
+        }
+        return new Record(convert(record.getValue(), valueType), record.getTimestamp(), record.getFlag());
+    }
+
+    private static Value convert(Value value, ValueType valueType) {
+        if (value == null || valueType == null || value.getValueType() == valueType) {
+            return value;
+        }
+        switch (valueType) {
+        case BOOLEAN:
+            return new BooleanValue(value.asBoolean());
+        case BYTE:
+            return new ByteValue(value.asByte());
+        case SHORT:
+            return new ShortValue(value.asShort());
+        case INTEGER:
+            return new IntValue(value.asInt());
+        case LONG:
+            return new LongValue(value.asLong());
+        case FLOAT:
+            return new FloatValue(value.asFloat());
+        case DOUBLE:
+            return new DoubleValue(value.asDouble());
+        case STRING:
+            return new StringValue(value.asString());
+        case BYTE_ARRAY:
+            return new ByteArrayValue(value.asByteArray());
+        default:
+            return value;
+        }
+    }
+
+}
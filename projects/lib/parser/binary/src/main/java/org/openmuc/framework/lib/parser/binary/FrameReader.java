@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import org.openmuc.framework.parser.spi.SerializationException;
+
+/**
+ * Reads the primitive encodings written by {@link FrameWriter}.
+ */
+class FrameReader {
+
+    private final byte[] bytes;
+    private int position = 0;
+
+    FrameReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    int readByte() throws SerializationException {
+        require(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    int readInt() throws SerializationException {
+        require(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (bytes[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    long readLong() throws SerializationException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    long readVarLong() throws SerializationException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed variable length integer");
+    }
+
+    long readZigZag() throws SerializationException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    byte[] readBytes() throws SerializationException {
+        long length = readVarLong();
+        if (length > bytes.length - position) {
+            throw new SerializationException("Unexpected end of frame");
+        }
+        byte[] value = new byte[(int) length];
+        System.arraycopy(bytes, position, value, 0, value.length);
+        position += value.length;
+        return value;
+    }
+
+    boolean hasRemaining() {
+        return position < bytes.length;
+    }
+
+    int remaining() {
+        return bytes.length - position;
+    }
+
+    private void require(int count) throws SerializationException {
+        if (position + count > bytes.length) {
+            throw new SerializationException("Unexpected end of frame");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.parser.binary;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.openmuc.framework.parser.spi.SerializationException;
+
+class BinaryParserServiceImplTest {
+
+    private static final long TIMESTAMP = 1582722316000L;
+
+    @Test
+    void roundTripOfAllValueTypes() throws SerializationException {
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("double", new Record(new DoubleValue(3.14159), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("doubleAsFloat", new Record(new DoubleValue(0.5), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("float", new Record(new FloatValue(0.003f), TIMESTAMP + 5, Flag.VALID)));
+        records.add(new LoggingRecord("int", new Record(new IntValue(-300), TIMESTAMP + 5, Flag.VALID)));
+        records.add(new LoggingRecord("long", new Record(new LongValue(Long.MIN_VALUE), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("bool", new Record(new BooleanValue(true), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("string", new Record(new StringValue("äbc"), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("bytes",
+                new Record(new ByteArrayValue(new byte[] { 0, -1, 2 }), TIMESTAMP, Flag.VALID)));
+        records.add(new LoggingRecord("error", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+
+        BinaryParserServiceImpl parser = new BinaryParserServiceImpl();
+        List<LoggingRecord> decoded = parser.decode(parser.serialize(records));
+
+        assertEquals(records.size(), decoded.size());
+        assertEquals("double", decoded.get(0).getChannelId());
+        assertEquals(3.14159, decoded.get(0).getRecord().getValue().asDouble());
+        assertEquals(0.5, decoded.get(1).getRecord().getValue().asDouble());
+        assertEquals(0.003f, decoded.get(2).getRecord().getValue().asFloat());
+        assertEquals(TIMESTAMP + 5, decoded.get(2).getRecord().getTimestamp().longValue());
+        assertEquals(-300, decoded.get(3).getRecord().getValue().asInt());
+        assertEquals(Long.MIN_VALUE, decoded.get(4).getRecord().getValue().asLong());
+        assertEquals(TIMESTAMP, decoded.get(4).getRecord().getTimestamp().longValue());
+        assertTrue(decoded.get(5).getRecord().getValue().asBoolean());
+        assertEquals("äbc", decoded.get(6).getRecord().getValue().asString());
+        assertArrayEquals(new byte[] { 0, -1, 2 }, decoded.get(7).getRecord().getValue().asByteArray());
+        assertEquals(ValueType.BYTE_ARRAY, decoded.get(7).getRecord().getValue().getValueType());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, decoded.get(8).getRecord().getFlag());
+        assertNull(decoded.get(8).getRecord().getValue());
+        assertNull(decoded.get(8).getRecord().getTimestamp());
+    }
+
+    @Test
+    void schemaIsOnlySentPeriodically() throws SerializationException {
+        BinaryParserServiceImpl sender = new BinaryParserServiceImpl();
+        BinaryParserServiceImpl receiver = new BinaryParserServiceImpl();
+
+        byte[] first = sender.serialize(createCellRecords(TIMESTAMP));
+        byte[] second = sender.serialize(createCellRecords(TIMESTAMP + 60000));
+        assertTrue(second.length < first.length / 2);
+
+        // a receiver which missed the schema can not decode the message
+        assertThrows(SerializationException.class, () -> receiver.decode(second));
+
+        receiver.decode(first);
+        List<LoggingRecord> decoded = receiver.decode(second);
+        assertEquals("bms1_cell12_V", decoded.get(2 * 12).getChannelId());
+        assertEquals(3.312, decoded.get(2 * 12).getRecord().getValue().asDouble());
+        assertEquals(TIMESTAMP + 60000, decoded.get(0).getRecord().getTimestamp().longValue());
+
+        for (int i = 2; i < BinaryParserServiceImpl.SCHEMA_INTERVAL; i++) {
+            sender.serialize(createCellRecords(TIMESTAMP));
+        }
+        assertEquals(first.length, sender.serialize(createCellRecords(TIMESTAMP)).length);
+    }
+
+    @Test
+    void deserializeSingleRecord() throws SerializationException {
+        BinaryParserServiceImpl parser = new BinaryParserServiceImpl();
+        byte[] message = parser
+                .serialize(new LoggingRecord("channel", new Record(new IntValue(42), TIMESTAMP, Flag.VALID)));
+
+        Record record = parser.deserialize(message, ValueType.INTEGER);
+        assertEquals(42, record.getValue().asInt());
+        assertEquals(TIMESTAMP, record.getTimestamp().longValue());
+        assertThrows(IllegalArgumentException.class, () -> parser.deserialize(new byte[] { 0x10 }, ValueType.INTEGER));
+    }
+
+    @Test
+    void deserializeSelectsChannelAndConvertsValueType() throws SerializationException {
+        BinaryParserServiceImpl parser = new BinaryParserServiceImpl();
+        byte[] message = parser.serialize(createCellRecords(TIMESTAMP));
+
+        Record record = parser.deserialize(message, ValueType.DOUBLE, "bms1_cell3_T");
+        assertEquals(ValueType.DOUBLE, record.getValue().getValueType());
+        assertEquals(25.0, record.getValue().asDouble());
+
+        record = parser.deserialize(message, ValueType.STRING, "bms1_cell0_V");
+        assertEquals(ValueType.STRING, record.getValue().getValueType());
+        assertEquals("3.3", record.getValue().asString());
+
+        assertThrows(IllegalArgumentException.class, () -> parser.deserialize(message, ValueType.DOUBLE, "unknown"));
+        assertThrows(IllegalArgumentException.class, () -> parser.deserialize(message, ValueType.DOUBLE));
+    }
+
+    @Test
+    void resetResendsSchema() throws SerializationException {
+        BinaryParserServiceImpl sender = new BinaryParserServiceImpl();
+        byte[] first = sender.serialize(createCellRecords(TIMESTAMP));
+        sender.serialize(createCellRecords(TIMESTAMP));
+
+        sender.reset();
+        byte[] afterReset = sender.serialize(createCellRecords(TIMESTAMP));
+        assertEquals(first.length, afterReset.length);
+
+        List<LoggingRecord> decoded = new BinaryParserServiceImpl().decode(afterReset);
+        assertEquals("bms1_cell0_V", decoded.get(0).getChannelId());
+    }
+
+    @Test
+    void oversizedSchemaIsRejected() throws SerializationException {
+        BinaryParserServiceImpl parser = new BinaryParserServiceImpl();
+        byte[] message = parser
+                .serialize(new LoggingRecord("channel", new Record(new IntValue(42), TIMESTAMP, Flag.VALID)));
+
+        // replace the channel count of the schema, which follows the header byte and the schema ID, by a huge varint
+        byte[] corrupted = new byte[message.length + 4];
+        int countPosition = 5;
+        System.arraycopy(message, 0, corrupted, 0, countPosition);
+        corrupted[countPosition] = (byte) 0xff;
+        corrupted[countPosition + 1] = (byte) 0xff;
+        corrupted[countPosition + 2] = (byte) 0xff;
+        corrupted[countPosition + 3] = (byte) 0xff;
+        corrupted[countPosition + 4] = 0x07;
+        System.arraycopy(message, countPosition + 1, corrupted, countPosition + 5, message.length - countPosition - 1);
+
+        assertThrows(SerializationException.class, () -> new BinaryParserServiceImpl().decode(corrupted));
+    }
+
+    private static List<LoggingRecord> createCellRecords(long timestamp) {
+        List<LoggingRecord> records = new ArrayList<>();
+        for (int cell = 0; cell < 16; cell++) {
+            records.add(new LoggingRecord("bms1_cell" + cell + "_V",
+                    new Record(new DoubleValue(3.3 + cell * 0.001), timestamp, Flag.VALID)));
+            records.add(new LoggingRecord("bms1_cell" + cell + "_T",
+                    new Record(new IntValue(25), timestamp, Flag.VALID)));
+        }
+        return records;
+    }
+}
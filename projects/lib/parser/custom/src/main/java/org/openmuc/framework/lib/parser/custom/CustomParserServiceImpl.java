@@ -21,12 +21,21 @@
 
 package org.openmuc.framework.lib.parser.custom;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
@@ -50,190 +59,151 @@ import org.slf4j.LoggerFactory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.InstanceCreator;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Parser implementation for OpenMUC to OpenMUC communication e.g. for the AMQP
  * driver.
+ * <p>
+ * Records are serialized with a streaming {@link JsonWriter} into a buffer which is reused by the calling thread. The
+ * decomposition of a channel ID into prefix and suffix is computed once per channel.
  */
 public class CustomParserServiceImpl implements ParserService {
 
-    private final Logger logger = LoggerFactory.getLogger(CustomParserServiceImpl.class);
+    private static final Logger logger = LoggerFactory.getLogger(CustomParserServiceImpl.class);
 
-    private final Gson gson;
-    private ValueType valueType;
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("([a-zA-Z]+)(\\d+)");
+    private static final ThreadLocal<JsonOutput> OUTPUT = ThreadLocal.withInitial(JsonOutput::new);
 
-    public CustomParserServiceImpl() {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
-        gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer());
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordAdapter());
-        gsonBuilder.disableHtmlEscaping();
-        gson = gsonBuilder.create();
+    // Gson instances are thread safe, one per value type to deserialize
+    private static final Map<ValueType, Gson> GSON_BY_VALUE_TYPE = new EnumMap<>(ValueType.class);
+
+    static {
+        for (ValueType valueType : ValueType.values()) {
+            GsonBuilder gsonBuilder = new GsonBuilder();
+            gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
+            gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer(valueType));
+            gsonBuilder.disableHtmlEscaping();
+            GSON_BY_VALUE_TYPE.put(valueType, gsonBuilder.create());
+        }
     }
 
+    private final Map<String, ChannelKey> channelKeys = new ConcurrentHashMap<>();
+
     @Override
-    public synchronized byte[] serialize(LoggingRecord openMucRecord) {
-        String channelId = openMucRecord.getChannelId();
+    public byte[] serialize(LoggingRecord openMucRecord) {
+        ChannelKey key = getChannelKey(openMucRecord.getChannelId());
         Record record = openMucRecord.getRecord();
 
-        // Parse channelId: bms1_cell1_R -> prefix: bms1, suffix: cell1_R
-        String[] parts = channelId.split("_", 2);
-        String prefix = parts[0];
-        String suffix = (parts.length > 1) ? parts[1] : "value";
-
-        // Transform prefix: bms1 -> bms_1 (insert underscore between letters and
-        // numbers)
-        String transformedPrefix = prefix.replaceAll("([a-zA-Z]+)(\\d+)", "$1_$2");
-
         // Build timeseries format: {prefix: [{ts: timestamp, values: {suffix: value}}]}
-        JsonArray dataArray = new JsonArray();
-        JsonObject dataPoint = new JsonObject();
-
-        Long timestamp = record.getTimestamp();
-        dataPoint.addProperty("ts", timestamp != null ? timestamp : System.currentTimeMillis());
-
-        JsonObject valuesObj = new JsonObject();
-        Value value = record.getValue();
-        if (value != null && record.getFlag() == Flag.VALID) {
-            addValueToObject(valuesObj, suffix, value);
-        }
-
-        dataPoint.add("values", valuesObj);
-        dataArray.add(dataPoint);
-
-        JsonObject root = new JsonObject();
-        root.add(transformedPrefix, dataArray);
-
-        return gson.toJson(root).getBytes();
-    }
-
-    private void addValue(JsonObject obj, String key, Record record) {
-        Value value = record.getValue();
-        if (value != null && record.getFlag() == Flag.VALID) {
-            switch (value.getValueType()) {
-                case BOOLEAN:
-                    obj.addProperty(key, value.asBoolean());
-                    break;
-                case BYTE:
-                    obj.addProperty(key, value.asByte());
-                    break;
-                case BYTE_ARRAY:
-                    obj.addProperty(key, Base64.getEncoder().encodeToString(value.asByteArray()));
-                    break;
-                case DOUBLE:
-                    obj.addProperty(key, value.asDouble());
-                    break;
-                case FLOAT:
-                    obj.addProperty(key, value.asFloat());
-                    break;
-                case INTEGER:
-                    obj.addProperty(key, value.asInt());
-                    break;
-                case LONG:
-                    obj.addProperty(key, value.asLong());
-                    break;
-                case SHORT:
-                    obj.addProperty(key, value.asShort());
-                    break;
-                case STRING:
-                    obj.addProperty(key, value.asString());
-                    break;
-                default:
-                    break;
-            }
+        JsonOutput output = OUTPUT.get();
+        try {
+            JsonWriter writer = output.start();
+            writer.beginObject();
+            writer.name(key.prefix);
+            beginDataPoint(writer, record.getTimestamp());
+            writeValue(writer, key.suffix, record);
+            endDataPoint(writer);
+            writer.endObject();
+            return output.finish(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     @Override
-    public synchronized byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
-        // Group records by prefix (e.g., "str1" from "str1_cell1_R")
-        Map<String, List<LoggingRecord>> groupedRecords = new HashMap<>();
-
+    public byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
+        // Group records by prefix (e.g., "str_1" from "str1_cell1_R")
+        Map<String, List<LoggingRecord>> groupedRecords = new LinkedHashMap<>();
         for (LoggingRecord record : openMucRecords) {
-            String channelId = record.getChannelId();
-            String[] parts = channelId.split("_", 2);
-            String prefix = parts[0];
-
-            // Transform prefix: str1 -> str_1
-            String transformedPrefix = prefix.replaceAll("([a-zA-Z]+)(\\d+)", "$1_$2");
-
-            groupedRecords.computeIfAbsent(transformedPrefix, k -> new ArrayList<>()).add(record);
+            String prefix = getChannelKey(record.getChannelId()).prefix;
+            groupedRecords.computeIfAbsent(prefix, k -> new ArrayList<>()).add(record);
         }
 
         // Build JSON structure: {prefix: [{ts: timestamp, values: {suffix: value,
         // ...}}]}
-        JsonObject root = new JsonObject();
-
-        for (Map.Entry<String, List<LoggingRecord>> entry : groupedRecords.entrySet()) {
-            String prefix = entry.getKey();
-            List<LoggingRecord> records = entry.getValue();
-
-            JsonArray dataArray = new JsonArray();
-
-            // Assuming all records in the group have the same timestamp, use the first one
-            if (!records.isEmpty()) {
-                JsonObject dataPoint = new JsonObject();
-                Long timestamp = records.get(0).getRecord().getTimestamp();
-                dataPoint.addProperty("ts", timestamp != null ? timestamp : System.currentTimeMillis());
-
-                JsonObject valuesObj = new JsonObject();
+        JsonOutput output = OUTPUT.get();
+        try {
+            JsonWriter writer = output.start();
+            writer.beginObject();
+            for (Map.Entry<String, List<LoggingRecord>> entry : groupedRecords.entrySet()) {
+                List<LoggingRecord> records = entry.getValue();
+                writer.name(entry.getKey());
+
+                // Assuming all records in the group have the same timestamp, use the first one
+                beginDataPoint(writer, records.get(0).getRecord().getTimestamp());
                 for (LoggingRecord record : records) {
-                    String channelId = record.getChannelId();
-                    String[] parts = channelId.split("_", 2);
-                    String suffix = (parts.length > 1) ? parts[1] : "value";
-
-                    Value value = record.getRecord().getValue();
-                    if (value != null && record.getRecord().getFlag() == Flag.VALID) {
-                        addValueToObject(valuesObj, suffix, value);
-                    }
+                    writeValue(writer, getChannelKey(record.getChannelId()).suffix, record.getRecord());
                 }
-
-                dataPoint.add("values", valuesObj);
-                dataArray.add(dataPoint);
+                endDataPoint(writer);
             }
+            writer.endObject();
+            return output.finish(writer);
+        } catch (IOException e) {
+            throw new SerializationException(e);
+        }
+    }
 
-            root.add(prefix, dataArray);
+    private ChannelKey getChannelKey(String channelId) {
+        ChannelKey key = channelKeys.get(channelId);
+        if (key == null) {
+            key = new ChannelKey(channelId);
+            channelKeys.put(channelId, key);
         }
+        return key;
+    }
 
-        return gson.toJson(root).getBytes();
+    private static void beginDataPoint(JsonWriter writer, Long timestamp) throws IOException {
+        writer.beginArray();
+        writer.beginObject();
+        writer.name("ts").value(timestamp != null ? timestamp : System.currentTimeMillis());
+        writer.name("values");
+        writer.beginObject();
     }
 
-    private void addValueToObject(JsonObject obj, String key, Value value) {
+    private static void endDataPoint(JsonWriter writer) throws IOException {
+        writer.endObject();
+        writer.endObject();
+        writer.endArray();
+    }
+
+    private static void writeValue(JsonWriter writer, String key, Record record) throws IOException {
+        Value value = record.getValue();
+        if (value == null || record.getFlag() != Flag.VALID) {
+            return;
+        }
         switch (value.getValueType()) {
             case BOOLEAN:
-                obj.addProperty(key, value.asBoolean());
+                writer.name(key).value(value.asBoolean());
                 break;
             case BYTE:
-                obj.addProperty(key, value.asByte());
+                writer.name(key).value(value.asByte());
                 break;
             case BYTE_ARRAY:
-                obj.addProperty(key, Base64.getEncoder().encodeToString(value.asByteArray()));
+                writer.name(key).value(Base64.getEncoder().encodeToString(value.asByteArray()));
                 break;
             case DOUBLE:
-                obj.addProperty(key, value.asDouble());
+                writer.name(key).value(value.asDouble());
                 break;
             case FLOAT:
-                obj.addProperty(key, value.asFloat());
+                // Float.toString gives the shortest representation, widening to double would not
+                writer.name(key).value(Float.valueOf(value.asFloat()));
                 break;
             case INTEGER:
-                obj.addProperty(key, value.asInt());
+                writer.name(key).value(value.asInt());
                 break;
             case LONG:
-                obj.addProperty(key, value.asLong());
+                writer.name(key).value(value.asLong());
                 break;
             case SHORT:
-                obj.addProperty(key, value.asShort());
+                writer.name(key).value(value.asShort());
                 break;
             case STRING:
-                obj.addProperty(key, value.asString());
+                writer.name(key).value(value.asString());
                 break;
             default:
                 break;
@@ -241,13 +211,48 @@ public class CustomParserServiceImpl implements ParserService {
     }
 
     @Override
-    public synchronized Record deserialize(byte[] byteArray, ValueType valueType) {
-        this.valueType = valueType;
-        return gson.fromJson(new String(byteArray), Record.class);
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        return GSON_BY_VALUE_TYPE.get(valueType).fromJson(new String(byteArray), Record.class);
+    }
+
+    /**
+     * Prefix and suffix of a channel ID, e.g. bms_1 and cell1_R for bms1_cell1_R.
+     */
+    private static class ChannelKey {
+        private final String prefix;
+        private final String suffix;
+
+        ChannelKey(String channelId) {
+            String[] parts = channelId.split("_", 2);
+            // Transform prefix: bms1 -> bms_1 (insert underscore between letters and
+            // numbers)
+            prefix = PREFIX_PATTERN.matcher(parts[0]).replaceAll("$1_$2");
+            suffix = (parts.length > 1) ? parts[1] : "value";
+        }
+    }
+
+    /**
+     * Serialization buffer of one thread.
+     */
+    private static class JsonOutput {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+
+        JsonWriter start() {
+            bytes.reset();
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            // allows special floating point values like Gson.toJson
+            jsonWriter.setLenient(true);
+            return jsonWriter;
+        }
 
+        byte[] finish(JsonWriter jsonWriter) throws IOException {
+            jsonWriter.flush();
+            return bytes.toByteArray();
+        }
     }
 
-    private class RecordInstanceCreator implements InstanceCreator<Record> {
+    private static class RecordInstanceCreator implements InstanceCreator<Record> {
 
         @Override
         public Record createInstance(Type type) {
@@ -255,56 +260,14 @@ public class CustomParserServiceImpl implements ParserService {
         }
     }
 
-    private class RecordAdapter implements JsonSerializer<Record> {
+    private static class ValueDeserializer implements JsonDeserializer<Value> {
 
-        @Override
-        public JsonElement serialize(Record record, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject obj = new JsonObject();
-            Value value = record.getValue();
-            obj.addProperty("timestamp", record.getTimestamp());
-            obj.addProperty("flag", record.getFlag().toString());
-
-            if (value != null && record.getFlag() == Flag.VALID) {
-                String valueString = "value";
-
-                switch (value.getValueType()) {
-                    case BOOLEAN:
-                        obj.addProperty(valueString, record.getValue().asBoolean());
-                        break;
-                    case BYTE:
-                        obj.addProperty(valueString, record.getValue().asByte());
-                        break;
-                    case BYTE_ARRAY:
-                        obj.addProperty(valueString,
-                                Base64.getEncoder().encodeToString(record.getValue().asByteArray()));
-                        break;
-                    case DOUBLE:
-                        obj.addProperty(valueString, record.getValue().asDouble());
-                        break;
-                    case FLOAT:
-                        obj.addProperty(valueString, record.getValue().asFloat());
-                        break;
-                    case INTEGER:
-                        obj.addProperty(valueString, record.getValue().asInt());
-                        break;
-                    case LONG:
-                        obj.addProperty(valueString, record.getValue().asLong());
-                        break;
-                    case SHORT:
-                        obj.addProperty(valueString, record.getValue().asShort());
-                        break;
-                    case STRING:
-                        obj.addProperty(valueString, record.getValue().asString());
-                        break;
-                    default:
-                        break;
-                }
-            }
-            return obj;
+        private final ValueType valueType;
+
+        ValueDeserializer(ValueType valueType) {
+            this.valueType = valueType;
         }
-    }
 
-    private class ValueDeserializer implements JsonDeserializer<Value> {
         @Override
         public Value deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
                 throws JsonParseException {
@@ -81,4 +81,22 @@ public class CustomParserServiceTest {
         assertTrue(json.contains("\"cell1_T\":254"), "JSON should contain cell1_T value");
         assertTrue(json.contains("\"values\""), "JSON should contain values object");
     }
+
+    @Test
+    public void testSerializeMultiplePrefixes() throws SerializationException {
+        CustomParserServiceImpl parser = new CustomParserServiceImpl();
+        long timestamp = 1483228800000L;
+
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("str1_cell1_R", new Record(new IntValue(300), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("bms2_temp", new Record(new DoubleValue(21.5), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("str1_cell2_R", new Record(new IntValue(301), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("bms2", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+
+        String expected = "{\"str_1\":[{\"ts\":1483228800000,\"values\":{\"cell1_R\":300,\"cell2_R\":301}}],"
+                + "\"bms_2\":[{\"ts\":1483228800000,\"values\":{\"temp\":21.5}}]}";
+        assertEquals(expected, new String(parser.serialize(records)));
+        // the second call uses the cached channel keys and the reused buffer
+        assertEquals(expected, new String(parser.serialize(records)));
+    }
 }
@@ -20,9 +20,17 @@
  */
 
 package org.openmuc.framework.lib.parser.openmuc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
@@ -49,55 +57,136 @@ import com.google.gson.InstanceCreator;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Parser implementation for OpenMUC to OpenMUC communication e.g. for the AMQP driver.
+ * <p>
+ * Records are serialized with a streaming {@link JsonWriter} into a buffer which is reused by the calling thread. The
+ * class has no mutable state, so it can be used by several threads at the same time.
  */
 public class OpenmucParserServiceImpl implements ParserService {
 
-    private final Logger logger = LoggerFactory.getLogger(OpenmucParserServiceImpl.class);
+    private static final Logger logger = LoggerFactory.getLogger(OpenmucParserServiceImpl.class);
+
+    private static final ThreadLocal<JsonOutput> OUTPUT = ThreadLocal.withInitial(JsonOutput::new);
 
-    private final Gson gson;
-    private ValueType valueType;
+    // Gson instances are thread safe, one per value type to deserialize
+    private static final Map<ValueType, Gson> GSON_BY_VALUE_TYPE = new EnumMap<>(ValueType.class);
 
-    public OpenmucParserServiceImpl() {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
-        gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer());
-        gsonBuilder.registerTypeAdapter(Record.class, new RecordAdapter());
-        gsonBuilder.disableHtmlEscaping();
-        gson = gsonBuilder.create();
+    static {
+        for (ValueType valueType : ValueType.values()) {
+            GsonBuilder gsonBuilder = new GsonBuilder();
+            gsonBuilder.registerTypeAdapter(Record.class, new RecordInstanceCreator());
+            gsonBuilder.registerTypeAdapter(Value.class, new ValueDeserializer(valueType));
+            gsonBuilder.disableHtmlEscaping();
+            GSON_BY_VALUE_TYPE.put(valueType, gsonBuilder.create());
+        }
     }
 
     @Override
-    public synchronized byte[] serialize(LoggingRecord openMucRecord) {
-        String serializedString = gson.toJson(openMucRecord.getRecord());
-
-        return serializedString.getBytes();
+    public byte[] serialize(LoggingRecord openMucRecord) throws SerializationException {
+        JsonOutput output = OUTPUT.get();
+        try {
+            JsonWriter writer = output.start();
+            writeRecord(writer, openMucRecord.getRecord());
+            return output.finish(writer);
+        } catch (IOException e) {
+            throw new SerializationException(e);
+        }
     }
 
     @Override
-    public synchronized byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
-        StringBuilder sb = new StringBuilder();
-        for (LoggingRecord openMucRecord : openMucRecords) {
-            sb.append(new String(serialize(openMucRecord)));
-            sb.append('\n');
+    public byte[] serialize(List<LoggingRecord> openMucRecords) throws SerializationException {
+        JsonOutput output = OUTPUT.get();
+        try {
+            JsonWriter writer = output.start();
+            for (LoggingRecord openMucRecord : openMucRecords) {
+                writeRecord(writer, openMucRecord.getRecord());
+                writer.flush();
+                output.writer.write('\n');
+            }
+            return output.finish(writer);
+        } catch (IOException e) {
+            throw new SerializationException(e);
         }
-        return sb.toString().getBytes();
     }
 
     @Override
-    public synchronized Record deserialize(byte[] byteArray, ValueType valueType) {
-        this.valueType = valueType;
-        return gson.fromJson(new String(byteArray), Record.class);
+    public Record deserialize(byte[] byteArray, ValueType valueType) {
+        return GSON_BY_VALUE_TYPE.get(valueType).fromJson(new String(byteArray), Record.class);
+    }
+
+    private static void writeRecord(JsonWriter writer, Record record) throws IOException {
+        writer.beginObject();
+        if (record.getTimestamp() != null) {
+            writer.name("timestamp").value(record.getTimestamp().longValue());
+        }
+        writer.name("flag").value(record.getFlag().toString());
+
+        Value value = record.getValue();
+        if (value != null && record.getFlag() == Flag.VALID) {
+            String valueString = "value";
 
+            switch (value.getValueType()) {
+            case BOOLEAN:
+                writer.name(valueString).value(value.asBoolean());
+                break;
+            case BYTE:
+                writer.name(valueString).value(value.asByte());
+                break;
+            case BYTE_ARRAY:
+                writer.name(valueString).value(Base64.getEncoder().encodeToString(value.asByteArray()));
+                break;
+            case DOUBLE:
+                writer.name(valueString).value(value.asDouble());
+                break;
+            case FLOAT:
+                // Float.toString gives the shortest representation, widening to double would not
+                writer.name(valueString).value(Float.valueOf(value.asFloat()));
+                break;
+            case INTEGER:
+                writer.name(valueString).value(value.asInt());
+                break;
+            case LONG:
+                writer.name(valueString).value(value.asLong());
+                break;
+            case SHORT:
+                writer.name(valueString).value(value.asShort());
+                break;
+            case STRING:
+                writer.name(valueString).value(value.asString());
+                break;
+            default:
+                break;
+            }
+        }
+        writer.endObject();
     }
 
-    private class RecordInstanceCreator implements InstanceCreator<Record> {
+    /**
+     * Serialization buffer of one thread.
+     */
+    private static class JsonOutput {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+
+        JsonWriter start() {
+            bytes.reset();
+            JsonWriter jsonWriter = new JsonWriter(writer);
+            // allows several top level values and special floating point values like Gson.toJson
+            jsonWriter.setLenient(true);
+            return jsonWriter;
+        }
+
+        byte[] finish(JsonWriter jsonWriter) throws IOException {
+            jsonWriter.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class RecordInstanceCreator implements InstanceCreator<Record> {
 
         @Override
         public Record createInstance(Type type) {
@@ -105,55 +194,14 @@ public class OpenmucParserServiceImpl implements ParserService {
         }
     }
 
-    private class RecordAdapter implements JsonSerializer<Record> {
+    private static class ValueDeserializer implements JsonDeserializer<Value> {
 
-        @Override
-        public JsonElement serialize(Record record, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject obj = new JsonObject();
-            Value value = record.getValue();
-            obj.addProperty("timestamp", record.getTimestamp());
-            obj.addProperty("flag", record.getFlag().toString());
-
-            if (value != null && record.getFlag() == Flag.VALID) {
-                String valueString = "value";
-
-                switch (value.getValueType()) {
-                case BOOLEAN:
-                    obj.addProperty(valueString, record.getValue().asBoolean());
-                    break;
-                case BYTE:
-                    obj.addProperty(valueString, record.getValue().asByte());
-                    break;
-                case BYTE_ARRAY:
-                    obj.addProperty(valueString, Base64.getEncoder().encodeToString(record.getValue().asByteArray()));
-                    break;
-                case DOUBLE:
-                    obj.addProperty(valueString, record.getValue().asDouble());
-                    break;
-                case FLOAT:
-                    obj.addProperty(valueString, record.getValue().asFloat());
-                    break;
-                case INTEGER:
-                    obj.addProperty(valueString, record.getValue().asInt());
-                    break;
-                case LONG:
-                    obj.addProperty(valueString, record.getValue().asLong());
-                    break;
-                case SHORT:
-                    obj.addProperty(valueString, record.getValue().asShort());
-                    break;
-                case STRING:
-                    obj.addProperty(valueString, record.getValue().asString());
-                    break;
-                default:
-                    break;
-                }
-            }
-            return obj;
+        private final ValueType valueType;
+
+        ValueDeserializer(ValueType valueType) {
+            this.valueType = valueType;
         }
-    }
 
-    private class ValueDeserializer implements JsonDeserializer<Value> {
         @Override
         public Value deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
                 throws JsonParseException {
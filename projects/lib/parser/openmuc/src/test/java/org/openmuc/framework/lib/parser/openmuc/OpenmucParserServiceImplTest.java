@@ -38,6 +38,7 @@ import org.junit.jupiter.api.Test;
 import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
@@ -125,6 +126,24 @@ class OpenmucParserServiceImplTest {
         assertEquals(controlString, serializedJson);
     }
 
+    @Test
+    void serializeFloatValue() throws SerializationException {
+        String controlString = "{\"timestamp\":1582722316,\"flag\":\"VALID\",\"value\":0.003}";
+        Record record = new Record(new FloatValue(0.003f), 1582722316L, Flag.VALID);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals(controlString, new String(serializedRecord));
+    }
+
+    @Test
+    void serializeInvalidRecord() throws SerializationException {
+        String controlString = "{\"timestamp\":1582722316,\"flag\":\"DRIVER_ERROR_TIMEOUT\"}";
+        Record record = new Record(new DoubleValue(3.0), 1582722316L, Flag.DRIVER_ERROR_TIMEOUT);
+
+        byte[] serializedRecord = parserService.serialize(new LoggingRecord("test", record));
+        assertEquals(controlString, new String(serializedRecord));
+    }
+
     @Test
     void deserializeTestDoubleValue() {
         String inputString = "{\"timestamp\":1582722316,\"flag\":\"VALID\",\"value\":3.0}";
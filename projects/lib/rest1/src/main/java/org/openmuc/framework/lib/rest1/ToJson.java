@@ -23,6 +23,8 @@ package org.openmuc.framework.lib.rest1;
 
 import static org.openmuc.framework.lib.rest1.Const.VALUE_STRING;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,7 @@ import org.openmuc.framework.config.DriverConfig;
 import org.openmuc.framework.config.DriverInfo;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
@@ -58,6 +61,7 @@ import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
 import java.time.LocalDateTime;
 import java.time.LocalDate;
@@ -140,6 +144,89 @@ public class ToJson {
         jsonObject.add(Const.RECORDS, jsa);
     }
 
+    /**
+     * Writes records as <code>{"records":[...]}</code> directly to the given writer without building a JSON tree.
+     * The output equals {@link #addRecordList(List, ValueType)} for all value types that can be represented as double,
+     * i.e. all value types except <code>LONG</code>, <code>STRING</code> and <code>BYTE_ARRAY</code>.
+     *
+     * @param columns
+     *            the records
+     * @param valueType
+     *            the value type of the channel
+     * @param out
+     *            the writer, it is flushed but not closed
+     * @throws IOException
+     *             if writing fails
+     */
+    public static void writeRecordColumns(RecordColumns columns, ValueType valueType, Writer out)
+            throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name(Const.RECORDS);
+        writer.beginArray();
+        for (int i = 0; i < columns.size(); i++) {
+            writer.beginObject();
+            writer.name(Const.TIMESTAMP).value(columns.getTimestamp(i));
+            writeFlagAndValue(writer, columns.getFlag(i), columns.getValue(i), valueType);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writeFlagAndValue(JsonWriter writer, Flag flag, double value, ValueType valueType)
+            throws IOException {
+        if (flag == Flag.VALID) {
+            if (valueType == ValueType.DOUBLE) {
+                flag = getInfinityOrNaNFlag(value, flag);
+            }
+            else if (valueType == ValueType.FLOAT) {
+                flag = getInfinityOrNaNFlag((float) value, flag);
+            }
+        }
+        writer.name(Const.FLAG).value(flag.name());
+        if (flag != Flag.VALID) {
+            return;
+        }
+
+        switch (valueType) {
+        case FLOAT:
+            writer.name(VALUE_STRING).value(Float.valueOf((float) value));
+            break;
+        case DOUBLE:
+            writer.name(VALUE_STRING).value(value);
+            break;
+        case SHORT:
+            writer.name(VALUE_STRING).value((short) value);
+            break;
+        case INTEGER:
+            writer.name(VALUE_STRING).value((int) value);
+            break;
+        case LONG:
+            writer.name(VALUE_STRING).value((long) value);
+            break;
+        case BYTE:
+            writer.name(VALUE_STRING).value((byte) value);
+            break;
+        case BOOLEAN:
+            writer.name(VALUE_STRING).value(value != 0.0);
+            break;
+        default:
+            throw new IllegalArgumentException("Value type " + valueType + " can not be written from columns.");
+        }
+    }
+
+    private static Flag getInfinityOrNaNFlag(double value, Flag flag) {
+        if (Double.isInfinite(value)) {
+            return Flag.VALUE_IS_INFINITY;
+        }
+        else if (Double.isNaN(value)) {
+            return Flag.VALUE_IS_NAN;
+        }
+        return flag;
+    }
+
     public void addChannelRecordList(List<Channel> channels) throws ClassCastException {
 
         JsonArray jsa = new JsonArray();
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.rest1.downsampling;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.RecordColumns;
+import org.openmuc.framework.dataaccess.DataLoggerNotAvailableException;
+
+/**
+ * Reduces a history to a bounded number of points in a single pass. Values are added in time order and divided into
+ * buckets of a fixed interval starting at the beginning of the requested time range. Only the bucket currently filled
+ * (and for LTTB the one before) is kept in memory, so the result size depends on the number of buckets only. Long
+ * histories should be read in parts of {@link #getReadInterval(long, long, long)} and added one after another, so the
+ * raw values of the whole range are never held at once, see {@link #downsample(HistoryReader, DownsamplingMethod,
+ * long, long, long)}.
+ * <p>
+ * Values which are not valid are skipped, the result contains valid values only. Values which are not later than the
+ * last value added are skipped as well, so parts may overlap. Instances are not thread safe.
+ */
+public final class Downsampler {
+
+    private final DownsamplingMethod method;
+    private final long startTime;
+    private final long interval;
+    /**
+     * Minimum time range read from the data logger at once.
+     */
+    private static final long MIN_READ_INTERVAL = 60 * 60 * 1000L;
+    /**
+     * Maximum number of parts a history is read in, bounds the number of data logger queries for huge ranges.
+     */
+    private static final long MAX_READS = 1000;
+
+    private final RecordColumns result = new RecordColumns();
+
+    private long previousTimestamp = Long.MIN_VALUE;
+    private long currentBucket = Long.MIN_VALUE;
+    private int count;
+    private double sum;
+    private double min;
+    private long minTimestamp;
+    private double max;
+    private long maxTimestamp;
+    private double first;
+    private long firstTimestamp;
+    private double last;
+    private long lastTimestamp;
+
+    // LTTB keeps the points of the previous bucket until the average of the current bucket is known
+    private Bucket previous = new Bucket();
+    private Bucket current = new Bucket();
+    private boolean hasSelected;
+    private long selectedTimestamp;
+    private double selectedValue;
+
+    /**
+     * @param method
+     *            the downsampling method
+     * @param startTime
+     *            the start of the first bucket
+     * @param interval
+     *            the length of a bucket in milliseconds
+     */
+    public Downsampler(DownsamplingMethod method, long startTime, long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Bucket interval has to be positive: " + interval);
+        }
+        this.method = method;
+        this.startTime = startTime;
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the smallest bucket interval which limits the result of the method to <code>maxPoints</code> points.
+     *
+     * @param method
+     *            the downsampling method
+     * @param startTime
+     *            the starting time of the history, inclusive
+     * @param endTime
+     *            the ending time of the history, inclusive
+     * @param maxPoints
+     *            the maximum number of points
+     * @return the bucket interval in milliseconds
+     * @throws IllegalArgumentException
+     *             if the method can not return that few points: LTTB needs at least 3 points, MIN_MAX at least 2
+     */
+    public static long getInterval(DownsamplingMethod method, long startTime, long endTime, int maxPoints) {
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("Maximum number of points has to be positive: " + maxPoints);
+        }
+        if (method == DownsamplingMethod.LTTB && maxPoints <= 2) {
+            throw new IllegalArgumentException("LTTB needs at least 3 points: " + maxPoints);
+        }
+        if (maxPoints < method.getPointsPerBucket()) {
+            throw new IllegalArgumentException(
+                    "Method " + method + " needs at least " + method.getPointsPerBucket() + " points: " + maxPoints);
+        }
+        long buckets;
+        if (method == DownsamplingMethod.LTTB) {
+            // the first and the last point are kept in addition to one point per bucket
+            buckets = maxPoints - 2;
+        }
+        else {
+            buckets = maxPoints / method.getPointsPerBucket();
+        }
+        buckets = Math.max(1, buckets);
+        long range = Math.max(1, endTime - startTime + 1);
+        return Math.max(1, (range + buckets - 1) / buckets);
+    }
+
+    /**
+     * Returns the length of the parts a history is read in. Parts cover whole buckets, at least one hour and at most
+     * 1/1000 of the history, rounded up to whole buckets.
+     *
+     * @param startTime
+     *            the starting time of the history, inclusive
+     * @param endTime
+     *            the ending time of the history, inclusive
+     * @param interval
+     *            the length of a bucket in milliseconds
+     * @return the length of a part in milliseconds
+     */
+    public static long getReadInterval(long startTime, long endTime, long interval) {
+        long range = Math.max(1, endTime - startTime + 1);
+        long readInterval = Math.max(MIN_READ_INTERVAL, (range + MAX_READS - 1) / MAX_READS);
+        long buckets = (readInterval + interval - 1) / interval;
+        if (buckets > Long.MAX_VALUE / interval) {
+            return Long.MAX_VALUE;
+        }
+        return buckets * interval;
+    }
+
+    /**
+     * Downsamples a complete history.
+     *
+     * @param columns
+     *            the history in time order
+     * @param method
+     *            the downsampling method
+     * @param startTime
+     *            the start of the first bucket
+     * @param interval
+     *            the length of a bucket in milliseconds
+     * @return the downsampled history
+     */
+    public static RecordColumns downsample(RecordColumns columns, DownsamplingMethod method, long startTime,
+            long interval) {
+        Downsampler downsampler = new Downsampler(method, startTime, interval);
+        downsampler.add(columns);
+        return downsampler.finish();
+    }
+
+    /**
+     * Reads a history in parts of {@link #getReadInterval(long, long, long)} and downsamples it, so only the raw values
+     * of one part are held in memory. A data logger may round the time range of a part to its logging interval, so
+     * values at the border of two parts may be returned twice. They are added only once.
+     *
+     * @param reader
+     *            reads the values of a part of the history, e.g. from a data logger
+     * @param method
+     *            the downsampling method
+     * @param startTime
+     *            the starting time of the history, inclusive, and the start of the first bucket
+     * @param endTime
+     *            the ending time of the history, inclusive
+     * @param interval
+     *            the length of a bucket in milliseconds
+     * @return the downsampled history
+     * @throws DataLoggerNotAvailableException
+     *             if the reader throws it
+     * @throws IOException
+     *             if the reader throws it
+     */
+    public static RecordColumns downsample(HistoryReader reader, DownsamplingMethod method, long startTime,
+            long endTime, long interval) throws DataLoggerNotAvailableException, IOException {
+        Downsampler downsampler = new Downsampler(method, startTime, interval);
+        long readInterval = getReadInterval(startTime, endTime, interval);
+        long start = startTime;
+        while (true) {
+            long end = endTime - start < readInterval ? endTime : start + readInterval - 1;
+            downsampler.add(reader.read(start, end));
+            if (end == endTime) {
+                return downsampler.finish();
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Adds the next part of the history. Timestamps have to be ascending, values which are not later than the last
+     * value added before are skipped.
+     */
+    public void add(RecordColumns columns) {
+        for (int i = 0; i < columns.size(); i++) {
+            add(columns.getTimestamp(i), columns.getValue(i), columns.getFlag(i));
+        }
+    }
+
+    /**
+     * Adds the next value of the history. Timestamps have to be ascending, a value which is not later than the last
+     * value added before is skipped.
+     */
+    public void add(long timestamp, double value, Flag flag) {
+        if (timestamp <= previousTimestamp) {
+            return;
+        }
+        previousTimestamp = timestamp;
+        if (flag != Flag.VALID || Double.isNaN(value)) {
+            return;
+        }
+        if (method == DownsamplingMethod.LTTB) {
+            addLttb(timestamp, value);
+            return;
+        }
+
+        long bucket = Math.floorDiv(timestamp - startTime, interval);
+        if (bucket != currentBucket) {
+            flushBucket();
+            currentBucket = bucket;
+            count = 0;
+            sum = 0;
+        }
+        if (count == 0) {
+            min = max = first = value;
+            minTimestamp = maxTimestamp = firstTimestamp = timestamp;
+        }
+        else if (value < min) {
+            min = value;
+            minTimestamp = timestamp;
+        }
+        else if (value > max) {
+            max = value;
+            maxTimestamp = timestamp;
+        }
+        last = value;
+        lastTimestamp = timestamp;
+        sum += value;
+        count++;
+    }
+
+    /**
+     * Completes the last bucket.
+     *
+     * @return the downsampled history
+     */
+    public RecordColumns finish() {
+        if (method == DownsamplingMethod.LTTB) {
+            finishLttb();
+        }
+        else {
+            flushBucket();
+            count = 0;
+        }
+        return result;
+    }
+
+    private void flushBucket() {
+        if (count == 0) {
+            return;
+        }
+        long bucketStart = startTime + currentBucket * interval;
+        switch (method) {
+        case AVG:
+            result.add(bucketStart, sum / count, Flag.VALID);
+            break;
+        case MIN:
+            result.add(bucketStart, min, Flag.VALID);
+            break;
+        case MAX:
+            result.add(bucketStart, max, Flag.VALID);
+            break;
+        case FIRST:
+            result.add(firstTimestamp, first, Flag.VALID);
+            break;
+        case LAST:
+            result.add(lastTimestamp, last, Flag.VALID);
+            break;
+        case MIN_MAX:
+            if (minTimestamp == maxTimestamp) {
+                result.add(minTimestamp, min, Flag.VALID);
+            }
+            else if (minTimestamp < maxTimestamp) {
+                result.add(minTimestamp, min, Flag.VALID);
+                result.add(maxTimestamp, max, Flag.VALID);
+            }
+            else {
+                result.add(maxTimestamp, max, Flag.VALID);
+                result.add(minTimestamp, min, Flag.VALID);
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unsupported downsampling method " + method);
+        }
+    }
+
+    private void addLttb(long timestamp, double value) {
+        if (!hasSelected) {
+            select(timestamp, value);
+            return;
+        }
+
+        long bucket = Math.floorDiv(timestamp - startTime, interval);
+        if (current.size > 0 && bucket != current.index) {
+            if (previous.size > 0) {
+                selectFromPrevious(current.getAverageTime(), current.getAverageValue());
+            }
+            swapBuckets();
+            current.clear();
+        }
+        current.index = bucket;
+        current.add(timestamp, value);
+    }
+
+    private void finishLttb() {
+        Bucket lastBucket = current.size > 0 ? current : previous;
+        if (lastBucket.size == 0) {
+            return;
+        }
+        // the last point of the history is kept as it is
+        int lastIndex = lastBucket.size - 1;
+        long lastPointTimestamp = lastBucket.timestamps[lastIndex];
+        double lastPointValue = lastBucket.values[lastIndex];
+        lastBucket.removeLast();
+
+        double lastPointTime = lastPointTimestamp - startTime;
+        if (previous.size > 0) {
+            if (current.size > 0) {
+                selectFromPrevious(current.getAverageTime(), current.getAverageValue());
+            }
+            else {
+                selectFromPrevious(lastPointTime, lastPointValue);
+            }
+        }
+        if (current.size > 0) {
+            swapBuckets();
+            selectFromPrevious(lastPointTime, lastPointValue);
+        }
+        select(lastPointTimestamp, lastPointValue);
+        previous.clear();
+        current.clear();
+    }
+
+    /**
+     * Selects the point of the previous bucket which forms the largest triangle with the last selected point and the
+     * given point of the following bucket. Times are relative to the start time to keep the precision of doubles.
+     */
+    private void selectFromPrevious(double nextTime, double nextValue) {
+        double selectedTime = selectedTimestamp - startTime;
+        double maxArea = -1;
+        int maxIndex = 0;
+        for (int i = 0; i < previous.size; i++) {
+            double area = Math.abs((selectedTime - nextTime) * (previous.values[i] - selectedValue)
+                    - (selectedTime - (previous.timestamps[i] - startTime)) * (nextValue - selectedValue));
+            if (area > maxArea) {
+                maxArea = area;
+                maxIndex = i;
+            }
+        }
+        select(previous.timestamps[maxIndex], previous.values[maxIndex]);
+    }
+
+    private void swapBuckets() {
+        Bucket swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    private void select(long timestamp, double value) {
+        result.add(timestamp, value, Flag.VALID);
+        hasSelected = true;
+        selectedTimestamp = timestamp;
+        selectedValue = value;
+    }
+
+    private class Bucket {
+
+        private long index;
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+        private double timeSum;
+        private double valueSum;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            timeSum += timestamp - startTime;
+            valueSum += value;
+            size++;
+        }
+
+        void removeLast() {
+            size--;
+            timeSum -= timestamps[size] - startTime;
+            valueSum -= values[size];
+        }
+
+        double getAverageTime() {
+            return timeSum / size;
+        }
+
+        double getAverageValue() {
+            return valueSum / size;
+        }
+
+        void clear() {
+            size = 0;
+            timeSum = 0;
+            valueSum = 0;
+        }
+    }
+
+    /**
+     * Reads a part of a history.
+     */
+    @FunctionalInterface
+    public interface HistoryReader {
+
+        /**
+         * @param startTime
+         *            the starting time of the part, inclusive
+         * @param endTime
+         *            the ending time of the part, inclusive
+         * @return the values of the part in time order
+         * @throws DataLoggerNotAvailableException
+         *             if no data logger is available
+         * @throws IOException
+         *             if the values could not be read
+         */
+        RecordColumns read(long startTime, long endTime) throws DataLoggerNotAvailableException, IOException;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.rest1.downsampling;
+
+import java.util.Locale;
+
+import org.openmuc.framework.data.Aggregation;
+
+/**
+ * Methods to reduce a history to one or two points per time bucket.
+ */
+public enum DownsamplingMethod {
+    /**
+     * Largest-Triangle-Three-Buckets: selects the point of each bucket which preserves the visual shape best. The
+     * first and the last point of the history are always kept.
+     */
+    LTTB(null),
+    /**
+     * Smallest and largest value of each bucket with their own time stamps, in time order.
+     */
+    MIN_MAX(null),
+    AVG(Aggregation.AVG),
+    MIN(Aggregation.MIN),
+    MAX(Aggregation.MAX),
+    FIRST(Aggregation.FIRST),
+    LAST(Aggregation.LAST);
+
+    private final Aggregation aggregation;
+
+    private DownsamplingMethod(Aggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * @return the aggregation a data logger may compute instead, or <code>null</code> if the method has to be applied
+     *         to the raw values
+     */
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * @return the maximum number of points the method returns per bucket
+     */
+    public int getPointsPerBucket() {
+        return this == MIN_MAX ? 2 : 1;
+    }
+
+    /**
+     * Parses a request parameter like <code>lttb</code>, <code>minmax</code> or <code>avg</code>.
+     *
+     * @param parameter
+     *            the parameter, case insensitive
+     * @return the method
+     * @throws IllegalArgumentException
+     *             if the parameter names no method
+     */
+    public static DownsamplingMethod fromParameter(String parameter) {
+        String name = parameter.trim().toUpperCase(Locale.ROOT);
+        if (name.equals("MINMAX")) {
+            return MIN_MAX;
+        }
+        return valueOf(name);
+    }
+}
@@ -1,5 +1,6 @@
 package org.openmuc.framework.lib.rest1.service.impl;
 
+import org.openmuc.framework.lib.rest1.sql.LatestValueRepoImpl;
 import org.postgresql.PGConnection;
 import org.postgresql.copy.CopyManager;
 
@@ -114,6 +115,8 @@ public final class CsvExportUtil {
             ps.executeBatch();
             conn.commit();
         }
+        // the rows were written past the cache
+        LatestValueRepoImpl.invalidateCache();
     }
 
 
@@ -47,6 +47,7 @@ public class SoHServiceImpl implements SoHService {
         if(runningSchedule == null) throw new RuntimeException("No running SoH schedule found with id: " + id);
         runningSchedule.setState(STOPPED);
         sohScheduleRepoImpl.save(runningSchedule);
+        SohEngine.getDefault().stop(id);
     }
 
     @Override
@@ -0,0 +1,156 @@
+package org.openmuc.framework.lib.rest1.service.impl;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.openmuc.framework.lib.rest1.common.utils.TemperatureFactor;
+
+/**
+ * Live measurements of one battery string used by the SoH calculation.
+ * <p>
+ * Listens to the <code>strN_total_I</code>, <code>strN_string_SOC</code> and <code>strN_ambient_T</code> channels
+ * and integrates the temperature corrected charge from the pushed current records, using the record timestamps as
+ * time base. No database access is needed while a discharge test is running.
+ */
+public class SohChannelSource {
+
+    // current and temperature are logged with one decimal place, see EntityRepoImpl
+    private static final double CURRENT_SCALE = 10.0;
+    private static final double TEMPERATURE_SCALE = 10.0;
+    private static final double DEFAULT_TEMPERATURE = 25.0;
+
+    private final String strId;
+    private final Channel currentChannel;
+    private final Channel socChannel;
+    private final Channel temperatureChannel;
+
+    private final RecordListener currentListener = this::newCurrentRecord;
+    private final RecordListener socListener = this::newSocRecord;
+    private final RecordListener temperatureListener = this::newTemperatureRecord;
+
+    private Double lastCurrent;
+    private long lastCurrentTimestamp;
+    private Double soc;
+    private double temperature = DEFAULT_TEMPERATURE;
+    private double usedCharge = 0;
+    private long lastUpdate = 0;
+
+    SohChannelSource(String strId, Channel currentChannel, Channel socChannel, Channel temperatureChannel) {
+        this.strId = strId;
+        this.currentChannel = currentChannel;
+        this.socChannel = socChannel;
+        this.temperatureChannel = temperatureChannel;
+    }
+
+    /**
+     * Subscribes to the channels of the given string.
+     *
+     * @param dataAccessService
+     *            the data access service
+     * @param strId
+     *            the string ID, e.g. <code>str1</code>
+     * @return the source or <code>null</code> if one of the channels does not exist
+     */
+    public static SohChannelSource open(DataAccessService dataAccessService, String strId) {
+        Channel currentChannel = dataAccessService.getChannel(strId + "_total_I");
+        Channel socChannel = dataAccessService.getChannel(strId + "_string_SOC");
+        Channel temperatureChannel = dataAccessService.getChannel(strId + "_ambient_T");
+        if (currentChannel == null || socChannel == null || temperatureChannel == null) {
+            return null;
+        }
+
+        SohChannelSource source = new SohChannelSource(strId, currentChannel, socChannel, temperatureChannel);
+        source.newTemperatureRecord(temperatureChannel.getLatestRecord());
+        source.newSocRecord(socChannel.getLatestRecord());
+        source.newCurrentRecord(currentChannel.getLatestRecord());
+
+        temperatureChannel.addListener(source.temperatureListener);
+        socChannel.addListener(source.socListener);
+        currentChannel.addListener(source.currentListener);
+        return source;
+    }
+
+    public void close() {
+        if (currentChannel != null) {
+            currentChannel.removeListener(currentListener);
+        }
+        if (socChannel != null) {
+            socChannel.removeListener(socListener);
+        }
+        if (temperatureChannel != null) {
+            temperatureChannel.removeListener(temperatureListener);
+        }
+    }
+
+    public String getStrId() {
+        return strId;
+    }
+
+    /**
+     * Returns the charge in As which has been integrated since the last call and resets it.
+     *
+     * @return used charge in As
+     */
+    public synchronized double takeUsedCharge() {
+        double charge = usedCharge;
+        usedCharge = 0;
+        return charge;
+    }
+
+    /**
+     * @return the latest state of charge or <code>null</code> if no valid value has been received yet
+     */
+    public synchronized Double getSoc() {
+        return soc;
+    }
+
+    /**
+     * @return timestamp of the latest valid record of any of the channels
+     */
+    public synchronized long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    synchronized void newCurrentRecord(Record record) {
+        if (!isValid(record)) {
+            return;
+        }
+        long timestamp = record.getTimestamp();
+        if (lastCurrent != null && timestamp > lastCurrentTimestamp) {
+            double seconds = (timestamp - lastCurrentTimestamp) / 1000.0;
+            usedCharge += lastCurrent * seconds * TemperatureFactor.getFactor(temperature);
+        }
+        if (lastCurrent == null || timestamp >= lastCurrentTimestamp) {
+            lastCurrent = record.getValue().asDouble() / CURRENT_SCALE;
+            lastCurrentTimestamp = timestamp;
+        }
+        updated(timestamp);
+    }
+
+    synchronized void newSocRecord(Record record) {
+        if (isValid(record)) {
+            soc = record.getValue().asDouble();
+            updated(record.getTimestamp());
+        }
+    }
+
+    synchronized void newTemperatureRecord(Record record) {
+        if (isValid(record)) {
+            temperature = record.getValue().asDouble() / TEMPERATURE_SCALE;
+            updated(record.getTimestamp());
+        }
+    }
+
+    private void updated(long timestamp) {
+        if (timestamp > lastUpdate) {
+            lastUpdate = timestamp;
+        }
+    }
+
+    private static boolean isValid(Record record) {
+        return record != null && record.getFlag() == Flag.VALID && record.getValue() != null
+                && record.getTimestamp() != null;
+    }
+}
@@ -0,0 +1,315 @@
+package org.openmuc.framework.lib.rest1.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.openmuc.framework.lib.rest1.common.enums.DischargeState.RUNNING;
+import static org.openmuc.framework.lib.rest1.common.enums.DischargeState.STOPPED;
+import static org.openmuc.framework.lib.rest1.common.enums.Status.ACTIVE;
+
+import org.openmuc.framework.dataaccess.DataAccessService;
+import org.openmuc.framework.lib.rest1.common.enums.DischargeState;
+import org.openmuc.framework.lib.rest1.domain.model.LatestValue;
+import org.openmuc.framework.lib.rest1.domain.model.SoHSchedule;
+import org.openmuc.framework.lib.rest1.sql.LatestValueRepoImpl;
+import org.openmuc.framework.lib.rest1.sql.SoHScheduleRepoImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates the SoH of all running discharge tests.
+ * <p>
+ * One scheduled thread updates all running schedules in a single pass every {@link ASyncServiceImpl#INTERVAL}
+ * seconds. The measurements come from a {@link SohChannelSource} per schedule, so a tick does not access the
+ * database. Schedules are written to the database on state changes and every checkpoint interval. A schedule stopped
+ * with {@link #stop(Long)} is finished on the next tick.
+ * <p>
+ * Database errors never escape a tick: a failed checkpoint is retried on the next tick and a failed final save is
+ * only logged, otherwise the executor would silently cancel the periodic task.
+ */
+public class SohEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SohEngine.class);
+
+    /**
+     * Interval in seconds in which a running schedule is written to the database.
+     */
+    private static final long CHECKPOINT_INTERVAL = Long
+            .getLong("org.openmuc.framework.lib.rest1.soh.checkpointInterval", 30);
+
+    private static final SohEngine DEFAULT = new SohEngine(new SoHScheduleRepoImpl(),
+            TimeUnit.SECONDS.toMillis(ASyncServiceImpl.INTERVAL));
+
+    private final SoHScheduleRepoImpl sohScheduleRepoImpl;
+    private final long tickInterval;
+    private final Map<Long, RunningSchedule> runningSchedules = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> tickFuture;
+
+    /**
+     * @param sohScheduleRepoImpl
+     *            repository the schedules are saved to
+     * @param tickInterval
+     *            interval in milliseconds in which the running schedules are updated
+     */
+    SohEngine(SoHScheduleRepoImpl sohScheduleRepoImpl, long tickInterval) {
+        this.sohScheduleRepoImpl = sohScheduleRepoImpl;
+        this.tickInterval = tickInterval;
+    }
+
+    public static SohEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Starts the SoH calculation of a schedule which has been set to RUNNING.
+     *
+     * @param dataAccessService
+     *            used to subscribe to the channels of the string
+     * @param id
+     *            the schedule ID
+     * @param strId
+     *            the string ID
+     * @return future which is completed when the calculation has ended
+     */
+    public CompletableFuture<String> start(DataAccessService dataAccessService, Long id, String strId) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        RunningSchedule existing = runningSchedules.get(id);
+        if (existing != null) {
+            return existing.result;
+        }
+
+        SoHSchedule sohSchedule = sohScheduleRepoImpl.findByIdAndStateInAndStatus(id, Arrays.asList(RUNNING, STOPPED),
+                ACTIVE);
+        if (sohSchedule == null) {
+            logger.warn("No SoH schedule found with ID {} in RUNNING or STOPPED state.", id);
+            result.complete("Task completed");
+            return result;
+        }
+        if (sohSchedule.getState() == STOPPED) {
+            finish(sohSchedule, DischargeState.SUCCESS);
+            result.complete("Task completed");
+            return result;
+        }
+        LatestValue cNominalValue = LatestValueRepoImpl.findLatestValueByChannelId(strId + "_Cnominal");
+        if (cNominalValue == null || Objects.isNull(cNominalValue.getValueDouble())) {
+            logger.warn("Cnominal value not found for string {}.", strId);
+            finish(sohSchedule, DischargeState.FAILED);
+            result.complete("Task completed");
+            return result;
+        }
+        SohChannelSource source = dataAccessService == null ? null
+                : SohChannelSource.open(dataAccessService, sohSchedule.getStrId());
+        if (source == null) {
+            logger.warn("Channels for SoH calculation not available for string {}.", strId);
+            finish(sohSchedule, DischargeState.FAILED);
+            result.complete("Task completed");
+            return result;
+        }
+
+        return run(sohSchedule, source, cNominalValue.getValueDouble() * 3600);
+    }
+
+    /**
+     * Adds a schedule to the running schedules. If the schedule is already running, e.g. because two callers started
+     * it concurrently, the given source is closed and the result of the running schedule is returned.
+     */
+    CompletableFuture<String> run(SoHSchedule sohSchedule, SohChannelSource source, double cNominalAs) {
+        RunningSchedule running = new RunningSchedule(sohSchedule, source, cNominalAs, new CompletableFuture<>());
+        RunningSchedule existing;
+        synchronized (this) {
+            existing = runningSchedules.putIfAbsent(sohSchedule.getId(), running);
+            if (existing == null) {
+                ensureTicking();
+            }
+        }
+        if (existing != null) {
+            source.close();
+            return existing.result;
+        }
+        return running.result;
+    }
+
+    /**
+     * Stops the calculation of a schedule. The schedule is finished with state SUCCESS on the next tick.
+     *
+     * @param id
+     *            the schedule ID
+     */
+    public void stop(Long id) {
+        RunningSchedule running = runningSchedules.get(id);
+        if (running != null) {
+            running.stopRequested = true;
+        }
+    }
+
+    public boolean isRunning(Long id) {
+        return runningSchedules.containsKey(id);
+    }
+
+    /**
+     * Stops ticking and releases the channel subscriptions of all running schedules. The schedules are saved and stay
+     * RUNNING in the database, the futures returned by {@link #start(DataAccessService, Long, String)} are cancelled.
+     * The engine can be started again afterwards.
+     */
+    public void shutdown() {
+        ScheduledExecutorService executorToStop;
+        synchronized (this) {
+            if (tickFuture != null) {
+                tickFuture.cancel(false);
+                tickFuture = null;
+            }
+            executorToStop = executor;
+            executor = null;
+        }
+        if (executorToStop != null) {
+            executorToStop.shutdown();
+            try {
+                if (!executorToStop.awaitTermination(tickInterval * 2, TimeUnit.MILLISECONDS)) {
+                    logger.warn("SoH engine did not finish its tick in time.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (RunningSchedule running : runningSchedules.values()) {
+            runningSchedules.remove(running.sohSchedule.getId());
+            closeSource(running);
+            save(running.sohSchedule);
+            running.result.cancel(false);
+        }
+    }
+
+    private void ensureTicking() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "SoH engine");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (tickFuture == null) {
+            tickFuture = executor.scheduleAtFixedRate(this::tick, tickInterval, tickInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void tick() {
+        tick(System.currentTimeMillis());
+    }
+
+    void tick(long now) {
+        for (RunningSchedule running : runningSchedules.values()) {
+            try {
+                update(running, now);
+            } catch (RuntimeException e) {
+                logger.warn("SoH calculation of schedule {} failed.", running.sohSchedule.getId(), e);
+                end(running, DischargeState.FAILED);
+            }
+        }
+
+        synchronized (this) {
+            if (runningSchedules.isEmpty() && tickFuture != null) {
+                tickFuture.cancel(false);
+                tickFuture = null;
+            }
+        }
+    }
+
+    private void update(RunningSchedule running, long now) {
+        SoHSchedule sohSchedule = running.sohSchedule;
+
+        Double socAfter = running.source.getSoc();
+        if (socAfter == null) {
+            logger.warn("SoC value is null for string {}.", sohSchedule.getStrId());
+            end(running, DischargeState.FAILED);
+            return;
+        }
+        updateSoh(sohSchedule, running.source.takeUsedCharge(), socAfter, running.cNominalAs);
+
+        if (running.stopRequested) {
+            end(running, DischargeState.SUCCESS);
+        }
+        else if (now - running.lastCheckpoint >= CHECKPOINT_INTERVAL * 1000) {
+            // a failed checkpoint is not a failed discharge test, the next checkpoint retries it
+            if (save(sohSchedule)) {
+                running.lastCheckpoint = now;
+            }
+        }
+    }
+
+    private void end(RunningSchedule running, DischargeState state) {
+        runningSchedules.remove(running.sohSchedule.getId());
+        closeSource(running);
+        finish(running.sohSchedule, state);
+        running.result.complete("Task completed");
+    }
+
+    private void closeSource(RunningSchedule running) {
+        try {
+            running.source.close();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release the channels of SoH schedule {}.", running.sohSchedule.getId(), e);
+        }
+    }
+
+    private void finish(SoHSchedule sohSchedule, DischargeState state) {
+        sohSchedule.setState(state);
+        sohSchedule.setEndDatetime(LocalDateTime.now());
+        save(sohSchedule);
+    }
+
+    private boolean save(SoHSchedule sohSchedule) {
+        try {
+            sohScheduleRepoImpl.save(sohSchedule);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to save SoH schedule {}.", sohSchedule.getId(), e);
+            return false;
+        }
+    }
+
+    static void updateSoh(SoHSchedule sohSchedule, double usedCharge, double socAfter, double cNominalAs) {
+        double usedQ = sohSchedule.getUsedQ() + usedCharge;
+        double soh;
+        if (sohSchedule.getSocBefore() - socAfter == 0) {
+            soh = 100d;
+        }
+        else {
+            soh = Math.abs(usedQ / (sohSchedule.getSocBefore() - socAfter) / cNominalAs * 10000);
+        }
+        if (soh > 100) {
+            soh = 100d;
+        }
+        sohSchedule.setSoh(soh);
+        sohSchedule.setUsedQ(usedQ);
+        sohSchedule.setSocAfter(socAfter);
+        sohSchedule.setUpdateDatetime(LocalDateTime.now());
+    }
+
+    private static class RunningSchedule {
+        private final SoHSchedule sohSchedule;
+        private final SohChannelSource source;
+        private final double cNominalAs;
+        private final CompletableFuture<String> result;
+        private volatile boolean stopRequested = false;
+        private long lastCheckpoint = System.currentTimeMillis();
+
+        RunningSchedule(SoHSchedule sohSchedule, SohChannelSource source, double cNominalAs,
+                CompletableFuture<String> result) {
+            this.sohSchedule = sohSchedule;
+            this.source = source;
+            this.cNominalAs = cNominalAs;
+            this.result = result;
+        }
+    }
+}
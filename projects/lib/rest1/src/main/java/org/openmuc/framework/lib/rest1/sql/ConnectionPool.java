@@ -0,0 +1,193 @@
+package org.openmuc.framework.lib.rest1.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small pool of JDBC connections to the BMS database.
+ * <p>
+ * Connections returned by {@link #getConnection()} are handed back to the pool when they are closed, so callers keep
+ * using try-with-resources as with {@link DriverManager#getConnection(String, String, String)}. The pool size can be
+ * set with the system property <code>org.openmuc.framework.lib.rest1.sql.poolSize</code> (default 4).
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final static String URL = "jdbc:postgresql://localhost:5432/openmuc";
+    private final static String USER = "openmuc_user";
+    private final static String PASSWORD = "openmuc";
+
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final ConnectionPool DEFAULT = new ConnectionPool(URL, USER, PASSWORD,
+            Integer.getInteger("org.openmuc.framework.lib.rest1.sql.poolSize", DEFAULT_POOL_SIZE));
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Semaphore permits;
+    private final Deque<Connection> idleConnections = new ArrayDeque<>();
+
+    public ConnectionPool(String url, String user, String password, int poolSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    /**
+     * @return the pool shared by all repositories of the BMS database
+     */
+    public static ConnectionPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Borrows a connection from the pool. Blocks while all connections are in use.
+     *
+     * @return a connection which is returned to the pool on {@link Connection#close()}
+     * @throws SQLException
+     *             if no connection could be opened or the pool stays exhausted
+     */
+    public Connection getConnection() throws SQLException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timeout while waiting for a free connection of the pool.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a free connection of the pool.", e);
+        }
+
+        try {
+            Connection connection = takeIdleConnection();
+            if (connection == null) {
+                connection = DriverManager.getConnection(url, user, password);
+            }
+            return wrap(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeIdleConnection() {
+        while (true) {
+            Connection connection;
+            synchronized (idleConnections) {
+                connection = idleConnections.pollFirst();
+            }
+            if (connection == null) {
+                return null;
+            }
+            try {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return connection;
+                }
+            } catch (SQLException e) {
+                logger.debug("Validation of pooled connection failed: {}", e.getMessage());
+            }
+            closeQuietly(connection);
+        }
+    }
+
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (broken || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            synchronized (idleConnections) {
+                idleConnections.addFirst(connection);
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when they are returned.
+     */
+    public void closeIdleConnections() {
+        synchronized (idleConnections) {
+            Connection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new PooledConnectionHandler(connection));
+    }
+
+    private class PooledConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private boolean returned = false;
+        private boolean broken = false;
+
+        PooledConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (!returned) {
+                    returned = true;
+                    release(connection, broken);
+                }
+                return null;
+            case "isClosed":
+                return returned || connection.isClosed();
+            default:
+                if (returned) {
+                    throw new SQLException("Connection has already been returned to the pool.");
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    // SQL state class 08 is a connection exception, do not reuse the connection
+                    if (cause instanceof SQLException && ((SQLException) cause).getSQLState() != null
+                            && ((SQLException) cause).getSQLState().startsWith("08")) {
+                        broken = true;
+                    }
+                    throw cause;
+                }
+            }
+        }
+    }
+}
@@ -13,9 +13,6 @@ import java.util.List;
 public class EntityRepoImpl {
     private static final Logger logger = LoggerFactory.getLogger(EntityRepoImpl.class);
 
-    private final static String url = "jdbc:postgresql://localhost:5432/openmuc";
-    private final static String user = "openmuc_user";
-    private final static String password = "openmuc";
 
     // private static final String GETTING_VALUES_SQL =
     // "SELECT v.\"VALUE\" AS value\n " +
@@ -37,7 +34,7 @@ public class EntityRepoImpl {
                 "ORDER BY v.time DESC\n" +
                 "LIMIT 1";
 
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql);
                 ResultSet rs = ps.executeQuery()) {
 
@@ -63,7 +60,7 @@ public class EntityRepoImpl {
                 "ORDER BY v.time DESC\n" +
                 "LIMIT 1";
 
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql);
                 ResultSet rs = ps.executeQuery()) {
 
@@ -89,7 +86,7 @@ public class EntityRepoImpl {
                 "ORDER BY v.time DESC\n" +
                 "LIMIT 1";
 
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql);
                 ResultSet rs = ps.executeQuery()) {
 
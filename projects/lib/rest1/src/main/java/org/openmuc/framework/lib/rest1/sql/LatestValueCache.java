@@ -0,0 +1,269 @@
+package org.openmuc.framework.lib.rest1.sql;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.lib.rest1.domain.model.LatestValue;
+
+/**
+ * In-memory copy of the <code>latest_values</code> table, indexed by channel ID.
+ * <p>
+ * The entries are kept in a sorted map, so a prefix lookup is a range scan. A prefix is loaded from the database the
+ * first time it is requested (read-through) and afterwards answered from memory only. A failed query is passed on to
+ * the caller and not cached, so the prefix is queried again on its next request. Every value written with
+ * {@link LatestValueWriteBehind} updates the cache directly, so the cache is never older than the database.
+ * <p>
+ * The number of entries is bounded by the system property
+ * <code>org.openmuc.framework.lib.rest1.latestvalues.cacheSize</code> (default 10000). If it is exceeded, the least
+ * recently used prefixes are evicted and loaded again on their next request.
+ */
+public class LatestValueCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final LatestValueCache DEFAULT = new LatestValueCache(
+            LatestValueRepoImpl::queryByChannelIdStartingWith, LatestValueRepoImpl::queryByChannelId,
+            Integer.getInteger("org.openmuc.framework.lib.rest1.latestvalues.cacheSize", DEFAULT_MAX_ENTRIES));
+
+    private final Loader<List<LatestValue>> prefixLoader;
+    private final Loader<LatestValue> channelLoader;
+    private final int maxEntries;
+
+    private final ConcurrentSkipListMap<String, LatestValue> values = new ConcurrentSkipListMap<>();
+
+    // prefixes whose values are completely contained in the cache, in least recently used order
+    private final Set<String> loadedPrefixes = new LinkedHashSet<>();
+    // channels which have no row in the database, so that unknown channels are not queried again and again
+    private final Set<String> missingChannels = ConcurrentHashMap.newKeySet();
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LatestValueCache(Loader<List<LatestValue>> prefixLoader, Loader<LatestValue> channelLoader,
+            int maxEntries) {
+        this.prefixLoader = prefixLoader;
+        this.channelLoader = channelLoader;
+        this.maxEntries = maxEntries;
+    }
+
+    public static LatestValueCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the values of all channels whose ID starts with the given prefix, ordered by channel ID.
+     *
+     * @param prefix
+     *            channel ID prefix
+     * @return the values, never <code>null</code>
+     * @throws SQLException
+     *             if the prefix is not cached and could not be loaded from the database
+     */
+    public List<LatestValue> findByPrefix(String prefix) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            if (isLoaded(prefix)) {
+                hits.incrementAndGet();
+                return new ArrayList<>(range(prefix).values());
+            }
+            loadGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        List<LatestValue> loaded = prefixLoader.load(prefix);
+
+        synchronized (this) {
+            if (loadGeneration != generation) {
+                // the cache was invalidated during the query, values written since are still newer
+                List<LatestValue> result = new ArrayList<>(loaded.size());
+                for (LatestValue value : loaded) {
+                    result.add(values.getOrDefault(value.getChannelId(), value));
+                }
+                return result;
+            }
+            for (LatestValue value : loaded) {
+                // values written since the query are newer than the database
+                values.putIfAbsent(value.getChannelId(), value);
+            }
+            List<LatestValue> result = new ArrayList<>(range(prefix).values());
+            loadedPrefixes.add(prefix);
+            evictIfFull();
+            return result;
+        }
+    }
+
+    /**
+     * Returns the value of a single channel.
+     *
+     * @param channelId
+     *            channel ID
+     * @return the value or <code>null</code> if the channel has no value
+     * @throws SQLException
+     *             if the channel is not cached and could not be loaded from the database
+     */
+    public LatestValue find(String channelId) throws SQLException {
+        LatestValue value = values.get(channelId);
+        if (value != null) {
+            hits.incrementAndGet();
+            return value;
+        }
+        long loadGeneration;
+        synchronized (this) {
+            if (isLoaded(channelId) || missingChannels.contains(channelId)) {
+                hits.incrementAndGet();
+                return null;
+            }
+            loadGeneration = generation;
+        }
+
+        misses.incrementAndGet();
+        value = channelLoader.load(channelId);
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                if (value != null) {
+                    values.putIfAbsent(channelId, value);
+                    evictIfFull();
+                }
+                else if (!values.containsKey(channelId)) {
+                    if (missingChannels.size() >= maxEntries) {
+                        missingChannels.clear();
+                    }
+                    missingChannels.add(channelId);
+                }
+            }
+        }
+        return values.getOrDefault(channelId, value);
+    }
+
+    /**
+     * Stores a value which has just been written.
+     *
+     * @param value
+     *            the new value
+     */
+    public void update(LatestValue value) {
+        values.put(value.getChannelId(), value);
+        missingChannels.remove(value.getChannelId());
+        if (values.size() > maxEntries) {
+            synchronized (this) {
+                evictIfFull();
+            }
+        }
+    }
+
+    void update(String channelId, String valueType, Double valueDouble, String valueString, Boolean valueBoolean) {
+        LatestValue value = new LatestValue();
+        value.setChannelId(channelId);
+        value.setValueType(valueType);
+        value.setValueDouble(valueDouble);
+        value.setValueString(valueString);
+        value.setValueBoolean(valueBoolean);
+        value.setUpdatedDatetime(new Timestamp(System.currentTimeMillis()).toString());
+        update(value);
+    }
+
+    /**
+     * Removes all channels whose ID starts with the given prefix, e.g. after they have been deleted from the database.
+     *
+     * @param prefix
+     *            channel ID prefix
+     */
+    public synchronized void invalidate(String prefix) {
+        generation++;
+        range(prefix).clear();
+        removeOverlappingPrefixes(prefix);
+        missingChannels.removeIf(channelId -> channelId.startsWith(prefix));
+    }
+
+    public synchronized void clear() {
+        generation++;
+        values.clear();
+        loadedPrefixes.clear();
+        missingChannels.clear();
+    }
+
+    private boolean isLoaded(String channelIdOrPrefix) {
+        for (String loadedPrefix : loadedPrefixes) {
+            if (channelIdOrPrefix.startsWith(loadedPrefix)) {
+                // move to the end of the LRU order
+                loadedPrefixes.remove(loadedPrefix);
+                loadedPrefixes.add(loadedPrefix);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private NavigableMap<String, LatestValue> range(String prefix) {
+        return values.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void evictIfFull() {
+        while (values.size() > maxEntries) {
+            Iterator<String> iterator = loadedPrefixes.iterator();
+            if (!iterator.hasNext()) {
+                // only written values of channels which were never requested are left
+                generation++;
+                values.clear();
+                evictions.incrementAndGet();
+                return;
+            }
+            String eldest = iterator.next();
+            generation++;
+            range(eldest).clear();
+            removeOverlappingPrefixes(eldest);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeOverlappingPrefixes(String prefix) {
+        loadedPrefixes.removeIf(loaded -> loaded.startsWith(prefix) || prefix.startsWith(loaded));
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        long hitRate = total == 0 ? 0 : hitCount * 100 / total;
+        return "entries: " + values.size() + "/" + maxEntries + ", hits: " + hitCount + ", misses: " + misses.get()
+                + " (" + hitRate + "% hit rate), evictions: " + evictions.get();
+    }
+
+    /**
+     * Loads values from the database.
+     *
+     * @param <T>
+     *            type of the loaded values
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(String channelIdOrPrefix) throws SQLException;
+    }
+}
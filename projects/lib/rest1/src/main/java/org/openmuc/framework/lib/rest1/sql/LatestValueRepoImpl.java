@@ -9,9 +9,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class LatestValueRepoImpl {
-    private final static String url = "jdbc:postgresql://localhost:5432/openmuc";
-    private final static String user = "openmuc_user";
-    private final static String password = "openmuc";
     private static final String SELECT_PREFIX_SQL = "SELECT channelid, value_type, value_double, value_string, value_boolean, updated_at "
             +
             "FROM latest_values " +
@@ -19,9 +16,40 @@ public class LatestValueRepoImpl {
 
     private static final Logger logger = LoggerFactory.getLogger(LatestValueRepoImpl.class);
 
+    /**
+     * Returns the values of all channels whose ID starts with the given prefix. Answered from {@link LatestValueCache}
+     * once the prefix has been loaded.
+     */
     public static List<LatestValue> findByChannelIdStartingWith(String prefix) {
+        try {
+            return LatestValueCache.getDefault().findByPrefix(prefix);
+        } catch (SQLException e) {
+            logger.warn("[latest_values] findByChannelIdStartingWith failed for prefix " + prefix + ": " + e);
+            return new ArrayList<>();
+        }
+    }
+
+    public static LatestValue findLatestValueByChannelId(String channelId) {
+        try {
+            return LatestValueCache.getDefault().find(channelId);
+        } catch (SQLException e) {
+            logger.warn("[latest_values] findLatestValueByChannelId failed for channelId " + channelId + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Drops all cached values after the table has been written directly, e.g. by a CSV import. Pending updates are
+     * written first, so they are not hidden by the values loaded again from the database.
+     */
+    public static void invalidateCache() {
+        LatestValueWriteBehind.getDefault().flush();
+        LatestValueCache.getDefault().clear();
+    }
+
+    static List<LatestValue> queryByChannelIdStartingWith(String prefix) throws SQLException {
         List<LatestValue> latestValues = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(SELECT_PREFIX_SQL)) {
 
             // logger.info("Connected to DB: Finding latest values with channelId starting
@@ -41,16 +69,14 @@ public class LatestValueRepoImpl {
                     latestValues.add(lv);
                 }
             }
-        } catch (SQLException e) {
-            logger.warn("[latest_values] findByChannelIdStartingWith failed for prefix " + prefix + ": " + e);
         }
         return latestValues;
     }
 
-    public static LatestValue findLatestValueByChannelId(String channelId) {
+    static LatestValue queryByChannelId(String channelId) throws SQLException {
         LatestValue lv = null;
         String sql = SELECT_PREFIX_SQL.replace("LIKE ?", "= ?");
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
             logger.info("Connected to DB: Finding latest value for channelId {}", channelId);
@@ -68,15 +94,15 @@ public class LatestValueRepoImpl {
                     lv.setUpdatedDatetime(rs.getString("updated_at"));
                 }
             }
-        } catch (SQLException e) {
-            logger.warn("[latest_values] findLatestValueByChannelId failed for channelId " + channelId + ": " + e);
         }
         return lv;
     }
 
     public static void deleteAllByChannelIdStartingWith(String prefix) {
         String sql = "DELETE FROM latest_values WHERE channelid LIKE ?";
-        try (Connection conn = DriverManager.getConnection(url, user, password);
+        // pending writes would otherwise recreate the rows after they have been deleted
+        LatestValueWriteBehind.getDefault().discardStartingWith(prefix);
+        try (Connection conn = ConnectionPool.getDefault().getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
             logger.info("Connected to DB: Deleting latest values with channelId starting with {}", prefix);
@@ -84,6 +110,7 @@ public class LatestValueRepoImpl {
             ps.setString(1, prefix + "%");
 
             ps.executeUpdate();
+            LatestValueCache.getDefault().invalidate(prefix);
         } catch (SQLException e) {
             logger.warn("[latest_values] deleteAllByChannelIdStartingWith failed for prefix " + prefix + ": " + e);
         }
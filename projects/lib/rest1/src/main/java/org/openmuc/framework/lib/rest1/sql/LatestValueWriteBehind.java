@@ -0,0 +1,366 @@
+package org.openmuc.framework.lib.rest1.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind store for the <code>latest_values</code> table.
+ * <p>
+ * Updates are kept in memory and coalesced per channel ID, i.e. only the newest value of a channel is written. Pending
+ * values are flushed as multi-row <code>INSERT ... ON CONFLICT</code> statements in one transaction every flush
+ * interval or as soon as the batch size is reached. If the number of channels with pending values reaches the
+ * configured maximum, callers wait at most one flush interval for a flush (back-pressure). If the values still can
+ * not be written, e.g. because the database is down, the update of a channel without a pending value is dropped. If
+ * the database rejects a batch, its values are written one by one and values which are still rejected are dropped, so
+ * a single bad value does not hold back all others. Every update is also stored in the {@link LatestValueCache} right
+ * away, so readers see it before it is flushed.
+ * <p>
+ * Configured with the system properties <code>org.openmuc.framework.lib.rest1.latestvalues.flushInterval</code> (ms,
+ * default 1000), <code>org.openmuc.framework.lib.rest1.latestvalues.batchSize</code> (default 500) and
+ * <code>org.openmuc.framework.lib.rest1.latestvalues.maxPending</code> (default 10000).
+ */
+public class LatestValueWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatestValueWriteBehind.class);
+
+    private static final String PROPERTY_PREFIX = "org.openmuc.framework.lib.rest1.latestvalues.";
+
+    private static final String INSERT_SQL = "INSERT INTO latest_values "
+            + "(channelid, value_type, value_double, value_string, value_boolean, updated_at) VALUES ";
+    private static final String ROW_SQL = "(?, ?, ?, ?, ?, ?)";
+    private static final String CONFLICT_SQL = " ON CONFLICT (channelid) DO UPDATE "
+            + "SET value_type    = EXCLUDED.value_type, " + "    value_double  = EXCLUDED.value_double, "
+            + "    value_string  = EXCLUDED.value_string, " + "    value_boolean = EXCLUDED.value_boolean, "
+            + "    updated_at    = EXCLUDED.updated_at";
+
+    // keeps the number of bind parameters of one statement well below the PostgreSQL limit of 65535
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final LatestValueWriteBehind DEFAULT = new LatestValueWriteBehind(ConnectionPool.getDefault(),
+            LatestValueCache.getDefault(), Long.getLong(PROPERTY_PREFIX + "flushInterval", 1000L),
+            Integer.getInteger(PROPERTY_PREFIX + "batchSize", 500),
+            Integer.getInteger(PROPERTY_PREFIX + "maxPending", 10000));
+
+    private final ConnectionPool connectionPool;
+    private final LatestValueCache cache;
+    private final long flushInterval;
+    private final int batchSize;
+    private final int maxPending;
+
+    private final Object lock = new Object();
+    private Map<String, PendingValue> pendingValues = new LinkedHashMap<>();
+    private boolean flushRequested = false;
+    private ScheduledExecutorService flushExecutor;
+
+    private volatile long flushedRows = 0;
+    private volatile long coalescedUpdates = 0;
+    private volatile long failedFlushes = 0;
+    private volatile long droppedUpdates = 0;
+    private volatile long rejectedValues = 0;
+
+    public LatestValueWriteBehind(ConnectionPool connectionPool, LatestValueCache cache, long flushInterval,
+            int batchSize, int maxPending) {
+        this.connectionPool = connectionPool;
+        this.cache = cache;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.maxPending = Math.max(maxPending, batchSize);
+    }
+
+    /**
+     * @return the write-behind store shared by all users of the <code>latest_values</code> table
+     */
+    public static LatestValueWriteBehind getDefault() {
+        return DEFAULT;
+    }
+
+    public void updateDouble(String channelId, double value) {
+        enqueue(new PendingValue(channelId, "D", value, null, null));
+    }
+
+    public void updateString(String channelId, String value) {
+        enqueue(new PendingValue(channelId, "S", null, value, null));
+    }
+
+    public void updateBoolean(String channelId, boolean value) {
+        enqueue(new PendingValue(channelId, "B", null, null, value));
+    }
+
+    /**
+     * Drops pending updates of all channels whose ID starts with the given prefix, e.g. before the rows are deleted.
+     *
+     * @param prefix
+     *            channel ID prefix
+     */
+    public void discardStartingWith(String prefix) {
+        synchronized (lock) {
+            Iterator<String> iterator = pendingValues.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void enqueue(PendingValue value) {
+        cache.update(value.channelId, value.valueType, value.valueDouble, value.valueString, value.valueBoolean);
+        synchronized (lock) {
+            ensureStarted();
+            long deadline = System.currentTimeMillis() + flushInterval;
+            while (isFull(value.channelId)) {
+                requestFlush();
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (isFull(value.channelId)) {
+                if (droppedUpdates++ % 1000 == 0) {
+                    logger.warn("[latest_values] {} pending values can not be flushed, dropped {} updates so far",
+                            pendingValues.size(), droppedUpdates);
+                }
+                return;
+            }
+            if (pendingValues.put(value.channelId, value) != null) {
+                coalescedUpdates++;
+            }
+            if (pendingValues.size() >= batchSize) {
+                requestFlush();
+            }
+        }
+    }
+
+    private boolean isFull(String channelId) {
+        return pendingValues.size() >= maxPending && !pendingValues.containsKey(channelId);
+    }
+
+    private void ensureStarted() {
+        if (flushExecutor != null) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "latest_values write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void requestFlush() {
+        if (!flushRequested) {
+            flushRequested = true;
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Writes all pending values and stops the flush thread. The thread is started again by the next update.
+     */
+    public void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (lock) {
+            executor = flushExecutor;
+            flushExecutor = null;
+            flushRequested = false;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes all pending values to the database. Called periodically by the flush thread but may also be called
+     * directly, e.g. on shutdown.
+     */
+    public void flush() {
+        Map<String, PendingValue> batch;
+        synchronized (lock) {
+            flushRequested = false;
+            if (pendingValues.isEmpty()) {
+                return;
+            }
+            batch = pendingValues;
+            pendingValues = new LinkedHashMap<>();
+            lock.notifyAll();
+        }
+
+        try {
+            write(new ArrayList<>(batch.values()));
+            flushedRows += batch.size();
+        } catch (SQLException e) {
+            failedFlushes++;
+            logger.warn("[latest_values] flushing {} values failed, retrying value by value: {}", batch.size(),
+                    e.getMessage());
+            requeue(writeOneByOne(batch.values()));
+        }
+    }
+
+    /**
+     * Writes every value in a transaction of its own. Values the database rejects are dropped. If the connection
+     * fails, e.g. because the database is down, the values which are not written yet are returned for the next flush.
+     */
+    private List<PendingValue> writeOneByOne(Collection<PendingValue> values) {
+        List<PendingValue> remaining = new ArrayList<>(values);
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(true);
+            Iterator<PendingValue> iterator = remaining.iterator();
+            while (iterator.hasNext()) {
+                PendingValue value = iterator.next();
+                try {
+                    writeRows(connection, Collections.singletonList(value));
+                    flushedRows++;
+                } catch (SQLException e) {
+                    if (isConnectionFailure(e) || !connection.isValid(0)) {
+                        throw e;
+                    }
+                    rejectedValues++;
+                    logger.error("[latest_values] dropping value of channel {}: {} SQLState: {} VendorError: {}",
+                            value.channelId, e.getMessage(), e.getSQLState(), e.getErrorCode());
+                }
+                iterator.remove();
+            }
+        } catch (SQLException e) {
+            logger.warn("[latest_values] writing {} values failed, will retry: {}", remaining.size(), e.getMessage());
+        }
+        return remaining;
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || sqlState != null && sqlState.startsWith("08");
+    }
+
+    private void requeue(Collection<PendingValue> values) {
+        synchronized (lock) {
+            // newer values which arrived during the failed flush take precedence
+            for (PendingValue value : values) {
+                if (pendingValues.size() >= maxPending && !pendingValues.containsKey(value.channelId)) {
+                    droppedUpdates++;
+                    continue;
+                }
+                pendingValues.putIfAbsent(value.channelId, value);
+            }
+        }
+    }
+
+    private void write(List<PendingValue> values) throws SQLException {
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (int from = 0; from < values.size(); from += MAX_ROWS_PER_STATEMENT) {
+                    int to = Math.min(from + MAX_ROWS_PER_STATEMENT, values.size());
+                    writeRows(connection, values.subList(from, to));
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private void writeRows(Connection connection, List<PendingValue> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT_SQL.length() + rows.size() * (ROW_SQL.length() + 1)
+                + CONFLICT_SQL.length());
+        sql.append(INSERT_SQL);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(ROW_SQL);
+        }
+        sql.append(CONFLICT_SQL);
+
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            int idx = 1;
+            for (PendingValue row : rows) {
+                ps.setString(idx++, row.channelId);
+                ps.setString(idx++, row.valueType);
+                if (row.valueDouble != null) {
+                    ps.setDouble(idx++, row.valueDouble);
+                }
+                else {
+                    ps.setNull(idx++, Types.DOUBLE);
+                }
+                if (row.valueString != null) {
+                    ps.setString(idx++, row.valueString);
+                }
+                else {
+                    ps.setNull(idx++, Types.VARCHAR);
+                }
+                if (row.valueBoolean != null) {
+                    ps.setBoolean(idx++, row.valueBoolean);
+                }
+                else {
+                    ps.setNull(idx++, Types.BOOLEAN);
+                }
+                ps.setTimestamp(idx++, new Timestamp(row.updatedAt));
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingValues.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "pending: " + getPendingCount() + ", flushed rows: " + flushedRows + ", coalesced updates: "
+                + coalescedUpdates + ", failed flushes: " + failedFlushes + ", rejected values: " + rejectedValues
+                + ", dropped updates: " + droppedUpdates;
+    }
+
+    private static class PendingValue {
+        private final String channelId;
+        private final String valueType;
+        private final Double valueDouble;
+        private final String valueString;
+        private final Boolean valueBoolean;
+        private final long updatedAt = System.currentTimeMillis();
+
+        PendingValue(String channelId, String valueType, Double valueDouble, String valueString,
+                Boolean valueBoolean) {
+            this.channelId = channelId;
+            this.valueType = valueType;
+            this.valueDouble = valueDouble;
+            this.valueString = valueString;
+            this.valueBoolean = valueBoolean;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.openmuc.framework.lib.rest1.sql;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,16 +14,12 @@ import org.openmuc.framework.lib.rest1.common.enums.Status;
 import org.openmuc.framework.lib.rest1.domain.model.SoHSchedule;
 
 public class SoHScheduleRepoImpl {
-    private final static String url = "jdbc:postgresql://localhost:5432/openmuc";
-    private final static String user = "openmuc_user";
-    private final static String password = "openmuc";
-
     private static final String BASE_SELECT = "SELECT id, str_id, used_q, soh, soc_before, soc_after, current, state, status, start_datetime, update_datetime, end_datetime "
             +
             "FROM soh_schedule ";
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(url, user, password);
+        return ConnectionPool.getDefault().getConnection();
     }
 
     public void save(SoHSchedule s) {
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.lib.rest1.downsampling;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.RecordColumns;
+
+public class DownsamplerTest {
+
+    private static RecordColumns history() {
+        // two buckets of 10 ms: 0..9 and 10..19
+        RecordColumns columns = new RecordColumns();
+        columns.add(100, 4, Flag.VALID);
+        columns.add(102, 1, Flag.VALID);
+        columns.add(105, Double.NaN, Flag.DRIVER_ERROR_TIMEOUT);
+        columns.add(107, 7, Flag.VALID);
+        columns.add(111, 9, Flag.VALID);
+        columns.add(115, 3, Flag.VALID);
+        return columns;
+    }
+
+    @Test
+    public void testBucketAggregations() {
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.AVG, 100, 10), new long[] { 100, 110 },
+                new double[] { 4, 6 });
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.MIN, 100, 10), new long[] { 100, 110 },
+                new double[] { 1, 3 });
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.MAX, 100, 10), new long[] { 100, 110 },
+                new double[] { 7, 9 });
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.FIRST, 100, 10), new long[] { 100, 111 },
+                new double[] { 4, 9 });
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.LAST, 100, 10), new long[] { 107, 115 },
+                new double[] { 7, 3 });
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.MIN_MAX, 100, 10),
+                new long[] { 102, 107, 111, 115 }, new double[] { 1, 7, 9, 3 });
+    }
+
+    @Test
+    public void testLttbIsBoundedAndKeepsEndsAndPeaks() {
+        RecordColumns columns = new RecordColumns();
+        for (int i = 0; i < 10000; i++) {
+            columns.add(i, i == 5000 ? 100 : Math.sin(i / 100.0), Flag.VALID);
+        }
+
+        long interval = Downsampler.getInterval(DownsamplingMethod.LTTB, 0, 9999, 100);
+        RecordColumns result = Downsampler.downsample(columns, DownsamplingMethod.LTTB, 0, interval);
+
+        assertTrue(result.size() <= 100);
+        assertTrue(result.size() >= 90);
+        assertEquals(0, result.getTimestamp(0));
+        assertEquals(9999, result.getTimestamp(result.size() - 1));
+        boolean peakFound = false;
+        for (int i = 0; i < result.size(); i++) {
+            if (i > 0) {
+                assertTrue(result.getTimestamp(i) > result.getTimestamp(i - 1));
+            }
+            peakFound |= result.getValue(i) == 100;
+        }
+        assertTrue(peakFound);
+    }
+
+    @Test
+    public void testLttbWithFewPoints() {
+        // the dip at 102 spans a larger triangle towards the next bucket than the value at 107
+        assertResult(Downsampler.downsample(history(), DownsamplingMethod.LTTB, 100, 10),
+                new long[] { 100, 102, 111, 115 }, new double[] { 4, 1, 9, 3 });
+    }
+
+    @Test
+    public void testIntervalLimitsPoints() {
+        assertEquals(10, Downsampler.getInterval(DownsamplingMethod.AVG, 0, 999, 100));
+        assertEquals(20, Downsampler.getInterval(DownsamplingMethod.MIN_MAX, 0, 999, 100));
+        assertEquals(1, Downsampler.getInterval(DownsamplingMethod.AVG, 0, 9, 100));
+        assertEquals(DownsamplingMethod.MIN_MAX, DownsamplingMethod.fromParameter("minmax"));
+        assertEquals(DownsamplingMethod.LTTB, DownsamplingMethod.fromParameter("lttb"));
+    }
+
+    @Test
+    public void testTooFewPointsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Downsampler.getInterval(DownsamplingMethod.LTTB, 0, 999, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> Downsampler.getInterval(DownsamplingMethod.MIN_MAX, 0, 999, 1));
+        assertThrows(IllegalArgumentException.class, () -> Downsampler.getInterval(DownsamplingMethod.AVG, 0, 999, 0));
+        assertEquals(1000, Downsampler.getInterval(DownsamplingMethod.LTTB, 0, 999, 3));
+        assertEquals(1000, Downsampler.getInterval(DownsamplingMethod.AVG, 0, 999, 1));
+    }
+
+    @Test
+    public void testReadIntervalCoversWholeBuckets() {
+        long hour = 3600000;
+        assertEquals(hour, Downsampler.getReadInterval(0, 1000, 1000));
+        // six buckets of 700 s cover one hour
+        assertEquals(4200000, Downsampler.getReadInterval(0, 1000, 700000));
+        assertEquals(0, Downsampler.getReadInterval(0, 10000 * hour, 1000) % 1000);
+        assertEquals(10 * hour, Downsampler.getReadInterval(0, 10000 * hour - 1, 1000));
+    }
+
+    @Test
+    public void testHistoryAddedInPartsEqualsWholeHistory() {
+        RecordColumns columns = new RecordColumns();
+        for (int i = 0; i < 10000; i++) {
+            columns.add(i * 10L, Math.sin(i / 50.0) + (i % 7) * 0.1, Flag.VALID);
+        }
+
+        for (DownsamplingMethod method : DownsamplingMethod.values()) {
+            RecordColumns whole = Downsampler.downsample(columns, method, 0, 1000);
+
+            Downsampler downsampler = new Downsampler(method, 0, 1000);
+            for (int part = 0; part < 10; part++) {
+                RecordColumns partColumns = new RecordColumns();
+                for (int i = part * 1000; i < (part + 1) * 1000; i++) {
+                    partColumns.add(columns.getTimestamp(i), columns.getValue(i), columns.getFlag(i));
+                }
+                downsampler.add(partColumns);
+            }
+            RecordColumns parts = downsampler.finish();
+
+            assertArrayEquals(whole.getTimestamps(), parts.getTimestamps());
+            assertArrayEquals(whole.getValues(), parts.getValues());
+        }
+    }
+
+    @Test
+    public void testHistoryReadThroughRoundingLoggerIsAddedOnce() throws Exception {
+        long loggingInterval = 60_000;
+        long startTime = 40_000;
+        long endTime = startTime + 3 * 24 * 60 * 60 * 1000L - 1;
+
+        // like SlotsDB, the logger rounds both ends of a range to the nearest logged timestamp, so neighboring parts
+        // return the value at their border twice
+        Downsampler.HistoryReader roundingLogger = (start, end) -> history(
+                Math.round(start / (double) loggingInterval) * loggingInterval,
+                Math.round(end / (double) loggingInterval) * loggingInterval, loggingInterval);
+
+        for (DownsamplingMethod method : DownsamplingMethod.values()) {
+            RecordColumns whole = Downsampler.downsample(roundingLogger.read(startTime, endTime), method, startTime,
+                    600_000);
+            RecordColumns parts = Downsampler.downsample(roundingLogger, method, startTime, endTime, 600_000);
+
+            assertArrayEquals(whole.getTimestamps(), parts.getTimestamps());
+            assertArrayEquals(whole.getValues(), parts.getValues());
+        }
+    }
+
+    private static RecordColumns history(long startTime, long endTime, long loggingInterval) {
+        RecordColumns columns = new RecordColumns();
+        for (long timestamp = startTime; timestamp <= endTime; timestamp += loggingInterval) {
+            columns.add(timestamp, timestamp / loggingInterval % 7, Flag.VALID);
+        }
+        return columns;
+    }
+
+    private static void assertResult(RecordColumns result, long[] timestamps, double[] values) {
+        assertArrayEquals(timestamps, result.getTimestamps());
+        assertArrayEquals(values, result.getValues());
+    }
+
+}
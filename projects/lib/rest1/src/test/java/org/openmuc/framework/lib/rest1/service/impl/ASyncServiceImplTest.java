@@ -2,10 +2,12 @@ package org.openmuc.framework.lib.rest1.service.impl;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.lib.rest1.service.ASyncService;
 import org.openmuc.framework.lib.rest1.service.impl.ASyncServiceImpl;
 
+@Tag("database")
 public class ASyncServiceImplTest {
     // Test cases would go here
 
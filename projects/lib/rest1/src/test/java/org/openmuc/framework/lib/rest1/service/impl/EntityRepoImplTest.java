@@ -3,9 +3,11 @@ package org.openmuc.framework.lib.rest1.service.impl;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.openmuc.framework.lib.rest1.sql.EntityRepoImpl;
 
+@Tag("database")
 public class EntityRepoImplTest {
 
     private EntityRepoImpl entityRepoImpl;
@@ -5,12 +5,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
 import org.openmuc.framework.lib.rest1.domain.dto.Account;
 import org.openmuc.framework.lib.rest1.domain.dto.StringDetailDTO;
 import org.openmuc.framework.lib.rest1.service.impl.LatestValueServiceImpl;
 
+@Tag("database")
 public class LatestValueServiceImplTest {
 
     private LatestValueServiceImpl service;
@@ -46,7 +48,6 @@ public class LatestValueServiceImplTest {
         assertEquals("PX100", result.getCellModel());
         assertEquals(50.0, result.getCellQty());
         assertEquals(100.0, result.getCNominal());
-        assertEquals(2.0, result.getVNominal());
     }
 
     @Test
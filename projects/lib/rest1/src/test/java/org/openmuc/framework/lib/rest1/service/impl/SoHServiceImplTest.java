@@ -3,6 +3,7 @@ package org.openmuc.framework.lib.rest1.service.impl;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import java.time.LocalTime;;
 import java.time.LocalDateTime;
@@ -20,6 +21,7 @@ import static org.openmuc.framework.lib.rest1.common.enums.DischargeState.STOPPE
 import org.openmuc.framework.lib.rest1.domain.model.SoHSchedule;
 import java.util.Arrays;    
 
+@Tag("database")
 public class SoHServiceImplTest {
 
     private SoHService service;
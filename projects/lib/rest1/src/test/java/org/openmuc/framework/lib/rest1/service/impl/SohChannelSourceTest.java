@@ -0,0 +1,50 @@
+package org.openmuc.framework.lib.rest1.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class SohChannelSourceTest {
+
+    private SohChannelSource source;
+
+    @BeforeEach
+    public void setUp() {
+        source = new SohChannelSource("str1", null, null, null);
+        // 25 °C, temperature factor 1.0
+        source.newTemperatureRecord(new Record(new DoubleValue(250), 0L));
+    }
+
+    @Test
+    public void testChargeIsIntegratedOverRecordTimestamps() {
+        source.newCurrentRecord(new Record(new DoubleValue(100), 1000L));
+        source.newCurrentRecord(new Record(new DoubleValue(200), 3000L));
+        source.newCurrentRecord(new Record(new DoubleValue(200), 3500L));
+
+        // 10 A for 2 s and 20 A for 0.5 s
+        assertEquals(30.0, source.takeUsedCharge(), 1e-9);
+        assertEquals(0.0, source.takeUsedCharge(), 1e-9);
+    }
+
+    @Test
+    public void testInvalidAndOutdatedRecordsAreIgnored() {
+        source.newCurrentRecord(new Record(new DoubleValue(100), 1000L));
+        source.newCurrentRecord(new Record(Flag.DRIVER_ERROR_TIMEOUT));
+        source.newCurrentRecord(new Record(new DoubleValue(500), 500L));
+        source.newCurrentRecord(new Record(new DoubleValue(100), 2000L));
+
+        assertEquals(10.0, source.takeUsedCharge(), 1e-9);
+    }
+
+    @Test
+    public void testSocIsTakenFromLatestRecord() {
+        assertNull(source.getSoc());
+        source.newSocRecord(new Record(new DoubleValue(87.5), 1000L));
+        assertEquals(87.5, source.getSoc().doubleValue(), 1e-9);
+        assertEquals(1000L, source.getLastUpdate());
+    }
+}
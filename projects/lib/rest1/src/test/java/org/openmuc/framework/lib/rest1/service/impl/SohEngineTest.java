@@ -0,0 +1,138 @@
+package org.openmuc.framework.lib.rest1.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.lib.rest1.common.enums.DischargeState;
+import org.openmuc.framework.lib.rest1.domain.model.SoHSchedule;
+import org.openmuc.framework.lib.rest1.sql.SoHScheduleRepoImpl;
+
+public class SohEngineTest {
+
+    private static final long NO_TICKS = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicInteger saves = new AtomicInteger();
+    private volatile boolean databaseDown;
+    private SoHScheduleRepoImpl repo;
+    private SohEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        databaseDown = false;
+        repo = new SoHScheduleRepoImpl() {
+            @Override
+            public void save(SoHSchedule s) {
+                if (databaseDown) {
+                    throw new RuntimeException("database down");
+                }
+                saves.incrementAndGet();
+            }
+        };
+        engine = new SohEngine(repo, NO_TICKS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testFailedSaveDoesNotEscapeTick() {
+        databaseDown = true;
+        // no SoC record, the schedule fails on the first tick
+        CompletableFuture<String> result = engine.run(newSchedule(1L), new SohChannelSource("str1", null, null, null),
+                100);
+
+        engine.tick();
+
+        assertTrue(result.isDone());
+        assertFalse(engine.isRunning(1L));
+    }
+
+    @Test
+    public void testFailedCheckpointKeepsScheduleRunning() {
+        SoHSchedule schedule = newSchedule(1L);
+        engine.run(schedule, newSource(), 100);
+
+        databaseDown = true;
+        engine.tick(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        assertTrue(engine.isRunning(1L));
+        assertEquals(DischargeState.RUNNING, schedule.getState());
+        assertEquals(0, saves.get());
+
+        // the checkpoint is retried on the next tick
+        databaseDown = false;
+        engine.tick(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        assertEquals(1, saves.get());
+    }
+
+    @Test
+    public void testStartingTwiceReturnsRunningSchedule() {
+        SoHSchedule schedule = newSchedule(1L);
+        CompletableFuture<String> first = engine.run(schedule, newSource(), 100);
+        CompletableFuture<String> second = engine.run(newSchedule(1L), newSource(), 100);
+
+        assertSame(first, second);
+
+        engine.stop(1L);
+        engine.tick();
+        assertTrue(first.isDone());
+        assertEquals(DischargeState.SUCCESS, schedule.getState());
+        assertFalse(engine.isRunning(1L));
+        assertEquals(1, saves.get());
+    }
+
+    @Test
+    public void testTickingSurvivesFailedSchedule() throws Exception {
+        engine = new SohEngine(repo, 10);
+        databaseDown = true;
+        CompletableFuture<String> healthy = engine.run(newSchedule(1L), newSource(), 100);
+        CompletableFuture<String> failing = engine.run(newSchedule(2L), new SohChannelSource("str2", null, null, null),
+                100);
+
+        assertEquals("Task completed", failing.get(5, TimeUnit.SECONDS));
+
+        engine.stop(1L);
+        assertEquals("Task completed", healthy.get(5, TimeUnit.SECONDS));
+        assertFalse(engine.isRunning(1L));
+    }
+
+    @Test
+    public void testShutdownCancelsAndEngineRestarts() throws Exception {
+        engine = new SohEngine(repo, 10);
+        CompletableFuture<String> result = engine.run(newSchedule(1L), newSource(), 100);
+
+        engine.shutdown();
+        assertTrue(result.isCancelled());
+        assertFalse(engine.isRunning(1L));
+        // saved as RUNNING so it can be resumed
+        assertEquals(1, saves.get());
+
+        CompletableFuture<String> restarted = engine.run(newSchedule(1L), newSource(), 100);
+        engine.stop(1L);
+        assertEquals("Task completed", restarted.get(5, TimeUnit.SECONDS));
+    }
+
+    private static SoHSchedule newSchedule(Long id) {
+        SoHSchedule schedule = new SoHSchedule();
+        schedule.setId(id);
+        schedule.setState(DischargeState.RUNNING);
+        schedule.setUsedQ(0d);
+        schedule.setSocBefore(90d);
+        return schedule;
+    }
+
+    private static SohChannelSource newSource() {
+        SohChannelSource source = new SohChannelSource("str1", null, null, null);
+        source.newSocRecord(new Record(new DoubleValue(80), 1000L));
+        return source;
+    }
+}
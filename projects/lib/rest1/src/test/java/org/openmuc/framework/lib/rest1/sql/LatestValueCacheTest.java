@@ -0,0 +1,128 @@
+package org.openmuc.framework.lib.rest1.sql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.lib.rest1.domain.model.LatestValue;
+
+public class LatestValueCacheTest {
+
+    private List<LatestValue> database;
+    private AtomicInteger queries;
+    private AtomicInteger channelQueries;
+    private boolean databaseDown;
+    private LatestValueCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        database = new ArrayList<>();
+        database.add(value("str1_cell_qty", 24.0));
+        database.add(value("str1_Cnominal", 100.0));
+        database.add(value("str2_cell_qty", 12.0));
+        queries = new AtomicInteger();
+        channelQueries = new AtomicInteger();
+        cache = new LatestValueCache(prefix -> {
+            queries.incrementAndGet();
+            if (databaseDown) {
+                throw new SQLException("connection refused", "08001");
+            }
+            List<LatestValue> result = new ArrayList<>();
+            for (LatestValue value : database) {
+                if (value.getChannelId().startsWith(prefix)) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }, channelId -> {
+            channelQueries.incrementAndGet();
+            if (databaseDown) {
+                throw new SQLException("connection refused", "08001");
+            }
+            return null;
+        }, 3);
+    }
+
+    @Test
+    public void testPrefixIsLoadedOnlyOnce() throws SQLException {
+        assertEquals(2, cache.findByPrefix("str1").size());
+        assertEquals(2, cache.findByPrefix("str1").size());
+        assertEquals(1, cache.findByPrefix("str1_cell").size());
+
+        assertEquals(1, queries.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testWrittenValueIsNewerThanDatabase() throws SQLException {
+        cache.update("str1_cell_qty", "D", 16.0, null, null);
+
+        List<LatestValue> values = cache.findByPrefix("str1");
+
+        assertEquals(2, values.size());
+        assertEquals("str1_cell_qty", values.get(1).getChannelId());
+        assertEquals(16.0, values.get(1).getValueDouble().doubleValue());
+        assertEquals(16.0, cache.find("str1_cell_qty").getValueDouble().doubleValue());
+    }
+
+    @Test
+    public void testUnknownChannelIsQueriedOnce() throws SQLException {
+        assertNull(cache.find("str9_cell_qty"));
+        assertNull(cache.find("str9_cell_qty"));
+        assertEquals(1, channelQueries.get());
+
+        cache.update("str9_cell_qty", "D", 4.0, null, null);
+        assertEquals(4.0, cache.find("str9_cell_qty").getValueDouble().doubleValue());
+        assertEquals(1, channelQueries.get());
+    }
+
+    @Test
+    public void testFailedQueryIsNotCached() throws SQLException {
+        databaseDown = true;
+        assertThrows(SQLException.class, () -> cache.findByPrefix("str1"));
+        assertThrows(SQLException.class, () -> cache.find("str9_cell_qty"));
+
+        databaseDown = false;
+        assertEquals(2, cache.findByPrefix("str1").size());
+        assertNull(cache.find("str9_cell_qty"));
+        assertEquals(2, queries.get());
+        assertEquals(2, channelQueries.get());
+    }
+
+    @Test
+    public void testInvalidateForcesReload() throws SQLException {
+        cache.findByPrefix("str1");
+        cache.invalidate("str1");
+        database.remove(0);
+
+        assertEquals(1, cache.findByPrefix("str1").size());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedPrefix() throws SQLException {
+        cache.findByPrefix("str1");
+        cache.findByPrefix("str2");
+        cache.update("str3_cell_qty", "D", 8.0, null, null);
+
+        assertEquals(1, cache.getEvictions());
+        cache.findByPrefix("str2");
+        assertEquals(2, queries.get());
+        cache.findByPrefix("str1");
+        assertEquals(3, queries.get());
+    }
+
+    private static LatestValue value(String channelId, double value) {
+        LatestValue latestValue = new LatestValue();
+        latestValue.setChannelId(channelId);
+        latestValue.setValueType("D");
+        latestValue.setValueDouble(value);
+        return latestValue;
+    }
+}
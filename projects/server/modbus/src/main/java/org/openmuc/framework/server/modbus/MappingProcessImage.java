@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openmuc.framework.server.modbus.register.RegisterTable;
+
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleProcessImage;
+
+/**
+ * Process image which serves input and holding registers from {@link RegisterTable}s. A request reads all its
+ * registers with one consistent copy of the table instead of reading the latest record of a channel for every
+ * register.
+ * 
+ * Writes to a holding register which is mapped to a channel are passed to its {@link Register} to write the channel.
+ * Writes to other holding registers are stored in the table.
+ */
+class MappingProcessImage extends SimpleProcessImage {
+
+    private final RegisterTable inputRegisterTable = new RegisterTable();
+    private final RegisterTable holdingRegisterTable = new RegisterTable();
+    private final Map<Integer, Register> mappedHoldingRegisters = new ConcurrentHashMap<>();
+
+    RegisterTable getInputRegisterTable() {
+        return inputRegisterTable;
+    }
+
+    RegisterTable getHoldingRegisterTable() {
+        return holdingRegisterTable;
+    }
+
+    void setMappedHoldingRegister(int address, Register register) {
+        mappedHoldingRegisters.put(address, register);
+    }
+
+    /**
+     * Removes all registers and mappings.
+     */
+    void clear() {
+        mappedHoldingRegisters.clear();
+        inputRegisterTable.clear();
+        holdingRegisterTable.clear();
+    }
+
+    @Override
+    public int getInputRegisterCount() {
+        return inputRegisterTable.getSize();
+    }
+
+    @Override
+    public InputRegister getInputRegister(int ref) throws IllegalAddressException {
+        return getInputRegisterRange(ref, 1)[0];
+    }
+
+    @Override
+    public InputRegister[] getInputRegisterRange(int offset, int count) throws IllegalAddressException {
+        short[] values = new short[count];
+        inputRegisterTable.read(offset, values);
+
+        InputRegister[] registers = new InputRegister[count];
+        for (int i = 0; i < count; i++) {
+            registers[i] = new ImageRegister(values[i], inputRegisterTable, offset + i, null);
+        }
+        return registers;
+    }
+
+    @Override
+    public int getRegisterCount() {
+        return holdingRegisterTable.getSize();
+    }
+
+    @Override
+    public Register getRegister(int ref) throws IllegalAddressException {
+        return getRegisterRange(ref, 1)[0];
+    }
+
+    @Override
+    public Register[] getRegisterRange(int offset, int count) throws IllegalAddressException {
+        short[] values = new short[count];
+        holdingRegisterTable.read(offset, values);
+
+        Register[] registers = new Register[count];
+        for (int i = 0; i < count; i++) {
+            registers[i] = new ImageRegister(values[i], holdingRegisterTable, offset + i,
+                    mappedHoldingRegisters.get(offset + i));
+        }
+        return registers;
+    }
+
+    /**
+     * Register holding the value copied from the table when the request was received.
+     */
+    private static class ImageRegister implements Register {
+
+        private final short value;
+        private final RegisterTable table;
+        private final int address;
+        private final Register mappedRegister;
+
+        ImageRegister(short value, RegisterTable table, int address, Register mappedRegister) {
+            this.value = value;
+            this.table = table;
+            this.address = address;
+            this.mappedRegister = mappedRegister;
+        }
+
+        @Override
+        public int getValue() {
+            return value & 0xFFFF;
+        }
+
+        @Override
+        public int toUnsignedShort() {
+            return value & 0xFFFF;
+        }
+
+        @Override
+        public short toShort() {
+            return value;
+        }
+
+        @Override
+        public byte[] toBytes() {
+            return new byte[] { (byte) (value >> 8), (byte) value };
+        }
+
+        @Override
+        public void setValue(int v) {
+            if (mappedRegister != null) {
+                mappedRegister.setValue(v);
+            }
+            else {
+                table.write(address, (short) v);
+            }
+        }
+
+        @Override
+        public void setValue(short s) {
+            if (mappedRegister != null) {
+                mappedRegister.setValue(s);
+            }
+            else {
+                table.write(address, s);
+            }
+        }
+
+        @Override
+        public void setValue(byte[] bytes) {
+            if (mappedRegister != null) {
+                mappedRegister.setValue(bytes);
+            }
+            else {
+                table.write(address, (short) (((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF)));
+            }
+        }
+
+    }
+
+}
@@ -23,6 +23,7 @@ package org.openmuc.framework.server.modbus;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.List;
 
@@ -31,13 +32,9 @@ import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.lib.osgi.config.DictionaryPreprocessor;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
 import org.openmuc.framework.lib.osgi.config.ServicePropertyException;
-import org.openmuc.framework.server.modbus.register.BooleanMappingInputRegister;
-import org.openmuc.framework.server.modbus.register.DoubleMappingInputRegister;
-import org.openmuc.framework.server.modbus.register.FloatMappingInputRegister;
-import org.openmuc.framework.server.modbus.register.IntegerMappingInputRegister;
 import org.openmuc.framework.server.modbus.register.LinkedMappingHoldingRegister;
-import org.openmuc.framework.server.modbus.register.LongMappingInputRegister;
-import org.openmuc.framework.server.modbus.register.ShortMappingInputRegister;
+import org.openmuc.framework.server.modbus.register.MappedChannel;
+import org.openmuc.framework.server.modbus.register.RegisterTable;
 import org.openmuc.framework.server.spi.ServerMappingContainer;
 import org.openmuc.framework.server.spi.ServerService;
 import org.osgi.service.cm.ConfigurationException;
@@ -46,17 +43,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ghgande.j2mod.modbus.ModbusException;
-import com.ghgande.j2mod.modbus.procimg.Register;
-import com.ghgande.j2mod.modbus.procimg.SimpleInputRegister;
 import com.ghgande.j2mod.modbus.procimg.SimpleProcessImage;
-import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
 import com.ghgande.j2mod.modbus.slave.ModbusSlave;
 import com.ghgande.j2mod.modbus.slave.ModbusSlaveFactory;
 import com.ghgande.j2mod.modbus.util.SerialParameters;
 
 public class ModbusServer implements ServerService, ManagedService {
     private static Logger logger = LoggerFactory.getLogger(ModbusServer.class);
-    private final SimpleProcessImage spi = new SimpleProcessImage();
+    private final MappingProcessImage spi = new MappingProcessImage();
+    private final List<MappedChannel> mappedChannels = new ArrayList<>();
     private ModbusSlave slave;
     private final PropertyHandler property;
 
@@ -113,7 +108,15 @@ public class ModbusServer implements ServerService, ManagedService {
         }
     }
 
+    /**
+     * Stops the server and the updates of the registers by the mapped channels.
+     */
     void shutdown() {
+        stopServer();
+        unbindMappings();
+    }
+
+    private void stopServer() {
         if (slave != null) {
             slave.close();
         }
@@ -141,11 +144,13 @@ public class ModbusServer implements ServerService, ManagedService {
         bindMappings(mappings);
     }
 
-    private void bindMappings(List<ServerMappingContainer> mappings) {
+    private synchronized void bindMappings(List<ServerMappingContainer> mappings) {
         if (logger.isDebugEnabled()) {
             logger.debug("Bind mappings of {} channel.", mappings.size());
         }
 
+        unbindMappings();
+
         for (final ServerMappingContainer container : mappings) {
 
             String serverAddress = container.getServerMapping().getServerAddress();
@@ -178,6 +183,14 @@ public class ModbusServer implements ServerService, ManagedService {
         }
     }
 
+    private synchronized void unbindMappings() {
+        for (MappedChannel mappedChannel : mappedChannels) {
+            mappedChannel.unbind();
+        }
+        mappedChannels.clear();
+        spi.clear();
+    }
+
     private void logMapping(EPrimaryTable primaryTable, int modbusAddress, ValueType valueType, Channel channel) {
         if (logger.isDebugEnabled()) {
             logger.debug("ChannelId: {}, Register: {}, Address: {}, ValueType: {}, Channel valueType: {}",
@@ -185,114 +198,41 @@ public class ModbusServer implements ServerService, ManagedService {
         }
     }
 
-    private void addHoldingRegisters(SimpleProcessImage spi, int modbusAddress, ValueType valueType, Channel channel) {
-        while (spi.getRegisterCount() <= modbusAddress + 4) {
-            spi.addRegister(new SimpleRegister());
-        }
+    private void addHoldingRegisters(MappingProcessImage spi, int modbusAddress, ValueType valueType,
+            Channel channel) {
+        RegisterTable table = spi.getHoldingRegisterTable();
+        table.ensureSize(modbusAddress + 5);
 
-        switch (valueType) {
-        case DOUBLE:
-            Register eightByteDoubleRegister3 = new LinkedMappingHoldingRegister(
-                    new DoubleMappingInputRegister(channel, 6, 7), channel, null, valueType, 6, 7);
-            Register eightByteDoubleRegister2 = new LinkedMappingHoldingRegister(
-                    new DoubleMappingInputRegister(channel, 4, 5), channel,
-                    (LinkedMappingHoldingRegister) eightByteDoubleRegister3, valueType, 4, 5);
-            Register eightByteDoubleRegister1 = new LinkedMappingHoldingRegister(
-                    new DoubleMappingInputRegister(channel, 2, 3), channel,
-                    (LinkedMappingHoldingRegister) eightByteDoubleRegister2, valueType, 2, 3);
-            Register eightByteDoubleRegister0 = new LinkedMappingHoldingRegister(
-                    new DoubleMappingInputRegister(channel, 0, 1), channel,
-                    (LinkedMappingHoldingRegister) eightByteDoubleRegister1, valueType, 0, 1);
-            spi.setRegister(modbusAddress, eightByteDoubleRegister0);
-            spi.setRegister(modbusAddress + 1, eightByteDoubleRegister1);
-            spi.setRegister(modbusAddress + 2, eightByteDoubleRegister2);
-            spi.setRegister(modbusAddress + 3, eightByteDoubleRegister3);
-            break;
-        case LONG:
-            Register eightByteLongRegister3 = new LinkedMappingHoldingRegister(
-                    new LongMappingInputRegister(channel, 6, 7), channel, null, valueType, 6, 7);
-            Register eightByteLongRegister2 = new LinkedMappingHoldingRegister(
-                    new LongMappingInputRegister(channel, 4, 5), channel,
-                    (LinkedMappingHoldingRegister) eightByteLongRegister3, valueType, 4, 5);
-            Register eightByteLongRegister1 = new LinkedMappingHoldingRegister(
-                    new LongMappingInputRegister(channel, 2, 3), channel,
-                    (LinkedMappingHoldingRegister) eightByteLongRegister2, valueType, 2, 3);
-            Register eightByteLongRegister0 = new LinkedMappingHoldingRegister(
-                    new LongMappingInputRegister(channel, 0, 1), channel,
-                    (LinkedMappingHoldingRegister) eightByteLongRegister1, valueType, 0, 1);
-            spi.setRegister(modbusAddress, eightByteLongRegister0);
-            spi.setRegister(modbusAddress + 1, eightByteLongRegister1);
-            spi.setRegister(modbusAddress + 2, eightByteLongRegister2);
-            spi.setRegister(modbusAddress + 3, eightByteLongRegister3);
-            break;
-        case INTEGER:
-            Register fourByteIntRegister1 = new LinkedMappingHoldingRegister(
-                    new IntegerMappingInputRegister(channel, 2, 3), channel, null, valueType, 2, 3);
-            Register fourByteIntRegister0 = new LinkedMappingHoldingRegister(
-                    new IntegerMappingInputRegister(channel, 0, 1), channel,
-                    (LinkedMappingHoldingRegister) fourByteIntRegister1, valueType, 0, 1);
-            spi.setRegister(modbusAddress, fourByteIntRegister0);
-            spi.setRegister(modbusAddress + 1, fourByteIntRegister1);
-            break;
-        case FLOAT:
-            Register fourByteFloatRegister1 = new LinkedMappingHoldingRegister(
-                    new FloatMappingInputRegister(channel, 2, 3), channel, null, valueType, 2, 3);
-            Register fourByteFloatRegister0 = new LinkedMappingHoldingRegister(
-                    new FloatMappingInputRegister(channel, 0, 1), channel,
-                    (LinkedMappingHoldingRegister) fourByteFloatRegister1, valueType, 0, 1);
-            spi.setRegister(modbusAddress, fourByteFloatRegister0);
-            spi.setRegister(modbusAddress + 1, fourByteFloatRegister1);
-            break;
-        case SHORT:
-            Register twoByteShortRegister = new LinkedMappingHoldingRegister(
-                    new ShortMappingInputRegister(channel, 0, 1), channel, null, valueType, 0, 1);
-            spi.setRegister(modbusAddress, twoByteShortRegister);
-            break;
-        case BOOLEAN:
-            Register twoByteBooleanRegister = new LinkedMappingHoldingRegister(
-                    new BooleanMappingInputRegister(channel, 0, 1), channel, null, valueType, 0, 1);
-            spi.setRegister(modbusAddress, twoByteBooleanRegister);
-            break;
-        default:
+        int registerCount = MappedChannel.getRegisterCount(valueType);
+        if (registerCount == 0) {
             // TODO
+            return;
         }
-    }
 
-    private void addInputRegisters(SimpleProcessImage spi, int modbusAddress, ValueType valueType, Channel channel) {
-        while (spi.getInputRegisterCount() <= modbusAddress + 4) {
-            spi.addInputRegister(new SimpleInputRegister());
+        // the registers of a value are linked to write the channel once all of them were written
+        LinkedMappingHoldingRegister nextRegister = null;
+        for (int i = registerCount - 1; i >= 0; i--) {
+            nextRegister = new LinkedMappingHoldingRegister(table, modbusAddress + i, channel, nextRegister,
+                    valueType);
+            spi.setMappedHoldingRegister(modbusAddress + i, nextRegister);
         }
+        bindChannel(new MappedChannel(channel, valueType, table, modbusAddress));
+    }
 
-        switch (valueType) {
-        case DOUBLE:
-            for (int i = 0; i < 4; i++) {
-                spi.setInputRegister(modbusAddress + i, new DoubleMappingInputRegister(channel, 2 * i, 2 * i + 1));
-            }
-            break;
-        case LONG:
-            for (int i = 0; i < 4; i++) {
-                spi.setInputRegister(modbusAddress + i, new LongMappingInputRegister(channel, 2 * i, 2 * i + 1));
-            }
-            break;
-        case INTEGER:
-            for (int i = 0; i < 2; i++) {
-                spi.setInputRegister(modbusAddress + i, new IntegerMappingInputRegister(channel, 2 * i, 2 * i + 1));
-            }
-            break;
-        case FLOAT:
-            for (int i = 0; i < 2; i++) {
-                spi.setInputRegister(modbusAddress + i, new FloatMappingInputRegister(channel, 2 * i, 2 * i + 1));
-            }
-            break;
-        case SHORT:
-            spi.setInputRegister(modbusAddress, new ShortMappingInputRegister(channel, 0, 1));
-            break;
-        case BOOLEAN:
-            spi.setInputRegister(modbusAddress, new BooleanMappingInputRegister(channel, 0, 1));
-            break;
-        default:
+    private void addInputRegisters(MappingProcessImage spi, int modbusAddress, ValueType valueType, Channel channel) {
+        RegisterTable table = spi.getInputRegisterTable();
+        table.ensureSize(modbusAddress + 5);
+
+        if (MappedChannel.getRegisterCount(valueType) == 0) {
             // TODO
+            return;
         }
+        bindChannel(new MappedChannel(channel, valueType, table, modbusAddress));
+    }
+
+    private void bindChannel(MappedChannel mappedChannel) {
+        mappedChannels.add(mappedChannel);
+        mappedChannel.bind();
     }
 
     public enum EPrimaryTable {
@@ -343,12 +283,13 @@ public class ModbusServer implements ServerService, ManagedService {
         try {
             property.processConfig(newConfig);
             if (property.configChanged()) {
-                shutdown();
+                // the mappings are kept for the restarted server
+                stopServer();
                 startServer(spi);
             }
         } catch (ServicePropertyException | IOException e) {
             logger.error("Update properties failed", e);
-            shutdown();
+            stopServer();
         }
     }
 
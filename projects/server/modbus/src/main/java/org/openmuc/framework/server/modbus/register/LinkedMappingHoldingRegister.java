@@ -38,7 +38,6 @@ import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.dataaccess.Channel;
 
-import com.ghgande.j2mod.modbus.procimg.InputRegister;
 import com.ghgande.j2mod.modbus.procimg.Register;
 
 /**
@@ -55,23 +54,30 @@ import com.ghgande.j2mod.modbus.procimg.Register;
  * 
  * The behavior of submission is safe against the order the registers are written.
  * 
+ * Reading returns the register of the {@link RegisterTable} which holds the encoded value of the channel.
+ * 
  * @author sfey
  */
-public class LinkedMappingHoldingRegister extends MappingInputRegister implements Register {
+public class LinkedMappingHoldingRegister implements Register {
 
     private final LinkedMappingHoldingRegister nextRegister;
     private byte[] leadingBytes;
     private byte[] thisRegisterContent;
     private boolean hasLeadingRegister;
     private final ValueType valueType;
-    private final InputRegister inputRegister;
-
-    public LinkedMappingHoldingRegister(MappingInputRegister inputRegister, Channel channel,
-            LinkedMappingHoldingRegister nextRegister, ValueType valueType, int byteHigh, int byteLow) {
-        super(channel, byteHigh, byteLow);
+    private final Channel channel;
+    private final RegisterTable table;
+    private final int address;
+    private final boolean useUnscaledValues;
+
+    public LinkedMappingHoldingRegister(RegisterTable table, int address, Channel channel,
+            LinkedMappingHoldingRegister nextRegister, ValueType valueType) {
+        this.table = table;
+        this.address = address;
+        this.channel = channel;
         this.nextRegister = nextRegister;
         this.valueType = valueType;
-        this.inputRegister = inputRegister;
+        this.useUnscaledValues = MappedChannel.useUnscaledValues();
 
         if (nextRegister != null) {
             nextRegister.hasLeadingRegister = true;
@@ -178,9 +184,27 @@ public class LinkedMappingHoldingRegister extends MappingInputRegister implement
         return combined;
     }
 
+    @Override
+    public int getValue() {
+        return toUnsignedShort();
+    }
+
+    @Override
+    public int toUnsignedShort() {
+        return toShort() & 0xFFFF;
+    }
+
+    @Override
+    public short toShort() {
+        short[] value = new short[1];
+        table.read(address, value);
+        return value[0];
+    }
+
     @Override
     public byte[] toBytes() {
-        return inputRegister.toBytes();
+        short value = toShort();
+        return new byte[] { (byte) (value >> 8), (byte) value };
     }
 
     private void writeChannel(Value value) {
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus.register;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the registers a channel is mapped to up to date. Each new record of the channel is encoded once and written to
+ * the {@link RegisterTable}, so that Modbus requests are served without accessing the channel.
+ */
+public class MappedChannel implements RecordListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedChannel.class);
+
+    private final Channel channel;
+    private final ValueType valueType;
+    private final RegisterTable table;
+    private final int address;
+    private final boolean useUnscaledValues;
+
+    public MappedChannel(Channel channel, ValueType valueType, RegisterTable table, int address) {
+        this.channel = channel;
+        this.valueType = valueType;
+        this.table = table;
+        this.address = address;
+        this.useUnscaledValues = useUnscaledValues();
+    }
+
+    /**
+     * @return <code>true</code> if the values are divided by the scaling factor of the channel before they are encoded
+     */
+    public static boolean useUnscaledValues() {
+        try {
+            String scalingProperty = System.getProperty("org.openmuc.framework.server.modbus.useUnscaledValues");
+            return Boolean.parseBoolean(scalingProperty);
+        } catch (Exception e) {
+            /* will stick to default setting. */
+            return false;
+        }
+    }
+
+    /**
+     * @param valueType
+     *            the value type of the mapping
+     * @return the number of registers a value of this type occupies or 0 if the type is not supported
+     */
+    public static int getRegisterCount(ValueType valueType) {
+        switch (valueType) {
+        case DOUBLE:
+        case LONG:
+            return 4;
+        case INTEGER:
+        case FLOAT:
+            return 2;
+        case SHORT:
+        case BOOLEAN:
+            return 1;
+        default:
+            return 0;
+        }
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * Starts updating the registers on new records and writes the latest record of the channel.
+     */
+    public void bind() {
+        channel.addListener(this);
+        newRecord(channel.getLatestRecord());
+    }
+
+    public void unbind() {
+        channel.removeListener(this);
+    }
+
+    /**
+     * Encodes the value of the record into the registers. A record without a value, e.g. because the device is not
+     * connected, leaves the registers unchanged: Modbus has no quality flag, so the master keeps reading the last
+     * value the channel had, or 0 if it never had one.
+     */
+    @Override
+    public void newRecord(Record record) {
+        Value value = record == null ? null : record.getValue();
+        if (value == null) {
+            return;
+        }
+        try {
+            table.write(address, encode(value));
+        } catch (TypeConversionException | ArithmeticException e) {
+            logger.warn("Unable to encode value of channel {} as {}: {}", channel.getId(), valueType, e.getMessage());
+        }
+    }
+
+    short[] encode(Value value) {
+        switch (valueType) {
+        case DOUBLE:
+            double doubleValue = value.asDouble();
+            if (useUnscaledValues) {
+                doubleValue /= channel.getScalingFactor();
+            }
+            return toRegisters(Double.doubleToRawLongBits(doubleValue), 4);
+        case LONG:
+            long longValue = value.asLong();
+            if (useUnscaledValues) {
+                longValue /= (long) channel.getScalingFactor();
+            }
+            return toRegisters(longValue, 4);
+        case INTEGER:
+            int intValue = value.asInt();
+            if (useUnscaledValues) {
+                intValue /= (int) channel.getScalingFactor();
+            }
+            return toRegisters(intValue, 2);
+        case FLOAT:
+            float floatValue = value.asFloat();
+            if (useUnscaledValues) {
+                floatValue /= (float) channel.getScalingFactor();
+            }
+            return toRegisters(Float.floatToRawIntBits(floatValue), 2);
+        case SHORT:
+            short shortValue = value.asShort();
+            if (useUnscaledValues) {
+                shortValue = (short) (shortValue / (short) channel.getScalingFactor());
+            }
+            return new short[] { shortValue };
+        case BOOLEAN:
+            return new short[] { (short) (value.asBoolean() ? 1 : 0) };
+        default:
+            throw new TypeConversionException("value type " + valueType + " is not supported");
+        }
+    }
+
+    /**
+     * Splits the value into big endian registers, the most significant register first.
+     */
+    private static short[] toRegisters(long value, int count) {
+        short[] registers = new short[count];
+        for (int i = count - 1; i >= 0; i--) {
+            registers[i] = (short) value;
+            value >>= 16;
+        }
+        return registers;
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus.register;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+
+/**
+ * The pre-encoded registers of one primary table of the Modbus server.
+ * 
+ * Registers are written when a new record of a mapped channel arrives. Reads copy the requested registers
+ * optimistically without locking and are only repeated under the read lock if a write happened in between. Therefore
+ * a value which spans multiple registers is never returned half old and half new.
+ */
+public class RegisterTable {
+
+    private final StampedLock lock = new StampedLock();
+    private short[] registers = new short[0];
+
+    /**
+     * @return the number of registers of this table
+     */
+    public int getSize() {
+        long stamp = lock.tryOptimisticRead();
+        int size = registers.length;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = registers.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Grows the table to at least the given number of registers. New registers are 0.
+     * 
+     * @param size
+     *            the minimum number of registers
+     */
+    public void ensureSize(int size) {
+        long stamp = lock.writeLock();
+        try {
+            if (registers.length < size) {
+                registers = Arrays.copyOf(registers, size);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all registers.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            registers = new short[0];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes consecutive registers atomically.
+     * 
+     * @param address
+     *            the address of the first register
+     * @param values
+     *            the register values
+     * @throws IllegalAddressException
+     *             if the registers are not part of the table
+     */
+    public void write(int address, short... values) throws IllegalAddressException {
+        long stamp = lock.writeLock();
+        try {
+            checkRange(registers, address, values.length);
+            System.arraycopy(values, 0, registers, address, values.length);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads consecutive registers atomically.
+     * 
+     * @param address
+     *            the address of the first register
+     * @param destination
+     *            array the register values are copied into, its length is the number of registers to read
+     * @throws IllegalAddressException
+     *             if the registers are not part of the table
+     */
+    public void read(int address, short[] destination) throws IllegalAddressException {
+        long stamp = lock.tryOptimisticRead();
+        short[] snapshot = registers;
+        if (isInRange(snapshot, address, destination.length)) {
+            System.arraycopy(snapshot, address, destination, 0, destination.length);
+            if (lock.validate(stamp)) {
+                return;
+            }
+        }
+
+        // a write happened while copying or the table is too small
+        stamp = lock.readLock();
+        try {
+            checkRange(registers, address, destination.length);
+            System.arraycopy(registers, address, destination, 0, destination.length);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static boolean isInRange(short[] registers, int address, int count) {
+        return address >= 0 && count >= 0 && address <= registers.length - count;
+    }
+
+    private static void checkRange(short[] registers, int address, int count) throws IllegalAddressException {
+        if (!isInRange(registers, address, count)) {
+            throw new IllegalAddressException(
+                    "Registers " + address + " to " + (address + count - 1) + " are not part of the process image");
+        }
+    }
+
+}
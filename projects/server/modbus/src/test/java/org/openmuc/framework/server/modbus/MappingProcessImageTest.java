@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+
+public class MappingProcessImageTest {
+
+    @Test
+    public void testInputRegistersAreReadFromTable() {
+        MappingProcessImage image = new MappingProcessImage();
+        image.getInputRegisterTable().ensureSize(4);
+        image.getInputRegisterTable().write(1, (short) 0x0102, (short) -1);
+
+        assertEquals(4, image.getInputRegisterCount());
+        InputRegister[] registers = image.getInputRegisterRange(1, 2);
+        assertEquals(0x0102, registers[0].getValue());
+        assertEquals(-1, registers[1].toShort());
+        assertEquals(0xFFFF, registers[1].toUnsignedShort());
+        assertEquals(2, registers[0].toBytes()[1]);
+        assertEquals(0x0102, image.getInputRegister(1).getValue());
+    }
+
+    @Test
+    public void testRegistersOutsideTheTableAreRejected() {
+        MappingProcessImage image = new MappingProcessImage();
+        image.getInputRegisterTable().ensureSize(2);
+        image.getHoldingRegisterTable().ensureSize(2);
+
+        assertThrows(IllegalAddressException.class, () -> image.getInputRegisterRange(1, 2));
+        assertThrows(IllegalAddressException.class, () -> image.getRegister(2));
+    }
+
+    @Test
+    public void testUnmappedHoldingRegisterIsWrittenToTable() {
+        MappingProcessImage image = new MappingProcessImage();
+        image.getHoldingRegisterTable().ensureSize(2);
+
+        image.getRegister(1).setValue(7);
+        image.getRegisterRange(0, 1)[0].setValue(new byte[] { 1, 2 });
+
+        assertEquals(0x0102, image.getRegister(0).getValue());
+        assertEquals(7, image.getRegister(1).getValue());
+    }
+
+    @Test
+    public void testMappedHoldingRegisterWritesAreDelegated() {
+        MappingProcessImage image = new MappingProcessImage();
+        image.getHoldingRegisterTable().ensureSize(2);
+        SimpleRegister mappedRegister = new SimpleRegister(0);
+        image.setMappedHoldingRegister(1, mappedRegister);
+
+        Register register = image.getRegister(1);
+        register.setValue(5);
+
+        assertEquals(5, mappedRegister.getValue());
+        // the table is updated by the channel's next record, not by the write
+        assertEquals(0, image.getRegister(1).getValue());
+    }
+
+    @Test
+    public void testClearRemovesRegistersAndMappings() {
+        MappingProcessImage image = new MappingProcessImage();
+        image.getHoldingRegisterTable().ensureSize(2);
+        image.getInputRegisterTable().ensureSize(2);
+        SimpleRegister mappedRegister = new SimpleRegister(0);
+        image.setMappedHoldingRegister(1, mappedRegister);
+
+        image.clear();
+        image.getHoldingRegisterTable().ensureSize(2);
+        image.getRegister(1).setValue(5);
+
+        assertEquals(0, image.getInputRegisterCount());
+        assertEquals(0, mappedRegister.getValue());
+        assertEquals(5, image.getRegister(1).getValue());
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus.register;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.ValueType;
+
+public class MappedChannelTest {
+
+    @Test
+    public void testBindWritesLatestRecord() {
+        TestChannel channel = new TestChannel("channel1", ValueType.INTEGER);
+        channel.setLatestRecord(new Record(new IntValue(0x12345678), 1L));
+        RegisterTable table = createTable();
+
+        MappedChannel mappedChannel = new MappedChannel(channel, ValueType.INTEGER, table, 1);
+        mappedChannel.bind();
+
+        assertArrayEquals(new short[] { 0, 0x1234, 0x5678, 0 }, readTable(table, 0, 4));
+        assertEquals(1, channel.getListeners().size());
+    }
+
+    @Test
+    public void testNewRecordsAreEncodedBigEndian() {
+        TestChannel channel = new TestChannel("channel1", ValueType.DOUBLE);
+        RegisterTable table = createTable();
+        new MappedChannel(channel, ValueType.DOUBLE, table, 2).bind();
+
+        channel.setLatestRecord(new Record(new DoubleValue(1.5), 1L));
+
+        long bits = Double.doubleToRawLongBits(1.5);
+        short[] expected = { (short) (bits >> 48), (short) (bits >> 32), (short) (bits >> 16), (short) bits };
+        assertArrayEquals(expected, readTable(table, 2, 4));
+    }
+
+    @Test
+    public void testRecordWithoutValueKeepsLastValue() {
+        TestChannel channel = new TestChannel("channel1", ValueType.SHORT);
+        RegisterTable table = createTable();
+        new MappedChannel(channel, ValueType.SHORT, table, 0).bind();
+
+        // registers are 0 until the first value arrives
+        channel.setLatestRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
+        assertArrayEquals(new short[] { 0 }, readTable(table, 0, 1));
+
+        channel.setLatestRecord(new Record(new ShortValue((short) 42), 1L));
+        channel.setLatestRecord(new Record(Flag.COMM_DEVICE_NOT_CONNECTED));
+        assertArrayEquals(new short[] { 42 }, readTable(table, 0, 1));
+    }
+
+    @Test
+    public void testUnbindStopsUpdates() {
+        TestChannel channel = new TestChannel("channel1", ValueType.SHORT);
+        RegisterTable table = createTable();
+        MappedChannel mappedChannel = new MappedChannel(channel, ValueType.SHORT, table, 0);
+        mappedChannel.bind();
+        channel.setLatestRecord(new Record(new ShortValue((short) 1), 1L));
+
+        mappedChannel.unbind();
+        channel.setLatestRecord(new Record(new ShortValue((short) 2), 2L));
+
+        assertTrue(channel.getListeners().isEmpty());
+        assertArrayEquals(new short[] { 1 }, readTable(table, 0, 1));
+    }
+
+    @Test
+    public void testRegisterCount() {
+        assertEquals(4, MappedChannel.getRegisterCount(ValueType.DOUBLE));
+        assertEquals(4, MappedChannel.getRegisterCount(ValueType.LONG));
+        assertEquals(2, MappedChannel.getRegisterCount(ValueType.FLOAT));
+        assertEquals(2, MappedChannel.getRegisterCount(ValueType.INTEGER));
+        assertEquals(1, MappedChannel.getRegisterCount(ValueType.SHORT));
+        assertEquals(1, MappedChannel.getRegisterCount(ValueType.BOOLEAN));
+        assertEquals(0, MappedChannel.getRegisterCount(ValueType.STRING));
+    }
+
+    private static RegisterTable createTable() {
+        RegisterTable table = new RegisterTable();
+        table.ensureSize(10);
+        return table;
+    }
+
+    private static short[] readTable(RegisterTable table, int address, int count) {
+        short[] registers = new short[count];
+        table.read(address, registers);
+        return registers;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus.register;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+
+public class RegisterTableTest {
+
+    @Test
+    public void testWriteAndRead() {
+        RegisterTable table = new RegisterTable();
+        table.ensureSize(10);
+        table.write(2, (short) 1, (short) -2, (short) 3);
+
+        short[] registers = new short[5];
+        table.read(1, registers);
+        assertArrayEquals(new short[] { 0, 1, -2, 3, 0 }, registers);
+    }
+
+    @Test
+    public void testEnsureSizeKeepsRegisters() {
+        RegisterTable table = new RegisterTable();
+        table.ensureSize(2);
+        table.write(1, (short) 7);
+
+        table.ensureSize(20);
+        table.ensureSize(5);
+
+        assertEquals(20, table.getSize());
+        short[] registers = new short[1];
+        table.read(1, registers);
+        assertEquals(7, registers[0]);
+    }
+
+    @Test
+    public void testRegistersOutsideTheTableAreRejected() {
+        RegisterTable table = new RegisterTable();
+        table.ensureSize(4);
+
+        assertThrows(IllegalAddressException.class, () -> table.read(2, new short[3]));
+        assertThrows(IllegalAddressException.class, () -> table.read(-1, new short[1]));
+        assertThrows(IllegalAddressException.class, () -> table.write(4, (short) 1));
+
+        table.clear();
+        assertEquals(0, table.getSize());
+        assertThrows(IllegalAddressException.class, () -> table.read(0, new short[1]));
+    }
+
+    @Test
+    public void testReadersNeverSeeHalfWrittenValues() throws Exception {
+        RegisterTable table = new RegisterTable();
+        table.ensureSize(8);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<short[]> tornRead = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            short[] registers = new short[4];
+            for (short value = 0; running.get(); value++) {
+                Arrays.fill(registers, value);
+                table.write(2, registers);
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            readers.add(new Thread(() -> {
+                short[] registers = new short[4];
+                while (running.get()) {
+                    table.read(2, registers);
+                    for (short register : registers) {
+                        if (register != registers[0]) {
+                            tornRead.compareAndSet(null, registers.clone());
+                        }
+                    }
+                }
+            }));
+        }
+
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        TimeUnit.MILLISECONDS.sleep(500);
+        running.set(false);
+        writer.join(5000);
+        for (Thread reader : readers) {
+            reader.join(5000);
+        }
+
+        assertNull(tornRead.get(), () -> "torn read " + Arrays.toString(tornRead.get()));
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.modbus.register;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FutureValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.dataaccess.DeviceState;
+import org.openmuc.framework.dataaccess.ReadRecordContainer;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.openmuc.framework.dataaccess.WriteValueContainer;
+
+/**
+ * Channel which only keeps its latest record and listeners.
+ */
+public class TestChannel implements Channel {
+
+    private final String id;
+    private final ValueType valueType;
+    private final List<RecordListener> listeners = new CopyOnWriteArrayList<>();
+    private Record latestRecord;
+
+    public TestChannel(String id, ValueType valueType) {
+        this.id = id;
+        this.valueType = valueType;
+    }
+
+    public List<RecordListener> getListeners() {
+        return listeners;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getChannelAddress() {
+        return "";
+    }
+
+    @Override
+    public String getDescription() {
+        return "";
+    }
+
+    @Override
+    public String getSettings() {
+        return "";
+    }
+
+    @Override
+    public String getLoggingSettings() {
+        return "";
+    }
+
+    @Override
+    public String getUnit() {
+        return "";
+    }
+
+    @Override
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    @Override
+    public double getScalingFactor() {
+        return 1;
+    }
+
+    @Override
+    public int getSamplingInterval() {
+        return 0;
+    }
+
+    @Override
+    public int getSamplingTimeOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getSamplingTimeout() {
+        return 0;
+    }
+
+    @Override
+    public int getLoggingInterval() {
+        return 0;
+    }
+
+    @Override
+    public int getLoggingTimeOffset() {
+        return 0;
+    }
+
+    @Override
+    public String getDriverName() {
+        return "";
+    }
+
+    @Override
+    public String getDeviceAddress() {
+        return "";
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "";
+    }
+
+    @Override
+    public String getDeviceDescription() {
+        return "";
+    }
+
+    @Override
+    public ChannelState getChannelState() {
+        return ChannelState.CONNECTED;
+    }
+
+    @Override
+    public DeviceState getDeviceState() {
+        return DeviceState.CONNECTED;
+    }
+
+    @Override
+    public void addListener(RecordListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(RecordListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public Record getLatestRecord() {
+        return latestRecord;
+    }
+
+    /**
+     * Sets the latest record and notifies the listeners like the data manager does after a read.
+     */
+    @Override
+    public void setLatestRecord(Record record) {
+        latestRecord = record;
+        for (RecordListener listener : listeners) {
+            listener.newRecord(record);
+        }
+    }
+
+    @Override
+    public Flag write(Value value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeFuture(List<FutureValue> values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WriteValueContainer getWriteContainer() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Record read() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReadRecordContainer getReadContainer() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Record getLoggedRecord(long time) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Record> getLoggedRecords(long startTime) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Record> getLoggedRecords(long startTime, long endTime) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -30,12 +30,15 @@ import org.openmuc.framework.server.restws.servlets.*;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.http.HttpService;
+import org.osgi.service.http.context.ServletContextHelper;
+import org.osgi.service.http.whiteboard.HttpWhiteboardConstants;
 import org.osgi.service.jdbc.DataSourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,13 +53,18 @@ import org.openmuc.framework.lib.rest1.domain.model.SoHSchedule;
 import org.openmuc.framework.lib.rest1.common.enums.DischargeState;
 import org.openmuc.framework.lib.rest1.common.enums.Status;
 
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 @Component
 public final class RestServer {
 
     private static final Logger logger = LoggerFactory.getLogger(RestServer.class);
+    private static final String CONTEXT_NAME = "org.openmuc.framework.server.restws";
 
     private static DataAccessService dataAccessService;
     private static AuthenticationService authenticationService;
@@ -64,6 +72,8 @@ public final class RestServer {
     private static HttpService httpService;
 
     private Timer updateTimer;
+    private ServiceRegistration<ServletContextHelper> contextRegistration;
+    private ServiceRegistration<Servlet> chRRegistration;
     private SoHScheduleRepoImpl sohScheduleRepoImpl = new SoHScheduleRepoImpl();
     private EntityRepoImpl entityRepoImpl = new EntityRepoImpl();
     private ASyncServiceImpl asyncService = new ASyncServiceImpl();
@@ -188,7 +198,7 @@ public final class RestServer {
         SecurityHandler securityHandler = new SecurityHandler(context.getBundleContext().getBundle(),
                 authenticationService);
 
-        httpService.registerServlet(Const.ALIAS_CHANNELS, chRServlet, null, securityHandler);
+        registerChannelServlet(context.getBundleContext(), securityHandler);
         httpService.registerServlet(Const.ALIAS_DEVICES, devRServlet, null, securityHandler);
         httpService.registerServlet(Const.ALIAS_DEVICES_V2, devRServlet_v2, null, securityHandler);
         httpService.registerServlet(Const.ALIAS_NETWORK, netRServlet, null, securityHandler);
@@ -201,6 +211,7 @@ public final class RestServer {
         httpService.registerServlet(Const.ALIAS_STRING, batteryStringResourceServlet, null, securityHandler);
         // httpService.registerServlet(Const.ALIAS_CONTROLS, controlsServlet, null,
         // securityHandler);
+        asyncService.setDataAccessService(dataAccessService);
         initUpdateTimer();
     }
 
@@ -208,7 +219,8 @@ public final class RestServer {
     protected void deactivate(ComponentContext context) {
         logger.info("Deactivating REST Server");
 
-        httpService.unregister(Const.ALIAS_CHANNELS);
+        chRRegistration.unregister();
+        contextRegistration.unregister();
         httpService.unregister(Const.ALIAS_DEVICES);
         httpService.unregister(Const.ALIAS_DRIVERS);
         httpService.unregister(Const.ALIAS_USERS);
@@ -221,6 +233,34 @@ public final class RestServer {
 
         updateTimer.cancel();
         updateTimer.purge();
+        asyncService.shutdown();
+    }
+
+    /**
+     * Channel writes complete asynchronously, which the HttpService cannot register, so the channel servlet goes
+     * through the HTTP whiteboard with the same security handler as the other servlets.
+     */
+    private void registerChannelServlet(BundleContext bundleContext, SecurityHandler securityHandler) {
+        ServletContextHelper servletContext = new ServletContextHelper(bundleContext.getBundle()) {
+            @Override
+            public boolean handleSecurity(HttpServletRequest request, HttpServletResponse response)
+                    throws IOException {
+                return securityHandler.handleSecurity(request, response);
+            }
+        };
+        Dictionary<String, Object> contextProperties = new Hashtable<>();
+        contextProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, CONTEXT_NAME);
+        contextProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/");
+        contextRegistration = bundleContext.registerService(ServletContextHelper.class, servletContext,
+                contextProperties);
+
+        Dictionary<String, Object> servletProperties = new Hashtable<>();
+        servletProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN,
+                new String[] { Const.ALIAS_CHANNELS, Const.ALIAS_CHANNELS + "/*" });
+        servletProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_ASYNC_SUPPORTED, true);
+        servletProperties.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT,
+                "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=" + CONTEXT_NAME + ")");
+        chRRegistration = bundleContext.registerService(Servlet.class, chRServlet, servletProperties);
     }
 
     protected void unsetConfigService(ConfigService configService) {
@@ -6,7 +6,6 @@ import com.google.gson.JsonSyntaxException;
 import org.openmuc.framework.config.ConfigService;
 import org.openmuc.framework.config.DeviceConfig;
 import org.openmuc.framework.config.DriverConfig;
-import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.RootConfig;
 import org.openmuc.framework.data.*;
 import org.openmuc.framework.data.Record;
@@ -196,13 +195,10 @@ public class BatteryStringResourceServlet extends GenericServlet {
                 return false;
             }
 
-            try {
-                DeviceConfig deviceConfig = driverConfig.addDevice(deviceId);
-                json.setDeviceConfigV2(deviceConfig, deviceId);
-            } catch (IdCollisionException ignored) {
-            }
+            DeviceConfig deviceConfig = driverConfig.addDevice(deviceId);
+            json.setDeviceConfigV2(deviceConfig, deviceId);
 
-            configService.setConfig(rootConfig);
+            configService.setDeviceConfig(deviceConfig);
             configService.writeConfigToFile();
             return true;
 
@@ -20,10 +20,19 @@
  */
 package org.openmuc.framework.server.restws.servlets;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,8 +43,10 @@ import org.openmuc.framework.config.ConfigWriteException;
 import org.openmuc.framework.config.DeviceConfig;
 import org.openmuc.framework.config.IdCollisionException;
 import org.openmuc.framework.config.RootConfig;
+import org.openmuc.framework.data.Aggregation;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.RecordColumns;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
 import org.openmuc.framework.dataaccess.Channel;
@@ -44,6 +55,8 @@ import org.openmuc.framework.dataaccess.DataLoggerNotAvailableException;
 import org.openmuc.framework.lib.rest1.Const;
 import org.openmuc.framework.lib.rest1.FromJson;
 import org.openmuc.framework.lib.rest1.ToJson;
+import org.openmuc.framework.lib.rest1.downsampling.Downsampler;
+import org.openmuc.framework.lib.rest1.downsampling.DownsamplingMethod;
 import org.openmuc.framework.lib.rest1.exceptions.MissingJsonObjectException;
 import org.openmuc.framework.lib.rest1.exceptions.RestConfigIsNotCorrectException;
 import org.slf4j.Logger;
@@ -58,6 +71,8 @@ public class ChannelResourceServlet extends GenericServlet {
     private static final String REQUESTED_REST_PATH_IS_NOT_AVAILABLE = "Requested rest path is not available-updated.";
     private static final long serialVersionUID = -702876016040151438L;
     private static final Logger logger = LoggerFactory.getLogger(ChannelResourceServlet.class);
+    private static final long WRITE_TIMEOUT = Long.getLong("org.openmuc.framework.server.restws.write_timeout",
+            10000);
 
     private DataAccessService dataAccess;
     private ConfigService configService;
@@ -112,9 +127,7 @@ public class ChannelResourceServlet extends GenericServlet {
                 doGetConfigs(json, channelId, response);
             }
             else if (pathInfoArray[1].startsWith(Const.HISTORY)) {
-                String fromParameter = request.getParameter("from");
-                String untilParameter = request.getParameter("until");
-                doGetHistory(json, channelId, fromParameter, untilParameter, response);
+                doGetHistory(json, channelId, request, response);
             }
             else if (pathInfoArray[1].equalsIgnoreCase(Const.DRIVER_ID)) {
                 doGetDriverId(json, channelId, response);
@@ -198,7 +211,7 @@ public class ChannelResourceServlet extends GenericServlet {
                         doSetRecord(channelId, response, json);
                     }
                     else if (pathInfoArray.length == 1) {
-                        doWriteChannel(channelId, response, json);
+                        doWriteChannel(channelId, request, response, json);
                     }
                     else {
                         ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_NOT_FOUND, logger,
@@ -238,7 +251,7 @@ public class ChannelResourceServlet extends GenericServlet {
             else {
                 try {
                     channelConfig.delete();
-                    configService.setConfig(rootConfig);
+                    configService.deleteChannel(channelId);
                     configService.writeConfigToFile();
 
                     if (rootConfig.getDriver(channelId) == null) {
@@ -320,16 +333,18 @@ public class ChannelResourceServlet extends GenericServlet {
         }
     }
 
-    private void doGetHistory(ToJson json, String channelId, String fromParameter, String untilParameter,
-            HttpServletResponse response) {
+    private void doGetHistory(ToJson json, String channelId, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        String fromParameter = request.getParameter("from");
+        String untilParameter = request.getParameter("until");
         long fromTimeStamp = 0;
         long untilTimeStamp = 0;
 
         List<String> channelIds = dataAccess.getAllIds();
-        List<Record> records = null;
 
         if (channelIds.contains(channelId)) {
             Channel channel = dataAccess.getChannel(channelId);
+            ValueType valueType = channel.getValueType();
 
             try {
                 fromTimeStamp = Long.parseLong(fromParameter);
@@ -337,18 +352,118 @@ public class ChannelResourceServlet extends GenericServlet {
             } catch (NumberFormatException ex) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_BAD_REQUEST, logger,
                         "From/To value is not a long number.");
+                return;
+            }
+
+            DownsamplingMethod downsamplingMethod = null;
+            long bucketInterval = 0;
+            String maxPointsParameter = request.getParameter("maxPoints");
+            String bucketParameter = request.getParameter("bucket");
+            if (maxPointsParameter != null || bucketParameter != null) {
+                if (!isHistoryDownsampled(valueType)) {
+                    ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_BAD_REQUEST, logger,
+                            "Downsampling is only supported for numeric channels.");
+                    return;
+                }
+                try {
+                    String methodParameter = request.getParameter("downsampling");
+                    downsamplingMethod = methodParameter == null ? DownsamplingMethod.LTTB
+                            : DownsamplingMethod.fromParameter(methodParameter);
+                    bucketInterval = getBucketInterval(downsamplingMethod, fromTimeStamp, untilTimeStamp,
+                            maxPointsParameter, bucketParameter);
+                } catch (IllegalArgumentException e) {
+                    ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_BAD_REQUEST, logger,
+                            "Invalid downsampling parameter: " + e.getMessage());
+                    return;
+                }
             }
 
+            List<Record> records = null;
+            RecordColumns columns = null;
             try {
-                records = channel.getLoggedRecords(fromTimeStamp, untilTimeStamp);
+                if (downsamplingMethod != null) {
+                    columns = getDownsampledRecordColumns(channel, downsamplingMethod, fromTimeStamp, untilTimeStamp,
+                            bucketInterval);
+                }
+                else if (isHistoryStreamedFromColumns(valueType)) {
+                    columns = channel.getLoggedRecordColumns(fromTimeStamp, untilTimeStamp);
+                }
+                else {
+                    records = channel.getLoggedRecords(fromTimeStamp, untilTimeStamp);
+                }
             } catch (DataLoggerNotAvailableException e) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, logger,
                         e.getMessage());
+                return;
             } catch (IOException e) {
                 ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_NOT_FOUND, logger, e.getMessage());
+                return;
+            }
+
+            if (columns != null) {
+                Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+                // averages are written as doubles, all other methods return logged values
+                ToJson.writeRecordColumns(columns,
+                        downsamplingMethod == DownsamplingMethod.AVG ? ValueType.DOUBLE : valueType, writer);
+                // commits the response, so the empty JSON tree is not sent afterwards
+                response.flushBuffer();
+            }
+            else {
+                json.addRecordList(records, valueType);
+            }
+        }
+    }
+
+    /**
+     * Values of these types are represented exactly as double, so their history is read in columns and streamed.
+     */
+    private static boolean isHistoryStreamedFromColumns(ValueType valueType) {
+        return valueType != null && valueType != ValueType.LONG && valueType != ValueType.STRING
+                && valueType != ValueType.BYTE_ARRAY;
+    }
+
+    private static boolean isHistoryDownsampled(ValueType valueType) {
+        return valueType != null && valueType != ValueType.STRING && valueType != ValueType.BYTE_ARRAY;
+    }
+
+    /**
+     * A bucket interval as well as a maximum number of points may be given, the larger interval satisfies both.
+     */
+    private static long getBucketInterval(DownsamplingMethod method, long fromTimeStamp, long untilTimeStamp,
+            String maxPointsParameter, String bucketParameter) {
+        long interval = 0;
+        if (bucketParameter != null) {
+            interval = Long.parseLong(bucketParameter);
+            if (interval <= 0) {
+                throw new IllegalArgumentException("bucket has to be positive");
             }
-            json.addRecordList(records, channel.getValueType());
         }
+        if (maxPointsParameter != null) {
+            interval = Math.max(interval, Downsampler.getInterval(method, fromTimeStamp, untilTimeStamp,
+                    Integer.parseInt(maxPointsParameter)));
+        }
+        return interval;
+    }
+
+    /**
+     * Lets the data logger aggregate the history if it is able to, otherwise downsamples the logged values. These are
+     * read in parts, so only the raw values of one part are held in memory.
+     */
+    private static RecordColumns getDownsampledRecordColumns(Channel channel, DownsamplingMethod method,
+            long fromTimeStamp, long untilTimeStamp, long interval)
+            throws DataLoggerNotAvailableException, IOException {
+        Aggregation aggregation = method.getAggregation();
+        if (aggregation != null) {
+            RecordColumns columns = channel.getLoggedAggregatedRecordColumns(fromTimeStamp, untilTimeStamp, interval,
+                    aggregation);
+            if (columns != null) {
+                return columns;
+            }
+        }
+
+        return Downsampler.downsample(channel::getLoggedRecordColumns, method, fromTimeStamp, untilTimeStamp,
+                interval);
     }
 
     private boolean setAndWriteChannelConfig(String channelId, HttpServletResponse response, FromJson json,
@@ -393,7 +508,8 @@ public class ChannelResourceServlet extends GenericServlet {
             try {
                 json.setChannelConfig(channelConfig, channelId);
 
-                configService.setConfig(rootConfig);
+                // the channel may have been renamed, so the whole device is applied
+                configService.setDeviceConfig(channelConfig.getDevice());
                 configService.writeConfigToFile();
             } catch (IdCollisionException e) {
 
@@ -450,7 +566,7 @@ public class ChannelResourceServlet extends GenericServlet {
                     channelConfig.delete();
                 }
                 else {
-                    configService.setConfig(rootConfig);
+                    configService.setChannelConfig(channelConfig);
                     configService.writeConfigToFile();
                 }
             } catch (IdCollisionException e) {
@@ -533,20 +649,53 @@ public class ChannelResourceServlet extends GenericServlet {
         }
     }
 
-    private void doWriteChannel(String channelId, HttpServletResponse response, FromJson json) {
+    /**
+     * Writes without holding the request thread while the device is busy, if the servlet container supports it.
+     */
+    private void doWriteChannel(String channelId, HttpServletRequest request, HttpServletResponse response,
+            FromJson json) {
         Channel channel = dataAccess.getChannel(channelId);
 
         Value value = json.getValue(channel.getValueType());
-        Flag flag = writeToChannel(channel, value);
+        CompletableFuture<Flag> write = channel.writeAsync(value, WRITE_TIMEOUT);
 
-        if (flag != Flag.VALID) {
-            ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_CONFLICT, logger,
-                    "Problems by writing to channel. Flag = " + flag.toString());
+        if (!request.isAsyncSupported()) {
+            try {
+                sendWriteResult(response, write.get(), null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendWriteResult(response, null, e);
+            } catch (ExecutionException e) {
+                sendWriteResult(response, null, e.getCause());
+            }
+            return;
         }
+
+        AsyncContext asyncContext = request.startAsync();
+        // the write deadline ends the request
+        asyncContext.setTimeout(0);
+        write.whenComplete((flag, e) -> {
+            sendWriteResult((HttpServletResponse) asyncContext.getResponse(), flag, e);
+            asyncContext.complete();
+        });
     }
 
-    public static Flag writeToChannel(Channel channel, Value value) {
-        return channel.write(value);
+    private static void sendWriteResult(HttpServletResponse response, Flag flag, Throwable error) {
+        if (error instanceof CompletionException) {
+            error = error.getCause();
+        }
+        if (error instanceof TimeoutException) {
+            ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_GATEWAY_TIMEOUT, logger,
+                    "Writing to channel did not finish within " + WRITE_TIMEOUT + " ms.");
+        }
+        else if (error != null) {
+            ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, logger,
+                    "Problems by writing to channel. " + error);
+        }
+        else if (flag != Flag.VALID) {
+            ServletLib.sendHTTPErrorAndLogDebug(response, HttpServletResponse.SC_CONFLICT, logger,
+                    "Problems by writing to channel. Flag = " + flag.toString());
+        }
     }
 
     private void setConfigAccess() {
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011-2024 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.server.restws.servlets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.RootConfig;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.DataAccessService;
+
+public class ChannelResourceServletTest {
+
+    private CompletableFuture<Flag> write;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private AsyncContext asyncContext;
+    private ChannelResourceServlet servlet;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        write = new CompletableFuture<>();
+        Channel channel = mock(Channel.class);
+        when(channel.getValueType()).thenReturn(ValueType.DOUBLE);
+        when(channel.writeAsync(any(Value.class), anyLong())).thenReturn(write);
+
+        DataAccessService dataAccess = mock(DataAccessService.class);
+        when(dataAccess.getChannel("channel1")).thenReturn(channel);
+        RootConfig rootConfig = mock(RootConfig.class);
+        ChannelConfig channelConfig = mock(ChannelConfig.class);
+        when(rootConfig.getChannel("channel1")).thenReturn(channelConfig);
+
+        servlet = new ChannelResourceServlet();
+        servlet.handleDataAccessService(dataAccess);
+        servlet.handleRootConfig(rootConfig);
+
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        asyncContext = mock(AsyncContext.class);
+        when(request.getPathInfo()).thenReturn("/channel1");
+        when(request.getContentType()).thenReturn("application/json");
+        when(request.getReader())
+                .thenReturn(new BufferedReader(new StringReader("{\"record\":{\"value\":1.5}}")));
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync()).thenReturn(asyncContext);
+        when(asyncContext.getResponse()).thenReturn(response);
+    }
+
+    @Test
+    public void testWriteReleasesRequestThread() throws Exception {
+        servlet.doPut(request, response);
+
+        verify(request).startAsync();
+        verify(asyncContext, never()).complete();
+
+        write.complete(Flag.VALID);
+
+        verify(asyncContext).complete();
+        verify(response, never()).sendError(anyInt(), anyString());
+    }
+
+    @Test
+    public void testTimedOutWriteIsReportedAsynchronously() throws Exception {
+        servlet.doPut(request, response);
+        write.completeExceptionally(new TimeoutException());
+
+        verify(response).sendError(eq(HttpServletResponse.SC_GATEWAY_TIMEOUT), anyString());
+        verify(asyncContext).complete();
+    }
+
+}